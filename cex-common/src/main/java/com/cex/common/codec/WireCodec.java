@@ -0,0 +1,385 @@
+package com.cex.common.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.cex.common.dto.DepthUpdateDTO;
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.dto.TradeRecordDTO;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * MQ 消息二进制编解码（OrderDTO / TradeRecordDTO / 盘口增量）
+ *
+ * 【作用】
+ * 订单、成交、盘口消息原来都是 fastjson 字符串：字段名随每条记录重复，BigDecimal 按文本解析，
+ * 消费方还要先解析成 JSONArray 再逐条转对象。二进制格式按固定字段顺序（schema）写值，不写字段名，
+ * 体积和编解码耗时都只有 JSON 的几分之一。
+ *
+ * 【格式】
+ * ```
+ * byte   magic      0xCE（JSON 以 { 或 [ 开头，不会冲突）
+ * byte   version    VERSION
+ * byte   type       TYPE_ORDER / TYPE_TRADE / TYPE_DEPTH
+ * varint count      记录数
+ * ...    records    每条记录：varint 非空字段位图 + 按字段顺序写入的非空字段
+ * ```
+ * 字段顺序见 writeOrder / writeTrade / beginDepthUpdate；格式变化时升级 VERSION，读取方拒绝版本不一致的消息。
+ *
+ * 【灰度】
+ * 生产方发送二进制消息时设置 contentType = CONTENT_TYPE；消费方统一用 byte[] 接收，
+ * decodeXxx 按首字节自动识别二进制或 JSON，两种格式可以在同一个 Topic 中共存：
+ * 先升级所有消费方，再逐个把生产方切到二进制。
+ *
+ * @author cex
+ */
+public final class WireCodec {
+
+    /** 二进制消息的 contentType */
+    public static final String CONTENT_TYPE = "application/x-cex-wire";
+
+    public static final byte MAGIC = (byte) 0xCE;
+
+    public static final byte VERSION = 1;
+
+    public static final byte TYPE_ORDER = 1;
+
+    public static final byte TYPE_TRADE = 2;
+
+    public static final byte TYPE_DEPTH = 3;
+
+    /** 每条记录至少占用的字节数（用于在分配列表之前校验记录数） */
+    private static final int MIN_ORDER_BYTES = 4;
+
+    private static final int MIN_TRADE_BYTES = 5;
+
+    /** 档位：价格、总量两个小数（scale + varint） */
+    private static final int MIN_LEVEL_BYTES = 4;
+
+    /** 分组：步长 + 买卖两个档位数 */
+    private static final int MIN_GROUP_BYTES = 4;
+
+    private WireCodec() {
+    }
+
+    /**
+     * 是否为二进制消息（否则按 JSON 解析）
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    /**
+     * 写入消息头
+     *
+     * @param type 消息类型
+     * @param count 记录数
+     * @return 写入器（继续写入记录）
+     */
+    public static WireWriter begin(byte type, int count, int initialCapacity) {
+        WireWriter writer = new WireWriter(initialCapacity);
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeByte(type);
+        writer.writeVarInt(count);
+        return writer;
+    }
+
+    /**
+     * 读取并校验消息头
+     *
+     * @return 记录数
+     */
+    private static int readHeader(WireReader reader, byte expectedType) {
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("不是二进制消息");
+        }
+        int version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的消息版本: " + version);
+        }
+        int type = reader.readByte();
+        if (type != expectedType) {
+            throw new IllegalArgumentException("消息类型不匹配: expected=" + expectedType + ", actual=" + type);
+        }
+        return reader.readVarInt();
+    }
+
+    /**
+     * 校验记录数：负数或剩余字节放不下这么多记录时拒绝，不按伪造的数量分配列表
+     *
+     * @param minBytes 每条记录至少占用的字节数
+     */
+    private static int checkCount(WireReader reader, int count, int minBytes) {
+        if (count < 0 || count > reader.remaining() / minBytes) {
+            throw new IllegalArgumentException("记录数越界: count=" + count + ", remaining=" + reader.remaining());
+        }
+        return count;
+    }
+
+    // ==================== 订单 ====================
+
+    public static byte[] encodeOrder(OrderDTO order) {
+        return encodeOrders(Collections.singletonList(order));
+    }
+
+    public static byte[] encodeOrders(List<OrderDTO> orders) {
+        WireWriter writer = begin(TYPE_ORDER, orders.size(), 16 + orders.size() * 96);
+        for (OrderDTO order : orders) {
+            writeOrder(writer, order);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码订单消息（二进制，或 JSON 对象 / JSON 数组）
+     */
+    public static List<OrderDTO> decodeOrders(byte[] payload) {
+        if (!isBinary(payload)) {
+            String json = new String(payload, StandardCharsets.UTF_8).trim();
+            if (json.startsWith("[")) {
+                return JSON.parseArray(json, OrderDTO.class);
+            }
+            OrderDTO order = JSON.parseObject(json, OrderDTO.class);
+            return order == null ? Collections.emptyList() : Collections.singletonList(order);
+        }
+        WireReader reader = new WireReader(payload);
+        int count = checkCount(reader, readHeader(reader, TYPE_ORDER), MIN_ORDER_BYTES);
+        List<OrderDTO> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(readOrder(reader));
+        }
+        return orders;
+    }
+
+    /**
+     * 解码单个订单消息（下单、撤单）
+     *
+     * @return 订单；消息为空时返回 null
+     */
+    public static OrderDTO decodeOrder(byte[] payload) {
+        List<OrderDTO> orders = decodeOrders(payload);
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    private static void writeOrder(WireWriter writer, OrderDTO order) {
+        int mask = 0;
+        mask |= order.getUserId() != null ? 1 : 0;
+        mask |= order.getOrderType() != null ? 1 << 1 : 0;
+        mask |= order.getSide() != null ? 1 << 2 : 0;
+        mask |= order.getPrice() != null ? 1 << 3 : 0;
+        mask |= order.getAmount() != null ? 1 << 4 : 0;
+        mask |= order.getFilledAmount() != null ? 1 << 5 : 0;
+        mask |= order.getFilledMoney() != null ? 1 << 6 : 0;
+        mask |= order.getFeeRate() != null ? 1 << 7 : 0;
+        mask |= order.getStatus() != null ? 1 << 8 : 0;
+        mask |= order.getCreateTime() != null ? 1 << 9 : 0;
+        mask |= order.getTriggerPrice() != null ? 1 << 10 : 0;
+        mask |= order.getExpireTime() != null ? 1 << 11 : 0;
+        writer.writeVarInt(mask);
+        writer.writeString(order.getOrderNo());
+        writer.writeString(order.getSymbol());
+        writer.writeString(order.getFeeCoin());
+        if ((mask & 1) != 0) {
+            writer.writeVarLong(order.getUserId());
+        }
+        if ((mask & 1 << 1) != 0) {
+            writer.writeVarInt(order.getOrderType());
+        }
+        if ((mask & 1 << 2) != 0) {
+            writer.writeVarInt(order.getSide());
+        }
+        if ((mask & 1 << 3) != 0) {
+            writer.writeDecimal(order.getPrice());
+        }
+        if ((mask & 1 << 4) != 0) {
+            writer.writeDecimal(order.getAmount());
+        }
+        if ((mask & 1 << 5) != 0) {
+            writer.writeDecimal(order.getFilledAmount());
+        }
+        if ((mask & 1 << 6) != 0) {
+            writer.writeDecimal(order.getFilledMoney());
+        }
+        if ((mask & 1 << 7) != 0) {
+            writer.writeDecimal(order.getFeeRate());
+        }
+        if ((mask & 1 << 8) != 0) {
+            writer.writeVarInt(order.getStatus());
+        }
+        if ((mask & 1 << 9) != 0) {
+            writer.writeVarLong(order.getCreateTime());
+        }
+        if ((mask & 1 << 10) != 0) {
+            writer.writeDecimal(order.getTriggerPrice());
+        }
+        if ((mask & 1 << 11) != 0) {
+            writer.writeVarLong(order.getExpireTime());
+        }
+    }
+
+    private static OrderDTO readOrder(WireReader reader) {
+        int mask = reader.readVarInt();
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(reader.readString());
+        order.setSymbol(reader.readString());
+        order.setFeeCoin(reader.readString());
+        order.setUserId((mask & 1) != 0 ? reader.readVarLong() : null);
+        order.setOrderType((mask & 1 << 1) != 0 ? reader.readVarInt() : null);
+        order.setSide((mask & 1 << 2) != 0 ? reader.readVarInt() : null);
+        order.setPrice((mask & 1 << 3) != 0 ? reader.readDecimal() : null);
+        order.setAmount((mask & 1 << 4) != 0 ? reader.readDecimal() : null);
+        order.setFilledAmount((mask & 1 << 5) != 0 ? reader.readDecimal() : null);
+        order.setFilledMoney((mask & 1 << 6) != 0 ? reader.readDecimal() : null);
+        order.setFeeRate((mask & 1 << 7) != 0 ? reader.readDecimal() : null);
+        order.setStatus((mask & 1 << 8) != 0 ? reader.readVarInt() : null);
+        order.setCreateTime((mask & 1 << 9) != 0 ? reader.readVarLong() : null);
+        order.setTriggerPrice((mask & 1 << 10) != 0 ? reader.readDecimal() : null);
+        order.setExpireTime((mask & 1 << 11) != 0 ? reader.readVarLong() : null);
+        return order;
+    }
+
+    // ==================== 成交 ====================
+
+    public static byte[] encodeTrades(List<TradeRecordDTO> trades) {
+        WireWriter writer = begin(TYPE_TRADE, trades.size(), 16 + trades.size() * 112);
+        for (TradeRecordDTO trade : trades) {
+            writeTrade(writer, trade);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码成交消息（二进制或 JSON 数组）
+     */
+    public static List<TradeRecordDTO> decodeTrades(byte[] payload) {
+        if (!isBinary(payload)) {
+            return JSON.parseArray(new String(payload, StandardCharsets.UTF_8), TradeRecordDTO.class);
+        }
+        WireReader reader = new WireReader(payload);
+        int count = checkCount(reader, readHeader(reader, TYPE_TRADE), MIN_TRADE_BYTES);
+        List<TradeRecordDTO> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            trades.add(readTrade(reader));
+        }
+        return trades;
+    }
+
+    private static void writeTrade(WireWriter writer, TradeRecordDTO trade) {
+        int mask = 0;
+        mask |= trade.getBuyUserId() != null ? 1 : 0;
+        mask |= trade.getSellUserId() != null ? 1 << 1 : 0;
+        mask |= trade.getPrice() != null ? 1 << 2 : 0;
+        mask |= trade.getAmount() != null ? 1 << 3 : 0;
+        mask |= trade.getMoney() != null ? 1 << 4 : 0;
+        mask |= trade.getBuyFee() != null ? 1 << 5 : 0;
+        mask |= trade.getSellFee() != null ? 1 << 6 : 0;
+        mask |= trade.getTradeTime() != null ? 1 << 7 : 0;
+        writer.writeVarInt(mask);
+        writer.writeString(trade.getTradeId());
+        writer.writeString(trade.getSymbol());
+        writer.writeString(trade.getBuyOrderNo());
+        writer.writeString(trade.getSellOrderNo());
+        if ((mask & 1) != 0) {
+            writer.writeVarLong(trade.getBuyUserId());
+        }
+        if ((mask & 1 << 1) != 0) {
+            writer.writeVarLong(trade.getSellUserId());
+        }
+        if ((mask & 1 << 2) != 0) {
+            writer.writeDecimal(trade.getPrice());
+        }
+        if ((mask & 1 << 3) != 0) {
+            writer.writeDecimal(trade.getAmount());
+        }
+        if ((mask & 1 << 4) != 0) {
+            writer.writeDecimal(trade.getMoney());
+        }
+        if ((mask & 1 << 5) != 0) {
+            writer.writeDecimal(trade.getBuyFee());
+        }
+        if ((mask & 1 << 6) != 0) {
+            writer.writeDecimal(trade.getSellFee());
+        }
+        if ((mask & 1 << 7) != 0) {
+            writer.writeVarLong(trade.getTradeTime().getTime());
+        }
+    }
+
+    private static TradeRecordDTO readTrade(WireReader reader) {
+        int mask = reader.readVarInt();
+        TradeRecordDTO trade = new TradeRecordDTO();
+        trade.setTradeId(reader.readString());
+        trade.setSymbol(reader.readString());
+        trade.setBuyOrderNo(reader.readString());
+        trade.setSellOrderNo(reader.readString());
+        trade.setBuyUserId((mask & 1) != 0 ? reader.readVarLong() : null);
+        trade.setSellUserId((mask & 1 << 1) != 0 ? reader.readVarLong() : null);
+        trade.setPrice((mask & 1 << 2) != 0 ? reader.readDecimal() : null);
+        trade.setAmount((mask & 1 << 3) != 0 ? reader.readDecimal() : null);
+        trade.setMoney((mask & 1 << 4) != 0 ? reader.readDecimal() : null);
+        trade.setBuyFee((mask & 1 << 5) != 0 ? reader.readDecimal() : null);
+        trade.setSellFee((mask & 1 << 6) != 0 ? reader.readDecimal() : null);
+        trade.setTradeTime((mask & 1 << 7) != 0 ? new Date(reader.readVarLong()) : null);
+        return trade;
+    }
+
+    // ==================== 盘口增量 ====================
+
+    /**
+     * 开始写盘口增量（撮合引擎随后直接写入定点数档位，如 TradePlate.writeChanges）
+     *
+     * 【格式】
+     * 消息头（count = 1）+ symbol + seq + prevSeq + 买盘档位 + 卖盘档位 + 分组深度，
+     * 档位为 varint 档位数 + 每档 [价格, 总量] 两个小数；
+     * 分组深度为 varint 分组数（没有配置分组时为 0） + 每组 [步长, 买盘档位, 卖盘档位]
+     */
+    public static WireWriter beginDepthUpdate(String symbol, long seq, long prevSeq) {
+        WireWriter writer = begin(TYPE_DEPTH, 1, 128);
+        writer.writeString(symbol);
+        writer.writeVarLong(seq);
+        writer.writeVarLong(prevSeq);
+        return writer;
+    }
+
+    /**
+     * 解码盘口增量（二进制或 JSON 对象）
+     */
+    public static DepthUpdateDTO decodeDepthUpdate(byte[] payload) {
+        if (!isBinary(payload)) {
+            return JSON.parseObject(new String(payload, StandardCharsets.UTF_8), DepthUpdateDTO.class);
+        }
+        WireReader reader = new WireReader(payload);
+        readHeader(reader, TYPE_DEPTH);
+        DepthUpdateDTO update = new DepthUpdateDTO();
+        update.setSymbol(reader.readString());
+        update.setSeq(reader.readVarLong());
+        update.setPrevSeq(reader.readVarLong());
+        update.setBids(readLevels(reader));
+        update.setAsks(readLevels(reader));
+        int groupCount = checkCount(reader, reader.readVarInt(), MIN_GROUP_BYTES);
+        List<DepthUpdateDTO.Group> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            DepthUpdateDTO.Group group = new DepthUpdateDTO.Group();
+            group.setStep(reader.readDecimal());
+            group.setBids(readLevels(reader));
+            group.setAsks(readLevels(reader));
+            groups.add(group);
+        }
+        update.setGroups(groups);
+        return update;
+    }
+
+    private static List<BigDecimal[]> readLevels(WireReader reader) {
+        int count = checkCount(reader, reader.readVarInt(), MIN_LEVEL_BYTES);
+        List<BigDecimal[]> levels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            levels.add(new BigDecimal[]{reader.readDecimal(), reader.readDecimal()});
+        }
+        return levels;
+    }
+}
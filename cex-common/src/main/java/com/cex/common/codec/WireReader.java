@@ -0,0 +1,79 @@
+package com.cex.common.codec;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 二进制消息读取器（WireWriter 的逆过程）
+ *
+ * @author cex
+ */
+public final class WireReader {
+
+    private final byte[] buf;
+
+    private int pos;
+
+    public WireReader(byte[] buf) {
+        this.buf = buf;
+    }
+
+    public int readByte() {
+        if (pos >= buf.length) {
+            throw new IllegalArgumentException("消息不完整: position=" + pos);
+        }
+        return buf[pos++];
+    }
+
+    public int readVarInt() {
+        long value = readVarLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("整数超出范围: " + value);
+        }
+        return (int) value;
+    }
+
+    public long readVarLong() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IllegalArgumentException("varint 格式错误: position=" + pos);
+    }
+
+    public String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buf.length - pos) {
+            throw new IllegalArgumentException("字符串长度越界: " + length);
+        }
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    public BigDecimal readDecimal() {
+        int scale = readByte();
+        if (scale == WireWriter.DECIMAL_OVERFLOW) {
+            return new BigDecimal(readString());
+        }
+        return BigDecimal.valueOf(readVarLong(), scale);
+    }
+
+    public boolean hasRemaining() {
+        return pos < buf.length;
+    }
+
+    /**
+     * 剩余未读取的字节数
+     */
+    public int remaining() {
+        return buf.length - pos;
+    }
+}
@@ -0,0 +1,119 @@
+package com.cex.common.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 二进制消息写入器（见 WireCodec）
+ *
+ * 【编码】
+ * - 整数：zigzag + varint（小数值只占 1~2 字节）
+ * - 字符串：varint(长度 + 1) + UTF-8，0 表示 null；纯 ASCII 时逐字符写入，不创建临时数组
+ * - 小数：byte scale + varint(unscaled)，unscaled 超出 long 时 scale 写 -128，后跟字符串形式
+ *
+ * 【非线程安全】
+ * 每条消息使用一个实例
+ *
+ * @author cex
+ */
+public final class WireWriter {
+
+    /** 小数 unscaled 超出 long 范围时的 scale 标记 */
+    static final byte DECIMAL_OVERFLOW = Byte.MIN_VALUE;
+
+    private byte[] buf;
+
+    private int pos;
+
+    public WireWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buf[pos++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value);
+    }
+
+    /**
+     * zigzag varint，负数也只占少量字节
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            writeVarInt(length + 1);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buf[pos++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    public void writeDecimal(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        if (unscaled.bitLength() < 64 && scale > DECIMAL_OVERFLOW && scale <= Byte.MAX_VALUE) {
+            writeDecimal(unscaled.longValue(), scale);
+        } else {
+            writeByte(DECIMAL_OVERFLOW);
+            writeString(value.toPlainString());
+        }
+    }
+
+    /**
+     * 定点数直接写入（撮合引擎的 long 价格/数量，不经过 BigDecimal）
+     *
+     * @param unscaled 放大后的值
+     * @param scale 精度
+     */
+    public void writeDecimal(long unscaled, int scale) {
+        writeByte(scale);
+        writeVarLong(unscaled);
+    }
+
+    public int position() {
+        return pos;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private void ensureCapacity(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+        }
+    }
+}
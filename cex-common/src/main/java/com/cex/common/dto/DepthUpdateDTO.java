@@ -0,0 +1,53 @@
+package com.cex.common.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 盘口增量DTO（撮合引擎 trade-plate-out 消息）
+ *
+ * 档位为 [价格, 该价格的最新总量]，总量为 0 表示档位已删除；
+ * prevSeq 与本地序号不连续时需要重新拉取深度快照；
+ * 配置了分组深度时，groups 为各分组步长的变化分组（格式相同）
+ *
+ * @author cex
+ */
+@Data
+public class DepthUpdateDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 增量序号 */
+    private Long seq;
+
+    /** 上一条增量序号 */
+    private Long prevSeq;
+
+    /** 买盘变化档位 */
+    private List<BigDecimal[]> bids;
+
+    /** 卖盘变化档位 */
+    private List<BigDecimal[]> asks;
+
+    /** 分组深度变化（没有配置分组时为空） */
+    private List<Group> groups;
+
+    /**
+     * 一个分组步长的变化分组
+     */
+    @Data
+    public static class Group {
+
+        /** 分组步长 */
+        private BigDecimal step;
+
+        /** 买盘变化分组（价格为分组价格，向下取整） */
+        private List<BigDecimal[]> bids;
+
+        /** 卖盘变化分组（价格为分组价格，向上取整） */
+        private List<BigDecimal[]> asks;
+    }
+}
@@ -0,0 +1,50 @@
+package com.cex.common.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * K线DTO（供模块间通信）
+ *
+ * @author cex
+ */
+@Data
+public class KlineDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 周期（1m, 5m, 15m, 1h, 4h, 1d） */
+    private String period;
+
+    /** 开始时间（毫秒，含） */
+    private Long openTime;
+
+    /** 结束时间（毫秒，不含） */
+    private Long closeTime;
+
+    /** 开盘价 */
+    private BigDecimal open;
+
+    /** 最高价 */
+    private BigDecimal high;
+
+    /** 最低价 */
+    private BigDecimal low;
+
+    /** 收盘价 */
+    private BigDecimal close;
+
+    /** 成交量 */
+    private BigDecimal volume;
+
+    /** 成交额 */
+    private BigDecimal amount;
+
+    /** 成交笔数 */
+    private Integer count;
+
+    /** 是否已收盘 */
+    private Boolean closed;
+}
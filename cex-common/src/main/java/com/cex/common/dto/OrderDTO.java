@@ -21,7 +21,7 @@ public class OrderDTO {
     /** 交易对 */
     private String symbol;
 
-    /** 订单类型（1限价单 2市价单） */
+    /** 订单类型（1限价单 2市价单 3止损限价单 4止损市价单；止损单触发后改为 1 / 2） */
     private Integer orderType;
 
     /** 买卖方向（1买入 2卖出） */
@@ -30,6 +30,9 @@ public class OrderDTO {
     /** 订单价格 */
     private BigDecimal price;
 
+    /** 触发价格（止损单：买单在最新成交价 >= 触发价时触发，卖单在 <= 触发价时触发） */
+    private BigDecimal triggerPrice;
+
     /** 订单数量 */
     private BigDecimal amount;
 
@@ -45,10 +48,13 @@ public class OrderDTO {
     /** 手续费币种 */
     private String feeCoin;
 
-    /** 订单状态（0待成交 1部分成交 2完全成交 3已撤销） */
+    /** 订单状态（0待成交 1部分成交 2完全成交 3已撤销 4超时） */
     private Integer status = 0;
 
     /** 创建时间 */
     private Long createTime;
+
+    /** 到期时间（毫秒时间戳，GTT 订单到期未成交部分由撮合引擎撤销，状态为 4；为空表示一直有效） */
+    private Long expireTime;
 }
 
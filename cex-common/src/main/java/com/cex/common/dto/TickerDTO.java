@@ -0,0 +1,47 @@
+package com.cex.common.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 24小时行情DTO（供模块间通信）
+ *
+ * @author cex
+ */
+@Data
+public class TickerDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 最新价格 */
+    private BigDecimal price;
+
+    /** 24小时前的价格（窗口内第一笔成交价） */
+    private BigDecimal openPrice;
+
+    /** 24小时涨跌 */
+    private BigDecimal change;
+
+    /** 24小时涨跌幅 */
+    private BigDecimal changeRate;
+
+    /** 24小时最高价 */
+    private BigDecimal high;
+
+    /** 24小时最低价 */
+    private BigDecimal low;
+
+    /** 24小时成交量 */
+    private BigDecimal volume;
+
+    /** 24小时成交额 */
+    private BigDecimal amount;
+
+    /** 24小时成交笔数 */
+    private Integer count;
+
+    /** 最后成交时间（毫秒） */
+    private Long lastTradeTime;
+}
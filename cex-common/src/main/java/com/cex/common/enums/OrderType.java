@@ -9,6 +9,10 @@ public enum OrderType {
     /** 市价单 */
     MARKET_PRICE,
     /** 限价单 */
-    LIMIT_PRICE;
+    LIMIT_PRICE,
+    /** 止损限价单（最新成交价触及触发价后按限价单撮合） */
+    STOP_LIMIT,
+    /** 止损市价单（最新成交价触及触发价后按市价单撮合） */
+    STOP_MARKET;
 }
 
@@ -0,0 +1,46 @@
+package com.cex.common.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 撮合节点分片配置（交易服务和撮合引擎共用，建议放在 Nacos 共享配置中）
+ *
+ * 【示例】
+ * ```yaml
+ * cex:
+ *   shard:
+ *     nodes: [matching-0, matching-1, matching-2]
+ *     assignments:
+ *       "[BTC/USDT]": matching-0   # 热门交易对独占节点
+ * ```
+ * nodes 为空时不分片：所有交易对由唯一的撮合节点处理，订单仍发往 order-input / order-cancel-input 绑定。
+ *
+ * @author cex
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cex.shard")
+public class ShardProperties {
+
+    /** 撮合节点 ID 列表（与各撮合节点的 matching.node-id 对应） */
+    private List<String> nodes = new ArrayList<>();
+
+    /** 显式分配：交易对 → 节点 ID，优先于一致性哈希 */
+    private Map<String, String> assignments = new HashMap<>();
+
+    /** 一致性哈希环上每个节点的虚拟节点数 */
+    private int virtualNodes = 160;
+
+    /** 下单 Topic 前缀，节点 matching-0 的 Topic 为 exchange-order-topic-matching-0 */
+    private String orderTopic = "exchange-order-topic";
+
+    /** 撤单 Topic 前缀 */
+    private String cancelTopic = "exchange-order-cancel-topic";
+}
@@ -0,0 +1,119 @@
+package com.cex.common.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 交易对 → 撮合节点路由
+ *
+ * 【作用】
+ * 撮合引擎按交易对分片部署在多个节点上，每个交易对只属于一个节点：
+ * - 交易服务按路由把下单、撤单发到该节点的 Topic（见 orderDestination / cancelDestination）
+ * - 撮合节点只为自己的交易对创建交易器，收到不属于自己的订单时直接取消
+ *
+ * 【分配规则】
+ * 1. ShardProperties.assignments 中显式分配的交易对
+ * 2. 其余交易对按一致性哈希（每个节点 virtualNodes 个虚拟节点）分配，
+ *    增加节点时只有约 1/N 的交易对迁移
+ *
+ * 【顺序】
+ * 同一交易对的订单和撤单进入同一节点；消息带 symbol 头，生产者按它选择队列（partition-key-expression），
+ * 消费端顺序消费，单个交易对严格先进先出。
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class SymbolShardRouter {
+
+    /** 分区键消息头（交易对） */
+    public static final String SYMBOL_HEADER = "symbol";
+
+    private final ShardProperties properties;
+
+    /** 一致性哈希环：哈希值 → 节点 ID */
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /** 交易对的路由结果缓存 */
+    private final ConcurrentMap<String, String> owners = new ConcurrentHashMap<>();
+
+    public SymbolShardRouter(ShardProperties properties) {
+        this.properties = properties;
+        int virtualNodes = Math.max(properties.getVirtualNodes(), 1);
+        for (String node : properties.getNodes()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+        if (isSharded()) {
+            log.info("撮合分片: nodes={}, assignments={}", properties.getNodes(), properties.getAssignments());
+        }
+    }
+
+    /**
+     * 是否启用分片（配置了撮合节点列表）
+     */
+    public boolean isSharded() {
+        return !ring.isEmpty();
+    }
+
+    /**
+     * 交易对所属的撮合节点
+     *
+     * @return 节点 ID；未启用分片时返回 null
+     */
+    public String ownerOf(String symbol) {
+        if (!isSharded()) {
+            return null;
+        }
+        return owners.computeIfAbsent(symbol, this::route);
+    }
+
+    /**
+     * 下单消息的目标 Topic
+     */
+    public String orderDestination(String symbol) {
+        return properties.getOrderTopic() + "-" + ownerOf(symbol);
+    }
+
+    /**
+     * 撤单消息的目标 Topic
+     */
+    public String cancelDestination(String symbol) {
+        return properties.getCancelTopic() + "-" + ownerOf(symbol);
+    }
+
+    private String route(String symbol) {
+        String assigned = properties.getAssignments().get(symbol);
+        if (assigned != null) {
+            return assigned;
+        }
+        // 顺时针找到第一个虚拟节点，越过环尾时回到环首
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(symbol));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * MD5 前 8 字节（分布均匀，且与 JVM、进程无关，所有服务算出的结果一致）
+     */
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
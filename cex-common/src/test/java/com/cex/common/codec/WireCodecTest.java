@@ -0,0 +1,173 @@
+package com.cex.common.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.cex.common.dto.DepthUpdateDTO;
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.dto.TradeRecordDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WireCodec 编解码测试
+ *
+ * 【覆盖】
+ * - 订单、成交、盘口增量二进制往返
+ * - 版本号不一致的消息被拒绝
+ * - 记录数超出剩余字节的消息被拒绝（不按伪造的数量分配内存）
+ * - 非二进制消息按 JSON 解析
+ *
+ * @author cex
+ */
+class WireCodecTest {
+
+    @Test
+    void orderRoundTrip() {
+        OrderDTO order = fullOrder("O1");
+        OrderDTO sparse = new OrderDTO();
+        sparse.setOrderNo("O2");
+        sparse.setSymbol("ETH/USDT");
+
+        byte[] payload = WireCodec.encodeOrders(Arrays.asList(order, sparse));
+
+        assertTrue(WireCodec.isBinary(payload));
+        assertEquals(Arrays.asList(order, sparse), WireCodec.decodeOrders(payload));
+        assertEquals(order, WireCodec.decodeOrder(WireCodec.encodeOrder(order)));
+    }
+
+    @Test
+    void decimalOutsideLongRoundTrip() {
+        OrderDTO order = fullOrder("O1");
+        order.setAmount(new BigDecimal("123456789012345678901234567890.123456789"));
+
+        assertEquals(order, WireCodec.decodeOrder(WireCodec.encodeOrder(order)));
+    }
+
+    @Test
+    void otherVersionRejected() {
+        byte[] payload = WireCodec.encodeOrder(fullOrder("O1"));
+        payload[1] = WireCodec.VERSION + 1;
+
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.decodeOrder(payload));
+    }
+
+    @Test
+    void typeMismatchRejected() {
+        byte[] payload = WireCodec.encodeOrder(fullOrder("O1"));
+
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.decodeTrades(payload));
+    }
+
+    @Test
+    void forgedCountRejected() {
+        // 头部声明 2^30 条记录，实际没有内容：不能按声明的数量分配列表
+        WireWriter orders = WireCodec.begin(WireCodec.TYPE_ORDER, 1 << 30, 16);
+        WireWriter trades = WireCodec.begin(WireCodec.TYPE_TRADE, -1, 16);
+        WireWriter depth = WireCodec.beginDepthUpdate("BTC/USDT", 2, 1);
+        depth.writeVarInt(Integer.MAX_VALUE);
+
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.decodeOrders(orders.toByteArray()));
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.decodeTrades(trades.toByteArray()));
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.decodeDepthUpdate(depth.toByteArray()));
+    }
+
+    @Test
+    void jsonOrderFallback() {
+        OrderDTO order = fullOrder("O1");
+        byte[] object = JSON.toJSONString(order).getBytes(StandardCharsets.UTF_8);
+        byte[] array = JSON.toJSONString(Collections.singletonList(order)).getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(WireCodec.isBinary(object));
+        assertEquals(order.getOrderNo(), WireCodec.decodeOrder(object).getOrderNo());
+        assertEquals(0, order.getPrice().compareTo(WireCodec.decodeOrders(array).get(0).getPrice()));
+    }
+
+    @Test
+    void tradeRoundTrip() {
+        TradeRecordDTO trade = new TradeRecordDTO();
+        trade.setTradeId("T1");
+        trade.setSymbol("BTC/USDT");
+        trade.setBuyOrderNo("B1");
+        trade.setSellOrderNo("S1");
+        trade.setBuyUserId(7L);
+        trade.setSellUserId(8L);
+        trade.setPrice(new BigDecimal("65000.12"));
+        trade.setAmount(new BigDecimal("0.00150000"));
+        trade.setMoney(new BigDecimal("97.5001800"));
+        trade.setBuyFee(new BigDecimal("0.0000015"));
+        trade.setSellFee(new BigDecimal("0.09750018"));
+        trade.setTradeTime(new Date(1_700_000_000_123L));
+        TradeRecordDTO sparse = new TradeRecordDTO();
+        sparse.setTradeId("T2");
+
+        List<TradeRecordDTO> trades = Arrays.asList(trade, sparse);
+
+        assertEquals(trades, WireCodec.decodeTrades(WireCodec.encodeTrades(trades)));
+    }
+
+    @Test
+    void depthUpdateRoundTrip() {
+        WireWriter writer = WireCodec.beginDepthUpdate("BTC/USDT", 11, 10);
+        writeLevels(writer, new long[][]{{6_500_012, 150}, {6_500_000, 0}});
+        writeLevels(writer, new long[][]{{6_500_100, 2_000}});
+        writer.writeVarInt(1);
+        writer.writeDecimal(new BigDecimal("10"));
+        writeLevels(writer, new long[][]{{6_500_000, 150}});
+        writeLevels(writer, new long[0][]);
+
+        DepthUpdateDTO update = WireCodec.decodeDepthUpdate(writer.toByteArray());
+
+        assertEquals("BTC/USDT", update.getSymbol());
+        assertEquals(11, update.getSeq().longValue());
+        assertEquals(10, update.getPrevSeq().longValue());
+        assertEquals(2, update.getBids().size());
+        assertArrayEquals(new BigDecimal[]{new BigDecimal("65000.12"), new BigDecimal("0.00000150")},
+                update.getBids().get(0));
+        assertArrayEquals(new BigDecimal[]{new BigDecimal("65000.00"), new BigDecimal("0E-8")},
+                update.getBids().get(1));
+        assertEquals(1, update.getAsks().size());
+        assertEquals(1, update.getGroups().size());
+        assertEquals(new BigDecimal("10"), update.getGroups().get(0).getStep());
+        assertEquals(1, update.getGroups().get(0).getBids().size());
+        assertTrue(update.getGroups().get(0).getAsks().isEmpty());
+    }
+
+    private static void writeLevels(WireWriter writer, long[][] levels) {
+        writer.writeVarInt(levels.length);
+        for (long[] level : levels) {
+            writer.writeDecimal(level[0], 2);
+            writer.writeDecimal(level[1], 8);
+        }
+    }
+
+    private static OrderDTO fullOrder(String orderNo) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setSymbol("BTC/USDT");
+        order.setFeeCoin("USDT");
+        order.setUserId(10_001L);
+        order.setOrderType(1);
+        order.setSide(2);
+        order.setPrice(new BigDecimal("65000.12"));
+        order.setAmount(new BigDecimal("0.50000000"));
+        order.setFilledAmount(new BigDecimal("0.10000000"));
+        order.setFilledMoney(new BigDecimal("6500.0120000000"));
+        order.setFeeRate(new BigDecimal("0.001"));
+        order.setStatus(1);
+        order.setCreateTime(1_700_000_000_000L);
+        order.setTriggerPrice(new BigDecimal("64000.00"));
+        order.setExpireTime(1_700_000_060_000L);
+        return order;
+    }
+}
@@ -0,0 +1,294 @@
+package com.cex.matching.benchmark;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cloud.stream.function.StreamBridge;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * 基准测试用订单簿
+ *
+ * 【作用】
+ * 按指定规模和价格分布构造一个 CoinTrader 订单簿，并保留每个挂单的模板。
+ * 迭代开始时按模板恢复被消耗的档位（见 replenish），吃单之后由基准方法把同一批挂单放回（见 restock），
+ * 保证每次操作面对的订单簿形状相同，而且不需要在每次调用之间执行 Setup。
+ *
+ * 【订单簿形状】
+ * - 买卖各一半挂单，价格以 50000.00 为中心，买盘在下、卖盘在上，两边不交叉
+ * - UNIFORM：挂单均匀分布在 levels 个价位上
+ * - SKEWED：价位偏移服从指数分布，大部分挂单集中在盘口附近，远端稀疏（接近真实行情）
+ * - 单笔数量 0.001 ~ 1.000
+ *
+ * 【输出】
+ * StreamBridge 替换为不发送的代理，撮合路径与生产一致（成交结果、完成订单照常缓存），
+ * 缓存由 drain 在计时之外清空。
+ *
+ * @author cex
+ */
+public class BookFixture {
+
+    public static final String SYMBOL = "BTC/USDT";
+
+    /** 数量精度 */
+    public static final int COIN_SCALE = 8;
+
+    /** 价格精度 */
+    public static final int BASE_COIN_SCALE = 2;
+
+    /** 中间价（tick） */
+    private static final long MID_PRICE = 5_000_000L;
+
+    /** 每边最多的价位数 */
+    private static final int MAX_LEVELS = 5000;
+
+    /** 订单簿价格分布 */
+    public enum BookShape {
+        UNIFORM,
+        SKEWED
+    }
+
+    private final CoinTrader trader;
+
+    private final BookShape shape;
+
+    private final Random random;
+
+    /** 每边的价位数 */
+    private final int levels;
+
+    /** 卖盘模板：价格升序 */
+    private final TreeMap<Long, List<OrderDTO>> asks = new TreeMap<>();
+
+    /** 买盘模板：价格降序 */
+    private final TreeMap<Long, List<OrderDTO>> bids = new TreeMap<>(Comparator.reverseOrder());
+
+    private final List<OrderDTO> deepOrders = new ArrayList<>();
+
+    private long orderSequence;
+
+    public BookFixture(int bookSize, BookShape shape, long seed) {
+        this.shape = shape;
+        this.random = new Random(seed);
+        int perSide = Math.max(bookSize / 2, 1);
+        this.levels = Math.min(perSide, MAX_LEVELS);
+
+        this.trader = new CoinTrader(SYMBOL);
+        trader.setCoinScale(COIN_SCALE);
+        trader.setBaseCoinScale(BASE_COIN_SCALE);
+        trader.setDepthPublishPolicy(0, 0);
+        trader.setStreamBridge(noopStreamBridge());
+        trader.setReady(true);
+
+        for (int i = 0; i < perSide; i++) {
+            addTemplate(asks, "a" + i, 2, MID_PRICE + sampleOffset());
+            addTemplate(bids, "b" + i, 1, MID_PRICE - sampleOffset());
+        }
+        for (List<OrderDTO> level : asks.values()) {
+            level.forEach(order -> trader.trade(copy(order)));
+        }
+        for (List<OrderDTO> level : bids.values()) {
+            level.forEach(order -> trader.trade(copy(order)));
+        }
+        collectDeepOrders(asks);
+        collectDeepOrders(bids);
+        drain();
+    }
+
+    public CoinTrader trader() {
+        return trader;
+    }
+
+    /**
+     * 一笔不会成交的新挂单（价格按订单簿形状抽样）
+     */
+    public OrderDTO passiveOrder() {
+        boolean buy = random.nextBoolean();
+        long price = buy ? MID_PRICE - sampleOffset() : MID_PRICE + sampleOffset();
+        return order("p" + (++orderSequence), buy ? 1 : 2, 1, price(price), randomAmount());
+    }
+
+    /**
+     * 吃掉对手盘最优 levels 档的限价单
+     *
+     * @param side 吃单方向：1 买（吃卖盘），2 卖（吃买盘）
+     */
+    public OrderDTO sweepOrder(int side, int levels) {
+        TreeMap<Long, List<OrderDTO>> book = side == 1 ? asks : bids;
+        long lastPrice = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        int count = 0;
+        for (Map.Entry<Long, List<OrderDTO>> entry : book.entrySet()) {
+            if (count++ == levels) {
+                break;
+            }
+            lastPrice = entry.getKey();
+            amount = amount.add(totalAmount(entry.getValue()));
+        }
+        return order("t" + (++orderSequence), side, 1, price(lastPrice), amount);
+    }
+
+    /**
+     * 吃掉对手盘最优一档的市价卖单（市价买单按金额下单，这里用卖单按数量精确吃完一档）
+     */
+    public OrderDTO marketSellOrder() {
+        BigDecimal amount = totalAmount(bids.firstEntry().getValue());
+        return order("m" + (++orderSequence), 2, 2, null, amount);
+    }
+
+    /**
+     * 随机取一笔远离盘口的挂单（每边价格最差的一半价位）
+     */
+    public OrderDTO randomDeepOrder() {
+        return deepOrders.get(random.nextInt(deepOrders.size()));
+    }
+
+    /**
+     * 按模板恢复一边最优 levels 档的挂单（已成交或部分成交的订单先撤掉，再以新订单放回）
+     *
+     * @param side 挂单方向：1 买盘，2 卖盘
+     */
+    public List<OrderDTO> replenish(int side, int levels) {
+        TreeMap<Long, List<OrderDTO>> book = side == 1 ? bids : asks;
+        List<OrderDTO> restored = new ArrayList<>();
+        int count = 0;
+        for (List<OrderDTO> level : book.values()) {
+            if (count++ == levels) {
+                break;
+            }
+            for (OrderDTO template : level) {
+                restored.add(restore(template));
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * 撤掉并重新放回一笔模板订单
+     *
+     * @return 放回订单簿的订单
+     */
+    public OrderDTO restore(OrderDTO template) {
+        trader.cancelOrder(template);
+        OrderDTO order = copy(template);
+        trader.trade(order);
+        return order;
+    }
+
+    /**
+     * 吃单之后把被吃掉的挂单原样放回（计时之内，不创建对象）
+     *
+     * 吃单未完全成交时先撤掉（分摊撮合的舍入），挂单按原来的顺序重新放回，订单簿恢复到吃单之前的形状
+     *
+     * @param makers replenish 返回的挂单
+     */
+    public void restock(OrderDTO taker, List<OrderDTO> makers) {
+        trader.cancelOrder(taker);
+        for (int i = 0; i < makers.size(); i++) {
+            OrderDTO maker = makers.get(i);
+            trader.cancelOrder(maker);
+            reset(maker);
+            trader.trade(maker);
+        }
+    }
+
+    /**
+     * 清除撮合回写的成交量和状态，订单可以再次提交
+     */
+    public static void reset(OrderDTO order) {
+        order.setFilledAmount(null);
+        order.setFilledMoney(null);
+        order.setStatus(null);
+    }
+
+    /**
+     * 清空缓存的成交结果、完成订单和盘口变化（对应定序器的批次结束）
+     */
+    public void drain() {
+        trader.flushOutput();
+        trader.publishDepthUpdate();
+    }
+
+    public OrderDTO copy(OrderDTO template) {
+        OrderDTO order = order(template.getOrderNo(), template.getSide(), template.getOrderType(),
+                template.getPrice(), template.getAmount());
+        order.setCreateTime(template.getCreateTime());
+        return order;
+    }
+
+    public static OrderDTO order(String orderNo, int side, int orderType, BigDecimal price, BigDecimal amount) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setUserId(1L + (orderNo.hashCode() & 0xFF));
+        order.setSymbol(SYMBOL);
+        order.setSide(side);
+        order.setOrderType(orderType);
+        order.setPrice(price);
+        order.setAmount(amount);
+        order.setFeeRate(new BigDecimal("0.001"));
+        order.setCreateTime(System.currentTimeMillis());
+        return order;
+    }
+
+    public static BigDecimal price(long ticks) {
+        return BigDecimal.valueOf(ticks, BASE_COIN_SCALE);
+    }
+
+    private void addTemplate(TreeMap<Long, List<OrderDTO>> book, String orderNo, int side, long price) {
+        book.computeIfAbsent(price, k -> new ArrayList<>())
+                .add(order(orderNo, side, 1, price(price), randomAmount()));
+    }
+
+    private void collectDeepOrders(TreeMap<Long, List<OrderDTO>> book) {
+        int skip = book.size() / 2;
+        for (List<OrderDTO> level : book.values()) {
+            if (skip-- > 0) {
+                continue;
+            }
+            deepOrders.addAll(level);
+        }
+    }
+
+    /**
+     * 距中间价的价位偏移（1 ~ levels）
+     */
+    private long sampleOffset() {
+        if (shape == BookShape.UNIFORM) {
+            return 1 + random.nextInt(levels);
+        }
+        double exponential = -Math.log(1 - random.nextDouble()) * levels / 10;
+        return 1 + Math.min(levels - 1, (long) exponential);
+    }
+
+    private BigDecimal randomAmount() {
+        return BigDecimal.valueOf(1 + random.nextInt(1000), 3);
+    }
+
+    private static BigDecimal totalAmount(List<OrderDTO> level) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderDTO order : level) {
+            total = total.add(order.getAmount());
+        }
+        return total;
+    }
+
+    /**
+     * 不发送消息的 StreamBridge（CGLIB 子类，不调用构造函数，不需要 Spring 容器）
+     */
+    static StreamBridge noopStreamBridge() {
+        ProxyFactory factory = new ProxyFactory();
+        factory.setTargetClass(StreamBridge.class);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice((MethodInterceptor) invocation ->
+                invocation.getMethod().getReturnType() == boolean.class ? Boolean.TRUE : null);
+        return (StreamBridge) factory.getProxy();
+    }
+}
@@ -0,0 +1,286 @@
+package com.cex.matching.benchmark;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.enums.OrderDirection;
+import com.cex.common.enums.PublishType;
+import com.cex.matching.core.BookOrder;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.core.MergeOrder;
+import com.cex.matching.core.TradePlate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 撮合核心基准测试（CoinTrader / MergeOrder / TradePlate）
+ *
+ * 【覆盖场景】
+ * - addCancel：挂一笔不成交的限价单，再撤掉
+ * - cancelAtDepth：撤掉远离盘口的挂单，再放回
+ * - sweep：限价单吃掉对手盘最优 1 / 10 档，再放回被吃掉的挂单
+ * - marketOrder：市价单吃掉对手盘最优一档，再放回被吃掉的挂单
+ * - fentanMatch：分摊模式（FENTAN）卖单按比例与买盘成交，再放回被吃掉的挂单
+ * - plateUpdate / plateInsertRemove：盘口同价位数量变化、新价位插入后删除（触发回填）
+ *
+ * 【批量调用】
+ * 单次操作只有几百纳秒，不能用 @Setup(Level.Invocation) 在每次调用之前恢复订单簿
+ * （Setup 本身的计时误差和缓存扰动与被测操作同一量级）。
+ * 每次调用执行一批 BATCH 个在迭代开始时（Level.Iteration）准备好的操作，@OperationsPerInvocation 折算为单次操作；
+ * 每个操作都成对执行（挂单 + 撤单、吃单 + 放回挂单），执行完订单簿恢复原样，同一迭代内可以重复调用。
+ * 吃单场景的结果因此包含放回挂单的耗时，可以用 addCancel 估算。
+ *
+ * 【订单簿】
+ * 每个场景在 10 ~ 100000 笔挂单、均匀 / 偏斜两种价格分布上运行（见 BookFixture）。
+ * 每批结束时清空缓存的成交结果和盘口增量（BookFixture.drain，对应定序器的批次结束），计入耗时；
+ * StreamBridge 为不发送的代理。
+ *
+ * 【运行】
+ * 见 MatchingBenchmarkRunner：吞吐量（ops/s）+ 每次操作分配字节数（-prof gc）。
+ * 采样单位是一批，这里不看延迟分位数；单次操作的 p99 / p99.9 见 MatchingLatencyBenchmark
+ *
+ * @author cex
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MatchingBenchmark {
+
+    /** 每次调用执行的操作数 */
+    static final int BATCH = 1000;
+
+    /**
+     * 订单簿规模和形状（各场景共用的参数）
+     */
+    @State(Scope.Thread)
+    public static class BookState {
+
+        @Param({"10", "1000", "100000"})
+        public int bookSize;
+
+        @Param({"UNIFORM", "SKEWED"})
+        public String shape;
+
+        BookFixture book;
+
+        @Setup(Level.Trial)
+        public void buildBook() {
+            book = new BookFixture(bookSize, BookFixture.BookShape.valueOf(shape), 42);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AddState extends BookState {
+
+        final OrderDTO[] orders = new OrderDTO[BATCH];
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            for (int i = 0; i < BATCH; i++) {
+                orders[i] = book.passiveOrder();
+            }
+            book.drain();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CancelState extends BookState {
+
+        final OrderDTO[] victims = new OrderDTO[BATCH];
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            for (int i = 0; i < BATCH; i++) {
+                victims[i] = book.randomDeepOrder();
+            }
+            book.drain();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SweepState extends BookState {
+
+        @Param({"1", "10"})
+        public int sweepLevels;
+
+        OrderDTO taker;
+
+        List<OrderDTO> makers;
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            makers = book.replenish(2, sweepLevels);
+            book.drain();
+            taker = book.sweepOrder(1, sweepLevels);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MarketState extends BookState {
+
+        OrderDTO taker;
+
+        List<OrderDTO> makers;
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            makers = book.replenish(1, 1);
+            book.drain();
+            taker = book.marketSellOrder();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FentanState extends BookState {
+
+        /** 分摊卖单覆盖的买盘档数 */
+        private static final int LEVELS = 5;
+
+        OrderDTO taker;
+
+        List<OrderDTO> makers;
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            // 清盘时间之前创建的卖单走分摊撮合
+            book.trader().setPublishType(PublishType.FENTAN);
+            book.trader().setClearTime("2099-12-31 23:59:59");
+            makers = book.replenish(1, LEVELS);
+            book.drain();
+            taker = book.sweepOrder(2, LEVELS);
+        }
+    }
+
+    /**
+     * 单边盘口（卖盘），订单簿每个价位一笔挂单，价位为偶数 tick
+     */
+    @State(Scope.Thread)
+    public static class PlateState {
+
+        @Param({"10", "1000", "100000"})
+        public int bookSize;
+
+        TradePlate plate;
+
+        Random random = new Random(42);
+
+        final long[] prices = new long[BATCH];
+
+        @Setup(Level.Trial)
+        public void buildPlate() {
+            TreeMap<Long, MergeOrder> book = new TreeMap<>();
+            plate = new TradePlate(BookFixture.SYMBOL, OrderDirection.SELL, book);
+            for (int i = 0; i < bookSize; i++) {
+                long levelPrice = 5_000_000L + 2L * i;
+                OrderDTO source = BookFixture.order("s" + i, 2, 1, BookFixture.price(levelPrice), null);
+                MergeOrder level = new MergeOrder(levelPrice);
+                level.add(new BookOrder(source, levelPrice, 100_000_000L, 0, 0));
+                book.put(levelPrice, level);
+                plate.add(levelPrice, 100_000_000L);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void plan() {
+            plate.clearChanges();
+            int visible = Math.min(bookSize, plate.getMaxDepth());
+            for (int i = 0; i < BATCH; i++) {
+                prices[i] = plate.priceAt(random.nextInt(visible));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addCancel(AddState state) {
+        CoinTrader trader = state.book.trader();
+        for (OrderDTO order : state.orders) {
+            BookFixture.reset(order);
+            trader.trade(order);
+            trader.cancelOrder(order);
+        }
+        state.book.drain();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void cancelAtDepth(CancelState state) {
+        CoinTrader trader = state.book.trader();
+        for (OrderDTO victim : state.victims) {
+            trader.cancelOrder(victim);
+            BookFixture.reset(victim);
+            trader.trade(victim);
+        }
+        state.book.drain();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sweep(SweepState state) {
+        take(state.book, state.taker, state.makers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void marketOrder(MarketState state) {
+        take(state.book, state.taker, state.makers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void fentanMatch(FentanState state) {
+        take(state.book, state.taker, state.makers);
+    }
+
+    /**
+     * BATCH 次：吃单，再放回被吃掉的挂单
+     */
+    private static void take(BookFixture book, OrderDTO taker, List<OrderDTO> makers) {
+        CoinTrader trader = book.trader();
+        for (int i = 0; i < BATCH; i++) {
+            BookFixture.reset(taker);
+            trader.trade(taker);
+            book.restock(taker, makers);
+        }
+        book.drain();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void plateUpdate(PlateState state) {
+        TradePlate plate = state.plate;
+        for (long price : state.prices) {
+            plate.add(price, 50_000_000L);
+            plate.remove(price, 50_000_000L);
+        }
+        plate.clearChanges();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void plateInsertRemove(PlateState state) {
+        TradePlate plate = state.plate;
+        for (long price : state.prices) {
+            // 奇数 tick 是订单簿中不存在的新价位：插入挤掉最差一档，删除后从订单簿回填
+            plate.add(price + 1, 50_000_000L);
+            plate.remove(price + 1, 50_000_000L);
+        }
+        plate.clearChanges();
+    }
+}
@@ -0,0 +1,56 @@
+package com.cex.matching.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 撮合核心基准测试入口
+ *
+ * 【运行方式】
+ * ```
+ * mvn -P benchmark -pl cex-matching-benchmark -am package -DskipTests
+ * java -cp cex-matching-benchmark/target/benchmarks.jar com.cex.matching.benchmark.MatchingBenchmarkRunner [正则]
+ * ```
+ * 正则用于筛选场景，如 "sweep|cancelAtDepth"，默认运行全部。
+ *
+ * 【输出】
+ * 1. 吞吐量（ops/s）+ GC 分析：gc.alloc.rate.norm 即每次操作分配的字节数
+ * 2. 单次操作采样延迟（us/op，MatchingLatencyBenchmark）：p0.99 / p0.999 即单次操作的 p99 / p99.9
+ * 结果同时写入 target/jmh-throughput.json、target/jmh-latency.json，便于改动前后对比（如 jmh.morethan.io）。
+ *
+ * 也可以直接用 JMH 命令行：java -jar benchmarks.jar MatchingBenchmark -prof gc、java -jar benchmarks.jar MatchingLatencyBenchmark
+ *
+ * @author cex
+ */
+public class MatchingBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String scenarios = args.length > 0 ? "\\.(" + args[0] + ")$" : "";
+
+        Options throughput = new OptionsBuilder()
+                .include(MatchingBenchmark.class.getSimpleName() + scenarios)
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-throughput.json")
+                .build();
+        new Runner(throughput).run();
+
+        Options latency = new OptionsBuilder()
+                .include(MatchingLatencyBenchmark.class.getSimpleName() + scenarios)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-latency.json")
+                .build();
+        new Runner(latency).run();
+    }
+}
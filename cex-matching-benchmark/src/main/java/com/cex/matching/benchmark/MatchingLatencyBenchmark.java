@@ -0,0 +1,100 @@
+package com.cex.matching.benchmark;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 撮合核心单次操作延迟（采样模式）
+ *
+ * 【为什么单独一个类？】
+ * MatchingBenchmark 每次调用执行一批 BATCH 个操作，采样模式下每个样本是一批的总耗时，
+ * 折算后的 p99 只是"批内平均耗时"的 p99，单个慢操作（扩容、回填、GC 停顿）被平均掉了。
+ * 这里每次调用只执行一个操作（成对：挂单 + 撤单、吃单 + 放回挂单），每个样本就是一个操作的耗时，
+ * JMH 输出的 p0.99 / p0.999 即单次操作的 p99 / p99.9。
+ *
+ * 【场景】
+ * 与 MatchingBenchmark 相同的订单簿和操作（复用其 State），不含 plateUpdate / plateInsertRemove：
+ * 单次只有几十纳秒，低于采样计时器的精度，只看吞吐量。
+ * 每次操作之后清空缓存的成交结果和盘口增量（对应定序器一批只有一个命令），计入耗时。
+ * 迭代开始时准备好 BATCH 个操作，调用之间按顺序循环使用，订单簿在每次操作之后恢复原样。
+ *
+ * @author cex
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MatchingLatencyBenchmark {
+
+    @State(Scope.Thread)
+    public static class AddState extends MatchingBenchmark.AddState {
+
+        int next;
+    }
+
+    @State(Scope.Thread)
+    public static class CancelState extends MatchingBenchmark.CancelState {
+
+        int next;
+    }
+
+    @Benchmark
+    public void addCancel(AddState state) {
+        OrderDTO order = state.orders[state.next];
+        state.next = (state.next + 1) % MatchingBenchmark.BATCH;
+        CoinTrader trader = state.book.trader();
+        BookFixture.reset(order);
+        trader.trade(order);
+        trader.cancelOrder(order);
+        state.book.drain();
+    }
+
+    @Benchmark
+    public void cancelAtDepth(CancelState state) {
+        OrderDTO victim = state.victims[state.next];
+        state.next = (state.next + 1) % MatchingBenchmark.BATCH;
+        CoinTrader trader = state.book.trader();
+        trader.cancelOrder(victim);
+        BookFixture.reset(victim);
+        trader.trade(victim);
+        state.book.drain();
+    }
+
+    @Benchmark
+    public void sweep(MatchingBenchmark.SweepState state) {
+        takeOnce(state.book, state.taker, state.makers);
+    }
+
+    @Benchmark
+    public void marketOrder(MatchingBenchmark.MarketState state) {
+        takeOnce(state.book, state.taker, state.makers);
+    }
+
+    @Benchmark
+    public void fentanMatch(MatchingBenchmark.FentanState state) {
+        takeOnce(state.book, state.taker, state.makers);
+    }
+
+    /**
+     * 吃单，再放回被吃掉的挂单
+     */
+    private static void takeOnce(BookFixture book, OrderDTO taker, List<OrderDTO> makers) {
+        BookFixture.reset(taker);
+        book.trader().trade(taker);
+        book.restock(taker, makers);
+        book.drain();
+    }
+}
@@ -0,0 +1,244 @@
+package com.cex.matching.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 撮合引擎配置（Nacos: matching.*）
+ *
+ * 【注意】
+ * 这些参数在交易器创建时读取，不支持运行时刷新
+ *
+ * @author cex
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "matching")
+public class MatchingProperties {
+
+    /** 本撮合节点 ID（启用 cex.shard 分片时必填，必须是 cex.shard.nodes 之一） */
+    private String nodeId;
+
+    /** 定序器配置 */
+    private Sequencer sequencer = new Sequencer();
+
+    /** 定序器工作线程调度配置 */
+    private Scheduler scheduler = new Scheduler();
+
+    /** 盘口增量推送配置 */
+    private Depth depth = new Depth();
+
+    /** 命令日志与快照配置 */
+    private Journal journal = new Journal();
+
+    /** 启动时从订单表加载订单簿的配置 */
+    private Loader loader = new Loader();
+
+    /** MQ 消息格式配置 */
+    private Mq mq = new Mq();
+
+    /** 主备复制配置 */
+    private Replication replication = new Replication();
+
+    /** 流水线延迟统计配置 */
+    private Metrics metrics = new Metrics();
+
+    /** 最近成交缓存与 Redis 同步配置 */
+    private RecentTrades recentTrades = new RecentTrades();
+
+    /** K线聚合配置 */
+    private Kline kline = new Kline();
+
+    /** 24小时滚动行情配置 */
+    private Ticker ticker = new Ticker();
+
+    /** GTT 订单到期撤销配置 */
+    private Expiry expiry = new Expiry();
+
+    @Data
+    public static class Sequencer {
+        /** 每个交易对的命令环形队列容量（必须是 2 的幂） */
+        private int ringSize = 8192;
+        /** 每批最多连续执行的命令数，批次结束时合并发送成交结果、完成订单 */
+        private int maxBatchSize = 1000;
+    }
+
+    @Data
+    public static class Scheduler {
+        /** 是否由固定数量的工作线程执行定序器（关闭时每个交易对一个线程） */
+        private boolean enabled = true;
+        /** 共享工作线程数（未列入 dedicated 的交易对分配到其中负载最低的一个） */
+        private int workers = 4;
+        /** 独占一个工作线程的交易对（不计入 workers） */
+        private List<String> dedicated = new ArrayList<>();
+        /** 按负载在共享线程之间迁移交易对的间隔（毫秒），0 表示不自动迁移 */
+        private long rebalanceIntervalMs = 10000;
+        /** 共享线程之间负载差距超过该值时迁移（负载 1.0 表示占满一个线程） */
+        private double rebalanceThreshold = 0.2;
+    }
+
+    @Data
+    public static class Depth {
+        /** 盘口增量最小推送间隔（毫秒），0 表示每条命令都推送 */
+        private long publishIntervalMs = 50;
+        /** 累计多少条改变盘口的命令后立即推送，0 表示不按条数触发 */
+        private int publishMaxChanges = 200;
+        /** 订单簿只读快照（/matching/orderbook）每一侧的档位数 */
+        private int snapshotLevels = 100;
+        /** 分组深度步长（按步长合并价格档位），小于交易对价格精度的步长忽略 */
+        private List<BigDecimal> groupSteps = new ArrayList<>(Arrays.asList(
+                new BigDecimal("0.01"), new BigDecimal("0.1"), BigDecimal.ONE, BigDecimal.TEN));
+        /**
+         * 按交易对覆盖，key 为交易对；YAML 中含 "/" 的 key 需要写成 "[BTC/USDT]"
+         */
+        private Map<String, DepthPublish> symbols = new HashMap<>();
+    }
+
+    @Data
+    public static class DepthPublish {
+        /** 最小推送间隔（毫秒），为空时使用全局配置 */
+        private Long publishIntervalMs;
+        /** 累计命令数阈值，为空时使用全局配置 */
+        private Integer publishMaxChanges;
+        /** 分组深度步长，为空时使用全局配置 */
+        private List<BigDecimal> groupSteps;
+    }
+
+    @Data
+    public static class Journal {
+        /** 是否开启命令日志（关闭后重启会丢失订单簿） */
+        private boolean enabled = true;
+        /** 日志、快照根目录（容器部署时需要挂载持久卷） */
+        private String dir = "data/matching";
+        /** 日志段大小（MB），每段预分配并映射到内存 */
+        private int segmentSizeMb = 64;
+        /** 每多少条命令生成一次快照，0 表示不按条数触发 */
+        private long snapshotIntervalCommands = 100_000;
+        /** 每多少秒生成一次快照（有新命令时），0 表示不按时间触发 */
+        private long snapshotIntervalSeconds = 300;
+        /** 保留的快照个数，更早的快照及其之前的日志段会被删除 */
+        private int retainedSnapshots = 2;
+    }
+
+    @Data
+    public static class Loader {
+        /** 没有命令日志可恢复时，是否从交易服务的 trade_order 表加载未完成订单 */
+        private boolean enabled = true;
+        /** keyset 分页每页条数 */
+        private int pageSize = 5000;
+        /** 同时从数据库加载的交易对数 */
+        private int parallelism = 4;
+        /** 单个交易对加载时间上限（秒），超时后交易器保持未就绪 */
+        private long timeoutSeconds = 300;
+        /** 恢复/加载失败后的重试次数，用完后交易器保持未就绪（可通过 /matching/engine/reload 手动重新加载） */
+        private int retryAttempts = 3;
+        /** 第一次重试前等待的时间（毫秒），之后每次翻倍 */
+        private long retryBackoffMs = 2000;
+        /**
+         * 交易服务的库名（trade_order / trade_symbol 所在的库），经 mybatis-plus.configuration-properties.tradeSchema
+         * 替换到 SQL 中；必须与撮合服务的库在同一个 MySQL 实例，且撮合服务的账号有 SELECT 权限
+         */
+        private String tradeSchema = "cex_trade";
+    }
+
+    @Data
+    public static class Mq {
+        /**
+         * 输出消息（trade-result-out / order-completed-out / trade-plate-out）格式：json 或 binary（见 WireCodec）。
+         * 输入消息按内容自动识别，两种格式都接收
+         */
+        private String codec = "json";
+    }
+
+    @Data
+    public static class Replication {
+        /** 是否开启主备复制 */
+        private boolean enabled = false;
+        /** 启动角色：primary（撮合并发送复制命令）或 standby（只重放复制命令，等待接管） */
+        private String role = "primary";
+        /** 主节点发送心跳（各交易对最新命令序号）的间隔（毫秒） */
+        private long heartbeatIntervalMs = 200;
+        /** 超过多少毫秒没有收到主节点消息视为不同步 */
+        private long staleAfterMs = 2000;
+        /** 订单输入绑定：备节点配置为不自动启动，接管时启动 */
+        private List<String> orderBindings = new ArrayList<>(Arrays.asList("orderInput-in-0", "orderCancelInput-in-0"));
+        /** 复制命令输入绑定：接管时停止 */
+        private String replicationBinding = "replicationInput-in-0";
+        /** 备节点请求主节点快照的输出绑定 */
+        private String resyncBinding = "matching-replication-resync-out";
+        /** 备节点仍不同步时重新请求快照的间隔（毫秒） */
+        private long resyncRetryMs = 5000;
+        /** 快照按多大分片发送（字节，不能超过 MQ 的消息大小上限） */
+        private int snapshotChunkBytes = 1 << 20;
+    }
+
+    @Data
+    public static class Metrics {
+        /** 是否记录各阶段延迟（decode / queue_wait / match / plate / publish） */
+        private boolean enabled = true;
+        /** 分位数、最大值的统计窗口（秒） */
+        private long windowSeconds = 60;
+        /** 窗口划分的子窗口数，每过 windowSeconds / bufferLength 重置最旧的一个 */
+        private int bufferLength = 3;
+        /** 直方图有效数字位数（越大越精确，内存越多） */
+        private int percentilePrecision = 2;
+    }
+
+    @Data
+    public static class RecentTrades {
+        /** 每个交易对保留的最近成交条数（内存与 Redis 列表长度） */
+        private int capacity = 1000;
+        /** 是否同步到 Redis（trade:records:{symbol}） */
+        private boolean mirrorEnabled = true;
+        /** 同步间隔（毫秒），每次把所有交易对的新成交合并成一次 pipeline */
+        private long mirrorIntervalMs = 5;
+        /** Redis key 前缀 */
+        private String keyPrefix = "trade:records:";
+    }
+
+    @Data
+    public static class Kline {
+        /** 是否聚合K线（1m / 5m / 15m / 1h / 4h / 1d） */
+        private boolean enabled = true;
+        /** 读取新成交的间隔（毫秒） */
+        private long pollIntervalMs = 20;
+        /** 每个交易对未读取的成交上限（见 TradeFeed），聚合线程卡住超过该数量时丢弃新成交并告警 */
+        private int feedCapacity = 100_000;
+        /** 已收盘K线写入 kline_data 的间隔（毫秒） */
+        private long flushIntervalMs = 1000;
+        /** 每条 INSERT 最多写入的K线数 */
+        private int batchSize = 500;
+        /** 每个交易对每个周期在内存中保留的已收盘K线数 */
+        private int maxCandles = 1500;
+        /** K线对齐的时区偏移（日线在该时区 0 点切分），必须是 4 小时的整数倍，日线才能由 4h 汇总 */
+        private String zoneOffset = "+08:00";
+    }
+
+    @Data
+    public static class Ticker {
+        /** 是否计算24小时滚动行情（写入 market_data） */
+        private boolean enabled = true;
+        /** 读取新成交的间隔（毫秒） */
+        private long pollIntervalMs = 20;
+        /** 每个交易对未读取的成交上限（见 TradeFeed），聚合线程卡住超过该数量时丢弃新成交并告警 */
+        private int feedCapacity = 100_000;
+        /** 有变化的行情批量写入 market_data 的间隔（毫秒） */
+        private long flushIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Expiry {
+        /** 是否撤销到期的 GTT 订单（关闭时 expireTime 被忽略，订单一直有效） */
+        private boolean enabled = true;
+        /** 时间轮刻度（毫秒），订单在到期后一个刻度内撤销 */
+        private long tickMs = 100;
+    }
+}
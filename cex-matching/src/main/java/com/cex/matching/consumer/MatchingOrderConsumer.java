@@ -1,16 +1,19 @@
 package com.cex.matching.consumer;
 
-import com.alibaba.fastjson.JSON;
+import com.cex.common.codec.WireCodec;
 import com.cex.common.dto.OrderDTO;
-import com.cex.matching.core.CoinTrader;
 import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.metrics.LatencyStage;
+import com.cex.matching.sequencer.SymbolSequencer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -20,16 +23,35 @@ import java.util.function.Consumer;
  * 这是撮合引擎的入口，负责接收来自 trade 模块的订单消息，然后交给对应的 CoinTrader 进行撮合处理。
  * 
  * 【工作流程】
- * 1. 从 RocketMQ 接收订单消息（JSON 格式）
- * 2. 解析消息为 OrderDTO 对象
- * 3. 根据交易对（symbol）获取对应的 CoinTrader（撮合引擎）
- * 4. 调用 CoinTrader.trade() 执行撮合算法
+ * 1. 从 RocketMQ 接收订单消息（JSON 或二进制格式，见 WireCodec）
+ * 2. 解析消息为 OrderDTO 对象（按消息首字节自动识别格式，灰度期间两种格式共存）
+ * 3. 根据交易对（symbol）获取对应的定序器（SymbolSequencer）
+ * 4. 把命令写入定序器的环形队列，由该交易对的定序器线程调用 CoinTrader 撮合
  * 5. 撮合结果由 CoinTrader 通过 MQ 发送出去
  * 
  * 【关键点】
  * - 每个交易对（BTC/USDT、ETH/USDT 等）都有独立的 CoinTrader 实例
  * - 撮合算法在 CoinTrader 中实现（价格优先、时间优先）
  * - 所有撮合都在内存中进行，处理完成后通过 MQ 发送结果
+ * - 本类只负责解析和入队，不直接操作订单簿，消费并发 > 1 也不会交错撮合
+ * 
+ * 【分片部署】
+ * 多个撮合节点时（cex.shard.nodes），交易服务把订单发往所属节点的 Topic（exchange-order-topic-{node-id}），
+ * 消息以交易对为分区键、顺序消费，单个交易对严格先进先出。Nacos 中每个节点的绑定：
+ * ```
+ * spring.cloud.stream.bindings.orderInput-in-0.destination: exchange-order-topic-matching-0
+ * spring.cloud.stream.bindings.orderCancelInput-in-0.destination: exchange-order-cancel-topic-matching-0
+ * spring.cloud.stream.rocketmq.bindings.orderInput-in-0.consumer.push.orderly: true
+ * spring.cloud.stream.rocketmq.bindings.orderCancelInput-in-0.consumer.push.orderly: true
+ * ```
+ * 路由变更期间发到旧节点的订单会被取消（不属于本节点），撤单直接忽略（由所属节点处理）。
+ * 
+ * 【主备】
+ * 备节点（matching.replication.role=standby）的订单绑定不自动启动，接管时由 ReplicationManager 启动：
+ * ```
+ * spring.cloud.stream.bindings.orderInput-in-0.consumer.auto-startup: false
+ * spring.cloud.stream.bindings.orderCancelInput-in-0.consumer.auto-startup: false
+ * ```
  * 
  * @author cex
  */
@@ -58,27 +80,13 @@ public class MatchingOrderConsumer {
      */
     private final CoinTraderFactory traderFactory;
     
-    /**
-     * 消息发送桥接器
-     * 
-     * 【作用】
-     * 用于发送撮合结果到 MQ（成交记录、订单完成通知等）
-     * 
-     * 【注意】
-     * 这里虽然注入了 StreamBridge，但实际发送消息是在 CoinTrader 中完成的
-     * CoinTrader 通过 setStreamBridge() 方法接收这个 StreamBridge
-     */
-    private final StreamBridge streamBridge;
-    
     /**
      * 构造函数注入
      * 
      * @param traderFactory 交易器工厂（管理所有交易对的撮合引擎）
-     * @param streamBridge 消息发送桥接器（用于发送撮合结果）
      */
-    public MatchingOrderConsumer(CoinTraderFactory traderFactory, StreamBridge streamBridge) {
+    public MatchingOrderConsumer(CoinTraderFactory traderFactory) {
         this.traderFactory = traderFactory;
-        this.streamBridge = streamBridge;
     }
     
     /**
@@ -90,11 +98,10 @@ public class MatchingOrderConsumer {
      * 
      * 【处理流程】
      * 1. 接收消息：从 RocketMQ Topic (exchange-order-topic) 接收订单消息
-     * 2. 解析消息：将 JSON 字符串解析为 OrderDTO 对象
-     * 3. 获取交易器：根据交易对（symbol）从 Factory 获取对应的 CoinTrader
-     * 4. 检查状态：如果交易器未就绪或暂停，直接取消订单
-     * 5. 执行撮合：调用 CoinTrader.trade() 执行撮合算法
-     * 6. 记录日志：记录撮合耗时
+     * 2. 解析消息：将 JSON / 二进制消息解析为 OrderDTO 对象
+     * 3. 获取定序器：根据交易对（symbol）从 Factory 获取对应的 SymbolSequencer
+     * 4. 入队：写入定序器环形队列后立即返回
+     * 5. 定序器线程检查状态（未就绪或暂停则取消订单），再调用 CoinTrader.trade() 撮合
      * 
      * 【撮合算法说明】
      * 撮合算法在 CoinTrader.trade() 中实现，主要包括：
@@ -107,77 +114,47 @@ public class MatchingOrderConsumer {
      * - 撮合过程完全在内存中进行，速度极快
      * - 撮合完成后，结果通过 MQ 发送，由其他服务负责落库
      * 
-     * @return Consumer<Message<String>> Spring Cloud Stream 消费者函数
+     * @return Consumer<Message<byte[]>> Spring Cloud Stream 消费者函数
      */
     @Bean
-    public Consumer<Message<String>> orderInput() {
+    public Consumer<Message<byte[]>> orderInput() {
         return message -> {
+            // 备节点不接收订单（绑定应配置为不自动启动），抛出异常让 MQ 重新投递给主节点
+            if (traderFactory.isStandby()) {
+                throw new IllegalStateException("备撮合节点不接收订单");
+            }
             try {
                 // ========== 第一步：解析消息 ==========
-                // 从 MQ 消息中获取 JSON 字符串
-                String payload = message.getPayload();
-                log.info("接收到订单消息: {}", payload);
+                // 以 byte[] 接收，兼容 JSON 和二进制两种格式
+                byte[] payload = message.getPayload();
                 
-                // 将 JSON 字符串解析为 OrderDTO 对象
+                // 解析为 OrderDTO 对象（按首字节识别二进制 / JSON）
                 // OrderDTO 包含：订单号、用户ID、交易对、订单类型、方向、价格、数量等
-                OrderDTO order = JSON.parseObject(payload, OrderDTO.class);
+                long decodeStart = System.nanoTime();
+                OrderDTO order = WireCodec.decodeOrder(payload);
+                long decodeNanos = System.nanoTime() - decodeStart;
+                log.debug("接收到订单消息: {}", order);
                 if (order == null) {
                     log.warn("订单消息解析失败");
                     return;
                 }
                 
-                // ========== 第二步：获取对应的交易器 ==========
-                // 根据交易对（symbol）从 Factory 获取对应的 CoinTrader
-                // 例如：BTC/USDT → CoinTrader("BTC/USDT")
-                //       ETH/USDT → CoinTrader("ETH/USDT")
+                // ========== 第二步：提交到交易对的定序器 ==========
+                // 根据交易对（symbol）获取对应的定序器
+                // 例如：BTC/USDT → matching-BTC/USDT 线程
+                //       ETH/USDT → matching-ETH/USDT 线程
                 // 
-                // 【重要】每个交易对都有独立的 CoinTrader 实例
-                // - 每个 CoinTrader 有自己的订单簿（买单队列、卖单队列）
-                // - 不同交易对的订单完全隔离，互不干扰
-                CoinTrader trader = traderFactory.getTrader(order.getSymbol());
-                
-                // ========== 第三步：检查交易器状态 ==========
-                // 如果交易器未就绪或暂停交易，直接取消订单
-                // 这种情况通常发生在：
-                // - 交易对刚创建，还未初始化完成
-                // - 交易对被管理员暂停（维护、异常等）
-                if (trader.isTradingHalt() || !trader.isReady()) {
-                    log.info("交易器未就绪或暂停，取消订单: {}", order.getOrderNo());
-                    
-                    // 构造取消订单的响应
-                    OrderDTO canceledOrder = new OrderDTO();
-                    canceledOrder.setOrderNo(order.getOrderNo());
-                    canceledOrder.setStatus(3);  // 3 = CANCELED（已取消）
-                    
-                    // 发送订单完成通知到 MQ
-                    // 接收方：cex-trade 模块的 TradeResultConsumer
-                    streamBridge.send("order-completed-out", 
-                            MessageBuilder.withPayload(JSON.toJSONString(canceledOrder)).build());
+                // 【重要】同一交易对的所有命令都由同一个线程按入队顺序执行
+                // - 交易器未就绪或暂停时的取消处理，也在定序器线程中完成
+                // - 队列满时在这里等待（背压），不会丢单
+                if (!traderFactory.ownsSymbol(order.getSymbol())) {
+                    log.warn("交易对不属于本节点，取消订单: symbol={}, orderNo={}", order.getSymbol(), order.getOrderNo());
+                    traderFactory.rejectOrder(order);
                     return;
                 }
-                
-                // ========== 第四步：执行撮合 ==========
-                // 调用 CoinTrader.trade() 执行撮合算法
-                // 
-                // 【撮合算法核心逻辑】
-                // 1. 判断订单类型（限价单/市价单）
-                // 2. 判断订单方向（买入/卖出）
-                // 3. 从对手盘队列中查找可匹配的订单
-                // 4. 按价格优先、时间优先的原则进行撮合
-                // 5. 更新订单状态（部分成交/完全成交）
-                // 6. 生成成交记录（TradeRecord）
-                // 7. 发送成交结果到 MQ
-                // 
-                // 【内存处理】
-                // - 所有订单簿都在内存中（TreeMap、LinkedList）
-                // - 撮合过程完全在内存中进行，速度极快（微秒级）
-                // - 撮合完成后，结果通过 MQ 发送，由其他服务负责落库
-                long startTick = System.currentTimeMillis();
-                trader.trade(order);
-                
-                // 记录撮合耗时（通常几毫秒到几十毫秒）
-                log.info("订单撮合完成: orderNo={}, usedTime={}ms", 
-                        order.getOrderNo(), System.currentTimeMillis() - startTick);
+                SymbolSequencer sequencer = traderFactory.getSequencer(order.getSymbol());
+                sequencer.getLatency().record(LatencyStage.DECODE, decodeNanos);
+                sequencer.publishOrder(order);
                 
             } catch (Exception e) {
                 log.error("处理订单消息失败", e);
@@ -185,6 +162,77 @@ public class MatchingOrderConsumer {
         };
     }
     
+    /**
+     * 批量接收订单并撮合（orderInput 的批量模式版本，二选一）
+     * 
+     * 【作用】
+     * 逐条消费时，每条消息都要单独解析、查找定序器、入队、唤醒定序器线程。
+     * 批量模式下一次拉取多条消息，按交易对分组后整组入队（一次申请连续序号），
+     * 定序器连续撮合后把整批的成交结果合并成一条 trade-result-out、一条 order-completed-out 发送。
+     * 
+     * 【启用方式】（Nacos 配置）
+     * ```
+     * spring.cloud.stream.function.definition: orderBatchInput;orderCancelInput
+     * spring.cloud.stream.bindings.orderBatchInput-in-0.destination: exchange-order-topic
+     * spring.cloud.stream.bindings.orderBatchInput-in-0.group: matching-order-group
+     * spring.cloud.stream.bindings.orderBatchInput-in-0.consumer.batch-mode: true
+     * ```
+     * 每批最多的消息数由 binder 的拉取批量大小决定；不要同时声明 orderInput，否则订单会被消费两次。
+     * 
+     * 【顺序】
+     * 同一交易对的订单保持消息中的先后顺序；不同交易对之间本来就互不影响
+     * 
+     * @return Consumer<Message<List<byte[]>>> Spring Cloud Stream 批量消费者函数
+     */
+    @Bean
+    public Consumer<Message<List<byte[]>>> orderBatchInput() {
+        return message -> {
+            // 备节点不接收订单（绑定应配置为不自动启动），抛出异常让 MQ 重新投递给主节点
+            if (traderFactory.isStandby()) {
+                throw new IllegalStateException("备撮合节点不接收订单");
+            }
+            List<byte[]> payloads = message.getPayload();
+            // 按交易对分组（LinkedHashMap 保持首次出现顺序，组内保持消息顺序）
+            Map<String, List<OrderDTO>> ordersBySymbol = new LinkedHashMap<>();
+            long decodeStart = System.nanoTime();
+            int decoded = 0;
+            for (byte[] payload : payloads) {
+                try {
+                    for (OrderDTO order : WireCodec.decodeOrders(payload)) {
+                        decoded++;
+                        if (order == null || order.getSymbol() == null) {
+                            log.warn("订单消息缺少交易对: {}", order);
+                            continue;
+                        }
+                        ordersBySymbol.computeIfAbsent(order.getSymbol(), k -> new ArrayList<>()).add(order);
+                    }
+                } catch (Exception e) {
+                    log.error("订单消息解析失败: size={}", payload.length, e);
+                }
+            }
+            log.debug("接收到批量订单消息: messages={}, symbols={}", payloads.size(), ordersBySymbol.size());
+            // 批量解析按订单平均，每个交易对记录一次
+            long decodeNanosPerOrder = decoded > 0 ? (System.nanoTime() - decodeStart) / decoded : 0;
+            
+            for (Map.Entry<String, List<OrderDTO>> entry : ordersBySymbol.entrySet()) {
+                try {
+                    if (!traderFactory.ownsSymbol(entry.getKey())) {
+                        log.warn("交易对不属于本节点，取消订单: symbol={}, orders={}", entry.getKey(), entry.getValue().size());
+                        for (OrderDTO order : entry.getValue()) {
+                            traderFactory.rejectOrder(order);
+                        }
+                        continue;
+                    }
+                    SymbolSequencer sequencer = traderFactory.getSequencer(entry.getKey());
+                    sequencer.getLatency().record(LatencyStage.DECODE, decodeNanosPerOrder);
+                    sequencer.publishOrders(entry.getValue());
+                } catch (Exception e) {
+                    log.error("批量提交订单失败: symbol={}, orders={}", entry.getKey(), entry.getValue().size(), e);
+                }
+            }
+        };
+    }
+    
     /**
      * 接收取消订单请求
      * 
@@ -194,53 +242,53 @@ public class MatchingOrderConsumer {
      * 
      * 【处理流程】
      * 1. 接收消息：从 RocketMQ Topic (exchange-order-cancel-topic) 接收取消订单请求
-     * 2. 解析消息：将 JSON 字符串解析为 OrderDTO 对象
-     * 3. 获取交易器：根据交易对获取对应的 CoinTrader
-     * 4. 取消订单：从订单簿中移除订单
-     * 5. 发送通知：发送订单完成通知到 MQ
+     * 2. 解析消息：将 JSON / 二进制消息解析为 OrderDTO 对象
+     * 3. 获取定序器：根据交易对获取对应的 SymbolSequencer
+     * 4. 入队：写入定序器环形队列，和下单命令严格保持先后顺序
+     * 5. 定序器线程从订单簿中移除订单，并发送订单完成通知到 MQ
+     * 
+     * 【按用户批量撤单】
+     * 消息不带订单号、只带 userId（和 side）时，撤销该用户在交易对上的全部挂单（或一个方向）
      * 
      * 【取消订单的逻辑】
      * - 限价单：从对应价格的 MergeOrder 中移除
      * - 市价单：从市价单队列中移除
      * - 如果订单已部分成交，取消的是剩余未成交部分
      * 
-     * @return Consumer<Message<String>> Spring Cloud Stream 消费者函数
+     * @return Consumer<Message<byte[]>> Spring Cloud Stream 消费者函数
      */
     @Bean
-    public Consumer<Message<String>> orderCancelInput() {
+    public Consumer<Message<byte[]>> orderCancelInput() {
         return message -> {
+            // 备节点不接收订单（绑定应配置为不自动启动），抛出异常让 MQ 重新投递给主节点
+            if (traderFactory.isStandby()) {
+                throw new IllegalStateException("备撮合节点不接收订单");
+            }
             try {
                 // ========== 第一步：解析消息 ==========
-                String payload = message.getPayload();
-                log.info("接收到取消订单消息: {}", payload);
-                
-                // 解析为 OrderDTO 对象
-                OrderDTO order = JSON.parseObject(payload, OrderDTO.class);
+                // 解析为 OrderDTO 对象（按首字节识别二进制 / JSON）
+                long decodeStart = System.nanoTime();
+                OrderDTO order = WireCodec.decodeOrder(message.getPayload());
+                long decodeNanos = System.nanoTime() - decodeStart;
+                log.debug("接收到取消订单消息: {}", order);
                 if (order == null) {
                     log.warn("取消订单消息解析失败");
                     return;
                 }
                 
-                // ========== 第二步：获取对应的交易器 ==========
-                // 根据交易对获取对应的 CoinTrader
-                CoinTrader trader = traderFactory.getTrader(order.getSymbol());
-                
-                // ========== 第三步：取消订单 ==========
-                // 只有交易器就绪时才处理取消请求
-                if (trader.isReady()) {
-                    // 调用 CoinTrader.cancelOrder() 从订单簿中移除订单
-                    // 返回值：被取消的订单对象（如果找到的话）
-                    OrderDTO canceledOrder = trader.cancelOrder(order);
-                    
-                    if (canceledOrder != null) {
-                        // 设置订单状态为已取消
-                        canceledOrder.setStatus(3);  // 3 = CANCELED
-                        
-                        // 发送订单完成通知到 MQ
-                        // 接收方：cex-trade 模块的 TradeResultConsumer
-                        streamBridge.send("order-completed-out", 
-                                MessageBuilder.withPayload(JSON.toJSONString(canceledOrder)).build());
-                    }
+                // ========== 第二步：提交到交易对的定序器 ==========
+                // 撤单与下单走同一个队列，不会与正在进行的撮合交错
+                if (!traderFactory.ownsSymbol(order.getSymbol())) {
+                    log.warn("交易对不属于本节点，忽略撤单: symbol={}, orderNo={}", order.getSymbol(), order.getOrderNo());
+                    return;
+                }
+                SymbolSequencer sequencer = traderFactory.getSequencer(order.getSymbol());
+                sequencer.getLatency().record(LatencyStage.DECODE, decodeNanos);
+                if (order.getOrderNo() == null && order.getUserId() != null) {
+                    // 不带订单号：按用户批量撤单（side 为空时撤销两个方向）
+                    sequencer.publishCancelUser(order);
+                } else {
+                    sequencer.publishCancel(order);
                 }
                 
             } catch (Exception e) {
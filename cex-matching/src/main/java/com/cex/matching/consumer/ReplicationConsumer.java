@@ -0,0 +1,53 @@
+package com.cex.matching.consumer;
+
+import com.cex.matching.replication.ReplicationManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * 主备复制消费者
+ *
+ * 【作用】
+ * - 备节点：接收主节点发送的复制命令、心跳和快照（matching-replication-out），交给 ReplicationManager 重放。
+ *   绑定名称：replicationInput-in-0，需要在 function.definition 中声明并配置顺序消费
+ * - 主节点：接收备节点的重新同步请求（matching-replication-resync-out），回复快照。
+ *   绑定名称：replicationResyncInput-in-0
+ * 两个消费者分别只在对应角色的 function.definition 中声明，见 ReplicationManager。
+ *
+ * @author cex
+ */
+@Component
+public class ReplicationConsumer {
+
+    private final ReplicationManager replicationManager;
+
+    public ReplicationConsumer(ReplicationManager replicationManager) {
+        this.replicationManager = replicationManager;
+    }
+
+    /**
+     * 接收复制消息
+     *
+     * 【注意】
+     * 解析失败时抛出异常由 MQ 重新投递，不能跳过：跳过的命令会造成备节点订单簿与主节点不一致
+     *
+     * @return Consumer<Message<byte[]>> Spring Cloud Stream 消费者函数
+     */
+    @Bean
+    public Consumer<Message<byte[]>> replicationInput() {
+        return message -> replicationManager.onMessage(message.getPayload());
+    }
+
+    /**
+     * 接收备节点的重新同步请求
+     *
+     * @return Consumer<Message<byte[]>> Spring Cloud Stream 消费者函数
+     */
+    @Bean
+    public Consumer<Message<byte[]>> replicationResyncInput() {
+        return message -> replicationManager.onResyncRequest(message.getPayload());
+    }
+}
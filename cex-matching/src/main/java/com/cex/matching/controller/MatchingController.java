@@ -1,7 +1,14 @@
 package com.cex.matching.controller;
 
 import com.cex.common.core.domain.Result;
+import com.cex.common.dto.KlineDTO;
 import com.cex.common.dto.OrderDTO;
+import com.cex.common.dto.TickerDTO;
+import com.cex.matching.domain.dto.DepthSnapshotDTO;
+import com.cex.matching.domain.dto.LoadProgressDTO;
+import com.cex.matching.domain.dto.ReplicationLagDTO;
+import com.cex.matching.domain.dto.SequencerStatsDTO;
+import com.cex.matching.domain.dto.WorkerStatsDTO;
 import com.cex.matching.domain.entity.OrderBook;
 import com.cex.matching.domain.entity.TradeRecord;
 import com.cex.matching.service.MatchingService;
@@ -11,6 +18,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -38,23 +46,46 @@ public class MatchingController {
     }
 
     /**
-     * 撤销订单
+     * 撤销订单（订单簿按交易对划分，需要指定交易对）
      */
     @PostMapping("/order/cancel")
-    public Result<Void> cancelOrder(@RequestParam String orderNo) {
-        matchingService.cancelOrder(orderNo);
+    public Result<Void> cancelOrder(@RequestParam String symbol, @RequestParam String orderNo) {
+        matchingService.cancelOrder(symbol, orderNo);
         return Result.success();
     }
 
     /**
-     * 获取订单簿
+     * 按用户批量撤单（side 不传时撤销两个方向）
+     */
+    @PostMapping("/order/cancel-user")
+    public Result<Void> cancelUserOrders(@RequestParam String symbol,
+                                         @RequestParam Long userId,
+                                         @RequestParam(required = false) Integer side) {
+        matchingService.cancelUserOrders(symbol, userId, side);
+        return Result.success();
+    }
+
+    /**
+     * 获取订单簿（step 为分组步长，如 0.1 / 1 / 10，不传时返回原始档位）
      */
     @GetMapping("/orderbook")
-    public Result<Map<String, List<OrderBook>>> getOrderBook(@RequestParam String symbol) {
-        Map<String, List<OrderBook>> orderBook = matchingService.getOrderBook(symbol);
+    public Result<Map<String, List<OrderBook>>> getOrderBook(@RequestParam String symbol,
+                                                             @RequestParam(defaultValue = "100") Integer limit,
+                                                             @RequestParam(required = false) BigDecimal step) {
+        Map<String, List<OrderBook>> orderBook = matchingService.getOrderBook(symbol, limit, step);
         return Result.success(orderBook);
     }
 
+    /**
+     * 获取深度快照（配合 trade-plate-out 增量使用，step 为分组步长，不传时返回原始档位）
+     */
+    @GetMapping("/depth/snapshot")
+    public Result<DepthSnapshotDTO> getDepthSnapshot(@RequestParam String symbol,
+                                                     @RequestParam(defaultValue = "100") Integer limit,
+                                                     @RequestParam(required = false) BigDecimal step) {
+        return Result.success(matchingService.getDepthSnapshot(symbol, limit, step));
+    }
+
     /**
      * 获取最新成交记录
      */
@@ -69,13 +100,29 @@ public class MatchingController {
      * 获取K线数据
      */
     @GetMapping("/kline")
-    public Result<List<Object>> getKlineData(@RequestParam String symbol,
-                                            @RequestParam(defaultValue = "1m") String period,
-                                            @RequestParam(defaultValue = "100") Integer limit) {
-        List<Object> klineData = matchingService.getKlineData(symbol, period, limit);
+    public Result<List<KlineDTO>> getKlineData(@RequestParam String symbol,
+                                               @RequestParam(defaultValue = "1m") String period,
+                                               @RequestParam(defaultValue = "100") Integer limit) {
+        List<KlineDTO> klineData = matchingService.getKlineData(symbol, period, limit);
         return Result.success(klineData);
     }
 
+    /**
+     * 获取全部交易对的24小时行情
+     */
+    @GetMapping("/tickers")
+    public Result<List<TickerDTO>> getTickers() {
+        return Result.success(matchingService.getTickers());
+    }
+
+    /**
+     * 获取一个交易对的24小时行情
+     */
+    @GetMapping("/ticker")
+    public Result<TickerDTO> getTicker(@RequestParam String symbol) {
+        return Result.success(matchingService.getTicker(symbol));
+    }
+
     /**
      * 启动撮合引擎
      */
@@ -102,4 +149,91 @@ public class MatchingController {
         boolean isRunning = matchingService.isMatchingEngineRunning();
         return Result.success(isRunning);
     }
+
+    /**
+     * 暂停交易对撮合
+     */
+    @PostMapping("/engine/halt")
+    public Result<Void> haltTrading(@RequestParam String symbol) {
+        matchingService.haltTrading(symbol);
+        return Result.success();
+    }
+
+    /**
+     * 恢复交易对撮合
+     */
+    @PostMapping("/engine/resume")
+    public Result<Void> resumeTrading(@RequestParam String symbol) {
+        matchingService.resumeTrading(symbol);
+        return Result.success();
+    }
+
+    /**
+     * 调整交易对的盘口增量推送策略
+     */
+    @PostMapping("/engine/depth-publish")
+    public Result<Void> setDepthPublishPolicy(@RequestParam String symbol,
+                                              @RequestParam(defaultValue = "50") Long intervalMs,
+                                              @RequestParam(defaultValue = "0") Integer maxChanges) {
+        matchingService.setDepthPublishPolicy(symbol, intervalMs, maxChanges);
+        return Result.success();
+    }
+
+    /**
+     * 获取各交易对定序器统计
+     */
+    @GetMapping("/engine/sequencer/stats")
+    public Result<List<SequencerStatsDTO>> getSequencerStats() {
+        return Result.success(matchingService.getSequencerStats());
+    }
+
+    /**
+     * 获取各撮合工作线程的交易对分配和负载
+     */
+    @GetMapping("/engine/workers")
+    public Result<List<WorkerStatsDTO>> getWorkerStats() {
+        return Result.success(matchingService.getWorkerStats());
+    }
+
+    /**
+     * 按最近的负载立即在共享工作线程之间迁移交易对，返回被迁移的交易对
+     */
+    @PostMapping("/engine/workers/rebalance")
+    public Result<List<String>> rebalanceWorkers() {
+        return Result.success(matchingService.rebalanceWorkers());
+    }
+
+    /**
+     * 获取各交易对订单簿启动加载进度
+     */
+    @GetMapping("/engine/load-progress")
+    public Result<List<LoadProgressDTO>> getLoadProgress() {
+        return Result.success(matchingService.getLoadProgress());
+    }
+
+    /**
+     * 重新加载加载失败（未就绪）的交易对订单簿，返回是否就绪
+     */
+    @PostMapping("/engine/reload")
+    public Result<Boolean> reloadOrderBook(@RequestParam String symbol) {
+        return Result.success(matchingService.reloadOrderBook(symbol));
+    }
+
+    /**
+     * 获取各交易对主备复制状态
+     */
+    @GetMapping("/engine/replication")
+    public Result<List<ReplicationLagDTO>> getReplicationLag() {
+        return Result.success(matchingService.getReplicationLag());
+    }
+
+    /**
+     * 备节点接管（主节点故障时调用），返回接管耗时（毫秒）
+     *
+     * 有交易对不同步（见 /engine/replication）时拒绝接管；确认可以接受这些交易对的订单簿差异时传 force=true
+     */
+    @PostMapping("/engine/promote")
+    public Result<Long> promote(@RequestParam(defaultValue = "false") boolean force) {
+        return Result.success(matchingService.promote(force));
+    }
 }
@@ -0,0 +1,189 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+
+/**
+ * 订单簿内部订单（撮合引擎内部表示）
+ *
+ * 【作用】
+ * OrderDTO 用 BigDecimal 表示价格和数量，每次撮合都要 subtract/compareTo/multiply 并创建新对象。
+ * BookOrder 在进入撮合引擎时把价格、数量转换成 long（见 {@link FixedPoint}），
+ * 撮合过程只修改 long 字段，只有在发送 MQ 时才写回 OrderDTO。
+ *
+ * 【单位】
+ * - price：tick（按 baseCoinScale 放大），市价单为 0
+ * - amount：lot（按 coinScale 放大）；市价买单按金额下单，单位为 tick（按 baseCoinScale 放大）
+ * - filledAmount：lot
+ * - filledMoney：tick
+ *
+ * @author cex
+ */
+public class BookOrder {
+
+    /** 原始订单（MQ 边界对象，只在输出时回写） */
+    private final OrderDTO source;
+
+    /** 订单号 */
+    private final String orderNo;
+
+    /** 用户ID */
+    private final Long userId;
+
+    /** 订单类型（1限价单 2市价单） */
+    private final int orderType;
+
+    /** 买卖方向（1买入 2卖出） */
+    private final int side;
+
+    /** 价格（tick） */
+    private final long price;
+
+    /** 委托量（lot；市价买单为金额 tick） */
+    private final long amount;
+
+    /** 已成交数量（lot） */
+    private long filledAmount;
+
+    /** 已成交金额（tick） */
+    private long filledMoney;
+
+    /** 订单状态（0待成交 1部分成交 2完全成交 3已撤销 4超时） */
+    private int status;
+
+    /** 创建时间 */
+    private final long createTime;
+
+    /** 到期时间（毫秒时间戳，GTT 订单），0 表示一直有效 */
+    private final long expireTime;
+
+    /** 所在队列（价格档位或市价单队列），不在订单簿中时为 null；由 MergeOrder 维护 */
+    MergeOrder level;
+
+    /** 队列中的前一个订单（更早到达） */
+    BookOrder prev;
+
+    /** 队列中的后一个订单（更晚到达） */
+    BookOrder next;
+
+    /** 同一用户的前一个挂单（由 UserOrderIndex 维护） */
+    BookOrder userPrev;
+
+    /** 同一用户的后一个挂单 */
+    BookOrder userNext;
+
+    /** 所在的时间轮槽位，不在时间轮中时为 -1（由 OrderTimerWheel 维护） */
+    int timerSlot = -1;
+
+    /** 到期刻度 */
+    long expireTick;
+
+    /** 同一槽位的前一个订单 */
+    BookOrder timerPrev;
+
+    /** 同一槽位的后一个订单 */
+    BookOrder timerNext;
+
+    public BookOrder(OrderDTO source, long price, long amount, long filledAmount, long filledMoney) {
+        this.source = source;
+        this.orderNo = source.getOrderNo();
+        this.userId = source.getUserId();
+        this.orderType = source.getOrderType();
+        this.side = source.getSide();
+        this.price = price;
+        this.amount = amount;
+        this.filledAmount = filledAmount;
+        this.filledMoney = filledMoney;
+        this.status = source.getStatus() != null ? source.getStatus() : 0;
+        this.createTime = source.getCreateTime() != null ? source.getCreateTime() : 0L;
+        this.expireTime = source.getExpireTime() != null ? source.getExpireTime() : 0L;
+    }
+
+    public OrderDTO getSource() {
+        return source;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public int getOrderType() {
+        return orderType;
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getFilledAmount() {
+        return filledAmount;
+    }
+
+    public long getFilledMoney() {
+        return filledMoney;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    /**
+     * 是否市价买单（按金额下单）
+     */
+    public boolean isMarketBuy() {
+        return orderType == 2 && side == 1;
+    }
+
+    /**
+     * 剩余未成交数量（lot），市价买单请使用 {@link #getRemainingMoney()}
+     */
+    public long getRemainingAmount() {
+        return amount - filledAmount;
+    }
+
+    /**
+     * 市价买单剩余可用金额（tick）
+     */
+    public long getRemainingMoney() {
+        return amount - filledMoney;
+    }
+
+    /**
+     * 记录一笔成交并更新订单状态（在订单簿中时同步扣减所在档位的剩余量）
+     *
+     * @param tradedAmount 成交数量（lot）
+     * @param turnover 成交金额（tick）
+     */
+    public void fill(long tradedAmount, long turnover) {
+        filledAmount += tradedAmount;
+        filledMoney += turnover;
+        if (level != null) {
+            level.onFill(tradedAmount);
+        }
+        boolean completed = isMarketBuy() ? filledMoney >= amount : filledAmount >= amount;
+        status = completed ? 2 : 1;  // 2 = COMPLETED，1 = PARTIAL
+    }
+}
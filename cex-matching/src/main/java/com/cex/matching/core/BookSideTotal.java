@@ -0,0 +1,30 @@
+package com.cex.matching.core;
+
+/**
+ * 订单簿一边（买盘或卖盘限价单）的剩余量合计
+ *
+ * 【作用】
+ * 由该边所有价格档位（MergeOrder）在挂单、成交、撤单时同步增减，
+ * 分摊模式（FENTAN）按比例撮合时 O(1) 取得整边剩余量，不需要遍历订单簿。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class BookSideTotal {
+
+    /** 剩余未成交总量（lot） */
+    private long remainingAmount;
+
+    /**
+     * @param delta 剩余量变化（lot），减少为负数
+     */
+    void add(long delta) {
+        remainingAmount += delta;
+    }
+
+    long getRemainingAmount() {
+        return remainingAmount;
+    }
+}
@@ -1,13 +1,19 @@
 package com.cex.matching.core;
 
 import com.alibaba.fastjson.JSON;
+import com.cex.common.codec.WireCodec;
+import com.cex.common.codec.WireWriter;
 import com.cex.common.dto.OrderDTO;
 import com.cex.common.dto.TradeRecordDTO;
 import com.cex.common.enums.OrderDirection;
 import com.cex.common.enums.OrderStatus;
 import com.cex.common.enums.OrderType;
 import com.cex.common.enums.PublishType;
+import com.cex.matching.domain.dto.DepthLevelDTO;
+import com.cex.matching.domain.dto.DepthSnapshotDTO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
@@ -15,6 +21,9 @@ import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * 币种交易器（核心撮合引擎）
@@ -26,7 +35,7 @@ import java.util.*;
  * 1. 管理订单簿：维护买单队列、卖单队列（限价单、市价单）
  * 2. 执行撮合：按价格优先、时间优先的原则撮合订单
  * 3. 生成成交记录：创建成交记录并发送到 MQ
- * 4. 更新盘口：实时更新买卖盘口信息
+ * 4. 更新盘口：实时更新买卖盘口信息，按序号推送档位增量
  * 
  * 【撮合算法】
  * 这是标准的 CEX（中心化交易所）撮合算法：
@@ -36,14 +45,15 @@ import java.util.*;
  * 4. 市价单撮合：市价单与限价单撮合（按对手盘最优价格）
  * 
  * 【内存处理】
- * - 所有订单簿都在内存中（TreeMap、LinkedList）
+ * - 所有订单簿都在内存中（TreeMap、MergeOrder 侵入式链表）
+ * - orderIndex（订单号 → 订单）支持 O(1) 撤单
  * - 撮合过程完全在内存中进行，速度极快（微秒级）
  * - 撮合完成后，结果通过 MQ 发送，由其他服务负责落库
  * 
  * 【线程安全】
- * - 虽然 CoinTraderFactory 用了 ConcurrentHashMap，但这里还需要 synchronized
- * - 原因：ConcurrentHashMap 只保证 Map 本身的线程安全，不保证 Value 对象的线程安全
- * - 每个 CoinTrader 的订单簿操作都需要 synchronized 保护
+ * - 单写者模型：每个 CoinTrader 只由自己的 SymbolSequencer 事件循环线程调用
+ * - MQ 消费线程、管理接口只把命令写入环形队列，不直接操作订单簿
+ * - 因此订单簿（TreeMap、MergeOrder、orderIndex）、盘口都不需要加锁
  * 
  * 【设计】
  * - 每个交易对（symbol）对应一个 CoinTrader 实例
@@ -64,12 +74,15 @@ public class CoinTrader {
     /** 计价币种精度（如 USDT 的小数位数，默认 8 位） */
     private int baseCoinScale = 8;
     
+    /** 10^coinScale，用于 数量(lot) × 价格(tick) → 金额(tick) 的换算 */
+    private long amountFactor = FixedPoint.pow10(8);
+    
     /**
      * 买入限价订单队列（价格从高到低排序）
      * 
      * 【数据结构】
-     * - TreeMap<BigDecimal, MergeOrder>
-     *   - Key: 价格（BigDecimal）
+     * - TreeMap<Long, MergeOrder>
+     *   - Key: 价格（long，单位 tick，见 FixedPoint）
      *   - Value: 该价格下的所有订单（MergeOrder，按时间排序）
      * 
      * 【排序规则】
@@ -84,17 +97,16 @@ public class CoinTrader {
      * ```
      * 
      * 【线程安全】
-     * - TreeMap 本身不是线程安全的
-     * - 所有操作都需要用 synchronized (buyLimitPriceQueue) 保护
+     * - 只由定序器线程访问（见 SymbolSequencer），无需加锁
      */
-    private final TreeMap<BigDecimal, MergeOrder> buyLimitPriceQueue;
+    private final TreeMap<Long, MergeOrder> buyLimitPriceQueue;
     
     /**
      * 卖出限价订单队列（价格从低到高排序）
      * 
      * 【数据结构】
-     * - TreeMap<BigDecimal, MergeOrder>
-     *   - Key: 价格（BigDecimal）
+     * - TreeMap<Long, MergeOrder>
+     *   - Key: 价格（long，单位 tick，见 FixedPoint）
      *   - Value: 该价格下的所有订单（MergeOrder，按时间排序）
      * 
      * 【排序规则】
@@ -109,17 +121,45 @@ public class CoinTrader {
      * ```
      * 
      * 【线程安全】
-     * - TreeMap 本身不是线程安全的
-     * - 所有操作都需要用 synchronized (sellLimitPriceQueue) 保护
+     * - 只由定序器线程访问（见 SymbolSequencer），无需加锁
+     */
+    private final TreeMap<Long, MergeOrder> sellLimitPriceQueue;
+    
+    /**
+     * 买盘、卖盘限价单的剩余量合计（lot）
+     * 
+     * 由各价格档位（MergeOrder）在挂单、成交、撤单时同步维护，分摊撮合直接读取，不遍历订单簿
+     */
+    private final BookSideTotal buySideTotal = new BookSideTotal();
+    
+    private final BookSideTotal sellSideTotal = new BookSideTotal();
+    
+    /**
+     * 止损单触发簿（orderType 3 止损限价单、4 止损市价单）
+     * 
+     * 【触发】
+     * 每条下单命令撮合结束后，用本条命令（含触发后撮合）的最高、最低成交价检查触发簿，
+     * 触发的止损单改为限价单 / 市价单，在同一条命令内立即撮合（见 triggerStopOrders），
+     * 不需要外部轮询行情。只有挂入之后的成交才会触发，挂单时不与历史成交价比较，
+     * 重放日志、主备重放的结果与原始执行一致。
      */
-    private final TreeMap<BigDecimal, MergeOrder> sellLimitPriceQueue;
+    private final StopOrderBook stopOrderBook = new StopOrderBook();
+    
+    /** 触发的止损单（重复使用） */
+    private final List<OrderDTO> triggeredStops = new ArrayList<>();
+    
+    /** 上次检查触发簿之后的最高、最低成交价（tick），没有成交时为 0 / Long.MAX_VALUE */
+    private long tradeHighPrice;
+    
+    private long tradeLowPrice = Long.MAX_VALUE;
     
     /**
      * 买入市价订单队列（按时间排序，FIFO）
      * 
      * 【数据结构】
-     * - LinkedList<OrderDTO>
+     * - MergeOrder（侵入式双向链表，价格为 0）
      *   - 按订单到达时间排序（先到先成交）
+     *   - 撤单、成交移除均为 O(1)
      * 
      * 【市价单特点】
      * - 没有指定价格，按对手盘最优价格成交
@@ -127,35 +167,169 @@ public class CoinTrader {
      * - 卖单市价单：按买盘最高价成交
      * 
      * 【线程安全】
-     * - LinkedList 本身不是线程安全的
-     * - 所有操作都需要用 synchronized (buyMarketQueue) 保护
+     * - 只由定序器线程访问（见 SymbolSequencer），无需加锁
      */
-    private final LinkedList<OrderDTO> buyMarketQueue;
+    private final MergeOrder buyMarketQueue;
     
     /**
      * 卖出市价订单队列（按时间排序，FIFO）
      * 
      * 【数据结构】
-     * - LinkedList<OrderDTO>
+     * - MergeOrder（侵入式双向链表，价格为 0）
      *   - 按订单到达时间排序（先到先成交）
      * 
      * 【线程安全】
-     * - LinkedList 本身不是线程安全的
-     * - 所有操作都需要用 synchronized (sellMarketQueue) 保护
+     * - 只由定序器线程访问（见 SymbolSequencer），无需加锁
+     */
+    private final MergeOrder sellMarketQueue;
+    
+    /**
+     * 订单索引（订单号 → 订单簿中的订单）
+     * 
+     * 【作用】
+     * 撤单时直接定位订单所在的价格档位（BookOrder.level），
+     * 不再按价格查找后逐个比较订单号，撤单为 O(1)。
+     * 
+     * 【维护规则】
+     * - 订单进入订单簿（限价单挂单、市价单排队）时加入
+     * - 订单完全成交或撤单离开订单簿时移除
+     * - 只包含挂在订单簿中的订单，撮合中的新订单不在索引中
+     */
+    private final Map<String, BookOrder> orderIndex;
+    
+    /**
+     * 用户挂单索引（用户ID → 订单簿中该用户的订单，见 UserOrderIndex）
+     * 
+     * 【作用】
+     * 按用户批量撤单（cancelUserOrders）时直接取出该用户的订单；与 orderIndex 同步维护（见 indexOrder / unindexOrder）
      */
-    private final LinkedList<OrderDTO> sellMarketQueue;
+    private final UserOrderIndex userOrderIndex = new UserOrderIndex();
     
-    /** 卖盘盘口信息（用于前端展示） */
+    /**
+     * GTT 订单到期时间轮（见 OrderTimerWheel），未开启到期撤销时为 null
+     * 
+     * 【维护规则】
+     * 与 orderIndex 同步：带到期时间的订单进入订单簿时挂入，完全成交、撤单时摘除；
+     * 未触发的止损单用 stopTimers 中的句柄挂入，触发、撤单时摘除；
+     * 定序器每个刻度推进一次，到期的订单以状态 4（超时）撤销（见 pollExpiredOrders）
+     */
+    private OrderTimerWheel expiryWheel;
+    
+    /** 已从时间轮取出、等待撤销的订单（命令日志写入成功后撤销，见 expireDueOrders） */
+    private final List<BookOrder> dueOrders = new ArrayList<>();
+    
+    /** 未触发止损单的到期句柄（订单号 → 挂在时间轮中的 BookOrder，不在订单簿中） */
+    private final Map<String, BookOrder> stopTimers = new HashMap<>();
+    
+    /** 卖盘盘口信息（用于前端展示，深度不足时从 sellLimitPriceQueue 回填） */
     private final TradePlate sellTradePlate;
     
-    /** 买盘盘口信息（用于前端展示） */
+    /** 买盘盘口信息（用于前端展示，深度不足时从 buyLimitPriceQueue 回填） */
     private final TradePlate buyTradePlate;
     
-    /** 是否暂停交易（true=暂停，false=正常） */
-    private boolean tradingHalt = false;
+    /** 是否暂停交易（true=暂停，false=正常）；由定序器线程修改，管理接口读取 */
+    private volatile boolean tradingHalt = false;
     
     /** 是否就绪（true=可以处理订单，false=未初始化完成） */
-    private boolean ready = false;
+    private volatile boolean ready = false;
+    
+    /** 盘口增量序号（每推送一条增量 +1，只由定序器线程修改） */
+    private long bookSequence = 0;
+    
+    /**
+     * 盘口增量合并推送（conflation）
+     * 
+     * 【作用】
+     * 行情突发时每条订单都推一次盘口，远超客户端的渲染能力。
+     * 改为只标记盘口已变化，满足以下任一条件才推送（变化的档位合并成一条增量）：
+     * - 距上次推送超过 depthPublishIntervalNanos
+     * - 累计 depthPublishMaxChanges 条改变盘口的命令
+     * - 本批命令产生了成交（批次结束时随成交结果一起推送，见 flushOutput）
+     * 定序器空闲时也会检查到期的未推送变化（见 flushDepthIfDue）。
+     * 
+     * 【配置】
+     * 由 CoinTraderFactory 按交易对设置（matching.depth.*），间隔为 0 表示每条命令都推送
+     */
+    private volatile long depthPublishIntervalNanos = 0;
+    
+    /** 累计多少条改变盘口的命令后立即推送（0 = 不按条数触发） */
+    private volatile int depthPublishMaxChanges = 0;
+    
+    /** 上次推送盘口增量的时间（System.nanoTime） */
+    private long lastDepthPublishNanos;
+    
+    /** 上次推送后改变了盘口、但尚未推送的命令数 */
+    private int pendingDepthChanges;
+    
+    /** 上次推送后是否产生过成交 */
+    private boolean tradedSinceDepthPublish;
+    
+    /**
+     * 本批命令待发送的成交记录、完成订单
+     * 
+     * 【作用】
+     * 定序器一次取出多条命令连续撮合，每条成交各发一条 MQ 消息时，发送成本远高于撮合本身。
+     * 撮合过程中成交和完全成交的订单只写入 tradeEvents（原始类型，不创建 DTO），
+     * 批次结束时由 flushOutput 转换成 DTO，合并成一条 trade-result-out、
+     * 一条 order-completed-out（超过 1000 条时分批）；两个列表清空后重复使用。
+     * 未设置 StreamBridge（恢复、加载订单簿）时不缓存。
+     */
+    private final TradeEventBuffer tradeEvents = new TradeEventBuffer();
+    
+    private final List<TradeRecordDTO> pendingTrades = new ArrayList<>();
+    
+    private final List<OrderDTO> pendingCompletedOrders = new ArrayList<>();
+    
+    /**
+     * 最近成交（固定容量的环形缓冲区，见 RecentTradeBuffer）
+     * 
+     * 【作用】
+     * /matching/trades 查询、Redis 同步（RecentTradeMirror）直接读取，不经过定序器；
+     * 批次结束转换成交记录时写入，只由定序器线程写入。
+     */
+    private RecentTradeBuffer recentTrades = new RecentTradeBuffer(RecentTradeBuffer.DEFAULT_CAPACITY);
+    
+    /**
+     * 行情聚合的成交队列（名称 → 队列，见 TradeFeed）
+     * 
+     * 与 recentTrades 同时写入；定序器启动之前设置，之后只读
+     */
+    private final Map<String, TradeFeed> tradeFeeds = new HashMap<>();
+    
+    private TradeFeed[] tradeFeedArray = new TradeFeed[0];
+    
+    /**
+     * 订单簿只读快照（前 snapshotLevels 档，见 OrderBookSnapshot）
+     * 
+     * 【作用】
+     * REST 查询订单簿时直接读取引用，不进入定序器队列，不阻塞撮合线程。
+     * 批次结束时订单簿有变化（bookSnapshotDirty）才重新生成，只由定序器线程写入。
+     */
+    private volatile OrderBookSnapshot bookSnapshot;
+    
+    /** 上次生成快照后订单簿是否变化 */
+    private boolean bookSnapshotDirty;
+    
+    /** 快照每一侧的档位数 */
+    private volatile int snapshotLevels = TradePlate.DEFAULT_MAX_DEPTH;
+    
+    /**
+     * 分组深度步长（如 0.1 / 1 / 10）
+     * 
+     * 【作用】
+     * 客户端按不同精度查看深度时，不再各自拉取原始盘口重新汇总：
+     * 两侧盘口按步长维护 DepthLadder（见 TradePlate），快照、增量推送同时包含分组深度。
+     * configuredGroupSteps 为配置值，depthGroupSteps 为按价格精度生效的步长（与 DepthLadder 一一对应）。
+     */
+    private volatile List<BigDecimal> configuredGroupSteps = Collections.emptyList();
+    
+    private BigDecimal[] depthGroupSteps = new BigDecimal[0];
+    
+    /** 已推送的盘口增量数 */
+    private volatile long depthPublishedCount;
+    
+    /** 被合并（未单独推送）的盘口变化数 */
+    private volatile long depthSuppressedCount;
     
     /** 发行类型（用于特殊撮合逻辑，如分摊模式） */
     private PublishType publishType = PublishType.NONE;
@@ -173,13 +347,21 @@ public class CoinTrader {
      * 用于发送撮合结果到 MQ：
      * - 成交记录（TradeRecord）
      * - 订单完成通知（OrderDTO）
-     * - 盘口更新（TradePlate）
+     * - 盘口增量（见 publishDepthUpdate）
      * 
      * 【设置方式】
      * 通过 CoinTraderFactory.getTrader() 创建时设置
      */
     private org.springframework.cloud.stream.function.StreamBridge streamBridge;
     
+    /**
+     * 是否以二进制格式发送输出消息（见 WireCodec）
+     * 
+     * 【灰度】
+     * 由 matching.mq.codec 配置，默认 JSON；所有消费方都能识别二进制消息后再切换
+     */
+    private volatile boolean binaryWire;
+    
     public CoinTrader(String symbol) {
         this.symbol = symbol;
         this.dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -187,10 +369,12 @@ public class CoinTrader {
         this.buyLimitPriceQueue = new TreeMap<>(Comparator.reverseOrder());
         // 卖单队列价格升序排列
         this.sellLimitPriceQueue = new TreeMap<>(Comparator.naturalOrder());
-        this.buyMarketQueue = new LinkedList<>();
-        this.sellMarketQueue = new LinkedList<>();
-        this.sellTradePlate = new TradePlate(symbol, OrderDirection.SELL);
-        this.buyTradePlate = new TradePlate(symbol, OrderDirection.BUY);
+        this.buyMarketQueue = new MergeOrder(0L);
+        this.sellMarketQueue = new MergeOrder(0L);
+        this.orderIndex = new HashMap<>();
+        this.sellTradePlate = new TradePlate(symbol, OrderDirection.SELL, sellLimitPriceQueue);
+        this.buyTradePlate = new TradePlate(symbol, OrderDirection.BUY, buyLimitPriceQueue);
+        resetEmptySnapshot();
         
         log.info("初始化交易器: {}", symbol);
     }
@@ -199,12 +383,47 @@ public class CoinTrader {
         this.streamBridge = streamBridge;
     }
     
+    public void setBinaryWire(boolean binaryWire) {
+        this.binaryWire = binaryWire;
+    }
+    
+    /**
+     * 设置交易币精度（数量精度）
+     * 
+     * 【注意】
+     * 订单簿内部以 long 保存数量（见 FixedPoint），精度必须在交易器就绪、接收订单之前设置
+     */
     public void setCoinScale(int coinScale) {
         this.coinScale = coinScale;
+        this.amountFactor = FixedPoint.pow10(coinScale);
+        this.buyTradePlate.setAmountScale(coinScale);
+        this.sellTradePlate.setAmountScale(coinScale);
+        resetEmptySnapshot();
     }
     
+    /**
+     * 设置计价币精度（价格、金额精度）
+     * 
+     * 【注意】
+     * 订单簿内部以 long 保存价格（见 FixedPoint），精度必须在交易器就绪、接收订单之前设置
+     */
     public void setBaseCoinScale(int baseCoinScale) {
         this.baseCoinScale = baseCoinScale;
+        this.buyTradePlate.setPriceScale(baseCoinScale);
+        this.sellTradePlate.setPriceScale(baseCoinScale);
+        resetEmptySnapshot();
+    }
+    
+    public int getCoinScale() {
+        return coinScale;
+    }
+    
+    public int getBaseCoinScale() {
+        return baseCoinScale;
+    }
+    
+    public String getSymbol() {
+        return symbol;
     }
     
     public void setPublishType(PublishType publishType) {
@@ -251,81 +470,37 @@ public class CoinTrader {
      * - 相同价格的订单会合并到一个 MergeOrder 中
      * - MergeOrder 内部按时间排序（先到先成交）
      * 
-     * 【为什么需要 synchronized？】
-     * - TreeMap 本身不是线程安全的
-     * - 即使 CoinTraderFactory 用了 ConcurrentHashMap，这里也需要同步
-     * - 因为 ConcurrentHashMap 只保证 Map 本身的线程安全，不保证 Value 对象的线程安全
-     * - 多个线程可能同时操作同一个 CoinTrader 的订单簿
-     * 
-     * @param exchangeOrder 限价订单
+     * @param exchangeOrder 限价订单（引擎内部表示）
      */
-    public void addLimitPriceOrder(OrderDTO exchangeOrder) {
+    public void addLimitPriceOrder(BookOrder exchangeOrder) {
         // 只处理限价单（订单类型 1 = LIMIT_PRICE）
         if (exchangeOrder.getOrderType() != 1) {  // LIMIT_PRICE
             return;
         }
         
         // 根据订单方向选择对应的订单队列和盘口
-        TreeMap<BigDecimal, MergeOrder> list;
+        TreeMap<Long, MergeOrder> list;
         if (exchangeOrder.getSide() == 1) {  // BUY（买入）
             list = buyLimitPriceQueue;  // 买入限价单队列
-            buyTradePlate.add(exchangeOrder);  // 更新买盘盘口
-            if (ready) {
-                sendTradePlateMessage(buyTradePlate);  // 发送盘口更新到 MQ
-            }
+            buyTradePlate.add(exchangeOrder.getPrice(), exchangeOrder.getRemainingAmount());  // 更新买盘盘口
         } else {  // SELL（卖出）
             list = sellLimitPriceQueue;  // 卖出限价单队列
-            sellTradePlate.add(exchangeOrder);  // 更新卖盘盘口
-            if (ready) {
-                sendTradePlateMessage(sellTradePlate);  // 发送盘口更新到 MQ
-            }
+            sellTradePlate.add(exchangeOrder.getPrice(), exchangeOrder.getRemainingAmount());  // 更新卖盘盘口
         }
         
-        // ========== 关键：为什么需要 synchronized？ ==========
-        // 
-        // 【问题】为什么用了 ConcurrentHashMap 还要用 synchronized？
-        // 
-        // 【答案】
-        // 1. ConcurrentHashMap 只保证 Map 本身的线程安全
-        //    - 例如：CoinTraderFactory.traders 的 get/put 操作是线程安全的
-        //    - 但是：CoinTrader 内部的订单簿（TreeMap、LinkedList）不是线程安全的
-        // 
-        // 2. 多个线程可能同时操作同一个 CoinTrader
-        //    - 虽然每个交易对只有一个 CoinTrader 实例
-        //    - 但如果配置了 concurrency > 1，多个线程可能同时处理同一个交易对的订单
-        //    - 例如：线程1 处理 BTC/USDT 订单1，线程2 处理 BTC/USDT 订单2（同时）
-        // 
-        // 3. TreeMap 和 LinkedList 不是线程安全的
-        //    - TreeMap 的 put/get/remove 操作不是原子的
-        //    - 多个线程同时操作会导致数据不一致
-        // 
-        // 4. 需要保护复合操作
-        //    - 例如：get(price) → 判断是否为 null → put(price, new MergeOrder)
-        //    - 这个操作序列需要原子性，否则可能重复创建 MergeOrder
-        // 
-        // 【例子】
-        // ```
-        // 线程1：get(50000) → null → put(50000, new MergeOrder)
-        // 线程2：get(50000) → null → put(50000, new MergeOrder)  // 重复创建！
-        // ```
-        // 
-        // 【解决方案】
-        // 使用 synchronized (list) 保护整个操作序列
-        // 这样同一时间只有一个线程能操作订单簿
-        synchronized (list) {
-            // 获取该价格下的订单列表（MergeOrder）
-            MergeOrder mergeOrder = list.get(exchangeOrder.getPrice());
-            
-            if (mergeOrder == null) {
-                // 如果该价格还没有订单，创建新的 MergeOrder
-                mergeOrder = new MergeOrder();
-                mergeOrder.add(exchangeOrder);  // 添加订单
-                list.put(exchangeOrder.getPrice(), mergeOrder);  // 放入订单簿
-            } else {
-                // 如果该价格已有订单，直接添加到 MergeOrder
-                mergeOrder.add(exchangeOrder);
-            }
+        // 获取该价格下的订单列表（MergeOrder）
+        MergeOrder mergeOrder = list.get(exchangeOrder.getPrice());
+        
+        if (mergeOrder == null) {
+            // 如果该价格还没有订单，创建新的 MergeOrder
+            mergeOrder = new MergeOrder(exchangeOrder.getPrice(), exchangeOrder.getSide() == 1 ? buySideTotal : sellSideTotal);
+            mergeOrder.add(exchangeOrder);  // 添加订单
+            list.put(exchangeOrder.getPrice(), mergeOrder);  // 放入订单簿
+        } else {
+            // 如果该价格已有订单，直接添加到 MergeOrder
+            mergeOrder.add(exchangeOrder);
         }
+        indexOrder(exchangeOrder);
     }
     
     /**
@@ -341,30 +516,22 @@ public class CoinTrader {
      * - 卖单市价单：按买盘最高价成交
      * 
      * 【数据结构】
-     * - LinkedList：按时间排序（FIFO，先到先成交）
+     * - MergeOrder：按时间排序（FIFO，先到先成交）
      * 
-     * 【为什么需要 synchronized？】
-     * - LinkedList 本身不是线程安全的
-     * - 多个线程可能同时添加市价单
-     * - 需要保护 addLast() 操作的原子性
-     * 
-     * @param exchangeOrder 市价订单
+     * @param exchangeOrder 市价订单（引擎内部表示）
      */
-    public void addMarketPriceOrder(OrderDTO exchangeOrder) {
+    public void addMarketPriceOrder(BookOrder exchangeOrder) {
         // 只处理市价单（订单类型 2 = MARKET_PRICE）
         if (exchangeOrder.getOrderType() != 2) {  // MARKET_PRICE
             return;
         }
-        log.info("添加市价订单: {}", exchangeOrder.getOrderNo());
+        log.debug("添加市价订单: {}", exchangeOrder.getOrderNo());
         
         // 根据订单方向选择对应的市价单队列
-        LinkedList<OrderDTO> list = exchangeOrder.getSide() == 1 ? buyMarketQueue : sellMarketQueue;
+        MergeOrder list = exchangeOrder.getSide() == 1 ? buyMarketQueue : sellMarketQueue;
         
-        // 使用 synchronized 保护 addLast() 操作
-        // 原因：LinkedList 不是线程安全的，多个线程同时添加会导致数据不一致
-        synchronized (list) {
-            list.addLast(exchangeOrder);  // 添加到队列末尾（FIFO）
-        }
+        list.add(exchangeOrder);  // 添加到队列末尾（FIFO）
+        indexOrder(exchangeOrder);
     }
     
     /**
@@ -381,13 +548,14 @@ public class CoinTrader {
      *    - 限价单：先与限价单撮合，再与市价单撮合
      *    - 市价单：直接与限价单撮合
      * 5. 如果未完全成交，剩余部分进入订单簿
+     * 6. 止损单（orderType 3 / 4）不撮合，进入触发簿；本条命令的成交触发的止损单在同一条命令内撮合
      *
      * 【撮合原则】
      * - 价格优先：买单价格高的优先，卖单价格低的优先
      * - 时间优先：同价格的订单，先下单的优先
      *
      * 【内存处理】
-     * - 所有撮合都在内存中进行（TreeMap、LinkedList）
+     * - 所有撮合都在内存中进行（TreeMap、MergeOrder）
      * - 速度极快（微秒级）
      * - 撮合完成后，结果通过 MQ 发送，由其他服务负责落库
      *
@@ -404,16 +572,16 @@ public class CoinTrader {
      * 4. 如果还有剩余，继续与 50000 的订单成交
      * ```
      * 
-     * @param exchangeOrder 待撮合的订单
-     *
-     * 线程1、线程2、线程3 同时处理 BTC/USDT 订单
-     *   ↓
-     * 都拿到同一个 CoinTrader("BTC/USDT") 实例
+     * 【线程模型】
+     * ```
+     * MQ 线程1、线程2、线程3 同时收到 BTC/USDT 订单
      *   ↓
-     * 操作订单簿时，通过 synchronized 串行执行
+     * 写入 BTC/USDT 的 SymbolSequencer 环形队列（入队顺序即撮合顺序）
      *   ↓
-     * 保证数据一致性 ✅
-     *
+     * 定序器线程逐个调用 trade()，订单簿只有一个写者，无需加锁
+     * ```
+     * 
+     * @param exchangeOrder 待撮合的订单
      */
     public void trade(OrderDTO exchangeOrder) {
         // ========== 第一步：检查交易状态 ==========
@@ -428,20 +596,55 @@ public class CoinTrader {
             return;
         }
         
+        // 已在订单簿中的订单（MQ 重复投递）直接忽略，避免重复挂单
+        if (orderIndex.containsKey(exchangeOrder.getOrderNo()) || stopOrderBook.contains(exchangeOrder.getOrderNo())) {
+            log.warn("订单已在订单簿中，忽略重复订单: {}", exchangeOrder.getOrderNo());
+            return;
+        }
+        
+        tradeHighPrice = 0;
+        tradeLowPrice = Long.MAX_VALUE;
+        if (isStopOrder(exchangeOrder)) {
+            // 止损单进入触发簿，等待后续成交触发
+            addStopOrder(exchangeOrder);
+        } else {
+            matchOrder(exchangeOrder);
+        }
+        
+        // 本条命令的成交触发的止损单，在同一条命令内撮合
+        triggerStopOrders();
+    }
+    
+    /**
+     * 撮合一笔限价单 / 市价单（新订单，或触发后的止损单）
+     * 
+     * @param exchangeOrder 待撮合的订单
+     */
+    private void matchOrder(OrderDTO exchangeOrder) {
+        // ========== 第二步：转换为引擎内部表示 ==========
+        // MQ 边界：BigDecimal → long（tick/lot），之后的撮合循环只做 long 运算
+        // 精度超过交易对配置的订单无法精确表示，直接取消，避免静默截断用户的价格/数量
+        BookOrder focusedOrder = toBookOrder(exchangeOrder);
+        if (focusedOrder == null) {
+            exchangeOrder.setStatus(3);  // 3 = CANCELED
+            sendOrderCompleted(exchangeOrder);
+            return;
+        }
+        
         // 检查订单数量是否有效
         // 订单数量必须大于 0，且剩余未成交数量必须大于 0
-        if (exchangeOrder.getAmount().compareTo(BigDecimal.ZERO) <= 0 
-                || exchangeOrder.getAmount().subtract(exchangeOrder.getFilledAmount()).compareTo(BigDecimal.ZERO) <= 0) {
+        if (focusedOrder.getAmount() <= 0
+                || (focusedOrder.isMarketBuy() ? focusedOrder.getRemainingMoney() : focusedOrder.getRemainingAmount()) <= 0) {
             return;
         }
         
-        // ========== 第二步：选择对手盘队列 ==========
+        // ========== 第三步：选择对手盘队列 ==========
         // 买入订单 → 对卖盘撮合
         // 卖出订单 → 对买盘撮合
-        TreeMap<BigDecimal, MergeOrder> limitPriceOrderList;  // 限价单队列
-        LinkedList<OrderDTO> marketPriceOrderList;  // 市价单队列
+        TreeMap<Long, MergeOrder> limitPriceOrderList;  // 限价单队列
+        MergeOrder marketPriceOrderList;  // 市价单队列
         
-        if (exchangeOrder.getSide() == 1) {  // BUY（买入）
+        if (focusedOrder.getSide() == 1) {  // BUY（买入）
             // 买入订单对卖盘撮合
             limitPriceOrderList = sellLimitPriceQueue;  // 卖盘限价单队列
             marketPriceOrderList = sellMarketQueue;  // 卖盘市价单队列
@@ -451,29 +654,29 @@ public class CoinTrader {
             marketPriceOrderList = buyMarketQueue;  // 买盘市价单队列
         }
         
-        // ========== 第三步：根据订单类型执行撮合 ==========
-        if (exchangeOrder.getOrderType() == 2) {  // MARKET_PRICE（市价单）
+        // ========== 第四步：根据订单类型执行撮合 ==========
+        if (focusedOrder.getOrderType() == 2) {  // MARKET_PRICE（市价单）
             // 市价单撮合：直接与限价单撮合
             // 市价单没有指定价格，按对手盘最优价格成交
             // - 买单市价单：按卖盘最低价成交
             // - 卖单市价单：按买盘最高价成交
-            matchMarketPriceWithLPList(limitPriceOrderList, exchangeOrder);
+            matchMarketPriceWithLPList(limitPriceOrderList, focusedOrder);
             
-        } else if (exchangeOrder.getOrderType() == 1) {  // LIMIT_PRICE（限价单）
+        } else if (focusedOrder.getOrderType() == 1) {  // LIMIT_PRICE（限价单）
             // 限价单价格必须大于 0
-            if (exchangeOrder.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
+            if (focusedOrder.getPrice() <= 0) {
                 return;
             }
             
             // 分摊模式特殊处理（特殊业务逻辑，可以忽略）
-            if (publishType == PublishType.FENTAN && exchangeOrder.getSide() == 2) {  // SELL
+            if (publishType == PublishType.FENTAN && focusedOrder.getSide() == 2) {  // SELL
                 log.info("分摊卖单处理");
                 try {
-                    if (exchangeOrder.getCreateTime() != null 
+                    if (focusedOrder.getCreateTime() > 0
                             && clearTime != null 
-                            && exchangeOrder.getCreateTime() < dateTimeFormat.parse(clearTime).getTime()) {
+                            && focusedOrder.getCreateTime() < dateTimeFormat.parse(clearTime).getTime()) {
                         log.info("分摊卖单处在结束时间与清盘时间内");
-                        matchLimitPriceWithLPListByFENTAN(limitPriceOrderList, exchangeOrder, false);
+                        matchLimitPriceWithLPListByFENTAN(limitPriceOrderList, focusedOrder, false);
                         return;
                     }
                 } catch (ParseException e) {
@@ -483,16 +686,134 @@ public class CoinTrader {
             
             // 限价单撮合流程：
             // 1. 先与限价单撮合（价格优先、时间优先）
-            matchLimitPriceWithLPList(limitPriceOrderList, exchangeOrder, false);
+            matchLimitPriceWithLPList(limitPriceOrderList, focusedOrder, false);
             
             // 2. 如果还没交易完，与市价单撮合
             // 限价单可以与市价单撮合，因为市价单没有价格限制
-            if (exchangeOrder.getAmount().compareTo(exchangeOrder.getFilledAmount()) > 0) {
-                matchLimitPriceWithMPList(marketPriceOrderList, exchangeOrder);
+            if (focusedOrder.getRemainingAmount() > 0) {
+                matchLimitPriceWithMPList(marketPriceOrderList, focusedOrder);
+            }
+        }
+    }
+    
+    /**
+     * 是否为止损单（3 止损限价单、4 止损市价单）
+     */
+    private static boolean isStopOrder(OrderDTO order) {
+        Integer orderType = order.getOrderType();
+        return orderType != null && (orderType == 3 || orderType == 4);
+    }
+    
+    /**
+     * 止损单挂入触发簿
+     * 
+     * 触发价、触发后的价格和数量按交易对精度校验，不合法的订单直接取消（与 toBookOrder 相同）
+     * 
+     * @param order 止损单
+     */
+    private void addStopOrder(OrderDTO order) {
+        long triggerPrice = toTriggerPrice(order);
+        if (triggerPrice <= 0) {
+            order.setStatus(3);  // 3 = CANCELED
+            sendOrderCompleted(order);
+            return;
+        }
+        stopOrderBook.add(order, triggerPrice);
+        scheduleStopExpiry(order);
+    }
+    
+    /**
+     * 止损单触发价（tick）
+     * 
+     * @return 触发价；触发价、委托价、数量不合法时返回 0
+     */
+    private long toTriggerPrice(OrderDTO order) {
+        try {
+            boolean stopMarket = order.getOrderType() == 4;
+            long triggerPrice = FixedPoint.toLong(order.getTriggerPrice(), baseCoinScale);
+            long price = stopMarket ? 0L : FixedPoint.toLong(order.getPrice(), baseCoinScale);
+            long amount = FixedPoint.toLong(order.getAmount(), stopMarket && order.getSide() == 1 ? baseCoinScale : coinScale);
+            if (amount <= 0 || (!stopMarket && price <= 0)) {
+                return 0L;
+            }
+            return triggerPrice;
+        } catch (ArithmeticException e) {
+            log.warn("止损单精度超出交易对配置，拒绝订单: orderNo={}, triggerPrice={}, price={}, amount={}",
+                    order.getOrderNo(), order.getTriggerPrice(), order.getPrice(), order.getAmount());
+            return 0L;
+        }
+    }
+    
+    /**
+     * 触发并撮合止损单
+     * 
+     * 【流程】
+     * 1. 取出本条命令成交价范围内的止损单（买入止损：触发价 <= 最高成交价；卖出止损：触发价 >= 最低成交价）
+     * 2. 改为限价单 / 市价单后按触发顺序撮合
+     * 3. 触发单的成交可能继续触发其它止损单，重复直到没有新的触发
+     */
+    private void triggerStopOrders() {
+        while (tradeHighPrice > 0 && !stopOrderBook.isEmpty()) {
+            long highPrice = tradeHighPrice;
+            long lowPrice = tradeLowPrice;
+            tradeHighPrice = 0;
+            tradeLowPrice = Long.MAX_VALUE;
+            stopOrderBook.pollTriggered(highPrice, lowPrice, triggeredStops);
+            for (int i = 0; i < triggeredStops.size(); i++) {
+                OrderDTO order = triggeredStops.get(i);
+                cancelStopExpiry(order);
+                order.setOrderType(order.getOrderType() == 3 ? 1 : 2);  // 止损限价 → 限价，止损市价 → 市价
+                if (log.isDebugEnabled()) {
+                    log.debug("止损单触发: orderNo={}, triggerPrice={}", order.getOrderNo(), order.getTriggerPrice());
+                }
+                matchOrder(order);
             }
+            triggeredStops.clear();
         }
     }
     
+    /**
+     * OrderDTO → BookOrder（MQ 入口边界转换）
+     * 
+     * 【精度】
+     * - 价格、金额按 baseCoinScale 放大
+     * - 数量按 coinScale 放大
+     * - 市价买单按金额下单，amount 按 baseCoinScale 放大
+     * 
+     * @param order MQ 订单
+     * @return 引擎内部订单；精度超出交易对配置或数值越界时返回 null
+     */
+    private BookOrder toBookOrder(OrderDTO order) {
+        try {
+            boolean marketBuy = order.getOrderType() == 2 && order.getSide() == 1;
+            long price = order.getOrderType() == 2 ? 0L : FixedPoint.toLong(order.getPrice(), baseCoinScale);
+            long amount = FixedPoint.toLong(order.getAmount(), marketBuy ? baseCoinScale : coinScale);
+            long filledAmount = FixedPoint.toLong(order.getFilledAmount(), coinScale);
+            long filledMoney = FixedPoint.toLong(order.getFilledMoney(), baseCoinScale);
+            return new BookOrder(order, price, amount, filledAmount, filledMoney);
+        } catch (ArithmeticException e) {
+            log.warn("订单精度超出交易对配置，拒绝订单: orderNo={}, price={}, amount={}, coinScale={}, baseCoinScale={}",
+                    order.getOrderNo(), order.getPrice(), order.getAmount(), coinScale, baseCoinScale);
+            return null;
+        }
+    }
+    
+    /**
+     * BookOrder → OrderDTO（MQ 出口边界转换）
+     * 
+     * 把引擎内部的成交进度写回原始 OrderDTO，用于发送订单完成/取消通知
+     * 
+     * @param order 引擎内部订单
+     * @return 原始 OrderDTO（已回写成交数量、成交金额、状态）
+     */
+    private OrderDTO toOrderDTO(BookOrder order) {
+        OrderDTO dto = order.getSource();
+        dto.setFilledAmount(FixedPoint.toDecimal(order.getFilledAmount(), coinScale));
+        dto.setFilledMoney(FixedPoint.toDecimal(order.getFilledMoney(), baseCoinScale));
+        dto.setStatus(order.getStatus());
+        return dto;
+    }
+    
     /**
      * 限价单与限价单撮合
      * 
@@ -514,103 +835,61 @@ public class CoinTrader {
      * - 撮合过程完全在内存中进行
      * - 撮合完成后，结果通过 MQ 发送
      * 
-     * 【为什么需要 synchronized？】
-     * - TreeMap 不是线程安全的
-     * - 多个线程可能同时操作同一个订单簿
-     * - 需要保护整个撮合过程的原子性
-     * 
      * @param lpList 对手盘限价单队列（TreeMap<价格, MergeOrder>）
      * @param focusedOrder 待撮合的订单
      * @param canEnterList 如果未完全成交，是否进入订单簿（通常为 false）
      */
-    private void matchLimitPriceWithLPList(TreeMap<BigDecimal, MergeOrder> lpList, OrderDTO focusedOrder, boolean canEnterList) {
-        // 收集撮合结果
-        List<TradeRecordDTO> exchangeTrades = new ArrayList<>();  // 成交记录列表
-        List<OrderDTO> completedOrders = new ArrayList<>();  // 已完成订单列表
-        
-        // ========== 关键：为什么需要 synchronized？ ==========
-        // 
-        // 【原因】
-        // 1. TreeMap 不是线程安全的
-        //    - iterator()、get()、put()、remove() 等操作不是原子的
-        //    - 多个线程同时操作会导致 ConcurrentModificationException
-        // 
-        // 2. 撮合过程是复合操作
-        //    - 遍历订单簿 → 匹配订单 → 更新订单状态 → 移除已完成订单
-        //    - 这个操作序列需要原子性，否则可能导致数据不一致
-        // 
-        // 3. 即使配置了 concurrency: 1，也可能有多个线程
-        //    - 虽然单线程消费，但可能有其他线程（如取消订单、查询订单簿等）
-        // 
-        // 【例子】
-        // ```
-        // 线程1：遍历订单簿，准备与订单A撮合
-        // 线程2：同时取消订单A
-        // 结果：线程1 可能操作已删除的订单，导致异常
-        // ```
-        // 
-        // 【解决方案】
-        // 使用 synchronized (lpList) 保护整个撮合过程
-        // 这样同一时间只有一个线程能操作订单簿
-        synchronized (lpList) {
-            Iterator<Map.Entry<BigDecimal, MergeOrder>> mergeOrderIterator = lpList.entrySet().iterator();
-            boolean exitLoop = false;
-            
-            while (!exitLoop && mergeOrderIterator.hasNext()) {
-                Map.Entry<BigDecimal, MergeOrder> entry = mergeOrderIterator.next();
-                MergeOrder mergeOrder = entry.getValue();
-                Iterator<OrderDTO> orderIterator = mergeOrder.iterator();
-                
-                // 买单需要匹配的价格不大于委托价，否则退出
-                if (focusedOrder.getSide() == 1 && mergeOrder.getPrice().compareTo(focusedOrder.getPrice()) > 0) {
-                    break;
+    private void matchLimitPriceWithLPList(TreeMap<Long, MergeOrder> lpList, BookOrder focusedOrder, boolean canEnterList) {
+        // 成交、完成订单写入 tradeEvents；价格档位和档内订单直接遍历，不创建迭代器
+        boolean exitLoop = false;
+
+        while (!exitLoop && !lpList.isEmpty()) {
+            Long bestPrice = lpList.firstKey();
+            MergeOrder mergeOrder = lpList.get(bestPrice);
+
+            // 买单需要匹配的价格不大于委托价，否则退出
+            if (focusedOrder.getSide() == 1 && mergeOrder.getPrice() > focusedOrder.getPrice()) {
+                break;
+            }
+            // 卖单需要匹配的价格不小于委托价，否则退出
+            if (focusedOrder.getSide() == 2 && mergeOrder.getPrice() < focusedOrder.getPrice()) {
+                break;
+            }
+
+            BookOrder matchOrder = mergeOrder.get();
+            while (matchOrder != null) {
+                // 完全成交的挂单会被移出队列，先取后继
+                BookOrder nextOrder = matchOrder.next;
+                // 处理撮合
+                processMatch(focusedOrder, matchOrder);
+
+                // 判断匹配单是否完成
+                if (matchOrder.getStatus() == 2) {  // COMPLETED
+                    mergeOrder.remove(matchOrder);
+                    unindexOrder(matchOrder);
+                    completeOrder(matchOrder);
                 }
-                // 卖单需要匹配的价格不小于委托价，否则退出
-                if (focusedOrder.getSide() == 2 && mergeOrder.getPrice().compareTo(focusedOrder.getPrice()) < 0) {
+
+                // 判断交易单是否完成
+                if (focusedOrder.getStatus() == 2) {  // COMPLETED
+                    completeOrder(focusedOrder);
+                    exitLoop = true;
                     break;
                 }
-                
-                while (orderIterator.hasNext()) {
-                    OrderDTO matchOrder = orderIterator.next();
-                    // 处理撮合
-                    TradeRecordDTO trade = processMatch(focusedOrder, matchOrder);
-                    if (trade != null) {
-                        exchangeTrades.add(trade);
-                    }
-                    
-                    // 判断匹配单是否完成
-                    if (matchOrder.getStatus() == 2) {  // COMPLETED
-                        orderIterator.remove();
-                        completedOrders.add(matchOrder);
-                    }
-                    
-                    // 判断交易单是否完成
-                    if (focusedOrder.getStatus() == 2) {  // COMPLETED
-                        completedOrders.add(focusedOrder);
-                        exitLoop = true;
-                        break;
-                    }
-                }
-                
-                if (mergeOrder.size() == 0) {
-                    mergeOrderIterator.remove();
-                }
+                matchOrder = nextOrder;
+            }
+
+            if (mergeOrder.size() > 0) {
+                // 本档没有吃完只可能是交易单已完成
+                break;
             }
+            lpList.remove(bestPrice);
         }
-        
+
         // 如果还没交易完，订单压入列表
-        if (focusedOrder.getAmount().compareTo(focusedOrder.getFilledAmount()) > 0 && canEnterList) {
+        if (focusedOrder.getRemainingAmount() > 0 && canEnterList) {
             addLimitPriceOrder(focusedOrder);
         }
-        
-        // 推送撮合结果
-        handleExchangeTrade(exchangeTrades);
-        
-        if (completedOrders.size() > 0) {
-            orderCompleted(completedOrders);
-            TradePlate plate = focusedOrder.getSide() == 1 ? sellTradePlate : buyTradePlate;
-            sendTradePlateMessage(plate);
-        }
     }
     
     /**
@@ -649,10 +928,9 @@ public class CoinTrader {
      * 
      * @param focusedOrder 待撮合的订单（新订单）
      * @param matchOrder 对手盘订单（订单簿中的订单）
-     * @return TradeRecordDTO 成交记录（如果成交），null（如果无法成交）
      */
-    private TradeRecordDTO processMatch(OrderDTO focusedOrder, OrderDTO matchOrder) {
-        BigDecimal needAmount, dealPrice, availAmount;
+    private void processMatch(BookOrder focusedOrder, BookOrder matchOrder) {
+        long needAmount, dealPrice, availAmount;
         
         // ========== 第一步：确定成交价格 ==========
         // 【价格优先原则】
@@ -669,26 +947,18 @@ public class CoinTrader {
         }
         
         // 成交价必须大于 0
-        if (dealPrice.compareTo(BigDecimal.ZERO) <= 0) {
-            return null;
+        if (dealPrice <= 0) {
+            return;
         }
         
         // ========== 第二步：计算剩余数量 ==========
-        // 计算两个订单的剩余未成交数量
-        BigDecimal focusedRemaining = focusedOrder.getAmount().subtract(focusedOrder.getFilledAmount());
-        BigDecimal matchRemaining = matchOrder.getAmount().subtract(matchOrder.getFilledAmount());
+        // 计算两个订单在该成交价下还能成交的数量（lot）
+        // 市价买单按金额下单：剩余数量 = 剩余金额 / 成交价（向下取整到 lot）
+        long focusedRemaining = remainingAmountAt(focusedOrder, dealPrice);
+        long matchRemaining = remainingAmountAt(matchOrder, dealPrice);
         
         // ========== 第三步：确定需要交易的数量 ==========
-        // 特殊处理：买单市价单
-        // 买单市价单按金额计算（例如：买入 10000 USDT 的 BTC）
-        // 其他订单按数量计算（例如：买入 1 BTC）
-        if (focusedOrder.getOrderType() == 2 && focusedOrder.getSide() == 1) {  // MARKET_PRICE BUY
-            // 买单市价单：需要交易的数量 = 对手单剩余数量
-            needAmount = matchRemaining;
-        } else {
-            // 其他订单：需要交易的数量 = 本方订单剩余数量
-            needAmount = focusedRemaining;
-        }
+        needAmount = focusedRemaining;
         
         // 可用数量（对手单剩余数量）
         availAmount = matchRemaining;
@@ -700,47 +970,86 @@ public class CoinTrader {
         // 【例子】
         // - 订单A 剩余 1 BTC，订单B 剩余 0.5 BTC → 成交 0.5 BTC
         // - 订单A 剩余 0.3 BTC，订单B 剩余 1 BTC → 成交 0.3 BTC
-        BigDecimal tradedAmount = (availAmount.compareTo(needAmount) >= 0 ? needAmount : availAmount);
+        long tradedAmount = Math.min(availAmount, needAmount);
         
         // 如果成交量为 0，无法成交
-        if (tradedAmount.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
+        if (tradedAmount <= 0) {
+            // 市价买单剩余金额已不足以按当前价格买入最小单位，视为完成，避免残留在队列中
+            if (focusedOrder.isMarketBuy() && focusedRemaining <= 0) {
+                focusedOrder.setStatus(2);  // 2 = COMPLETED
+            }
+            if (matchOrder.isMarketBuy() && matchRemaining <= 0) {
+                matchOrder.setStatus(2);  // 2 = COMPLETED
+            }
+            return;
         }
         
         // ========== 第五步：计算成交额 ==========
         // 成交额 = 成交量 × 成交价格
-        BigDecimal turnover = tradedAmount.multiply(dealPrice);
+        // 数量单位 lot（10^coinScale），价格单位 tick（10^baseCoinScale），
+        // 乘积除以 10^coinScale 得到金额 tick（按计价币精度向下取整）
+        long turnover = FixedPoint.mulDiv(tradedAmount, dealPrice, amountFactor);
         
         // ========== 第六步：更新订单状态 ==========
-        // 更新两个订单的已成交数量和已成交金额
-        matchOrder.setFilledAmount(matchOrder.getFilledAmount().add(tradedAmount));
-        matchOrder.setFilledMoney(matchOrder.getFilledMoney().add(turnover));
-        focusedOrder.setFilledAmount(focusedOrder.getFilledAmount().add(tradedAmount));
-        focusedOrder.setFilledMoney(focusedOrder.getFilledMoney().add(turnover));
+        // 更新两个订单的已成交数量和已成交金额，并判断是否完全成交
+        // - 完全成交：status = 2 (COMPLETED)
+        // - 部分成交：status = 1 (PARTIAL)
+        matchOrder.fill(tradedAmount, turnover);
+        focusedOrder.fill(tradedAmount, turnover);
         
-        // 判断订单是否完全成交
-        // 如果已成交数量 >= 订单数量，则完全成交
-        if (matchOrder.getFilledAmount().compareTo(matchOrder.getAmount()) >= 0) {
-            matchOrder.setStatus(2);  // 2 = COMPLETED（完全成交）
-        } else {
-            matchOrder.setStatus(1);  // 1 = PARTIAL（部分成交）
-        }
-        
-        if (focusedOrder.getFilledAmount().compareTo(focusedOrder.getAmount()) >= 0) {
-            focusedOrder.setStatus(2);  // 2 = COMPLETED（完全成交）
-        } else {
-            focusedOrder.setStatus(1);  // 1 = PARTIAL（部分成交）
+        // 对手单是挂在订单簿里的限价单，同步扣减盘口数量
+        if (matchOrder.getOrderType() == 1) {
+            TradePlate plate = matchOrder.getSide() == 1 ? buyTradePlate : sellTradePlate;
+            plate.remove(matchOrder.getPrice(), tradedAmount);
         }
         
-        // ========== 第七步：创建成交记录 ==========
-        // 创建成交记录（TradeRecord），用于：
+        // ========== 第七步：记录成交 ==========
+        // 只写入 tradeEvents，成交记录（TradeRecord）在批次结束发送时才创建，用于：
         // 1. 发送到 MQ，由其他服务负责落库
         // 2. 更新用户余额
         // 3. 前端展示成交记录
+        recordFill(focusedOrder, matchOrder, dealPrice, tradedAmount, turnover);
+        
+        if (log.isDebugEnabled()) {
+            log.debug("撮合成功: price={}, amount={}", dealPrice, tradedAmount);
+        }
+    }
+    
+    /**
+     * 计算订单在指定成交价下的剩余可成交数量（lot）
+     * 
+     * - 普通订单：委托量 - 已成交量
+     * - 市价买单：剩余金额 × 10^coinScale / 成交价（向下取整）
+     * 
+     * @param order 订单
+     * @param dealPrice 成交价（tick）
+     * @return 剩余可成交数量（lot）
+     */
+    private long remainingAmountAt(BookOrder order, long dealPrice) {
+        if (order.isMarketBuy()) {
+            long remainingMoney = order.getRemainingMoney();
+            return remainingMoney <= 0 ? 0L : FixedPoint.mulDiv(remainingMoney, amountFactor, dealPrice);
+        }
+        return order.getRemainingAmount();
+    }
+    
+    /**
+     * 创建成交记录（MQ 出口边界转换）
+     * 
+     * @param focusedOrder 待撮合的订单
+     * @param matchOrder 对手盘订单
+     * @param dealPrice 成交价（tick）
+     * @param tradedAmount 成交数量（lot）
+     * @param turnover 成交金额（tick）
+     * @param tradeTime 成交时间（毫秒）
+     * @return 成交记录
+     */
+    private TradeRecordDTO createTradeRecord(BookOrder focusedOrder, BookOrder matchOrder,
+                                             long dealPrice, long tradedAmount, long turnover, long tradeTime) {
         TradeRecordDTO tradeRecord = new TradeRecordDTO();
         tradeRecord.setSymbol(symbol);  // 交易对
-        tradeRecord.setPrice(dealPrice);  // 成交价格
-        tradeRecord.setAmount(tradedAmount);  // 成交数量
+        tradeRecord.setPrice(FixedPoint.toDecimal(dealPrice, baseCoinScale));  // 成交价格
+        tradeRecord.setAmount(FixedPoint.toDecimal(tradedAmount, coinScale));  // 成交数量
         
         // 根据订单方向设置买卖双方信息
         if (focusedOrder.getSide() == 1) {  // BUY（买入）
@@ -755,11 +1064,8 @@ public class CoinTrader {
             tradeRecord.setSellUserId(focusedOrder.getUserId());  // 卖方用户ID
         }
         
-        tradeRecord.setMoney(turnover);  // 成交额
-        tradeRecord.setTradeTime(new java.util.Date());  // 成交时间
-        
-        log.info("撮合成功: price={}, amount={}", dealPrice, tradedAmount);
-        
+        tradeRecord.setMoney(FixedPoint.toDecimal(turnover, baseCoinScale));  // 成交额
+        tradeRecord.setTradeTime(new java.util.Date(tradeTime));  // 成交时间
         return tradeRecord;
     }
     
@@ -787,11 +1093,6 @@ public class CoinTrader {
      * - 时间优先：同价格的限价单，先下单的优先成交
      * - 部分成交：如果限价单数量不足，可以部分成交
      * 
-     * 【为什么需要 synchronized？】
-     * - TreeMap 不是线程安全的
-     * - 需要保护整个撮合过程的原子性
-     * - 避免在遍历和修改订单簿时出现并发问题
-     * 
      * 【例子】
      * ```
      * 新订单：买入 BTC/USDT，市价单，金额 10000 USDT
@@ -812,93 +1113,68 @@ public class CoinTrader {
      * @param lpList 对手盘限价单队列（TreeMap<价格, MergeOrder>）
      * @param focusedOrder 市价单订单（待撮合的订单）
      */
-    private void matchMarketPriceWithLPList(TreeMap<BigDecimal, MergeOrder> lpList, OrderDTO focusedOrder) {
-        // ========== 第一步：初始化结果收集器 ==========
-        // 收集撮合过程中产生的成交记录和已完成订单
-        List<TradeRecordDTO> exchangeTrades = new ArrayList<>();  // 成交记录列表
-        List<OrderDTO> completedOrders = new ArrayList<>();  // 已完成订单列表
+    private void matchMarketPriceWithLPList(TreeMap<Long, MergeOrder> lpList, BookOrder focusedOrder) {
+        // ========== 第一步：遍历对手盘限价单队列进行撮合 ==========
+        // 每次取最优价格档位（按价格排序），成交、完成订单写入 tradeEvents，不创建迭代器和结果列表
+        // - 买单市价单：从卖盘最低价开始（价格从低到高）
+        // - 卖单市价单：从买盘最高价开始（价格从高到低）
+        boolean exitLoop = false;  // 退出循环标志（当市价单完全成交时退出）
         
-        // ========== 第二步：遍历对手盘限价单队列进行撮合 ==========
-        // 使用 synchronized 保护整个撮合过程
-        // 原因：TreeMap 不是线程安全的，需要保护遍历和修改操作的原子性
-        synchronized (lpList) {
-            // 获取订单簿的迭代器（按价格排序）
-            // - 买单市价单：从卖盘最低价开始（价格从低到高）
-            // - 卖单市价单：从买盘最高价开始（价格从高到低）
-            Iterator<Map.Entry<BigDecimal, MergeOrder>> mergeOrderIterator = lpList.entrySet().iterator();
-            boolean exitLoop = false;  // 退出循环标志（当市价单完全成交时退出）
+        // 遍历所有价格档位
+        while (!exitLoop && !lpList.isEmpty()) {
+            // 获取当前价格档位
+            Long bestPrice = lpList.firstKey();
+            MergeOrder mergeOrder = lpList.get(bestPrice);  // 该价格下的所有订单
             
-            // 遍历所有价格档位
-            while (!exitLoop && mergeOrderIterator.hasNext()) {
-                // 获取当前价格档位
-                Map.Entry<BigDecimal, MergeOrder> entry = mergeOrderIterator.next();
-                MergeOrder mergeOrder = entry.getValue();  // 该价格下的所有订单
+            // 遍历该价格下的所有订单（按时间排序，先到先成交）
+            BookOrder matchOrder = mergeOrder.get();
+            
+            while (matchOrder != null) {
+                // 完全成交的挂单会被移出队列，先取后继
+                BookOrder nextOrder = matchOrder.next;
                 
-                // 遍历该价格下的所有订单（按时间排序，先到先成交）
-                Iterator<OrderDTO> orderIterator = mergeOrder.iterator();
+                // ========== 第二步：执行撮合 ==========
+                // 调用 processMatch() 计算成交价格、数量，更新订单状态并记录成交
+                // 成交价格：以限价单的价格成交（价格优先）
+                processMatch(focusedOrder, matchOrder);
                 
-                while (orderIterator.hasNext()) {
-                    // 获取对手盘订单
-                    OrderDTO matchOrder = orderIterator.next();
-                    
-                    // ========== 第三步：执行撮合 ==========
-                    // 调用 processMatch() 计算成交价格、数量，并更新订单状态
-                    // 成交价格：以限价单的价格成交（价格优先）
-                    TradeRecordDTO trade = processMatch(focusedOrder, matchOrder);
-                    
-                    // 如果撮合成功，记录成交记录
-                    if (trade != null) {
-                        exchangeTrades.add(trade);
-                    }
-                    
-                    // ========== 第四步：处理已完成的对手盘订单 ==========
-                    // 如果对手盘订单完全成交，从订单簿中移除
-                    if (matchOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
-                        orderIterator.remove();  // 从 MergeOrder 中移除
-                        completedOrders.add(matchOrder);  // 记录已完成订单
-                    }
-                    
-                    // ========== 第五步：检查市价单是否完全成交 ==========
-                    // 如果市价单完全成交，退出循环
-                    if (focusedOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
-                        completedOrders.add(focusedOrder);
-                        exitLoop = true;  // 设置退出标志
-                        break;  // 退出内层循环
-                    }
+                // ========== 第三步：处理已完成的对手盘订单 ==========
+                // 如果对手盘订单完全成交，从订单簿中移除
+                if (matchOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
+                    mergeOrder.remove(matchOrder);  // 从 MergeOrder 中移除
+                    unindexOrder(matchOrder);
+                    completeOrder(matchOrder);  // 记录已完成订单
                 }
                 
-                // ========== 第六步：清理空的价格档位 ==========
-                // 如果该价格下没有订单了，移除整个价格档位
-                if (mergeOrder.size() == 0) {
-                    mergeOrderIterator.remove();  // 从订单簿中移除该价格档位
+                // ========== 第四步：检查市价单是否完全成交 ==========
+                // 如果市价单完全成交，退出循环
+                if (focusedOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
+                    completeOrder(focusedOrder);
+                    exitLoop = true;  // 设置退出标志
+                    break;  // 退出内层循环
                 }
+                matchOrder = nextOrder;
+            }
+            
+            // ========== 第五步：清理空的价格档位 ==========
+            // 如果该价格下没有订单了，移除整个价格档位；没有吃完只可能是市价单已完成
+            if (mergeOrder.size() > 0) {
+                break;
             }
+            lpList.remove(bestPrice);  // 从订单簿中移除该价格档位
         }
         
-        // ========== 第七步：处理未完全成交的市价单 ==========
+        // ========== 第六步：处理未完全成交的市价单 ==========
         // 如果市价单还有剩余，进入市价单队列等待后续撮合
-        BigDecimal remainingAmount = focusedOrder.getAmount().subtract(focusedOrder.getFilledAmount());
-        
         // 判断是否需要进入市价单队列：
         // - 卖单市价单：如果剩余数量 > 0，进入队列
         // - 买单市价单：如果已成交金额 < 订单金额，进入队列（买单市价单按金额计算）
-        if ((focusedOrder.getSide() == 2 && remainingAmount.compareTo(BigDecimal.ZERO) > 0)  // 卖单：剩余数量 > 0
-                || (focusedOrder.getSide() == 1 && focusedOrder.getFilledMoney().compareTo(focusedOrder.getAmount()) < 0)) {  // 买单：已成交金额 < 订单金额
+        // - 已完成（包括剩余金额不足最小成交单位）的订单不再入队
+        if (focusedOrder.getStatus() != 2
+                && ((focusedOrder.getSide() == 2 && focusedOrder.getRemainingAmount() > 0)  // 卖单：剩余数量 > 0
+                || (focusedOrder.getSide() == 1 && focusedOrder.getRemainingMoney() > 0))) {  // 买单：已成交金额 < 订单金额
             addMarketPriceOrder(focusedOrder);  // 添加到市价单队列
         }
-        
-        // ========== 第八步：发送撮合结果 ==========
-        // 发送成交记录到 MQ（由其他服务负责更新数据库和用户余额）
-        handleExchangeTrade(exchangeTrades);
-        
-        // 发送已完成订单通知到 MQ
-        if (completedOrders.size() > 0) {
-            orderCompleted(completedOrders);
-            
-            // 更新盘口信息并发送到 MQ（用于前端实时展示）
-            TradePlate plate = focusedOrder.getSide() == 1 ? sellTradePlate : buyTradePlate;
-            sendTradePlateMessage(plate);
-        }
     }
     
     /**
@@ -924,11 +1200,6 @@ public class CoinTrader {
      * - 价格优先：成交价格以限价单的价格为准
      * - 部分成交：如果市价单数量不足，可以部分成交
      * 
-     * 【为什么需要 synchronized？】
-     * - LinkedList 不是线程安全的
-     * - 需要保护遍历和修改操作的原子性
-     * - 避免在遍历和移除订单时出现并发问题
-     * 
      * 【例子】
      * ```
      * 新订单：买入 BTC/USDT，限价 50000，数量 1 BTC
@@ -957,273 +1228,785 @@ public class CoinTrader {
      * }
      * ```
      * 
-     * @param mpList 对手盘市价单队列（LinkedList<OrderDTO>，按时间排序，FIFO）
+     * @param mpList 对手盘市价单队列（MergeOrder，按时间排序，FIFO）
      * @param focusedOrder 限价单订单（待撮合的订单）
      */
-    private void matchLimitPriceWithMPList(LinkedList<OrderDTO> mpList, OrderDTO focusedOrder) {
-        // ========== 第一步：初始化结果收集器 ==========
-        // 收集撮合过程中产生的成交记录和已完成订单
-        List<TradeRecordDTO> exchangeTrades = new ArrayList<>();  // 成交记录列表
-        List<OrderDTO> completedOrders = new ArrayList<>();  // 已完成订单列表
+    private void matchLimitPriceWithMPList(MergeOrder mpList, BookOrder focusedOrder) {
+        // ========== 第一步：遍历对手盘市价单队列进行撮合 ==========
+        // 按时间顺序直接遍历队列（FIFO，先到先成交），成交、完成订单写入 tradeEvents
+        BookOrder matchOrder = mpList.get();
         
-        // ========== 第二步：遍历对手盘市价单队列进行撮合 ==========
-        // 使用 synchronized 保护整个撮合过程
-        // 原因：LinkedList 不是线程安全的，需要保护遍历和修改操作的原子性
-        synchronized (mpList) {
-            // 获取市价单队列的迭代器（按时间排序，FIFO，先到先成交）
-            Iterator<OrderDTO> iterator = mpList.iterator();
+        // 遍历所有市价单
+        while (matchOrder != null) {
+            // 完全成交的市价单会被移出队列，先取后继
+            BookOrder nextOrder = matchOrder.next;
             
-            // 遍历所有市价单
-            while (iterator.hasNext()) {
-                // 获取对手盘市价单
-                OrderDTO matchOrder = iterator.next();
-                
-                // ========== 第三步：执行撮合 ==========
-                // 调用 processMatch() 计算成交价格、数量，并更新订单状态
-                // 成交价格：以限价单的价格成交（价格优先）
-                TradeRecordDTO trade = processMatch(focusedOrder, matchOrder);
-                
-                // 如果撮合成功，记录成交记录
-                if (trade != null) {
-                    exchangeTrades.add(trade);
-                }
-                
-                // ========== 第四步：处理已完成的对手盘订单 ==========
-                // 如果对手盘市价单完全成交，从队列中移除
-                if (matchOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
-                    iterator.remove();  // 从市价单队列中移除
-                    completedOrders.add(matchOrder);  // 记录已完成订单
-                }
-                
-                // ========== 第五步：检查限价单是否完全成交 ==========
-                // 如果限价单完全成交，退出循环
-                if (focusedOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
-                    completedOrders.add(focusedOrder);
-                    break;  // 退出循环
-                }
+            // ========== 第二步：执行撮合 ==========
+            // 调用 processMatch() 计算成交价格、数量，更新订单状态并记录成交
+            // 成交价格：以限价单的价格成交（价格优先）
+            processMatch(focusedOrder, matchOrder);
+            
+            // ========== 第三步：处理已完成的对手盘订单 ==========
+            // 如果对手盘市价单完全成交，从队列中移除
+            if (matchOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
+                mpList.remove(matchOrder);  // 从市价单队列中移除
+                unindexOrder(matchOrder);
+                completeOrder(matchOrder);  // 记录已完成订单
             }
+            
+            // ========== 第四步：检查限价单是否完全成交 ==========
+            // 如果限价单完全成交，退出循环
+            if (focusedOrder.getStatus() == 2) {  // 2 = COMPLETED（完全成交）
+                completeOrder(focusedOrder);
+                break;  // 退出循环
+            }
+            matchOrder = nextOrder;
         }
         
-        // ========== 第六步：处理未完全成交的限价单 ==========
+        // ========== 第五步：处理未完全成交的限价单 ==========
         // 如果限价单还有剩余，进入限价单队列等待后续撮合
-        if (focusedOrder.getAmount().compareTo(focusedOrder.getFilledAmount()) > 0) {
+        if (focusedOrder.getRemainingAmount() > 0) {
             addLimitPriceOrder(focusedOrder);  // 添加到限价单队列
         }
-        
-        // ========== 第七步：发送撮合结果 ==========
-        // 发送成交记录到 MQ（由其他服务负责更新数据库和用户余额）
-        handleExchangeTrade(exchangeTrades);
-        
-        // 发送已完成订单通知到 MQ
-        orderCompleted(completedOrders);
     }
     
     /**
      * 分摊模式撮合
      * 用于抢购/分摊活动，按比例分配成交量
+     * 
+     * 【复杂度】
+     * 分摊基数（对手盘剩余总量）直接读取 buySideTotal / sellSideTotal，
+     * 只遍历价格范围内的档位，与订单簿总规模无关
      */
-    private void matchLimitPriceWithLPListByFENTAN(TreeMap<BigDecimal, MergeOrder> lpList, OrderDTO focusedOrder, boolean canEnterList) {
-        List<TradeRecordDTO> exchangeTrades = new ArrayList<>();
-        List<OrderDTO> completedOrders = new ArrayList<>();
+    private void matchLimitPriceWithLPListByFENTAN(TreeMap<Long, MergeOrder> lpList, BookOrder focusedOrder, boolean canEnterList) {
+        Iterator<Map.Entry<Long, MergeOrder>> mergeOrderIterator = lpList.entrySet().iterator();
+        boolean exitLoop = false;
+        
+        // 对手盘剩余总量（用于分摊比例，单位 lot），撮合开始前取值，本轮各挂单按同一基数分摊
+        long totalAmount = (focusedOrder.getSide() == 1 ? sellSideTotal : buySideTotal).getRemainingAmount();
         
-        synchronized (lpList) {
-            Iterator<Map.Entry<BigDecimal, MergeOrder>> mergeOrderIterator = lpList.entrySet().iterator();
-            boolean exitLoop = false;
+        while (!exitLoop && totalAmount > 0 && mergeOrderIterator.hasNext()) {
+            Map.Entry<Long, MergeOrder> entry = mergeOrderIterator.next();
+            MergeOrder mergeOrder = entry.getValue();
             
-            // 计算总量（用于分摊比例）
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            for (Map.Entry<BigDecimal, MergeOrder> entry : lpList.entrySet()) {
-                totalAmount = totalAmount.add(entry.getValue().getTotalAmount());
+            // 买入单需要匹配的价格不大于委托价
+            if (focusedOrder.getSide() == 1 && mergeOrder.getPrice() > focusedOrder.getPrice()) {
+                break;
+            }
+            // 卖出单需要匹配的价格不小于委托价
+            if (focusedOrder.getSide() == 2 && mergeOrder.getPrice() < focusedOrder.getPrice()) {
+                break;
             }
             
-            while (!exitLoop && mergeOrderIterator.hasNext()) {
-                Map.Entry<BigDecimal, MergeOrder> entry = mergeOrderIterator.next();
-                MergeOrder mergeOrder = entry.getValue();
-                Iterator<OrderDTO> orderIterator = mergeOrder.iterator();
+            BookOrder matchOrder = mergeOrder.get();
+            while (matchOrder != null) {
+                BookOrder nextOrder = matchOrder.next;
                 
-                // 买入单需要匹配的价格不大于委托价
-                if (focusedOrder.getSide() == 1 && mergeOrder.getPrice().compareTo(focusedOrder.getPrice()) > 0) {
-                    break;
-                }
-                // 卖出单需要匹配的价格不小于委托价
-                if (focusedOrder.getSide() == 2 && mergeOrder.getPrice().compareTo(focusedOrder.getPrice()) < 0) {
-                    break;
-                }
+                // 计算分摊成交量 = 发行总量 * 匹配单剩余数量占比（向下取整到 lot）
+                // 不超过双方剩余数量，避免超额成交
+                long tradedAmount = FixedPoint.mulDiv(focusedOrder.getAmount(), matchOrder.getRemainingAmount(), totalAmount);
+                tradedAmount = Math.min(tradedAmount, Math.min(matchOrder.getRemainingAmount(), focusedOrder.getRemainingAmount()));
                 
-                while (orderIterator.hasNext()) {
-                    OrderDTO matchOrder = orderIterator.next();
+                if (tradedAmount > 0) {
+                    long dealPrice = matchOrder.getPrice();
+                    long turnover = FixedPoint.mulDiv(tradedAmount, dealPrice, amountFactor);
                     
-                    // 计算分摊成交量 = 发行总量 * 匹配单数量占比
-                    BigDecimal ratio = matchOrder.getAmount().divide(totalAmount, 8, BigDecimal.ROUND_HALF_DOWN);
-                    BigDecimal tradedAmount = focusedOrder.getAmount().multiply(ratio).setScale(8, BigDecimal.ROUND_HALF_DOWN);
+                    // 更新订单
+                    matchOrder.fill(tradedAmount, turnover);
+                    focusedOrder.fill(tradedAmount, turnover);
                     
-                    if (tradedAmount.compareTo(BigDecimal.ZERO) > 0) {
-                        BigDecimal dealPrice = matchOrder.getPrice();
-                        BigDecimal turnover = tradedAmount.multiply(dealPrice).setScale(8, BigDecimal.ROUND_HALF_DOWN);
-                        
-                        // 更新订单
-                        matchOrder.setFilledAmount(matchOrder.getFilledAmount().add(tradedAmount));
-                        matchOrder.setFilledMoney(matchOrder.getFilledMoney().add(turnover));
-                        focusedOrder.setFilledAmount(focusedOrder.getFilledAmount().add(tradedAmount));
-                        focusedOrder.setFilledMoney(focusedOrder.getFilledMoney().add(turnover));
-                        
-                        // 创建成交记录
-                        TradeRecordDTO tradeRecord = new TradeRecordDTO();
-                        tradeRecord.setSymbol(symbol);
-                        tradeRecord.setPrice(dealPrice);
-                        tradeRecord.setAmount(tradedAmount);
-                        tradeRecord.setMoney(turnover);
-                        
-                        if (focusedOrder.getSide() == 1) {
-                            tradeRecord.setBuyOrderNo(focusedOrder.getOrderNo());
-                            tradeRecord.setSellOrderNo(matchOrder.getOrderNo());
-                            tradeRecord.setBuyUserId(focusedOrder.getUserId());
-                            tradeRecord.setSellUserId(matchOrder.getUserId());
-                        } else {
-                            tradeRecord.setBuyOrderNo(matchOrder.getOrderNo());
-                            tradeRecord.setSellOrderNo(focusedOrder.getOrderNo());
-                            tradeRecord.setBuyUserId(matchOrder.getUserId());
-                            tradeRecord.setSellUserId(focusedOrder.getUserId());
-                        }
-                        
-                        tradeRecord.setTradeTime(new java.util.Date());
-                        exchangeTrades.add(tradeRecord);
-                        
-                        // 判断是否完成
-                        if (matchOrder.getFilledAmount().compareTo(matchOrder.getAmount()) >= 0) {
-                            matchOrder.setStatus(2);
-                            orderIterator.remove();
-                            completedOrders.add(matchOrder);
-                        } else {
-                            matchOrder.setStatus(1);
-                        }
-                    }
+                    TradePlate plate = matchOrder.getSide() == 1 ? buyTradePlate : sellTradePlate;
+                    plate.remove(dealPrice, tradedAmount);
+                    
+                    // 记录成交
+                    recordFill(focusedOrder, matchOrder, dealPrice, tradedAmount, turnover);
                     
-                    // 判断焦点订单是否完成
-                    if (focusedOrder.getFilledAmount().compareTo(focusedOrder.getAmount()) >= 0) {
-                        focusedOrder.setStatus(2);
-                        completedOrders.add(focusedOrder);
-                        exitLoop = true;
-                        break;
+                    // 判断是否完成
+                    if (matchOrder.getStatus() == 2) {
+                        mergeOrder.remove(matchOrder);
+                        unindexOrder(matchOrder);
+                        completeOrder(matchOrder);
                     }
                 }
                 
-                if (mergeOrder.size() == 0) {
-                    mergeOrderIterator.remove();
+                // 判断焦点订单是否完成
+                if (focusedOrder.getStatus() == 2) {
+                    completeOrder(focusedOrder);
+                    exitLoop = true;
+                    break;
                 }
+                matchOrder = nextOrder;
+            }
+            
+            if (mergeOrder.size() == 0) {
+                mergeOrderIterator.remove();
             }
-        }
-        
-        // 处理成交结果
-        handleExchangeTrade(exchangeTrades);
-        
-        if (completedOrders.size() > 0) {
-            orderCompleted(completedOrders);
-            TradePlate plate = focusedOrder.getSide() == 1 ? sellTradePlate : buyTradePlate;
-            sendTradePlateMessage(plate);
         }
     }
     
     /**
-     * 发送成交结果到 MQ
+     * 记录一笔成交（批次结束时发送到 MQ，见 flushOutput）
      * 
      * 【作用】
-     * 将撮合产生的成交记录发送到 MQ，由其他服务（如 trade 模块）负责：
+     * 成交记录发送到 MQ，由其他服务（如 trade 模块）负责：
      * - 更新订单状态到数据库
      * - 更新用户余额
      * - 记录成交历史
      * 
      * 【内存处理】
      * - 撮合在内存中完成，不涉及数据库
+     * - 只写入预分配的 tradeEvents，TradeRecordDTO 在 flushOutput 中创建，撮合循环不分配对象
      * - 结果通过 MQ 异步发送，由其他服务负责落库
-     * - 这样设计可以保证撮合速度（微秒级）
+     * 
+     * @param focusedOrder 待撮合的订单
+     * @param matchOrder 对手盘订单
+     * @param dealPrice 成交价（tick）
+     * @param tradedAmount 成交数量（lot）
+     * @param turnover 成交金额（tick）
+     */
+    private void recordFill(BookOrder focusedOrder, BookOrder matchOrder, long dealPrice, long tradedAmount, long turnover) {
+        tradedSinceDepthPublish = true;
+        // 止损单按本条命令的成交价范围触发（见 triggerStopOrders）
+        tradeHighPrice = Math.max(tradeHighPrice, dealPrice);
+        tradeLowPrice = Math.min(tradeLowPrice, dealPrice);
+        if (streamBridge != null) {
+            tradeEvents.addFill(focusedOrder, matchOrder, dealPrice, tradedAmount, turnover, System.currentTimeMillis());
+        }
+    }
+    
+    /**
+     * 记录一笔完全成交的订单（批次结束时发送订单完成通知，见 flushOutput）
+     * 
+     * 【订单状态】
+     * - status = 2：完全成交（COMPLETED）
+     * 
+     * 订单已移出订单簿，成交进度不会再变化，发送时再写回 OrderDTO（见 toOrderDTO）
+     * 
+     * @param order 已完成的订单
+     */
+    private void completeOrder(BookOrder order) {
+        if (streamBridge != null) {
+            tradeEvents.addCompleted(order);
+        }
+    }
+    
+    /**
+     * 发送单个订单完成通知到 MQ（如精度不合法、交易暂停时被拒绝的订单）
+     * 
+     * @param order 已完成的订单
+     */
+    public void sendOrderCompleted(OrderDTO order) {
+        sendOrderCompleted(Collections.singletonList(order));
+    }
+    
+    /**
+     * 缓存订单完成通知（批次结束时发送到 MQ，见 flushOutput）
+     * 
+     * @param orders 已完成的订单列表
+     */
+    public void sendOrderCompleted(List<OrderDTO> orders) {
+        if (orders.size() > 0 && streamBridge != null) {
+            pendingCompletedOrders.addAll(orders);
+        }
+    }
+    
+    /**
+     * 发送本批命令缓存的成交结果、订单完成通知（定序器线程，每批命令结束时调用）
+     * 
+     * 【DTO 转换】
+     * 撮合过程中只记录了 tradeEvents，这里才创建 TradeRecordDTO、回写 OrderDTO（MQ 出口边界）
+     * 
+     * 【顺序】
+     * 1. trade-result-out：成交记录，先于订单完成通知发送，trade 模块先结算再关闭订单
+     * 2. order-completed-out：完全成交、已取消的订单
+     * 3. trade-plate-out：本批有成交时推送合并中的盘口增量，成交和盘口同时可见
+     * 4. 订单簿有变化时重新生成只读快照（不发送消息，见 publishBookSnapshot）
      * 
      * 【批量发送】
-     * - 如果成交记录数量 > 1000，分批发送（避免消息过大）
-     * - 每批最多 1000 条记录
-     * 
-     * @param trades 成交记录列表
-     */
-    private void handleExchangeTrade(List<TradeRecordDTO> trades) {
-        if (trades.size() > 0) {
-            int maxSize = 1000;
-            if (trades.size() > maxSize) {
-                int size = trades.size();
-                for (int index = 0; index < size; index += maxSize) {
-                    int length = (size - index) > maxSize ? maxSize : size - index;
-                    java.util.List<TradeRecordDTO> subTrades = trades.subList(index, index + length);
-                    // 发送到RocketMQ
-                    if (streamBridge != null) {
-                        streamBridge.send("trade-result-out", MessageBuilder.withPayload(JSON.toJSONString(subTrades)).build());
-                    }
-                }
-            } else {
-                if (streamBridge != null) {
-                    streamBridge.send("trade-result-out", MessageBuilder.withPayload(JSON.toJSONString(trades)).build());
-                }
+     * 每条消息最多 1000 条记录（避免消息过大）
+     */
+    public void flushOutput() {
+        if (!tradeEvents.isEmpty()) {
+            materializeTradeEvents();
+        }
+        if (!pendingTrades.isEmpty()) {
+            sendBatches("trade-result-out", pendingTrades, WireCodec::encodeTrades);
+            pendingTrades.clear();
+        }
+        if (!pendingCompletedOrders.isEmpty()) {
+            sendBatches("order-completed-out", pendingCompletedOrders, WireCodec::encodeOrders);
+            pendingCompletedOrders.clear();
+        }
+        if (depthDueOnFlush()) {
+            publishDepthUpdate();
+        }
+        if (bookSnapshotDirty) {
+            publishBookSnapshot();
+        }
+    }
+    
+    /**
+     * flushOutput 是否会推送合并中的盘口增量（本批有成交）
+     */
+    private boolean depthDueOnFlush() {
+        return tradedSinceDepthPublish && pendingDepthChanges > 0;
+    }
+    
+    /**
+     * 下一次 flushOutput 之后的盘口增量序号（定序器线程）
+     * 
+     * 主节点在发送本批结果之前复制命令，复制消息中要带上结果发出后的序号，
+     * 备节点接管时才能与主节点最后推送的增量对齐（见 SymbolSequencer.flushOutput）
+     */
+    public long getBookSequenceAfterFlush() {
+        boolean publishes = ready && depthDueOnFlush()
+                && (buyTradePlate.hasChanges() || sellTradePlate.hasChanges());
+        return publishes ? bookSequence + 1 : bookSequence;
+    }
+    
+    /**
+     * tradeEvents → TradeRecordDTO / OrderDTO（追加到待发送列表、最近成交后清空）
+     */
+    private void materializeTradeEvents() {
+        int fillCount = tradeEvents.fillCount();
+        for (int i = 0; i < fillCount; i++) {
+            TradeRecordDTO tradeRecord = createTradeRecord(tradeEvents.taker(i), tradeEvents.maker(i), tradeEvents.price(i),
+                    tradeEvents.amount(i), tradeEvents.turnover(i), tradeEvents.time(i));
+            pendingTrades.add(tradeRecord);
+            recentTrades.add(tradeRecord);
+            for (TradeFeed feed : tradeFeedArray) {
+                feed.add(tradeRecord);
             }
         }
+        int completedCount = tradeEvents.completedCount();
+        for (int i = 0; i < completedCount; i++) {
+            pendingCompletedOrders.add(toOrderDTO(tradeEvents.completed(i)));
+        }
+        tradeEvents.clear();
+    }
+    
+    private <T> void sendBatches(String bindingName, List<T> records, Function<List<T>, byte[]> binaryEncoder) {
+        int maxSize = 1000;
+        int size = records.size();
+        for (int index = 0; index < size; index += maxSize) {
+            List<T> subRecords = records.subList(index, Math.min(index + maxSize, size));
+            Message<?> message = binaryWire
+                    ? binaryMessage(binaryEncoder.apply(subRecords))
+                    : MessageBuilder.withPayload(JSON.toJSONString(subRecords)).build();
+            streamBridge.send(bindingName, message);
+        }
+    }
+    
+    private static Message<byte[]> binaryMessage(byte[] payload) {
+        return MessageBuilder.withPayload(payload).setHeader(MessageHeaders.CONTENT_TYPE, WireCodec.CONTENT_TYPE).build();
     }
     
     /**
-     * 发送订单完成通知到 MQ
+     * 发送盘口增量到 MQ
      * 
      * 【作用】
-     * 将已完成的订单（完全成交或已取消）发送到 MQ，通知其他服务更新订单状态。
+     * 只发送上次推送以来变化的档位，而不是整个盘口；推送时机见 onBookCommand。
      * 
-     * 【订单状态】
-     * - status = 2：完全成交（COMPLETED）
-     * - status = 3：已取消（CANCELED）
+     * 【消息格式】
+     * ```
+     * {"symbol":"BTC/USDT","seq":1025,"prevSeq":1024,
+     *  "bids":[[50000.00,1.20000000]],"asks":[[50001.00,0]]}
+     * ```
+     * - 档位数量是该价格在订单簿中的最新总量（不是变化量），0 表示档位已删除
+     * - seq 每条增量 +1，消费方发现 prevSeq 与本地序号不连续时，
+     *   调用 /matching/depth/snapshot 重新拉取快照，丢弃 seq <= 快照序号的增量
+     * - 开启二进制格式时内容相同，由 WireCodec.decodeDepthUpdate 解码
      * 
-     * 【内存处理】
-     * - 订单状态在内存中更新
-     * - 通过 MQ 异步通知其他服务更新数据库
+     * 【未就绪】
+     * 交易器未就绪（如启动加载订单）时不推送，丢弃变动记录，订单簿以快照为准
      * 
-     * @param orders 已完成的订单列表
+     * 【没有 StreamBridge】
+     * 备节点（接管之前）照常递增序号、清空变动记录，与主节点保持相同的序号，但不序列化增量
      */
-    private void orderCompleted(List<OrderDTO> orders) {
-        if (orders.size() > 0) {
-            int maxSize = 1000;
-            if (orders.size() > maxSize) {
-                int size = orders.size();
-                for (int index = 0; index < size; index += maxSize) {
-                    int length = (size - index) > maxSize ? maxSize : size - index;
-                    List<OrderDTO> subOrders = orders.subList(index, index + length);
-                    if (streamBridge != null) {
-                        streamBridge.send("order-completed-out", MessageBuilder.withPayload(JSON.toJSONString(subOrders)).build());
-                    }
-                }
-            } else {
-                if (streamBridge != null) {
-                    streamBridge.send("order-completed-out", MessageBuilder.withPayload(JSON.toJSONString(orders)).build());
+    public void publishDepthUpdate() {
+        lastDepthPublishNanos = System.nanoTime();
+        pendingDepthChanges = 0;
+        tradedSinceDepthPublish = false;
+        if (!buyTradePlate.hasChanges() && !sellTradePlate.hasChanges()) {
+            return;
+        }
+        if (!ready) {
+            buyTradePlate.clearChanges();
+            sellTradePlate.clearChanges();
+            return;
+        }
+        depthPublishedCount++;
+        long seq = ++bookSequence;
+        if (streamBridge == null) {
+            buyTradePlate.clearChanges();
+            sellTradePlate.clearChanges();
+            return;
+        }
+        if (binaryWire) {
+            WireWriter writer = WireCodec.beginDepthUpdate(symbol, seq, seq - 1);
+            buyTradePlate.writeChanges(writer);
+            sellTradePlate.writeChanges(writer);
+            writeGroupChanges(writer);
+            streamBridge.send("trade-plate-out", binaryMessage(writer.toByteArray()));
+            return;
+        }
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"symbol\":\"").append(symbol).append('"');
+        sb.append(",\"seq\":").append(seq);
+        sb.append(",\"prevSeq\":").append(seq - 1);
+        sb.append(",\"bids\":");
+        buyTradePlate.appendChanges(sb);
+        sb.append(",\"asks\":");
+        sellTradePlate.appendChanges(sb);
+        appendGroupChanges(sb);
+        sb.append('}');
+        streamBridge.send("trade-plate-out", MessageBuilder.withPayload(sb.toString()).build());
+    }
+    
+    /**
+     * 分组深度增量（JSON）：,"groups":[{"step":0.1,"bids":[...],"asks":[...]},...]，没有配置分组时不输出
+     */
+    private void appendGroupChanges(StringBuilder sb) {
+        int groupCount = depthGroupSteps.length;
+        if (groupCount == 0) {
+            return;
+        }
+        sb.append(",\"groups\":[");
+        for (int i = 0; i < groupCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"step\":").append(depthGroupSteps[i].toPlainString());
+            sb.append(",\"bids\":");
+            buyTradePlate.appendGroupChanges(i, sb);
+            sb.append(",\"asks\":");
+            sellTradePlate.appendGroupChanges(i, sb);
+            sb.append('}');
+        }
+        sb.append(']');
+    }
+    
+    /**
+     * 分组深度增量（二进制，见 WireCodec.decodeDepthUpdate）：varint 分组数 + 每组 [步长, 买盘档位, 卖盘档位]
+     */
+    private void writeGroupChanges(WireWriter writer) {
+        int groupCount = depthGroupSteps.length;
+        writer.writeVarInt(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            writer.writeDecimal(depthGroupSteps[i]);
+            buyTradePlate.writeGroupChanges(i, writer);
+            sellTradePlate.writeGroupChanges(i, writer);
+        }
+    }
+    
+    /**
+     * 命令处理完成后调用（定序器线程）：按合并策略决定立即推送还是延后
+     * 
+     * @param now 当前时间（System.nanoTime）
+     */
+    public void onBookCommand(long now) {
+        if (!buyTradePlate.hasChanges() && !sellTradePlate.hasChanges()) {
+            return;
+        }
+        bookSnapshotDirty = true;
+        pendingDepthChanges++;
+        long interval = depthPublishIntervalNanos;
+        int maxChanges = depthPublishMaxChanges;
+        if (interval <= 0
+                || (maxChanges > 0 && pendingDepthChanges >= maxChanges)
+                || now - lastDepthPublishNanos >= interval) {
+            publishDepthUpdate();
+        } else {
+            depthSuppressedCount++;
+        }
+    }
+    
+    /**
+     * 定序器空闲时调用：合并等待的盘口变化到期后推送
+     * 
+     * @param now 当前时间（System.nanoTime）
+     */
+    public void flushDepthIfDue(long now) {
+        if (pendingDepthChanges > 0 && now - lastDepthPublishNanos >= depthPublishIntervalNanos) {
+            publishDepthUpdate();
+        }
+    }
+    
+    /**
+     * 设置盘口增量合并策略
+     * 
+     * @param intervalMillis 最小推送间隔（毫秒），0 表示每条命令都推送
+     * @param maxChanges 累计多少条改变盘口的命令后立即推送，0 表示不按条数触发
+     */
+    public void setDepthPublishPolicy(long intervalMillis, int maxChanges) {
+        this.depthPublishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMillis, 0));
+        this.depthPublishMaxChanges = Math.max(maxChanges, 0);
+    }
+    
+    public long getDepthPublishIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(depthPublishIntervalNanos);
+    }
+    
+    public int getDepthPublishMaxChanges() {
+        return depthPublishMaxChanges;
+    }
+    
+    public long getDepthPublishedCount() {
+        return depthPublishedCount;
+    }
+    
+    public long getDepthSuppressedCount() {
+        return depthSuppressedCount;
+    }
+    
+    /**
+     * 获取深度快照（必须在定序器线程中调用，见 SymbolSequencer.query）
+     * 
+     * 【一致性】
+     * 快照在两条命令之间生成，sequence 即最近一条已推送增量的序号，
+     * 消费方用快照初始化本地订单簿后，只应用 seq > sequence 的增量
+     * 
+     * @param limit 每一侧最多返回的档位数
+     * @return 深度快照
+     */
+    public DepthSnapshotDTO getDepthSnapshot(int limit) {
+        return getDepthSnapshot(limit, -1);
+    }
+    
+    /**
+     * 生成深度快照（定序器线程）
+     * 
+     * @param group 分组下标（见 OrderBookSnapshot.groupIndexOf），-1 表示原始档位
+     */
+    public DepthSnapshotDTO getDepthSnapshot(int limit, int group) {
+        // 先推送合并中的变化，保证快照与序号一致
+        flushPendingDepth();
+        DepthSnapshotDTO snapshot = new DepthSnapshotDTO();
+        snapshot.setSymbol(symbol);
+        snapshot.setSequence(bookSequence);
+        if (group < 0) {
+            snapshot.setBids(snapshotLevels(buyLimitPriceQueue, limit));
+            snapshot.setAsks(snapshotLevels(sellLimitPriceQueue, limit));
+        } else {
+            snapshot.setStep(depthGroupSteps[group]);
+            snapshot.setBids(snapshotLevels(buyTradePlate.groupSnapshot(group, limit)));
+            snapshot.setAsks(snapshotLevels(sellTradePlate.groupSnapshot(group, limit)));
+        }
+        return snapshot;
+    }
+    
+    private static List<DepthLevelDTO> snapshotLevels(OrderBookSnapshot.Side side) {
+        List<DepthLevelDTO> levels = new ArrayList<>(side.getDepth());
+        for (int i = 0; i < side.getDepth(); i++) {
+            DepthLevelDTO level = new DepthLevelDTO();
+            level.setPrice(side.getPrice(i));
+            level.setAmount(side.getAmount(i));
+            levels.add(level);
+        }
+        return levels;
+    }
+    
+    private List<DepthLevelDTO> snapshotLevels(TreeMap<Long, MergeOrder> book, int limit) {
+        List<DepthLevelDTO> levels = new ArrayList<>(Math.min(limit, book.size()));
+        for (MergeOrder mergeOrder : book.values()) {
+            if (levels.size() >= limit) {
+                break;
+            }
+            long remaining = mergeOrder.getRemainingAmount();
+            if (remaining > 0) {
+                DepthLevelDTO level = new DepthLevelDTO();
+                level.setPrice(FixedPoint.toDecimal(mergeOrder.getPrice(), baseCoinScale));
+                level.setAmount(FixedPoint.toDecimal(remaining, coinScale));
+                levels.add(level);
+            }
+        }
+        return levels;
+    }
+    
+    public long getBookSequence() {
+        return bookSequence;
+    }
+    
+    /**
+     * 获取最近成交（任意线程调用，不经过定序器）
+     */
+    public RecentTradeBuffer getRecentTrades() {
+        return recentTrades;
+    }
+    
+    /**
+     * 设置最近成交的保留条数（只能在定序器启动之前调用，见 CoinTraderFactory.getTrader）
+     */
+    public void setRecentTradeCapacity(int capacity) {
+        this.recentTrades = new RecentTradeBuffer(capacity);
+    }
+    
+    /**
+     * 创建行情聚合的成交队列（只能在定序器启动之前调用，见 CoinTraderFactory.getTrader）
+     * 
+     * @param name 队列名称（TradeFeed.KLINE / TradeFeed.TICKER）
+     * @param capacity 未读取的成交上限
+     */
+    public void addTradeFeed(String name, int capacity) {
+        tradeFeeds.put(name, new TradeFeed(capacity));
+        this.tradeFeedArray = tradeFeeds.values().toArray(new TradeFeed[0]);
+    }
+    
+    /**
+     * 获取行情聚合的成交队列（任意线程调用，未创建时为 null）
+     */
+    public TradeFeed getTradeFeed(String name) {
+        return tradeFeeds.get(name);
+    }
+    
+    /**
+     * 开启 GTT 订单到期撤销（只能在定序器启动之前调用，见 CoinTraderFactory.getTrader）
+     * 
+     * @param tickMillis 时间轮刻度（毫秒）
+     */
+    public void setExpiryTickMillis(long tickMillis) {
+        this.expiryWheel = new OrderTimerWheel(tickMillis);
+    }
+    
+    /**
+     * 获取订单簿只读快照（任意线程调用，不经过定序器）
+     */
+    public OrderBookSnapshot getBookSnapshot() {
+        return bookSnapshot;
+    }
+    
+    /**
+     * 设置快照每一侧的档位数（下一次生成快照时生效）
+     */
+    public void setSnapshotLevels(int snapshotLevels) {
+        this.snapshotLevels = Math.max(snapshotLevels, 1);
+    }
+    
+    /**
+     * 生成并发布订单簿快照（定序器线程：批次结束时，以及恢复/加载订单簿之后）
+     * 
+     * 【成本】
+     * 只遍历每一侧的前 snapshotLevels 档（TreeMap 顺序遍历），与订单簿总档位数无关
+     */
+    public void publishBookSnapshot() {
+        OrderBookSnapshot previous = bookSnapshot;
+        int levels = snapshotLevels;
+        int groupCount = depthGroupSteps.length;
+        OrderBookSnapshot.Side[] groupBids = new OrderBookSnapshot.Side[groupCount];
+        OrderBookSnapshot.Side[] groupAsks = new OrderBookSnapshot.Side[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groupBids[i] = buyTradePlate.groupSnapshot(i, levels);
+            groupAsks[i] = sellTradePlate.groupSnapshot(i, levels);
+        }
+        bookSnapshot = new OrderBookSnapshot(symbol, previous.getVersion() + 1, System.currentTimeMillis(),
+                snapshotSide(buyLimitPriceQueue), snapshotSide(sellLimitPriceQueue),
+                depthGroupSteps, groupBids, groupAsks);
+        bookSnapshotDirty = false;
+    }
+    
+    /**
+     * 设置分组深度步长（交易器创建后、定序器启动之前调用，在 applyDepthGroups 时生效）
+     */
+    public void setDepthGroupSteps(List<BigDecimal> steps) {
+        this.configuredGroupSteps = steps == null ? Collections.emptyList() : new ArrayList<>(steps);
+    }
+    
+    /**
+     * 按价格精度生成分组深度（定序器线程：设置精度之后、恢复订单簿之前，见 CoinTraderFactory.warmStart）
+     * 
+     * 【步长】
+     * 步长换算成 tick，去重后从小到大排列；小于最小价格单位（不是 tick 整数倍）的步长忽略，
+     * 等于最小价格单位的步长就是原始盘口，不单独维护（查询时按原始档位返回，见 OrderBookSnapshot.groupIndexOf）。
+     * 已有订单时按订单簿重建，可以在任意时刻调用。
+     */
+    public void applyDepthGroups() {
+        TreeSet<Long> ticks = new TreeSet<>();
+        for (BigDecimal step : configuredGroupSteps) {
+            try {
+                long tick = FixedPoint.toLong(step, baseCoinScale);
+                if (tick > 1) {
+                    ticks.add(tick);
                 }
+            } catch (ArithmeticException e) {
+                log.warn("忽略分组深度步长（小于价格精度）: symbol={}, step={}", symbol, step.toPlainString());
             }
         }
+        long[] steps = new long[ticks.size()];
+        BigDecimal[] decimals = new BigDecimal[ticks.size()];
+        int index = 0;
+        for (long tick : ticks) {
+            steps[index] = tick;
+            BigDecimal step = FixedPoint.toDecimal(tick, baseCoinScale).stripTrailingZeros();
+            // 10 → 1E+1 时恢复成整数形式，输出时不出现指数
+            decimals[index] = step.scale() < 0 ? step.setScale(0) : step;
+            index++;
+        }
+        buyTradePlate.setGroupSteps(steps);
+        sellTradePlate.setGroupSteps(steps);
+        depthGroupSteps = decimals;
+        bookSnapshotDirty = true;
+        resetEmptySnapshot();
     }
     
     /**
-     * 发送盘口变化消息到 MQ
+     * 还没有发布过订单簿快照时，按当前精度、分组步长重建空快照（精度、分组变化时调用）
+     */
+    private void resetEmptySnapshot() {
+        OrderBookSnapshot current = bookSnapshot;
+        if (current == null || current.getVersion() == 0) {
+            bookSnapshot = OrderBookSnapshot.empty(symbol, baseCoinScale, coinScale, depthGroupSteps);
+        }
+    }
+    
+    private OrderBookSnapshot.Side snapshotSide(TreeMap<Long, MergeOrder> book) {
+        int capacity = Math.min(snapshotLevels, book.size());
+        long[] prices = new long[capacity];
+        long[] amounts = new long[capacity];
+        int[] orderCounts = new int[capacity];
+        int depth = 0;
+        for (MergeOrder mergeOrder : book.values()) {
+            if (depth == capacity) {
+                break;
+            }
+            long remaining = mergeOrder.getRemainingAmount();
+            if (remaining > 0) {
+                prices[depth] = mergeOrder.getPrice();
+                amounts[depth] = remaining;
+                orderCounts[depth] = mergeOrder.size();
+                depth++;
+            }
+        }
+        return new OrderBookSnapshot.Side(prices, amounts, orderCounts, depth, baseCoinScale, coinScale);
+    }
+    
+    /**
+     * 立即发送缓存的成交结果并推送合并中的盘口增量（深度快照、订单簿快照之前调用）
+     */
+    public void flushPendingDepth() {
+        flushOutput();
+        if (pendingDepthChanges > 0) {
+            publishDepthUpdate();
+        }
+    }
+    
+    /**
+     * 恢复盘口增量序号（启动恢复，见 BookJournal.recover）
+     */
+    public void restoreBookSequence(long bookSequence) {
+        this.bookSequence = bookSequence;
+    }
+    
+    /**
+     * 把快照中的订单直接放回订单簿（不撮合，不发送消息）
      * 
-     * 【作用】
-     * 当订单簿发生变化时（新增订单、订单成交、订单取消），更新盘口信息并发送到 MQ。
+     * 【注意】
+     * 必须按 forEachRestingOrder 的顺序放回，才能保持同价位的时间优先顺序
      * 
-     * 【盘口信息】
-     * - 买盘：显示前 N 档最优买价和数量
-     * - 卖盘：显示前 N 档最优卖价和数量
-     * - 用于前端实时展示（类似币安的盘口）
+     * @param order 快照中的订单（含成交进度）
+     */
+    public void restoreOrder(OrderDTO order) {
+        if (isStopOrder(order)) {
+            long triggerPrice = toTriggerPrice(order);
+            if (triggerPrice <= 0) {
+                log.error("快照止损单无法按当前精度恢复: orderNo={}", order.getOrderNo());
+                return;
+            }
+            stopOrderBook.add(order, triggerPrice);
+            scheduleStopExpiry(order);
+            return;
+        }
+        BookOrder bookOrder = toBookOrder(order);
+        if (bookOrder == null) {
+            log.error("快照订单无法按当前精度恢复: orderNo={}", order.getOrderNo());
+            return;
+        }
+        if (bookOrder.getOrderType() == 1) {  // LIMIT_PRICE
+            addLimitPriceOrder(bookOrder);
+        } else {
+            addMarketPriceOrder(bookOrder);
+        }
+    }
+    
+    /**
+     * 按撮合优先级遍历订单簿中的所有订单（必须在定序器线程中调用）
      * 
-     * 【为什么需要 synchronized？】
-     * - TradePlate 内部的数据结构不是线程安全的
-     * - 需要保护读取和发送的原子性
+     * 顺序：买盘限价（价格从高到低，同价位按时间）→ 卖盘限价 → 买入市价 → 卖出市价 → 未触发的止损单
      * 
-     * @param plate 盘口信息（买盘或卖盘）
+     * @param consumer 订单（已回写成交进度的 OrderDTO）
      */
-    private void sendTradePlateMessage(TradePlate plate) {
-        synchronized (plate) {
-            if (streamBridge != null) {
-                streamBridge.send("trade-plate-out", MessageBuilder.withPayload(JSON.toJSONString(plate)).build());
+    public void forEachRestingOrder(Consumer<OrderDTO> consumer) {
+        for (MergeOrder mergeOrder : buyLimitPriceQueue.values()) {
+            for (BookOrder order : mergeOrder) {
+                consumer.accept(toOrderDTO(order));
             }
         }
+        for (MergeOrder mergeOrder : sellLimitPriceQueue.values()) {
+            for (BookOrder order : mergeOrder) {
+                consumer.accept(toOrderDTO(order));
+            }
+        }
+        for (BookOrder order : buyMarketQueue) {
+            consumer.accept(toOrderDTO(order));
+        }
+        for (BookOrder order : sellMarketQueue) {
+            consumer.accept(toOrderDTO(order));
+        }
+        stopOrderBook.forEach(consumer);
+    }
+    
+    /**
+     * 用主节点的快照替换整个订单簿（备节点重新同步，定序器线程）
+     * 
+     * 【作用】
+     * 备节点发现复制序号缺口后不再重放命令，等主节点发来带命令序号的快照：
+     * 清空当前订单簿（不发送订单完成通知），按快照顺序放回订单，盘口序号以主节点为准。
+     * 
+     * @param orders 快照中的订单（按 forEachRestingOrder 的顺序）
+     * @param halt 主节点是否暂停交易
+     * @param bookSequence 主节点的盘口增量序号
+     */
+    public void replaceBook(List<OrderDTO> orders, boolean halt, long bookSequence) {
+        for (BookOrder order : new ArrayList<>(orderIndex.values())) {
+            unindexOrder(order);
+            removeFromBook(order, 3);  // 3 = CANCELED
+        }
+        List<OrderDTO> stops = new ArrayList<>(stopOrderBook.size());
+        stopOrderBook.forEach(stops::add);
+        for (OrderDTO stop : stops) {
+            stopOrderBook.remove(stop.getOrderNo());
+            cancelStopExpiry(stop);
+        }
+        for (OrderDTO order : orders) {
+            restoreOrder(order);
+        }
+        this.tradingHalt = halt;
+        // 丢弃清空、放回产生的盘口变动（备节点不推送，接管时序号跳过一位）
+        buyTradePlate.clearChanges();
+        sellTradePlate.clearChanges();
+        pendingDepthChanges = 0;
+        this.bookSequence = bookSequence;
+        publishBookSnapshot();
+    }
+    
+    /**
+     * 订单簿中的订单数（含未触发的止损单）
+     */
+    public int getRestingOrderCount() {
+        return orderIndex.size() + stopOrderBook.size();
+    }
+    
+    /**
+     * 一边的限价单队列（1 买盘 2 卖盘，定序器线程；核对剩余量合计用）
+     */
+    NavigableMap<Long, MergeOrder> getLimitPriceQueue(int side) {
+        return side == 1 ? buyLimitPriceQueue : sellLimitPriceQueue;
+    }
+    
+    /**
+     * 一边限价单的剩余量合计（1 买盘 2 卖盘，lot）
+     */
+    long getSideRemainingAmount(int side) {
+        return (side == 1 ? buySideTotal : sellSideTotal).getRemainingAmount();
     }
     
     /**
@@ -1233,19 +2016,16 @@ public class CoinTrader {
      * 从订单簿中移除指定的订单。
      * 
      * 【处理流程】
-     * 1. 判断订单类型（限价单/市价单）
-     * 2. 从对应的订单队列中查找订单
-     * 3. 移除订单
-     * 4. 更新盘口信息
+     * 1. 按订单号从 orderIndex 中取出订单（O(1)）
+     * 2. 从订单所在的 MergeOrder 中摘除（O(1)，侵入式链表）
+     * 3. 更新盘口信息
      * 
      * 【取消逻辑】
-     * - 限价单：从对应价格的 MergeOrder 中移除
+     * - 限价单：从对应价格的 MergeOrder 中移除，档位为空时移除档位
      * - 市价单：从市价单队列中移除
      * - 如果订单已部分成交，取消的是剩余未成交部分
-     * 
-     * 【为什么需要 synchronized？】
-     * - TreeMap 和 LinkedList 不是线程安全的
-     * - 需要保护查找和移除操作的原子性
+     * - 撤单请求只需要订单号和交易对，价格、方向以订单簿中的为准
+     * - 未触发的止损单：从触发簿中移除
      * 
      * @param exchangeOrder 要取消的订单
      * @return OrderDTO 被取消的订单对象（如果找到），null（如果未找到）
@@ -1253,69 +2033,220 @@ public class CoinTrader {
     public OrderDTO cancelOrder(OrderDTO exchangeOrder) {
         log.info("取消订单: {}", exchangeOrder.getOrderNo());
         
-        if (exchangeOrder.getOrderType() == 2) {  // MARKET_PRICE（市价单）
-            // ========== 处理市价单 ==========
-            // 从市价单队列中查找并移除
-            List<OrderDTO> list = exchangeOrder.getSide() == 1 ? buyMarketQueue : sellMarketQueue;
-            
-            // 使用 synchronized 保护查找和移除操作
-            synchronized (list) {
-                Iterator<OrderDTO> orderIterator = list.iterator();
-                while (orderIterator.hasNext()) {
-                    OrderDTO order = orderIterator.next();
-                    // 根据订单号匹配
-                    if (order.getOrderNo().equals(exchangeOrder.getOrderNo())) {
-                        orderIterator.remove();  // 从队列中移除
-                        onRemoveOrder(order);  // 更新盘口信息
-                        return order;
-                    }
-                }
+        // ========== 第一步：通过订单索引定位订单 ==========
+        // 不在索引中：订单已成交、已撤销、是未触发的止损单，或从未进入订单簿
+        BookOrder order = orderIndex.get(exchangeOrder.getOrderNo());
+        if (order == null) {
+            OrderDTO stopOrder = stopOrderBook.remove(exchangeOrder.getOrderNo());
+            if (stopOrder != null) {
+                cancelStopExpiry(stopOrder);
+                stopOrder.setStatus(3);  // 3 = CANCELED
             }
-        } else {
-            // ========== 处理限价单 ==========
-            // 从限价单队列中查找并移除
-            TreeMap<BigDecimal, MergeOrder> list = exchangeOrder.getSide() == 1 ? buyLimitPriceQueue : sellLimitPriceQueue;
-            
-            // 使用 synchronized 保护查找和移除操作
-            synchronized (list) {
-                // 根据价格获取 MergeOrder
-                MergeOrder mergeOrder = list.get(exchangeOrder.getPrice());
-                if (mergeOrder != null) {
-                    Iterator<OrderDTO> orderIterator = mergeOrder.iterator();
-                    while (orderIterator.hasNext()) {
-                        OrderDTO order = orderIterator.next();
-                        // 根据订单号匹配
-                        if (order.getOrderNo().equals(exchangeOrder.getOrderNo())) {
-                            orderIterator.remove();  // 从 MergeOrder 中移除
-                            
-                            // 如果该价格下没有订单了，移除整个 MergeOrder
-                            if (mergeOrder.size() == 0) {
-                                list.remove(exchangeOrder.getPrice());
-                            }
-                            
-                            onRemoveOrder(order);  // 更新盘口信息
-                            return order;
-                        }
-                    }
+            return stopOrder;  // 未触发的止损单，或未找到订单（null）
+        }
+        
+        unindexOrder(order);
+        return removeFromBook(order, 3);  // 3 = CANCELED
+    }
+    
+    /**
+     * 从订单簿中摘除订单并设置状态（已从索引中移除）
+     * 
+     * @param status 3 已撤销、4 超时
+     */
+    private OrderDTO removeFromBook(BookOrder order, int status) {
+        // ========== 第二步：从所在队列中摘除（O(1)） ==========
+        MergeOrder mergeOrder = order.level;
+        mergeOrder.remove(order);
+        
+        // 限价单：如果该价格下没有订单了，移除整个价格档位
+        if (order.getOrderType() == 1 && mergeOrder.size() == 0) {  // LIMIT_PRICE
+            TreeMap<Long, MergeOrder> list = order.getSide() == 1 ? buyLimitPriceQueue : sellLimitPriceQueue;
+            list.remove(order.getPrice());
+        }
+        
+        // ========== 第三步：更新盘口并返回 ==========
+        onRemoveOrder(order);  // 更新盘口信息
+        order.setStatus(status);
+        return toOrderDTO(order);
+    }
+    
+    /**
+     * 按用户批量撤单（一条命令撤销该用户在本交易对的全部挂单，可只撤一个方向）
+     * 
+     * 【作用】
+     * 做市商撤掉全部报价时不再逐笔发送撤单消息：由用户挂单索引直接取出订单（不遍历订单簿），
+     * 在一条定序命令中全部撤销，撤销的订单随本批命令合并成 order-completed-out 发送。
+     * 
+     * 【范围】
+     * 订单簿中的限价单、排队的市价单，以及未触发的止损单
+     * 
+     * @param request 撤单请求：userId 必填，side 为空时撤销两个方向
+     * @return 被撤销的订单（先订单簿中的订单，再止损单，各自按挂单顺序）
+     */
+    public List<OrderDTO> cancelUserOrders(OrderDTO request) {
+        if (request.getUserId() == null) {
+            return Collections.emptyList();
+        }
+        long userId = request.getUserId();
+        Integer side = request.getSide();
+        List<BookOrder> resting = new ArrayList<>(userOrderIndex.count(userId));
+        userOrderIndex.collect(userId, side, resting);
+        List<OrderDTO> canceled = new ArrayList<>(resting.size());
+        for (BookOrder order : resting) {
+            unindexOrder(order);
+            canceled.add(removeFromBook(order, 3));  // 3 = CANCELED
+        }
+        stopOrderBook.removeByUser(userId, side, canceled);
+        for (int i = resting.size(); i < canceled.size(); i++) {
+            cancelStopExpiry(canceled.get(i));
+        }
+        for (OrderDTO order : canceled) {
+            order.setStatus(3);  // 3 = CANCELED
+        }
+        log.info("按用户撤单: symbol={}, userId={}, side={}, canceled={}", symbol, userId, side, canceled.size());
+        return canceled;
+    }
+    
+    /**
+     * GTT 订单到达时是否已经到期（主节点下单前检查，已到期的订单不写日志、不撮合）
+     * 
+     * @param now 当前时间（毫秒）
+     */
+    public boolean isExpired(OrderDTO order, long now) {
+        return expiryWheel != null && order.getExpireTime() != null && order.getExpireTime() <= now;
+    }
+    
+    /**
+     * 时间轮是否需要推进（有 GTT 订单且进入了新的刻度）
+     * 
+     * @param now 当前时间（毫秒）
+     */
+    public boolean hasExpiryDue(long now) {
+        return expiryWheel != null && expiryWheel.isDue(now);
+    }
+    
+    /**
+     * 推进时间轮，取出到期的订单（还在订单簿中，由 expireDueOrders 撤销）
+     * 
+     * 【两步执行】
+     * 主节点只在有订单到期时才写入 EXPIRE 命令日志：先取出，写入成功后再撤销，
+     * 写入失败时放回时间轮（deferDueOrders），订单簿与日志保持一致
+     * 
+     * @param now 截止时间（毫秒）
+     * @return 到期的订单数
+     */
+    public int pollExpiredOrders(long now) {
+        return expiryWheel == null ? 0 : expiryWheel.advance(now, dueOrders);
+    }
+    
+    /**
+     * 撤销 pollExpiredOrders 取出的订单
+     * 
+     * @return 被撤销的订单（状态 4 = 超时）
+     */
+    public List<OrderDTO> expireDueOrders() {
+        if (dueOrders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<OrderDTO> expired = new ArrayList<>(dueOrders.size());
+        for (BookOrder order : dueOrders) {
+            if (stopTimers.get(order.getOrderNo()) == order) {
+                // 未触发的止损单
+                stopTimers.remove(order.getOrderNo());
+                OrderDTO stopOrder = stopOrderBook.remove(order.getOrderNo());
+                if (stopOrder != null) {
+                    stopOrder.setStatus(4);  // 4 = 超时
+                    expired.add(stopOrder);
                 }
+                continue;
             }
+            unindexOrder(order);
+            expired.add(removeFromBook(order, 4));  // 4 = 超时
+        }
+        dueOrders.clear();
+        log.info("GTT 订单到期撤销: symbol={}, expired={}", symbol, expired.size());
+        return expired;
+    }
+    
+    /**
+     * 放回 pollExpiredOrders 取出的订单（命令日志写入失败，下个刻度重试）
+     */
+    public void deferDueOrders() {
+        for (BookOrder order : dueOrders) {
+            expiryWheel.add(order);
+        }
+        dueOrders.clear();
+    }
+    
+    /**
+     * 撤销截止时间之前到期的订单（命令日志重放、备节点执行 EXPIRE 命令）
+     * 
+     * @param now 截止时间（毫秒，主节点写入日志的时间）
+     * @return 被撤销的订单（状态 4 = 超时）
+     */
+    public List<OrderDTO> expireOrders(long now) {
+        pollExpiredOrders(now);
+        return expireDueOrders();
+    }
+    
+    /**
+     * 未触发的止损单挂入到期时间轮（止损单不在订单簿中，用只携带订单号和到期时间的句柄）
+     */
+    private void scheduleStopExpiry(OrderDTO order) {
+        if (expiryWheel == null || order.getExpireTime() == null) {
+            return;
+        }
+        BookOrder handle = new BookOrder(order, 0L, 0L, 0L, 0L);
+        stopTimers.put(order.getOrderNo(), handle);
+        expiryWheel.add(handle);
+    }
+    
+    /**
+     * 止损单触发或撤销：摘除到期句柄
+     */
+    private void cancelStopExpiry(OrderDTO order) {
+        if (stopTimers.isEmpty()) {
+            return;
+        }
+        BookOrder handle = stopTimers.remove(order.getOrderNo());
+        if (handle != null) {
+            expiryWheel.remove(handle);
+        }
+    }
+    
+    /**
+     * 订单进入订单簿：加入订单索引、用户挂单索引、到期时间轮
+     */
+    private void indexOrder(BookOrder order) {
+        orderIndex.put(order.getOrderNo(), order);
+        userOrderIndex.add(order);
+        if (expiryWheel != null) {
+            expiryWheel.add(order);
+        }
+    }
+    
+    /**
+     * 订单离开订单簿（完全成交、撤单、到期）：从订单索引、用户挂单索引、到期时间轮中移除
+     */
+    private void unindexOrder(BookOrder order) {
+        orderIndex.remove(order.getOrderNo());
+        userOrderIndex.remove(order);
+        if (expiryWheel != null) {
+            expiryWheel.remove(order);
         }
-        return null;  // 未找到订单
     }
     
     /**
      * 从盘口移除订单
      */
-    private void onRemoveOrder(OrderDTO order) {
+    private void onRemoveOrder(BookOrder order) {
         if (order.getOrderType() == 1) {  // LIMIT_PRICE
             if (order.getSide() == 1) {  // BUY
-                buyTradePlate.remove(order);
-                sendTradePlateMessage(buyTradePlate);
+                buyTradePlate.remove(order.getPrice(), order.getRemainingAmount());
             } else {
-                sellTradePlate.remove(order);
-                sendTradePlateMessage(sellTradePlate);
+                sellTradePlate.remove(order.getPrice(), order.getRemainingAmount());
             }
         }
     }
 }
-
@@ -1,12 +1,40 @@
 package com.cex.matching.core;
 
+import com.alibaba.fastjson.JSON;
+import com.cex.common.codec.WireCodec;
+import com.cex.common.core.exception.BusinessException;
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.shard.SymbolShardRouter;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.domain.dto.LoadProgressDTO;
+import com.cex.matching.domain.dto.SequencerStatsDTO;
+import com.cex.matching.journal.BookJournal;
+import com.cex.matching.journal.JournalManager;
+import com.cex.matching.loader.OrderBookLoader;
+import com.cex.matching.metrics.MatchingMetrics;
+import com.cex.matching.replication.CommandReplicator;
+import com.cex.matching.sequencer.SequencerScheduler;
+import com.cex.matching.sequencer.SymbolSequencer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 币种交易器工厂（CoinTrader Factory）
@@ -43,6 +71,22 @@ import java.util.concurrent.ConcurrentMap;
  * - ConcurrentMap<String, CoinTrader>
  *   - Key: 交易对名称（如 "BTC/USDT"）
  *   - Value: 对应的 CoinTrader 实例
+ * - ConcurrentMap<String, SymbolSequencer>
+ *   - 每个交易器配一个定序器，所有修改订单簿的命令都经由定序器串行执行
+ *   - 开启 matching.scheduler 时定序器由 SequencerScheduler 分配到固定数量的工作线程上执行，
+ *     否则每个定序器一个线程
+ * 
+ * 【重启恢复】
+ * 创建交易器时先恢复订单簿（快照 + 命令日志，没有日志时从订单表加载），再设置就绪；
+ * 应用启动时对已知的交易对提前执行恢复，不等第一笔订单到达。
+ * 
+ * 【分片】
+ * 配置了 cex.shard.nodes 时，本节点（matching.node-id）只为路由到自己的交易对创建交易器
+ * （见 SymbolShardRouter），其余交易对的命令被拒绝。
+ * 
+ * 【主备】
+ * 开启 matching.replication 时，主节点把每个交易对接受的命令发送给备节点（见 CommandReplicator）；
+ * 备节点的交易器不设置 StreamBridge，只重放命令维护订单簿，接管（promote）后才开始输出。
  * 
  * @author cex
  */
@@ -51,6 +95,15 @@ import java.util.concurrent.ConcurrentMap;
 @RequiredArgsConstructor
 public class CoinTraderFactory {
     
+    /**
+     * 接管时盘口增量序号跳过的数量
+     * 
+     * 备节点对齐的是主节点最后一个复制批次发出结果之后的序号；之后主节点最多还能在空闲时推送一条合并中的增量
+     * （推送会清空合并计数，下一条增量需要新的命令），所以主节点发出的最大序号不超过对齐值 + 1。
+     * 跳过 2 保证新主节点的第一条增量的 prevSeq 大于旧主节点发出的任何序号，消费方一定会发现缺口。
+     */
+    private static final long PROMOTE_BOOK_SEQUENCE_GAP = 2;
+    
     /**
      * 所有交易器的缓存
      * 
@@ -64,11 +117,16 @@ public class CoinTraderFactory {
      * - 支持并发：多个交易对可以同时进行撮合
      * 
      * 【注意】
-     * 虽然用了 ConcurrentHashMap，但每个 CoinTrader 内部的订单簿操作还需要 synchronized
-     * 因为 ConcurrentHashMap 只保证 Map 本身的线程安全，不保证 Value 对象的线程安全
+     * ConcurrentHashMap 只保证 Map 本身的线程安全，CoinTrader 的订单簿不是线程安全的，
+     * 必须通过 getSequencer() 提交命令，不要在 MQ 线程中直接调用 trade()/cancelOrder()
      */
     private final ConcurrentMap<String, CoinTrader> traders = new ConcurrentHashMap<>();
     
+    /**
+     * 所有交易对的定序器（与 traders 一一对应）
+     */
+    private final ConcurrentMap<String, SymbolSequencer> sequencers = new ConcurrentHashMap<>();
+    
     /**
      * 消息发送桥接器
      * 
@@ -81,6 +139,72 @@ public class CoinTraderFactory {
      */
     private final StreamBridge streamBridge;
     
+    /** 撮合引擎配置 */
+    private final MatchingProperties matchingProperties;
+    
+    /** 命令日志管理 */
+    private final JournalManager journalManager;
+    
+    /** 订单簿启动加载器 */
+    private final OrderBookLoader orderBookLoader;
+    
+    /** 交易对 → 撮合节点路由 */
+    private final SymbolShardRouter shardRouter;
+    
+    /** 流水线延迟统计 */
+    private final MatchingMetrics matchingMetrics;
+    
+    /** 定序器工作线程调度 */
+    private final SequencerScheduler sequencerScheduler;
+    
+    /** 是否为备节点（接管后变为 false） */
+    private volatile boolean standby;
+    
+    /**
+     * 启动时预加载所有交易对（磁盘上已有日志的交易对 + trade_symbol 中正常状态的交易对）
+     * 
+     * 只创建交易器并启动定序器，恢复/加载在各自的定序器线程中并行执行，不阻塞应用启动；
+     * 加载进度见 getLoadProgress()
+     */
+    @PostConstruct
+    public void recover() {
+        if (shardRouter.isSharded() && matchingProperties.getNodeId() == null) {
+            throw new IllegalStateException("已配置 cex.shard.nodes，必须设置 matching.node-id");
+        }
+        MatchingProperties.Replication replication = matchingProperties.getReplication();
+        standby = replication.isEnabled() && "standby".equalsIgnoreCase(replication.getRole());
+        Set<String> symbols = new LinkedHashSet<>(journalManager.listSymbols());
+        symbols.addAll(orderBookLoader.listEnabledSymbols());
+        // 分片时只加载本节点的交易对（迁出的交易对保留日志目录，迁回时仍可恢复）
+        symbols.removeIf(symbol -> !ownsSymbol(symbol));
+        for (String symbol : symbols) {
+            getTrader(symbol);
+        }
+        log.info("启动预加载交易对: nodeId={}, symbols={}", matchingProperties.getNodeId(), symbols);
+    }
+    
+    /**
+     * 交易对是否由本节点撮合（未启用分片时总是 true）
+     */
+    public boolean ownsSymbol(String symbol) {
+        return !shardRouter.isSharded() || shardRouter.ownerOf(symbol).equals(matchingProperties.getNodeId());
+    }
+    
+    /**
+     * 拒绝不属于本节点的订单：直接发送已取消的订单完成通知，交易服务据此解冻资金
+     * 
+     * 【使用场景】
+     * 分片配置变更期间，按旧路由发出的订单到达了已不再负责该交易对的节点
+     */
+    public void rejectOrder(OrderDTO order) {
+        order.setStatus(3);  // 3 = CANCELED（已取消）
+        Message<?> message = "binary".equalsIgnoreCase(matchingProperties.getMq().getCodec())
+                ? MessageBuilder.withPayload(WireCodec.encodeOrder(order))
+                        .setHeader(MessageHeaders.CONTENT_TYPE, WireCodec.CONTENT_TYPE).build()
+                : MessageBuilder.withPayload(JSON.toJSONString(Collections.singletonList(order))).build();
+        streamBridge.send("order-completed-out", message);
+    }
+    
     /**
      * 获取或创建交易器
      * 
@@ -92,9 +216,9 @@ public class CoinTraderFactory {
      * 1. 检查 traders Map 中是否已有该交易对的 CoinTrader
      * 2. 如果存在，直接返回
      * 3. 如果不存在，创建新的 CoinTrader 实例
-     * 4. 设置 StreamBridge（用于发送撮合结果）
-     * 5. 设置交易器为就绪状态
-     * 6. 放入 Map 并返回
+     * 4. 创建并启动该交易对的定序器线程
+     * 5. 定序器线程先恢复订单簿（见 warmStart），再设置 StreamBridge 和就绪状态
+     * 6. 放入 Map 并返回（此时订单簿可能还在加载，期间的命令在队列中等待）
      * 
      * 【线程安全】
      * - computeIfAbsent() 是原子操作，保证线程安全
@@ -112,6 +236,7 @@ public class CoinTraderFactory {
      * 
      * @param symbol 交易对名称（如 "BTC/USDT"、"ETH/USDT"）
      * @return CoinTrader 对应的交易器实例
+     * @throws BusinessException 启用分片且交易对不属于本节点
      */
     public CoinTrader getTrader(String symbol) {
         // 使用 computeIfAbsent 实现懒加载
@@ -120,25 +245,326 @@ public class CoinTraderFactory {
         // ConcurrentHashMap + computeIfAbsent 保证所有线程（不只是同一个线程）拿到的都是同一个 CoinTrader 实例
         // computeIfAbsent() 是原子操作，即使多个线程同时调用，也只会创建一个实例
         return traders.computeIfAbsent(symbol, sym -> {
+            if (!ownsSymbol(sym)) {
+                throw new BusinessException("交易对不属于本撮合节点: " + sym + " → " + shardRouter.ownerOf(sym));
+            }
             // 创建新的 CoinTrader 实例
             // 每个 CoinTrader 管理一个交易对的所有订单簿
             CoinTrader trader = new CoinTrader(sym);
             
-            // 设置 StreamBridge，用于发送撮合结果
-            // CoinTrader 在撮合完成后会通过 StreamBridge 发送成交记录、订单完成通知等
-            if (streamBridge != null) {
-                trader.setStreamBridge(streamBridge);
+            // 盘口增量合并推送策略（可按交易对覆盖）
+            applyDepthPublishPolicy(trader);
+            // 最近成交保留条数
+            trader.setRecentTradeCapacity(matchingProperties.getRecentTrades().getCapacity());
+            // K线、24小时行情各自的成交队列（不读取 UI 用的最近成交环，不会被覆盖）
+            if (matchingProperties.getKline().isEnabled()) {
+                trader.addTradeFeed(TradeFeed.KLINE, matchingProperties.getKline().getFeedCapacity());
+            }
+            if (matchingProperties.getTicker().isEnabled()) {
+                trader.addTradeFeed(TradeFeed.TICKER, matchingProperties.getTicker().getFeedCapacity());
             }
+            // 输出消息格式（json / binary）
+            trader.setBinaryWire("binary".equalsIgnoreCase(matchingProperties.getMq().getCodec()));
+            // GTT 订单到期时间轮（备节点也维护，用于执行复制过来的 EXPIRE 命令）
+            MatchingProperties.Expiry expiry = matchingProperties.getExpiry();
+            if (expiry.isEnabled()) {
+                trader.setExpiryTickMillis(expiry.getTickMs());
+            }
+            
+            BookJournal journal = journalManager.isEnabled() ? journalManager.open(sym) : null;
             
-            // 设置交易器为就绪状态
-            // 只有就绪的交易器才能处理订单
-            trader.setReady(true);
+            // 创建定序器：该交易对的所有下单、撤单命令都由同一时刻唯一的执行线程按序执行
+            // 订单簿的恢复/加载在事件循环开始之前执行（不阻塞调用方，交易对之间并行），
+            // 期间到达的命令在环形队列中等待，加载完成后按顺序处理
+            SymbolSequencer sequencer = new SymbolSequencer(trader, matchingProperties.getSequencer().getRingSize(),
+                    matchingProperties.getSequencer().getMaxBatchSize(), journal);
+            if (isReplicating()) {
+                sequencer.setReplicator(new CommandReplicator(sym, streamBridge));
+            }
+            sequencer.setLatency(matchingMetrics.forSymbol(sym));
+            sequencer.setOrderExpiry(expiry.isEnabled() && !standby);
+            // 备节点收到主节点快照之前不重放命令（本地订单簿不一定与主节点一致）
+            sequencer.setReplicationStale(standby);
+            sequencers.put(sym, sequencer);
+            BookJournal bookJournal = journal;
+            if (sequencerScheduler.isEnabled()) {
+                sequencer.start(() -> warmStart(trader, bookJournal), sequencerScheduler);
+            } else {
+                sequencer.start(() -> warmStart(trader, bookJournal));
+            }
             
             log.info("创建交易器: {}", symbol);
             return trader;
         });
     }
     
+    /**
+     * 恢复订单簿并设置就绪（定序器线程或调度器的加载线程，事件循环开始之前）
+     * 
+     * 【订单簿来源】
+     * 1. 命令日志：有快照或日志时以日志为准（包含订单表中还没来得及更新的成交）
+     * 2. 订单表：没有日志时从交易服务的 trade_order（matching.loader.trade-schema）加载状态 0/1 的订单；
+     *    开启日志时立即生成一次快照，作为之后日志重放的起点
+     * 3. 都没有：空订单簿
+     * 
+     * 【失败重试】
+     * 失败后清空加载了一部分的订单簿，等待 retryBackoffMs（每次翻倍）后重新恢复，最多 retryAttempts 次；
+     * 重试期间交易器未就绪，订单被直接取消。重试用完后保持未就绪，可通过 reload 手动重新加载。
+     * 
+     * 【注意】
+     * 必须在设置 StreamBridge 之前恢复：重放产生的成交、订单完成在崩溃前已经发送过，不能重复发送。
+     * 恢复失败时交易器保持未就绪，订单会被直接取消，而不是和不完整的订单簿撮合。
+     */
+    private void warmStart(CoinTrader trader, BookJournal journal) {
+        MatchingProperties.Loader loader = matchingProperties.getLoader();
+        warmStart(trader, journal, Math.max(loader.getRetryAttempts(), 0), loader.getRetryBackoffMs());
+    }
+    
+    /**
+     * 恢复订单簿并设置就绪
+     * 
+     * @param retryAttempts 失败后的重试次数
+     * @param backoffMs 第一次重试前等待的时间（毫秒）
+     */
+    private void warmStart(CoinTrader trader, BookJournal journal, int retryAttempts, long backoffMs) {
+        String symbol = trader.getSymbol();
+        for (int attempt = 0; ; attempt++) {
+            orderBookLoader.begin(symbol);
+            try {
+                String source = recoverBook(trader, journal);
+                
+                // 恢复/加载的订单不经过批次结束的快照生成，这里发布第一份只读快照
+                trader.publishBookSnapshot();
+                
+                // 设置 StreamBridge，用于发送撮合结果
+                // CoinTrader 在撮合完成后会通过 StreamBridge 发送成交记录、订单完成通知等
+                // 备节点不输出（主节点已经发送过），接管时再设置
+                if (streamBridge != null && !standby) {
+                    trader.setStreamBridge(streamBridge);
+                }
+                
+                // 设置交易器为就绪状态
+                // 只有就绪的交易器才能处理订单
+                trader.setReady(true);
+                orderBookLoader.finish(symbol, source, trader.getRestingOrderCount());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                orderBookLoader.fail(symbol, e);
+                return;
+            } catch (Exception e) {
+                if (attempt >= retryAttempts) {
+                    orderBookLoader.fail(symbol, e);
+                    return;
+                }
+                log.warn("订单簿加载失败，{}ms 后重试: symbol={}, attempt={}/{}",
+                        backoffMs, symbol, attempt + 1, retryAttempts, e);
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                orderBookLoader.fail(symbol, e);
+                return;
+            }
+            backoffMs *= 2;
+            // 丢弃上一次加载了一部分的订单、止损单和暂停状态
+            trader.replaceBook(Collections.emptyList(), false, 0);
+        }
+    }
+    
+    /**
+     * 按日志 → 订单表 → 空订单簿的顺序恢复订单簿
+     * 
+     * @return 订单簿来源（JOURNAL / DATABASE / EMPTY）
+     */
+    private String recoverBook(CoinTrader trader, BookJournal journal) throws Exception {
+        // 精度必须在恢复订单之前设置
+        orderBookLoader.applySymbolConfig(trader);
+        // 分组深度按价格精度换算步长，恢复的订单同步计入
+        trader.applyDepthGroups();
+        
+        if (journal != null && journal.recover(trader)) {
+            return "JOURNAL";
+        }
+        if (orderBookLoader.isEnabled()) {
+            long loaded = orderBookLoader.loadFromDatabase(trader);
+            if (loaded > 0) {
+                // 丢弃加载产生的盘口变动，消费方通过深度快照初始化
+                trader.publishDepthUpdate();
+                if (journal != null) {
+                    journal.snapshotNow(trader);
+                }
+                return "DATABASE";
+            }
+        }
+        return "EMPTY";
+    }
+    
+    /**
+     * 重新加载未就绪的交易器（启动恢复的重试用完之后，由运维在排除故障后调用）
+     * 
+     * 【执行方式】
+     * 在定序器线程中（query）清空订单簿后执行一次恢复，不再重试；
+     * 加载期间该交易对的命令在队列中等待，开启 matching.scheduler 时同一工作线程上的其他交易对也要等待。
+     * 
+     * @param symbol 交易对名称
+     * @return 加载后是否就绪
+     * @throws BusinessException 交易对不存在或已经就绪
+     */
+    public CompletableFuture<Boolean> reload(String symbol) {
+        SymbolSequencer sequencer = sequencers.get(symbol);
+        if (sequencer == null) {
+            throw new BusinessException("交易对不存在");
+        }
+        if (sequencer.getTrader().isReady()) {
+            throw new BusinessException("交易对已就绪，不需要重新加载: " + symbol);
+        }
+        return sequencer.query(trader -> {
+            if (trader.isReady()) {
+                return Boolean.TRUE;
+            }
+            trader.replaceBook(Collections.emptyList(), false, 0);
+            warmStart(trader, sequencer.getJournal(), 0, 0);
+            return trader.isReady();
+        });
+    }
+    
+    /**
+     * 是否为备节点
+     */
+    public boolean isStandby() {
+        return standby;
+    }
+    
+    /**
+     * 本节点是否发送复制命令（开启复制的主节点，或已接管的备节点）
+     */
+    private boolean isReplicating() {
+        return matchingProperties.getReplication().isEnabled() && !standby && streamBridge != null;
+    }
+    
+    /**
+     * 备节点接管：所有交易器开始输出撮合结果，并作为新的主节点发送复制命令
+     * 
+     * 【执行方式】
+     * 在每个定序器线程中切换（query），保证切换点之前重放的命令都不输出、之后的命令都输出；
+     * 盘口增量序号跳过 PROMOTE_BOOK_SEQUENCE_GAP，消费方发现缺口后重新拉取深度快照，不会把两个节点的增量拼在一起。
+     * 
+     * @return 未在超时内完成切换的交易对
+     */
+    public List<String> promote() {
+        standby = false;
+        List<String> symbols = new ArrayList<>(sequencers.keySet());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            SymbolSequencer sequencer = sequencers.get(symbol);
+            futures.add(sequencer.query(trader -> {
+                trader.restoreBookSequence(trader.getBookSequence() + PROMOTE_BOOK_SEQUENCE_GAP);
+                if (streamBridge != null) {
+                    trader.setStreamBridge(streamBridge);
+                }
+                if (isReplicating()) {
+                    sequencer.setReplicator(new CommandReplicator(symbol, streamBridge));
+                }
+                sequencer.setOrderExpiry(matchingProperties.getExpiry().isEnabled());
+                sequencer.setReplicationStale(false);
+                return Boolean.TRUE;
+            }));
+        }
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.add(symbols.get(i));
+            } catch (Exception e) {
+                pending.add(symbols.get(i));
+            }
+        }
+        log.warn("备节点接管: symbols={}, pending={}", symbols.size(), pending);
+        return pending;
+    }
+    
+    /**
+     * 所有定序器（交易对 → 定序器，只读）
+     */
+    public ConcurrentMap<String, SymbolSequencer> getAllSequencers() {
+        return sequencers;
+    }
+    
+    /**
+     * 获取所有交易对的订单簿加载进度
+     */
+    public List<LoadProgressDTO> getLoadProgress() {
+        return orderBookLoader.getProgress();
+    }
+    
+    /**
+     * 获取交易对的定序器（不存在时创建交易器）
+     * 
+     * 【使用方式】
+     * ```java
+     * traderFactory.getSequencer("BTC/USDT").publishOrder(order);
+     * ```
+     * 
+     * @param symbol 交易对名称
+     * @return 定序器
+     */
+    public SymbolSequencer getSequencer(String symbol) {
+        getTrader(symbol);
+        return sequencers.get(symbol);
+    }
+    
+    /**
+     * 按配置设置交易器的盘口增量合并策略、只读快照档位数、分组深度步长
+     */
+    private void applyDepthPublishPolicy(CoinTrader trader) {
+        MatchingProperties.Depth depth = matchingProperties.getDepth();
+        long intervalMs = depth.getPublishIntervalMs();
+        int maxChanges = depth.getPublishMaxChanges();
+        List<BigDecimal> groupSteps = depth.getGroupSteps();
+        MatchingProperties.DepthPublish override = depth.getSymbols().get(trader.getSymbol());
+        if (override != null) {
+            if (override.getPublishIntervalMs() != null) {
+                intervalMs = override.getPublishIntervalMs();
+            }
+            if (override.getPublishMaxChanges() != null) {
+                maxChanges = override.getPublishMaxChanges();
+            }
+            if (override.getGroupSteps() != null) {
+                groupSteps = override.getGroupSteps();
+            }
+        }
+        trader.setDepthPublishPolicy(intervalMs, maxChanges);
+        trader.setSnapshotLevels(depth.getSnapshotLevels());
+        trader.setDepthGroupSteps(groupSteps);
+    }
+    
+    /**
+     * 运行时调整交易对的盘口增量合并策略
+     * 
+     * @param symbol 交易对
+     * @param intervalMillis 最小推送间隔（毫秒），0 表示每条命令都推送
+     * @param maxChanges 累计多少条改变盘口的命令后立即推送，0 表示不按条数触发
+     */
+    public void setDepthPublishPolicy(String symbol, long intervalMillis, int maxChanges) {
+        getTrader(symbol).setDepthPublishPolicy(intervalMillis, maxChanges);
+        log.info("调整盘口推送策略: symbol={}, intervalMs={}, maxChanges={}", symbol, intervalMillis, maxChanges);
+    }
+    
+    /**
+     * 获取所有定序器的统计信息
+     */
+    public List<SequencerStatsDTO> getSequencerStats() {
+        List<SequencerStatsDTO> stats = new ArrayList<>(sequencers.size());
+        for (SymbolSequencer sequencer : sequencers.values()) {
+            stats.add(sequencer.getStats());
+        }
+        return stats;
+    }
+    
     /**
      * 移除交易器
      * 
@@ -148,12 +574,18 @@ public class CoinTraderFactory {
      * 
      * 【注意】
      * 移除后，该交易对的订单簿数据会丢失（因为都在内存中）
-     * 通常需要先处理完所有订单再移除
+     * 通常需要先处理完所有订单再移除；开启命令日志时停止定序器会生成快照，
+     * 日志目录不删除的话下次启动仍会恢复该交易对
      * 
      * @param symbol 交易对名称
      */
     public void removeTrader(String symbol) {
+        SymbolSequencer sequencer = sequencers.remove(symbol);
+        if (sequencer != null) {
+            sequencer.shutdown();
+        }
         traders.remove(symbol);
+        matchingMetrics.remove(symbol);
         log.info("移除交易器: {}", symbol);
     }
     
@@ -169,5 +601,15 @@ public class CoinTraderFactory {
     public ConcurrentMap<String, CoinTrader> getAllTraders() {
         return traders;
     }
+    
+    /**
+     * 应用关闭时停止所有定序器（处理完已入队的命令）
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (SymbolSequencer sequencer : sequencers.values()) {
+            sequencer.shutdown();
+        }
+    }
 }
 
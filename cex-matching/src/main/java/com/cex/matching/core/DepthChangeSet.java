@@ -0,0 +1,60 @@
+package com.cex.matching.core;
+
+import java.util.Arrays;
+
+/**
+ * 盘口变动档位集合（增量深度推送用）
+ *
+ * 【作用】
+ * 记录一次命令处理过程中发生变化的价格档位（tick），推送增量时排序去重后逐个读取最新数量。
+ * 用原始类型数组实现，撮合过程中不产生装箱对象。
+ *
+ * @author cex
+ */
+final class DepthChangeSet {
+
+    private long[] prices = new long[16];
+
+    private int size;
+
+    /**
+     * 标记档位发生变化
+     */
+    void mark(long price) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size << 1);
+        }
+        prices[size++] = price;
+    }
+
+    /**
+     * 排序去重
+     *
+     * @return 去重后的档位数
+     */
+    int compact() {
+        if (size > 1) {
+            Arrays.sort(prices, 0, size);
+            int unique = 1;
+            for (int i = 1; i < size; i++) {
+                if (prices[i] != prices[unique - 1]) {
+                    prices[unique++] = prices[i];
+                }
+            }
+            size = unique;
+        }
+        return size;
+    }
+
+    long get(int index) {
+        return prices[index];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,204 @@
+package com.cex.matching.core;
+
+import com.cex.common.codec.WireWriter;
+import com.cex.common.enums.OrderDirection;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+/**
+ * 分组深度（按价格步长合并档位，如 0.1 / 1 / 10）
+ *
+ * 【分组规则】
+ * 档位价格按步长归入分组：买盘向下取整、卖盘向上取整，
+ * 分组价格不会比组内任何档位更优，买卖分组之间不会交叉。
+ *
+ * 【增量维护】
+ * 由 TradePlate 在每次档位数量变化（挂单、成交、撤单）时同步调用 add，
+ * 分组数量与订单簿完全一致，查询、推送不需要重新扫描订单簿汇总。
+ * 变化的分组与原始档位一样记录在 DepthChangeSet 中，随盘口增量一起推送。
+ *
+ * 【数据结构】
+ * 与 TradePlate 相同：两个按分组价格排序的 long 数组（prices/amounts），最优价在下标 0，
+ * 定位分组用二分查找，新增/删除分组只搬移原始类型数组，数量变化不创建对象。
+ * 分组保留全部（不截断到可见深度），容量不够时翻倍扩容。
+ *
+ * 【线程安全】
+ * 只由所属交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class DepthLadder {
+
+    /** 分组步长（tick） */
+    private final long step;
+
+    private final OrderDirection direction;
+
+    /** 初始容量（分组数） */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 分组价格（tick），按方向排序，最优价在前 */
+    private long[] prices = new long[INITIAL_CAPACITY];
+
+    /** 分组剩余量（lot） */
+    private long[] amounts = new long[INITIAL_CAPACITY];
+
+    /** 分组数 */
+    private int size;
+
+    /** 本次推送周期内发生变化的分组 */
+    private final DepthChangeSet changes = new DepthChangeSet();
+
+    DepthLadder(long step, OrderDirection direction) {
+        this.step = step;
+        this.direction = direction;
+    }
+
+    /**
+     * 档位数量变化
+     *
+     * @param price 档位价格（tick）
+     * @param delta 数量变化（lot），减少为负数
+     */
+    void add(long price, long delta) {
+        long group = group(price);
+        changes.mark(group);
+        int index = search(group);
+        if (index >= 0) {
+            amounts[index] += delta;
+            if (amounts[index] <= 0) {
+                System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+                System.arraycopy(amounts, index + 1, amounts, index, size - index - 1);
+                size--;
+            }
+            return;
+        }
+        if (delta <= 0) {
+            return;
+        }
+        index = -(index + 1);
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        System.arraycopy(prices, index, prices, index + 1, size - index);
+        System.arraycopy(amounts, index, amounts, index + 1, size - index);
+        prices[index] = group;
+        amounts[index] = delta;
+        size++;
+    }
+
+    /**
+     * 二分查找分组
+     *
+     * @return 找到返回下标；否则返回 -(插入位置 + 1)
+     */
+    private int search(long group) {
+        long key = rank(group);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = rank(prices[mid]);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 排序键：买盘价格越高越靠前，卖盘价格越低越靠前
+     */
+    private long rank(long price) {
+        return direction == OrderDirection.BUY ? -price : price;
+    }
+
+    /**
+     * 档位价格所属的分组价格
+     */
+    long group(long price) {
+        long floor = Math.floorDiv(price, step) * step;
+        return direction == OrderDirection.BUY || floor == price ? floor : floor + step;
+    }
+
+    /**
+     * 按订单簿重建（设置步长时调用，不记录变化）
+     */
+    void rebuild(NavigableMap<Long, MergeOrder> book) {
+        size = 0;
+        for (MergeOrder level : book.values()) {
+            long remaining = level.getRemainingAmount();
+            if (remaining > 0) {
+                add(level.getPrice(), remaining);
+            }
+        }
+        changes.clear();
+    }
+
+    long getStep() {
+        return step;
+    }
+
+    boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    void clearChanges() {
+        changes.clear();
+    }
+
+    /**
+     * 输出分组增量并清空变动记录（格式同 TradePlate.appendChanges）
+     */
+    void appendChanges(StringBuilder sb, int priceScale, int amountScale) {
+        int count = changes.compact();
+        sb.append('[');
+        for (int i = 0; i < count; i++) {
+            long group = changes.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('[');
+            FixedPoint.appendDecimal(sb, group, priceScale);
+            sb.append(',');
+            FixedPoint.appendDecimal(sb, amountOf(group), amountScale);
+            sb.append(']');
+        }
+        sb.append(']');
+        changes.clear();
+    }
+
+    /**
+     * 输出分组增量（二进制，格式同 TradePlate.writeChanges）并清空变动记录
+     */
+    void writeChanges(WireWriter writer, int priceScale, int amountScale) {
+        int count = changes.compact();
+        writer.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            long group = changes.get(i);
+            writer.writeDecimal(group, priceScale);
+            writer.writeDecimal(amountOf(group), amountScale);
+        }
+        changes.clear();
+    }
+
+    private long amountOf(long group) {
+        int index = search(group);
+        return index < 0 ? 0L : amounts[index];
+    }
+
+    /**
+     * 前 levels 个分组的只读快照（分组不统计订单数，订单数为 0）
+     */
+    OrderBookSnapshot.Side snapshot(int levels, int priceScale, int amountScale) {
+        int depth = Math.min(levels, size);
+        return new OrderBookSnapshot.Side(Arrays.copyOf(prices, depth), Arrays.copyOf(amounts, depth), new int[depth],
+                depth, priceScale, amountScale);
+    }
+}
@@ -0,0 +1,166 @@
+package com.cex.matching.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 定点数工具（撮合引擎内部的 long 价格/数量表示）
+ *
+ * 【作用】
+ * 撮合引擎内部不再使用 BigDecimal，而是把价格、数量按交易对精度放大成 long：
+ * - 价格：按 baseCoinScale（计价币精度）放大，单位为 tick
+ * - 数量：按 coinScale（交易币精度）放大，单位为 lot
+ * - 金额：按 baseCoinScale 放大，与价格同单位
+ *
+ * 【例子】
+ * ```
+ * coinScale = 8, baseCoinScale = 2
+ * 价格 50000.12 → 5000012（tick）
+ * 数量 0.5      → 50000000（lot）
+ * ```
+ *
+ * 【边界】
+ * 只有在 MQ 边界（OrderDTO 入、TradeRecordDTO/OrderDTO 出）才做 BigDecimal ↔ long 转换，
+ * 撮合循环内部只有 long 运算，不产生任何对象。
+ *
+ * @author cex
+ */
+public final class FixedPoint {
+
+    /** 10 的幂次表（10^0 ~ 10^18） */
+    private static final long[] POW10 = new long[19];
+
+    /** 分块除法要求除数小于 2^31，保证 (余数 << 32 | 块) 不溢出 */
+    private static final long CHUNK_DIVISOR_LIMIT = 1L << 31;
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * 获取 10^scale
+     *
+     * @param scale 精度（0 ~ 18）
+     * @return 10^scale
+     */
+    public static long pow10(int scale) {
+        if (scale < 0 || scale >= POW10.length) {
+            throw new IllegalArgumentException("不支持的精度: " + scale);
+        }
+        return POW10[scale];
+    }
+
+    /**
+     * BigDecimal → long（精确转换）
+     *
+     * 【注意】
+     * 如果数值的小数位超过 scale，或者放大后超出 long 范围，抛出 ArithmeticException，
+     * 由调用方拒绝该订单，而不是静默截断。
+     *
+     * @param value 原始数值（null 视为 0）
+     * @param scale 精度
+     * @return 放大后的 long 值
+     */
+    public static long toLong(BigDecimal value, int scale) {
+        if (value == null) {
+            return 0L;
+        }
+        return value.movePointRight(scale).longValueExact();
+    }
+
+    /**
+     * long → BigDecimal
+     *
+     * @param value 放大后的 long 值
+     * @param scale 精度
+     * @return BigDecimal 数值
+     */
+    public static BigDecimal toDecimal(long value, int scale) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    /**
+     * long → 十进制字符串（直接追加到 StringBuilder，不创建 BigDecimal）
+     *
+     * 【例子】
+     * ```
+     * appendDecimal(sb, 5000012, 2)  → "50000.12"
+     * appendDecimal(sb, 50000000, 8) → "0.50000000"
+     * ```
+     *
+     * @param sb 输出
+     * @param value 放大后的 long 值
+     * @param scale 精度
+     * @return sb
+     */
+    public static StringBuilder appendDecimal(StringBuilder sb, long value, int scale) {
+        long factor = pow10(scale);
+        if (scale == 0) {
+            return sb.append(value);
+        }
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return sb.append(toDecimal(value, scale).toPlainString());
+            }
+            sb.append('-');
+            value = -value;
+        }
+        sb.append(value / factor).append('.');
+        long fraction = value % factor;
+        // 小数部分补前导 0
+        for (long p = factor / 10; p > fraction && p > 1; p /= 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /**
+     * 计算 a * b / divisor（向下取整，要求参数均为非负数）
+     *
+     * 【为什么不能直接 a * b / divisor？】
+     * 价格 50000（8 位精度）= 5 * 10^12，数量 1（8 位精度）= 10^8，
+     * 乘积 5 * 10^20 已经超出 long 范围（约 9.2 * 10^18）。
+     *
+     * 【实现】
+     * 1. 乘积不溢出：直接相除
+     * 2. 乘积溢出且除数 < 2^31（例如 10^8 这类精度因子）：用 128 位乘积做分块除法，不产生对象
+     * 3. 其他情况（极少见，例如分摊模式下的大除数）：退化为 BigInteger 计算
+     *
+     * @param a 非负数
+     * @param b 非负数
+     * @param divisor 正数
+     * @return floor(a * b / divisor)
+     */
+    public static long mulDiv(long a, long b, long divisor) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        if (hi == 0 && lo >= 0) {
+            return lo / divisor;
+        }
+        if (divisor < CHUNK_DIVISOR_LIMIT) {
+            // 按 32 位分块从高到低做长除法，余数始终 < divisor < 2^31，不会溢出
+            long rem = 0;
+            long q3 = ((rem << 32) | (hi >>> 32)) / divisor;
+            rem = ((rem << 32) | (hi >>> 32)) % divisor;
+            long q2 = ((rem << 32) | (hi & 0xFFFFFFFFL)) / divisor;
+            rem = ((rem << 32) | (hi & 0xFFFFFFFFL)) % divisor;
+            long q1 = ((rem << 32) | (lo >>> 32)) / divisor;
+            rem = ((rem << 32) | (lo >>> 32)) % divisor;
+            long q0 = ((rem << 32) | (lo & 0xFFFFFFFFL)) / divisor;
+            if (q3 != 0 || q2 != 0 || (q1 >>> 31) != 0) {
+                throw new ArithmeticException("定点数乘除结果溢出");
+            }
+            return (q1 << 32) | q0;
+        }
+        return BigInteger.valueOf(a)
+                .multiply(BigInteger.valueOf(b))
+                .divide(BigInteger.valueOf(divisor))
+                .longValueExact();
+    }
+}
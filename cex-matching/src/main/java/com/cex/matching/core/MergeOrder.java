@@ -1,62 +1,183 @@
 package com.cex.matching.core;
 
-import com.cex.common.dto.OrderDTO;
-
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * 合并订单（同一价格的所有订单）
  *
+ * 【数据结构】
+ * 侵入式双向链表：前后指针直接保存在 BookOrder 上（prev/next/level），
+ * 按到达时间排序（时间优先），头部最先成交。
+ *
+ * 【复杂度】
+ * - 追加：O(1)
+ * - 移除任意订单（撤单、完全成交）：O(1)，不需要查找，也没有 ArrayList 的元素搬移
+ * - 剩余量合计：O(1)，追加、成交、移除时同步维护（见 BookOrder.fill），并汇总到所在一边的 BookSideTotal
+ *
+ * 市价单队列也使用本结构（价格为 0）。
+ *
  * @author cex
  */
-public class MergeOrder {
-    private final List<OrderDTO> orders = new ArrayList<>();
+public class MergeOrder implements Iterable<BookOrder> {
+
+    /** 价格（tick），市价单队列为 0 */
+    private final long price;
+
+    private BookOrder head;
+
+    private BookOrder tail;
+
+    private int size;
+
+    /** 剩余未成交总量（lot） */
+    private long remainingAmount;
+
+    /** 所在一边的剩余量合计（市价单队列为 null） */
+    private final BookSideTotal sideTotal;
+
+    public MergeOrder(long price) {
+        this(price, null);
+    }
+
+    MergeOrder(long price, BookSideTotal sideTotal) {
+        this.price = price;
+        this.sideTotal = sideTotal;
+    }
+
+    /**
+     * 添加订单（追加到队尾）
+     */
+    public void add(BookOrder order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        size++;
+        changeRemaining(order.getRemainingAmount());
+    }
+
+    /**
+     * 移除订单（O(1)）
+     *
+     * @return 是否移除成功（订单不在本队列时返回 false）
+     */
+    public boolean remove(BookOrder order) {
+        if (order.level != this) {
+            return false;
+        }
+        BookOrder prev = order.prev;
+        BookOrder next = order.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        order.prev = null;
+        order.next = null;
+        order.level = null;
+        size--;
+        changeRemaining(-order.getRemainingAmount());
+        return true;
+    }
 
     /**
-     * 添加订单
+     * 队列中的订单成交（由 BookOrder.fill 调用）
+     *
+     * @param tradedAmount 成交数量（lot）
      */
-    public void add(OrderDTO order) {
-        orders.add(order);
+    void onFill(long tradedAmount) {
+        changeRemaining(-tradedAmount);
+    }
+
+    private void changeRemaining(long delta) {
+        remainingAmount += delta;
+        if (sideTotal != null) {
+            sideTotal.add(delta);
+        }
     }
 
     /**
      * 获取第一个订单
      */
-    public OrderDTO get() {
-        return orders.get(0);
+    public BookOrder get() {
+        return head;
     }
 
     /**
      * 获取订单数量
      */
     public int size() {
-        return orders.size();
+        return size;
     }
 
     /**
-     * 获取价格（第一笔订单的价格）
+     * 获取价格（tick）
      */
-    public BigDecimal getPrice() {
-        return orders.get(0).getPrice();
+    public long getPrice() {
+        return price;
     }
 
     /**
-     * 获取迭代器
+     * 获取迭代器（按时间顺序，支持 remove）
      */
-    public Iterator<OrderDTO> iterator() {
-        return orders.iterator();
+    @Override
+    public Iterator<BookOrder> iterator() {
+        return new Iterator<BookOrder>() {
+            private BookOrder nextOrder = head;
+            private BookOrder lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return nextOrder != null;
+            }
+
+            @Override
+            public BookOrder next() {
+                if (nextOrder == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = nextOrder;
+                nextOrder = nextOrder.next;
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                MergeOrder.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
     }
 
     /**
-     * 获取总委托量
+     * 获取剩余未成交总量（lot），用于盘口回填、分摊撮合
      */
-    public BigDecimal getTotalAmount() {
-        return orders.stream()
-                .map(OrderDTO::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public long getRemainingAmount() {
+        return remainingAmount;
     }
-}
 
+    /**
+     * 获取总委托量（lot）
+     */
+    public long getTotalAmount() {
+        long total = 0;
+        for (BookOrder order = head; order != null; order = order.next) {
+            total += order.getAmount();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,195 @@
+package com.cex.matching.core;
+
+import com.cex.common.core.exception.BusinessException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 订单簿只读快照（前 N 档，不可变）
+ *
+ * 【发布方式】
+ * 由 CoinTrader 在定序器线程中每批命令处理完后生成（订单簿有变化时才生成），
+ * 写入 volatile 引用；查询线程只读取引用，不进入定序器队列，也不加锁，
+ * 一次深度查询的成本是一次引用读取加序列化。
+ *
+ * 【一致性】
+ * 快照对应某一批命令执行完后的订单簿；version 每发布一次 +1，
+ * 与盘口增量序号（seq）无关，需要与增量对齐时使用 /matching/depth/snapshot。
+ *
+ * 【内部表示】
+ * 每一侧三个等长的原始类型数组（价格 tick、剩余量 lot、订单数），最优价在下标 0，
+ * 构造后不再修改，可以在线程之间安全共享。
+ *
+ * 【分组深度】
+ * 配置了分组步长时（见 CoinTrader.applyDepthGroups），同时包含每个步长的前 N 个分组（订单数为 0），
+ * 由 TradePlate 增量维护的 DepthLadder 生成，与原始档位出自同一批命令之后的订单簿。
+ *
+ * @author cex
+ */
+public final class OrderBookSnapshot {
+
+    /** 交易对 */
+    private final String symbol;
+
+    /** 快照版本（每发布一次 +1） */
+    private final long version;
+
+    /** 生成时间（毫秒） */
+    private final long timestamp;
+
+    /** 买盘（价格从高到低） */
+    private final Side bids;
+
+    /** 卖盘（价格从低到高） */
+    private final Side asks;
+
+    /** 分组步长（从小到大） */
+    private final BigDecimal[] groupSteps;
+
+    /** 各分组步长的买盘 */
+    private final Side[] groupBids;
+
+    /** 各分组步长的卖盘 */
+    private final Side[] groupAsks;
+
+    OrderBookSnapshot(String symbol, long version, long timestamp, Side bids, Side asks) {
+        this(symbol, version, timestamp, bids, asks, new BigDecimal[0], new Side[0], new Side[0]);
+    }
+
+    OrderBookSnapshot(String symbol, long version, long timestamp, Side bids, Side asks,
+                      BigDecimal[] groupSteps, Side[] groupBids, Side[] groupAsks) {
+        this.symbol = symbol;
+        this.version = version;
+        this.timestamp = timestamp;
+        this.bids = bids;
+        this.asks = asks;
+        this.groupSteps = groupSteps;
+        this.groupBids = groupBids;
+        this.groupAsks = groupAsks;
+    }
+
+    /**
+     * 空快照（交易器创建后、第一次发布之前）
+     *
+     * 【精度、分组】
+     * 与交易器当前的价格精度、分组步长一致：groupIndexOf 按价格精度识别原始档位，
+     * 订单簿恢复之前的查询也能按配置的步长返回（空的）分组盘口
+     */
+    static OrderBookSnapshot empty(String symbol, int priceScale, int amountScale, BigDecimal[] groupSteps) {
+        Side side = new Side(new long[0], new long[0], new int[0], 0, priceScale, amountScale);
+        Side[] groups = new Side[groupSteps.length];
+        Arrays.fill(groups, side);
+        return new OrderBookSnapshot(symbol, 0, System.currentTimeMillis(), side, side, groupSteps, groups, groups);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Side getBids() {
+        return bids;
+    }
+
+    public Side getAsks() {
+        return asks;
+    }
+
+    /**
+     * 分组步长对应的下标
+     *
+     * @param step 分组步长
+     * @return -1 表示原始档位（step 为空或等于最小价格单位）
+     * @throws BusinessException 未配置该步长
+     */
+    public int groupIndexOf(BigDecimal step) {
+        if (step == null || step.compareTo(BigDecimal.ONE.movePointLeft(bids.priceScale)) == 0) {
+            return -1;
+        }
+        for (int i = 0; i < groupSteps.length; i++) {
+            if (groupSteps[i].compareTo(step) == 0) {
+                return i;
+            }
+        }
+        throw new BusinessException("不支持的深度分组步长: " + step.toPlainString());
+    }
+
+    /**
+     * 买盘
+     *
+     * @param group 分组下标（见 groupIndexOf），-1 表示原始档位
+     */
+    public Side getBids(int group) {
+        return group < 0 ? bids : groupBids[group];
+    }
+
+    /**
+     * 卖盘
+     *
+     * @param group 分组下标（见 groupIndexOf），-1 表示原始档位
+     */
+    public Side getAsks(int group) {
+        return group < 0 ? asks : groupAsks[group];
+    }
+
+    /**
+     * 订单簿的一侧
+     */
+    public static final class Side {
+
+        /** 档位价格（tick） */
+        private final long[] prices;
+
+        /** 档位剩余量（lot） */
+        private final long[] amounts;
+
+        /** 档位订单数 */
+        private final int[] orderCounts;
+
+        /** 有效档位数 */
+        private final int depth;
+
+        /** 价格精度 */
+        private final int priceScale;
+
+        /** 数量精度 */
+        private final int amountScale;
+
+        Side(long[] prices, long[] amounts, int[] orderCounts, int depth, int priceScale, int amountScale) {
+            this.prices = prices;
+            this.amounts = amounts;
+            this.orderCounts = orderCounts;
+            this.depth = depth;
+            this.priceScale = priceScale;
+            this.amountScale = amountScale;
+        }
+
+        /** 有效档位数 */
+        public int getDepth() {
+            return depth;
+        }
+
+        /** 第 index 档价格 */
+        public BigDecimal getPrice(int index) {
+            return FixedPoint.toDecimal(prices[index], priceScale);
+        }
+
+        /** 第 index 档剩余量 */
+        public BigDecimal getAmount(int index) {
+            return FixedPoint.toDecimal(amounts[index], amountScale);
+        }
+
+        /** 第 index 档订单数 */
+        public int getOrderCount(int index) {
+            return orderCounts[index];
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.cex.matching.core;
+
+import java.util.List;
+
+/**
+ * GTT 订单到期时间轮（分层）
+ *
+ * 【作用】
+ * 不再定期扫描 trade_order 查找到期订单：订单进入订单簿时按到期时间挂入时间轮，
+ * 成交、撤单离开订单簿时摘除，定序器每个刻度推进一次，取出到期的订单。
+ *
+ * 【结构】
+ * 8 层、每层 64 个槽位，第 n 层一个槽位覆盖 64^n 个刻度（刻度 100ms 时可覆盖数千年）。
+ * 到期刻度与当前刻度最高的不同位落在第几组（每组 6 位），订单就挂在第几层，
+ * 槽位为到期刻度在该层的 6 位；推进到某层槽位的起点时，把该槽位的订单重新挂到更低层（级联）。
+ * 槽位是 BookOrder 上的侵入式双向链表（timerPrev / timerNext），不创建节点对象。
+ *
+ * 【复杂度】
+ * - 挂入、摘除：O(1)
+ * - 推进：每个订单最多级联 7 次，均摊 O(1)；低层为空时直接跳到下一个高层槽位的起点，
+ *   长时间没有推进（如启动恢复后）也不会逐个刻度空转
+ *
+ * 【时间】
+ * 时间只由 advance 的参数决定，不读取系统时钟：命令日志重放、备节点按相同的截止时间推进，
+ * 取出的订单与主节点相同。到期时间早于当前刻度的订单（如已过期才触发的止损单）在下一次推进时取出。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class OrderTimerWheel {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final int LEVELS = 8;
+
+    /** 可表示的最大刻度 */
+    private static final long MAX_TICK = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /** 刻度（毫秒） */
+    private final long tickMillis;
+
+    /** 槽位链表头，下标为 层 * SLOTS + 槽位 */
+    private final BookOrder[] slots = new BookOrder[LEVELS * SLOTS];
+
+    /** 每层的订单数（推进时跳过空层） */
+    private final int[] levelCounts = new int[LEVELS];
+
+    private int size;
+
+    /** 下一个要处理的刻度 */
+    private long currentTick;
+
+    OrderTimerWheel(long tickMillis) {
+        this.tickMillis = Math.max(tickMillis, 1);
+    }
+
+    /**
+     * 挂入订单（订单有到期时间时）
+     */
+    void add(BookOrder order) {
+        long expireTime = order.getExpireTime();
+        if (expireTime <= 0 || order.timerSlot >= 0) {
+            return;
+        }
+        // 向上取整：到期时间所在的刻度处理完之后才取出，不会提前撤销
+        long tick = expireTime / tickMillis + (expireTime % tickMillis == 0 ? 0 : 1);
+        order.expireTick = Math.min(tick, MAX_TICK);
+        place(order);
+        size++;
+    }
+
+    /**
+     * 摘除订单（O(1)，不在时间轮中时忽略）
+     */
+    void remove(BookOrder order) {
+        if (order.timerSlot < 0) {
+            return;
+        }
+        unlink(order);
+        size--;
+    }
+
+    /**
+     * 是否需要推进（有订单且 now 已进入新的刻度）
+     *
+     * @param now 当前时间（毫秒）
+     */
+    boolean isDue(long now) {
+        return size > 0 && Math.floorDiv(now, tickMillis) >= currentTick;
+    }
+
+    /**
+     * 推进到 now 所在的刻度，取出到期的订单（从时间轮中摘除）
+     *
+     * @param now 截止时间（毫秒）
+     * @param expired 输出：到期的订单
+     * @return 到期的订单数
+     */
+    int advance(long now, List<BookOrder> expired) {
+        long target = Math.min(Math.floorDiv(now, tickMillis), MAX_TICK);
+        int count = 0;
+        while (currentTick <= target) {
+            if (size == 0) {
+                currentTick = target + 1;
+                break;
+            }
+            long tick = currentTick;
+            // 进入高层槽位的起点：从高到低把该槽位的订单挂到更低层
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = level * SLOT_BITS;
+                if (levelCounts[level] > 0 && (tick & ((1L << shift) - 1)) == 0) {
+                    cascade(level * SLOTS + (int) ((tick >>> shift) & SLOT_MASK));
+                }
+            }
+            int slot = (int) (tick & SLOT_MASK);
+            for (BookOrder order = slots[slot]; order != null; order = slots[slot]) {
+                unlink(order);
+                size--;
+                expired.add(order);
+                count++;
+            }
+            currentTick = nextTick(tick, target);
+        }
+        return count;
+    }
+
+    /**
+     * 下一个要处理的刻度：最低的非空层为第 n 层时，直接跳到下一个第 n 层槽位的起点
+     */
+    private long nextTick(long tick, long target) {
+        int lowest = 0;
+        while (lowest < LEVELS && levelCounts[lowest] == 0) {
+            lowest++;
+        }
+        if (lowest == 0) {
+            return tick + 1;
+        }
+        if (lowest == LEVELS) {
+            return target + 1;
+        }
+        int shift = lowest * SLOT_BITS;
+        return Math.min(((tick >>> shift) + 1) << shift, target + 1);
+    }
+
+    private void cascade(int slot) {
+        BookOrder order = slots[slot];
+        while (order != null) {
+            BookOrder next = order.timerNext;
+            unlink(order);
+            place(order);
+            order = next;
+        }
+    }
+
+    private void place(BookOrder order) {
+        long tick = Math.max(order.expireTick, currentTick);
+        long diff = tick ^ currentTick;
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+        int slot = level * SLOTS + (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        BookOrder head = slots[slot];
+        order.timerPrev = null;
+        order.timerNext = head;
+        if (head != null) {
+            head.timerPrev = order;
+        }
+        slots[slot] = order;
+        order.timerSlot = slot;
+        levelCounts[level]++;
+    }
+
+    private void unlink(BookOrder order) {
+        int slot = order.timerSlot;
+        BookOrder prev = order.timerPrev;
+        BookOrder next = order.timerNext;
+        if (prev == null) {
+            slots[slot] = next;
+        } else {
+            prev.timerNext = next;
+        }
+        if (next != null) {
+            next.timerPrev = prev;
+        }
+        order.timerPrev = null;
+        order.timerNext = null;
+        order.timerSlot = -1;
+        levelCounts[slot / SLOTS]--;
+    }
+
+    int size() {
+        return size;
+    }
+}
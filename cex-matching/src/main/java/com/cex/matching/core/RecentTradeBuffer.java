@@ -0,0 +1,113 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.TradeRecordDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 最近成交环形缓冲区（每个交易对一个，容量固定）
+ *
+ * 【作用】
+ * 保存最近 capacity 笔成交，供 /matching/trades 按时间倒序返回、RecentTradeMirror 同步到 Redis。
+ * 写满后覆盖最旧的成交，节点运行多久内存都不变；查询直接从最新位置往回读，不需要排序。
+ *
+ * 【线程安全】
+ * 单写多读：只由交易对的定序器线程写入（CoinTrader.flushOutput），查询线程不加锁读取。
+ * 槽位用 AtomicReferenceArray 发布，published 为已写入的成交总数；
+ * 读取后再检查 published，丢弃读取期间被写入方覆盖（或正在覆盖）的槽位。
+ *
+ * @author cex
+ */
+public final class RecentTradeBuffer {
+
+    /** 默认容量 */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /** 槽位（比容量多一个：正在写入的槽位不在可读范围内） */
+    private final AtomicReferenceArray<TradeRecordDTO> slots;
+
+    private final int capacity;
+
+    /** 已写入的成交总数（下一笔成交的序号） */
+    private volatile long published;
+
+    public RecentTradeBuffer(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.slots = new AtomicReferenceArray<>(this.capacity + 1);
+    }
+
+    /**
+     * 追加一笔成交（定序器线程）
+     */
+    void add(TradeRecordDTO tradeRecord) {
+        long sequence = published;
+        slots.set(index(sequence), tradeRecord);
+        published = sequence + 1;
+    }
+
+    /**
+     * 最近的成交，最新的在前
+     *
+     * @param limit 最多返回的条数
+     */
+    public List<TradeRecordDTO> latest(int limit) {
+        long end = published;
+        int count = (int) Math.min(Math.min(limit, capacity), end);
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        List<TradeRecordDTO> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(slots.get(index(end - 1 - i)));
+        }
+        // 读取期间被覆盖的是最旧的几条（列表末尾）
+        long oldest = published - capacity;
+        long valid = end - oldest;
+        if (valid < count) {
+            records.subList((int) Math.max(valid, 0), count).clear();
+        }
+        return records;
+    }
+
+    /**
+     * 读取序号 from 之后写入的成交（按时间顺序追加到 out）
+     *
+     * 落后超过容量时，从仍在缓冲区中的最旧成交开始
+     *
+     * @param from 上次读取返回的序号（第一次为 0）
+     * @param out 输出
+     * @return 下次读取的起始序号
+     */
+    public long readSince(long from, List<TradeRecordDTO> out) {
+        long end = published;
+        long start = Math.max(from, end - capacity);
+        int offset = out.size();
+        for (long sequence = start; sequence < end; sequence++) {
+            out.add(slots.get(index(sequence)));
+        }
+        // 读取期间被覆盖的是最旧的几条（本次输出的开头）
+        long overwritten = Math.min(published - capacity - start, end - start);
+        if (overwritten > 0) {
+            out.subList(offset, offset + (int) overwritten).clear();
+        }
+        return end;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % (capacity + 1));
+    }
+
+    /**
+     * 已写入的成交总数
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
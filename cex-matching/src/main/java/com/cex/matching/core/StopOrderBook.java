@@ -0,0 +1,171 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 止损单触发簿（每个交易对一个，与 CoinTrader 的订单簿并列）
+ *
+ * 【数据结构】
+ * - 买入止损：TreeMap<触发价, 订单>，触发价升序，最新成交价 >= 触发价时触发
+ * - 卖出止损：TreeMap<触发价, 订单>，触发价降序，最新成交价 <= 触发价时触发
+ * - 同一触发价按到达顺序排列（LinkedHashMap，撤单 O(1)）
+ * - orderIndex：订单号 → 触发价，撤单时定位
+ * - userOrders：用户ID → 该用户的止损单，按用户批量撤单时定位
+ *
+ * 【复杂度】
+ * 每批成交只需从两边头部取出已满足条件的档位：O(log n + k)，k 为触发的订单数，
+ * 与挂着的止损单总数无关。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class StopOrderBook {
+
+    /** 买入止损（触发价升序） */
+    private final TreeMap<Long, LinkedHashMap<String, OrderDTO>> buyStops = new TreeMap<>();
+
+    /** 卖出止损（触发价降序） */
+    private final TreeMap<Long, LinkedHashMap<String, OrderDTO>> sellStops = new TreeMap<>(Comparator.reverseOrder());
+
+    /** 订单号 → 触发价（tick） */
+    private final Map<String, Long> orderIndex = new HashMap<>();
+
+    /** 用户ID → 该用户的止损单（按到达顺序） */
+    private final Map<Long, LinkedHashMap<String, OrderDTO>> userOrders = new HashMap<>();
+
+    /**
+     * 挂入止损单
+     *
+     * @param triggerPrice 触发价（tick）
+     */
+    void add(OrderDTO order, long triggerPrice) {
+        TreeMap<Long, LinkedHashMap<String, OrderDTO>> stops = order.getSide() == 1 ? buyStops : sellStops;
+        stops.computeIfAbsent(triggerPrice, k -> new LinkedHashMap<>()).put(order.getOrderNo(), order);
+        orderIndex.put(order.getOrderNo(), triggerPrice);
+        if (order.getUserId() != null) {
+            userOrders.computeIfAbsent(order.getUserId(), k -> new LinkedHashMap<>()).put(order.getOrderNo(), order);
+        }
+    }
+
+    boolean contains(String orderNo) {
+        return orderIndex.containsKey(orderNo);
+    }
+
+    /**
+     * 撤销止损单
+     *
+     * @return 被撤销的订单；不在触发簿中时返回 null
+     */
+    OrderDTO remove(String orderNo) {
+        Long triggerPrice = orderIndex.remove(orderNo);
+        if (triggerPrice == null) {
+            return null;
+        }
+        OrderDTO order = remove(buyStops, triggerPrice, orderNo);
+        if (order == null) {
+            order = remove(sellStops, triggerPrice, orderNo);
+        }
+        if (order != null) {
+            removeUserOrder(order);
+        }
+        return order;
+    }
+
+    /**
+     * 撤销用户的全部止损单
+     *
+     * @param side 买卖方向（1买入 2卖出），null 表示两个方向
+     * @param canceled 输出：被撤销的订单（按到达顺序）
+     */
+    void removeByUser(long userId, Integer side, List<OrderDTO> canceled) {
+        LinkedHashMap<String, OrderDTO> orders = userOrders.get(userId);
+        if (orders == null) {
+            return;
+        }
+        List<OrderDTO> matched = new ArrayList<>(orders.size());
+        for (OrderDTO order : orders.values()) {
+            if (side == null || side.equals(order.getSide())) {
+                matched.add(order);
+            }
+        }
+        for (OrderDTO order : matched) {
+            canceled.add(remove(order.getOrderNo()));
+        }
+    }
+
+    private void removeUserOrder(OrderDTO order) {
+        if (order.getUserId() == null) {
+            return;
+        }
+        LinkedHashMap<String, OrderDTO> orders = userOrders.get(order.getUserId());
+        if (orders != null && orders.remove(order.getOrderNo()) != null && orders.isEmpty()) {
+            userOrders.remove(order.getUserId());
+        }
+    }
+
+    private static OrderDTO remove(TreeMap<Long, LinkedHashMap<String, OrderDTO>> stops, Long triggerPrice, String orderNo) {
+        LinkedHashMap<String, OrderDTO> level = stops.get(triggerPrice);
+        OrderDTO order = level != null ? level.remove(orderNo) : null;
+        if (order != null && level.isEmpty()) {
+            stops.remove(triggerPrice);
+        }
+        return order;
+    }
+
+    /**
+     * 取出被本批成交触发的止损单（从触发簿中移除）
+     *
+     * 先买入止损（触发价从低到高），再卖出止损（触发价从高到低），同一触发价按到达顺序
+     *
+     * @param highPrice 本批最高成交价（tick）
+     * @param lowPrice 本批最低成交价（tick）
+     * @param triggered 输出：触发的订单
+     */
+    void pollTriggered(long highPrice, long lowPrice, List<OrderDTO> triggered) {
+        while (!buyStops.isEmpty() && buyStops.firstKey() <= highPrice) {
+            drain(buyStops.pollFirstEntry().getValue(), triggered);
+        }
+        while (!sellStops.isEmpty() && sellStops.firstKey() >= lowPrice) {
+            drain(sellStops.pollFirstEntry().getValue(), triggered);
+        }
+    }
+
+    private void drain(LinkedHashMap<String, OrderDTO> level, List<OrderDTO> triggered) {
+        for (OrderDTO order : level.values()) {
+            orderIndex.remove(order.getOrderNo());
+            removeUserOrder(order);
+            triggered.add(order);
+        }
+    }
+
+    boolean isEmpty() {
+        return orderIndex.isEmpty();
+    }
+
+    int size() {
+        return orderIndex.size();
+    }
+
+    /**
+     * 按触发顺序遍历未触发的止损单（快照用）
+     */
+    void forEach(Consumer<OrderDTO> consumer) {
+        for (LinkedHashMap<String, OrderDTO> level : buyStops.values()) {
+            level.values().forEach(consumer);
+        }
+        for (LinkedHashMap<String, OrderDTO> level : sellStops.values()) {
+            level.values().forEach(consumer);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.cex.matching.core;
+
+import java.util.Arrays;
+
+/**
+ * 本批命令的成交事件缓冲区（每个交易对一个，预分配、重复使用）
+ *
+ * 【作用】
+ * 撮合循环中每笔成交只把吃单、挂单引用和成交价、量、额、时间写入并行数组，
+ * 完全成交的订单只记录引用；TradeRecordDTO、OrderDTO（BigDecimal、Date）
+ * 在批次结束发送时才创建（见 CoinTrader.flushOutput），撮合过程本身不分配对象。
+ *
+ * 【容量】
+ * 数组按需翻倍，清空时只重置计数（并释放订单引用），稳定后不再扩容。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class TradeEventBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 吃单（本次撮合的新订单） */
+    private BookOrder[] takers = new BookOrder[INITIAL_CAPACITY];
+
+    /** 挂单（订单簿中的对手单） */
+    private BookOrder[] makers = new BookOrder[INITIAL_CAPACITY];
+
+    /** 成交价（tick） */
+    private long[] prices = new long[INITIAL_CAPACITY];
+
+    /** 成交数量（lot） */
+    private long[] amounts = new long[INITIAL_CAPACITY];
+
+    /** 成交金额（tick） */
+    private long[] turnovers = new long[INITIAL_CAPACITY];
+
+    /** 成交时间（毫秒） */
+    private long[] times = new long[INITIAL_CAPACITY];
+
+    private int fillCount;
+
+    /** 完全成交的订单（按完成顺序） */
+    private BookOrder[] completed = new BookOrder[INITIAL_CAPACITY];
+
+    private int completedCount;
+
+    /**
+     * 记录一笔成交
+     */
+    void addFill(BookOrder taker, BookOrder maker, long price, long amount, long turnover, long time) {
+        if (fillCount == prices.length) {
+            int capacity = fillCount << 1;
+            takers = Arrays.copyOf(takers, capacity);
+            makers = Arrays.copyOf(makers, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            turnovers = Arrays.copyOf(turnovers, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        takers[fillCount] = taker;
+        makers[fillCount] = maker;
+        prices[fillCount] = price;
+        amounts[fillCount] = amount;
+        turnovers[fillCount] = turnover;
+        times[fillCount] = time;
+        fillCount++;
+    }
+
+    /**
+     * 记录一笔完全成交的订单
+     */
+    void addCompleted(BookOrder order) {
+        if (completedCount == completed.length) {
+            completed = Arrays.copyOf(completed, completedCount << 1);
+        }
+        completed[completedCount++] = order;
+    }
+
+    int fillCount() {
+        return fillCount;
+    }
+
+    BookOrder taker(int index) {
+        return takers[index];
+    }
+
+    BookOrder maker(int index) {
+        return makers[index];
+    }
+
+    long price(int index) {
+        return prices[index];
+    }
+
+    long amount(int index) {
+        return amounts[index];
+    }
+
+    long turnover(int index) {
+        return turnovers[index];
+    }
+
+    long time(int index) {
+        return times[index];
+    }
+
+    int completedCount() {
+        return completedCount;
+    }
+
+    BookOrder completed(int index) {
+        return completed[index];
+    }
+
+    boolean isEmpty() {
+        return fillCount == 0 && completedCount == 0;
+    }
+
+    /**
+     * 清空（释放订单引用，已移出订单簿的订单可以被回收）
+     */
+    void clear() {
+        Arrays.fill(takers, 0, fillCount, null);
+        Arrays.fill(makers, 0, fillCount, null);
+        Arrays.fill(completed, 0, completedCount, null);
+        fillCount = 0;
+        completedCount = 0;
+    }
+}
@@ -0,0 +1,125 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.TradeRecordDTO;
+
+import java.util.List;
+
+/**
+ * 行情聚合的成交队列（每个交易对、每个聚合器一个）
+ *
+ * 【作用】
+ * KlineAggregator、TickerAggregator 需要每一笔成交，不能用 RecentTradeBuffer 读取：
+ * 那是给 /matching/trades 用的固定容量环，聚合线程两次读取之间的成交超过容量（行情剧烈、GC 停顿）就被覆盖。
+ * 这里的成交在聚合线程读取之前不会被覆盖。
+ *
+ * 【结构】
+ * 单写单读的分块链表：定序器线程追加到尾块，写满 CHUNK_SIZE 条再接一个新块；聚合线程从头块读取，
+ * 读完的块不再被引用，由 GC 回收。内存与未读取的成交数成正比，不按容量预分配。
+ *
+ * 【上限】
+ * 未读取的成交达到 capacity 时（聚合线程卡住），新成交不再写入、只计数，定序器不会因此等待；
+ * 聚合线程下次读取时拿到丢弃的数量并记录告警。
+ *
+ * 【线程安全】
+ * written 由写入方发布（volatile），读取方读到 written 之后，之前写入的槽位和块链接都可见；
+ * consumed 由读取方发布，写入方据此计算积压量。
+ *
+ * @author cex
+ */
+public final class TradeFeed {
+
+    /** K线聚合 */
+    public static final String KLINE = "kline";
+
+    /** 24小时行情 */
+    public static final String TICKER = "ticker";
+
+    /** 每块的槽位数 */
+    static final int CHUNK_SIZE = 1024;
+
+    private final int capacity;
+
+    /** 写入方的当前块 */
+    private Chunk tail;
+
+    /** 读取方的当前块 */
+    private Chunk head;
+
+    /** 已写入的成交总数（写入方发布） */
+    private volatile long written;
+
+    /** 已读取的成交总数（读取方发布） */
+    private volatile long consumed;
+
+    /** 因积压达到上限丢弃的成交总数（写入方发布） */
+    private volatile long dropped;
+
+    /** 上次读取时的丢弃总数（只由读取方访问） */
+    private long droppedSeen;
+
+    public TradeFeed(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.tail = new Chunk();
+        this.head = tail;
+    }
+
+    /**
+     * 追加一笔成交（定序器线程）
+     */
+    void add(TradeRecordDTO tradeRecord) {
+        long sequence = written;
+        if (sequence - consumed >= capacity) {
+            dropped = dropped + 1;
+            return;
+        }
+        int index = (int) (sequence % CHUNK_SIZE);
+        if (index == 0 && sequence > 0) {
+            Chunk next = new Chunk();
+            tail.next = next;
+            tail = next;
+        }
+        tail.slots[index] = tradeRecord;
+        written = sequence + 1;
+    }
+
+    /**
+     * 取出所有未读取的成交（按时间顺序追加到 out，聚合线程）
+     *
+     * @param out 输出
+     * @return 上次读取以来因积压达到上限丢弃的成交数
+     */
+    public long drain(List<TradeRecordDTO> out) {
+        long end = written;
+        long sequence = consumed;
+        Chunk chunk = head;
+        for (; sequence < end; sequence++) {
+            int index = (int) (sequence % CHUNK_SIZE);
+            if (index == 0 && sequence > 0) {
+                chunk = chunk.next;
+            }
+            out.add(chunk.slots[index]);
+        }
+        head = chunk;
+        consumed = sequence;
+        long total = dropped;
+        long lost = total - droppedSeen;
+        droppedSeen = total;
+        return lost;
+    }
+
+    /**
+     * 未读取的成交数
+     */
+    public long getBacklog() {
+        return written - consumed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static final class Chunk {
+        final TradeRecordDTO[] slots = new TradeRecordDTO[CHUNK_SIZE];
+        Chunk next;
+    }
+}
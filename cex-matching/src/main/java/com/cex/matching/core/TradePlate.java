@@ -1,160 +1,406 @@
 package com.cex.matching.core;
 
-import com.cex.common.dto.OrderDTO;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.cex.common.codec.WireWriter;
 import com.cex.common.enums.OrderDirection;
-import com.cex.common.enums.OrderType;
-import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 
 /**
  * 盘口信息
  *
+ * 【内部表示】
+ * 价格、数量均为 long（tick/lot），精度由所属 CoinTrader 设置，
+ * 只有 JSON 序列化时才转换为十进制。
+ *
+ * 【数据结构】
+ * 两个按价格排序的 long 数组（prices/amounts），最优价在下标 0：
+ * - 买盘：价格从高到低
+ * - 卖盘：价格从低到高
+ * 定位档位用二分查找 O(log n)，插入/删除档位只搬移原始类型数组（System.arraycopy），不创建对象。
+ *
+ * 【深度回填】
+ * 盘口只保留 maxDepth 档。当更优的档位把最差一档挤出、或新档位超出可见深度时记为 truncated；
+ * 之后可见档位被删除时，从订单簿（book）中紧接着最后一个可见价格的档位回填，
+ * 保证盘口始终等于订单簿的前 maxDepth 档。
+ *
+ * 【增量推送】
+ * add/remove 同时记录变动的价格档位（包括不在可见深度内的档位），
+ * 由 CoinTrader 在每条命令处理完后输出 [价格, 档位最新总量] 增量，总量为 0 表示档位已删除。
+ *
+ * 【分组深度】
+ * 配置了分组步长时（见 setGroupSteps），add/remove 同时更新每个步长的 DepthLadder，
+ * 分组深度的查询、推送与原始盘口同步，不需要消费方自己重新汇总。
+ *
+ * 【线程安全】
+ * 只由所属交易对的定序器线程修改和序列化（见 SymbolSequencer），不加锁。
+ *
  * @author cex
  */
-@Data
 @Slf4j
 public class TradePlate {
-    /** 盘口数据 */
-    private LinkedList<TradePlateItem> items;
+    /** 默认最大深度 */
+    public static final int DEFAULT_MAX_DEPTH = 100;
+
     /** 最大深度 */
-    private int maxDepth = 100;
+    private final int maxDepth;
     /** 方向 */
-    private OrderDirection direction;
+    private final OrderDirection direction;
     /** 交易对 */
-    private String symbol;
+    private final String symbol;
+    /** 价格精度（计价币精度） */
+    private int priceScale = 8;
+    /** 数量精度（交易币精度） */
+    private int amountScale = 8;
 
-    public TradePlate() {
-        this.items = new LinkedList<>();
+    /** 档位价格（tick），按方向排序，最优价在前 */
+    private final long[] prices;
+    /** 档位数量（lot） */
+    private final long[] amounts;
+    /** 当前可见档位数 */
+    private int size;
+    /** 订单簿中是否还有超出可见深度的档位 */
+    private boolean truncated;
+    /** 本次命令中发生变化的档位 */
+    private final DepthChangeSet changes = new DepthChangeSet();
+    /** 分组深度（按步长从小到大） */
+    private DepthLadder[] ladders = new DepthLadder[0];
+
+    /** 对应方向的订单簿（用于回填），迭代顺序与盘口顺序一致 */
+    private final NavigableMap<Long, MergeOrder> book;
+
+    public TradePlate(String symbol, OrderDirection direction, NavigableMap<Long, MergeOrder> book) {
+        this(symbol, direction, book, DEFAULT_MAX_DEPTH);
     }
 
-    public TradePlate(String symbol, OrderDirection direction) {
+    public TradePlate(String symbol, OrderDirection direction, NavigableMap<Long, MergeOrder> book, int maxDepth) {
         this.symbol = symbol;
         this.direction = direction;
-        this.items = new LinkedList<>();
+        this.book = book;
+        this.maxDepth = maxDepth;
+        this.prices = new long[maxDepth];
+        this.amounts = new long[maxDepth];
     }
 
     /**
      * 添加订单到盘口
+     *
+     * @param price 价格（tick）
+     * @param amount 剩余未成交数量（lot）
+     * @return 是否在可见深度内
      */
-    public boolean add(OrderDTO exchangeOrder) {
-        synchronized (items) {
-            int index = 0;
-            
-            // 市价单不加入盘口
-            if (exchangeOrder.getOrderType() == 2) {  // MARKET_PRICE
-                return false;
-            }
-            
-            // 方向不一致不加入
-            if (!directionMatches(exchangeOrder.getSide())) {
-                return false;
+    public boolean add(long price, long amount) {
+        changes.mark(price);
+        for (DepthLadder ladder : ladders) {
+            ladder.add(price, amount);
+        }
+        int index = search(price);
+        if (index >= 0) {
+            // 相同价格，合并数量
+            amounts[index] += amount;
+            return true;
+        }
+
+        index = -(index + 1);
+        if (index >= maxDepth) {
+            // 超出可见深度，留在订单簿中，等待回填
+            truncated = true;
+            return false;
+        }
+        if (size == maxDepth) {
+            // 最差一档被挤出可见深度
+            size--;
+            truncated = true;
+        }
+        System.arraycopy(prices, index, prices, index + 1, size - index);
+        System.arraycopy(amounts, index, amounts, index + 1, size - index);
+        prices[index] = price;
+        amounts[index] = amount;
+        size++;
+        return true;
+    }
+
+    /**
+     * 从盘口移除数量
+     *
+     * 【注意】
+     * 调用前订单簿中对应订单的成交量/撤单必须已经生效，回填读取的是订单簿的当前剩余量
+     *
+     * @param price 价格（tick）
+     * @param amount 移除数量（lot）
+     */
+    public void remove(long price, long amount) {
+        changes.mark(price);
+        for (DepthLadder ladder : ladders) {
+            ladder.add(price, -amount);
+        }
+        int index = search(price);
+        if (index < 0) {
+            // 不在可见深度内
+            return;
+        }
+        amounts[index] -= amount;
+        if (amounts[index] <= 0) {
+            System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+            System.arraycopy(amounts, index + 1, amounts, index, size - index - 1);
+            size--;
+            if (truncated) {
+                refill();
             }
+        }
+    }
 
-            if (items.size() > 0) {
-                for (index = 0; index < items.size(); index++) {
-                    TradePlateItem item = items.get(index);
-                    
-                    // 买单：价格高的在前面
-                    // 卖单：价格低的在前面
-                    if (direction == OrderDirection.BUY && item.getPrice().compareTo(exchangeOrder.getPrice()) > 0
-                            || direction == OrderDirection.SELL && item.getPrice().compareTo(exchangeOrder.getPrice()) < 0) {
-                        continue;
-                    } else if (item.getPrice().compareTo(exchangeOrder.getPrice()) == 0) {
-                        // 相同价格，合并数量
-                        BigDecimal deltaAmount = exchangeOrder.getAmount().subtract(exchangeOrder.getFilledAmount());
-                        item.setAmount(item.getAmount().add(deltaAmount));
-                        return true;
-                    } else {
-                        break;
-                    }
-                }
+    /**
+     * 从订单簿回填可见深度
+     *
+     * 只读取最后一个可见价格之后的档位，已可见的档位由 add/remove 增量维护
+     */
+    private void refill() {
+        NavigableMap<Long, MergeOrder> levels = size == 0 ? book : book.tailMap(prices[size - 1], false);
+        for (MergeOrder level : levels.values()) {
+            if (size == maxDepth) {
+                return;
             }
-            
-            // 添加到合适位置
-            if (index < maxDepth) {
-                TradePlateItem newItem = new TradePlateItem();
-                newItem.setAmount(exchangeOrder.getAmount().subtract(exchangeOrder.getFilledAmount()));
-                newItem.setPrice(exchangeOrder.getPrice());
-                items.add(index, newItem);
+            long remaining = level.getRemainingAmount();
+            if (remaining > 0) {
+                prices[size] = level.getPrice();
+                amounts[size] = remaining;
+                size++;
             }
         }
-        return true;
+        truncated = false;
     }
 
     /**
-     * 从盘口移除订单
+     * 二分查找档位
+     *
+     * @return 找到返回下标；否则返回 -(插入位置 + 1)
      */
-    public void remove(OrderDTO order, BigDecimal amount) {
-        synchronized (items) {
-            for (int index = 0; index < items.size(); index++) {
-                TradePlateItem item = items.get(index);
-                if (item.getPrice().compareTo(order.getPrice()) == 0) {
-                    item.setAmount(item.getAmount().subtract(amount));
-                    if (item.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                        items.remove(index);
-                    }
-                    return;
-                }
+    private int search(long price) {
+        long key = rank(price);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = rank(prices[mid]);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
         }
+        return -(low + 1);
     }
 
     /**
-     * 从盘口移除订单
+     * 排序键：买盘价格越高越靠前，卖盘价格越低越靠前
      */
-    public void remove(OrderDTO order) {
-        remove(order, order.getAmount().subtract(order.getFilledAmount()));
+    private long rank(long price) {
+        return direction == OrderDirection.BUY ? -price : price;
     }
 
     /**
-     * 判断订单方向是否匹配
+     * 获取第 index 档价格（tick）
      */
-    private boolean directionMatches(Integer side) {
-        if (direction == OrderDirection.BUY && side == 1) {
-            return true;
+    public long priceAt(int index) {
+        return prices[index];
+    }
+
+    /**
+     * 获取第 index 档数量（lot）
+     */
+    public long amountAt(int index) {
+        return amounts[index];
+    }
+
+    /**
+     * 盘口数据（序列化时创建，撮合过程中不创建）
+     */
+    public List<TradePlateItem> getItems() {
+        List<TradePlateItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new TradePlateItem(prices[i], amounts[i], priceScale, amountScale));
         }
-        if (direction == OrderDirection.SELL && side == 2) {
-            return true;
+        return items;
+    }
+
+    /**
+     * 是否有未推送的档位变动
+     */
+    public boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * 丢弃未推送的档位变动（交易器未就绪时，订单簿以快照为准）
+     */
+    public void clearChanges() {
+        changes.clear();
+        for (DepthLadder ladder : ladders) {
+            ladder.clearChanges();
         }
-        return false;
     }
 
     /**
-     * 获取最高价
+     * 输出档位增量并清空变动记录
+     *
+     * 格式：[[价格,总量],...]，总量取订单簿中该档位的当前剩余量，0 表示档位已删除
      */
-    public BigDecimal getHighestPrice() {
-        if (items.size() == 0) {
-            return BigDecimal.ZERO;
+    public void appendChanges(StringBuilder sb) {
+        int count = changes.compact();
+        sb.append('[');
+        for (int i = 0; i < count; i++) {
+            long price = changes.get(i);
+            MergeOrder level = book.get(price);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('[');
+            FixedPoint.appendDecimal(sb, price, priceScale);
+            sb.append(',');
+            FixedPoint.appendDecimal(sb, level == null ? 0L : level.getRemainingAmount(), amountScale);
+            sb.append(']');
         }
-        if (direction == OrderDirection.BUY) {
-            return items.getFirst().getPrice();
-        } else {
-            return items.getLast().getPrice();
+        sb.append(']');
+        changes.clear();
+    }
+
+    /**
+     * 输出档位增量（二进制，见 WireCodec.beginDepthUpdate）并清空变动记录
+     *
+     * 格式：varint 档位数 + 每档 [价格, 总量]，定点数直接写入，不经过 BigDecimal
+     */
+    public void writeChanges(WireWriter writer) {
+        int count = changes.compact();
+        writer.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            long price = changes.get(i);
+            MergeOrder level = book.get(price);
+            writer.writeDecimal(price, priceScale);
+            writer.writeDecimal(level == null ? 0L : level.getRemainingAmount(), amountScale);
         }
+        changes.clear();
     }
 
     /**
-     * 获取最低价
+     * 设置分组步长并按订单簿重建分组深度（定序器线程，或交易器就绪之前）
+     *
+     * @param steps 步长（tick），从小到大
      */
-    public BigDecimal getLowestPrice() {
-        if (items.size() == 0) {
-            return BigDecimal.ZERO;
+    public void setGroupSteps(long[] steps) {
+        DepthLadder[] rebuilt = new DepthLadder[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            rebuilt[i] = new DepthLadder(steps[i], direction);
+            rebuilt[i].rebuild(book);
         }
-        if (direction == OrderDirection.BUY) {
-            return items.getLast().getPrice();
-        } else {
-            return items.getFirst().getPrice();
+        this.ladders = rebuilt;
+    }
+
+    /**
+     * 分组步长数
+     */
+    public int getGroupCount() {
+        return ladders.length;
+    }
+
+    /**
+     * 第 index 个分组步长（tick）
+     */
+    public long groupStepAt(int index) {
+        return ladders[index].getStep();
+    }
+
+    /**
+     * 输出第 index 个分组的增量并清空其变动记录（JSON）
+     */
+    public void appendGroupChanges(int index, StringBuilder sb) {
+        ladders[index].appendChanges(sb, priceScale, amountScale);
+    }
+
+    /**
+     * 输出第 index 个分组的增量并清空其变动记录（二进制）
+     */
+    public void writeGroupChanges(int index, WireWriter writer) {
+        ladders[index].writeChanges(writer, priceScale, amountScale);
+    }
+
+    /**
+     * 第 index 个分组的前 levels 个分组
+     */
+    OrderBookSnapshot.Side groupSnapshot(int index, int levels) {
+        return ladders[index].snapshot(levels, priceScale, amountScale);
+    }
+
+    private int highestIndex() {
+        if (size == 0) {
+            return -1;
+        }
+        return direction == OrderDirection.BUY ? 0 : size - 1;
+    }
+
+    private int lowestIndex() {
+        if (size == 0) {
+            return -1;
         }
+        return direction == OrderDirection.BUY ? size - 1 : 0;
+    }
+
+    /**
+     * 获取最高价
+     */
+    public BigDecimal getHighestPrice() {
+        int index = highestIndex();
+        return index < 0 ? BigDecimal.ZERO : FixedPoint.toDecimal(prices[index], priceScale);
+    }
+
+    /**
+     * 获取最低价
+     */
+    public BigDecimal getLowestPrice() {
+        int index = lowestIndex();
+        return index < 0 ? BigDecimal.ZERO : FixedPoint.toDecimal(prices[index], priceScale);
     }
 
     /**
      * 获取深度
      */
     public int getDepth() {
-        return items.size();
+        return size;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public OrderDirection getDirection() {
+        return direction;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @JSONField(serialize = false)
+    public int getPriceScale() {
+        return priceScale;
     }
-}
 
+    public void setPriceScale(int priceScale) {
+        this.priceScale = priceScale;
+    }
+
+    @JSONField(serialize = false)
+    public int getAmountScale() {
+        return amountScale;
+    }
+
+    public void setAmountScale(int amountScale) {
+        this.amountScale = amountScale;
+    }
+}
@@ -1,19 +1,56 @@
 package com.cex.matching.core;
 
-import lombok.Data;
+import com.alibaba.fastjson.annotation.JSONField;
 
 import java.math.BigDecimal;
 
 /**
  * 盘口信息项
  *
+ * 【内部表示】
+ * 价格、数量以 long（tick/lot）保存，只在序列化为 JSON 时转换成 BigDecimal，
+ * 盘口的增减不会产生任何 BigDecimal 对象。
+ *
  * @author cex
  */
-@Data
 public class TradePlateItem {
+    /** 价格（tick） */
+    private long priceTicks;
+    /** 数量（lot） */
+    private long amountLots;
+    /** 价格精度 */
+    private final int priceScale;
+    /** 数量精度 */
+    private final int amountScale;
+
+    public TradePlateItem(long priceTicks, long amountLots, int priceScale, int amountScale) {
+        this.priceTicks = priceTicks;
+        this.amountLots = amountLots;
+        this.priceScale = priceScale;
+        this.amountScale = amountScale;
+    }
+
     /** 价格 */
-    private BigDecimal price;
+    public BigDecimal getPrice() {
+        return FixedPoint.toDecimal(priceTicks, priceScale);
+    }
+
     /** 数量 */
-    private BigDecimal amount;
-}
+    public BigDecimal getAmount() {
+        return FixedPoint.toDecimal(amountLots, amountScale);
+    }
+
+    @JSONField(serialize = false)
+    public long getPriceTicks() {
+        return priceTicks;
+    }
 
+    @JSONField(serialize = false)
+    public long getAmountLots() {
+        return amountLots;
+    }
+
+    public void setAmountLots(long amountLots) {
+        this.amountLots = amountLots;
+    }
+}
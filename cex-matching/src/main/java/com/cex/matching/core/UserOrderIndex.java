@@ -0,0 +1,114 @@
+package com.cex.matching.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户挂单索引（用户ID → 该用户在订单簿中的订单）
+ *
+ * 【作用】
+ * 按用户批量撤单（做市商撤掉全部报价）时直接取出该用户的订单，不遍历订单簿。
+ *
+ * 【数据结构】
+ * 与 MergeOrder 相同的侵入式双向链表：前后指针保存在 BookOrder 上（userPrev/userNext），
+ * 每个用户一个链表头，加入、移除都是 O(1)，除每个用户的链表头外不创建对象。
+ *
+ * 【维护规则】
+ * 与 CoinTrader.orderIndex 同步：订单进入订单簿时加入，完全成交或撤单离开订单簿时移除。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程访问
+ *
+ * @author cex
+ */
+final class UserOrderIndex {
+
+    private final Map<Long, UserOrders> users = new HashMap<>();
+
+    /**
+     * 加入订单（追加到该用户链表末尾）
+     */
+    void add(BookOrder order) {
+        Long userId = order.getUserId();
+        if (userId == null) {
+            return;
+        }
+        UserOrders orders = users.computeIfAbsent(userId, k -> new UserOrders());
+        order.userPrev = orders.tail;
+        order.userNext = null;
+        if (orders.tail == null) {
+            orders.head = order;
+        } else {
+            orders.tail.userNext = order;
+        }
+        orders.tail = order;
+        orders.size++;
+    }
+
+    /**
+     * 移除订单（O(1)）
+     */
+    void remove(BookOrder order) {
+        Long userId = order.getUserId();
+        UserOrders orders = userId != null ? users.get(userId) : null;
+        if (orders == null) {
+            return;
+        }
+        BookOrder prev = order.userPrev;
+        BookOrder next = order.userNext;
+        if (prev == null) {
+            orders.head = next;
+        } else {
+            prev.userNext = next;
+        }
+        if (next == null) {
+            orders.tail = prev;
+        } else {
+            next.userPrev = prev;
+        }
+        order.userPrev = null;
+        order.userNext = null;
+        if (--orders.size == 0) {
+            users.remove(userId);
+        }
+    }
+
+    /**
+     * 取出用户的订单（按挂单顺序，不从索引中移除）
+     *
+     * @param side 买卖方向（1买入 2卖出），null 表示两个方向
+     * @param out 输出
+     */
+    void collect(long userId, Integer side, List<BookOrder> out) {
+        UserOrders orders = users.get(userId);
+        if (orders == null) {
+            return;
+        }
+        for (BookOrder order = orders.head; order != null; order = order.userNext) {
+            if (side == null || order.getSide() == side) {
+                out.add(order);
+            }
+        }
+    }
+
+    /**
+     * 用户的挂单数
+     */
+    int count(long userId) {
+        UserOrders orders = users.get(userId);
+        return orders == null ? 0 : orders.size;
+    }
+
+    /**
+     * 一个用户的订单链表
+     */
+    private static final class UserOrders {
+
+        BookOrder head;
+
+        BookOrder tail;
+
+        int size;
+    }
+}
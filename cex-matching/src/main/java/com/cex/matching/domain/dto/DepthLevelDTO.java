@@ -0,0 +1,20 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 深度档位
+ *
+ * @author cex
+ */
+@Data
+public class DepthLevelDTO {
+
+    /** 价格 */
+    private BigDecimal price;
+
+    /** 档位总量 */
+    private BigDecimal amount;
+}
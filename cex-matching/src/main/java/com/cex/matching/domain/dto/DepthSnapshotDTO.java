@@ -0,0 +1,33 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 深度快照
+ *
+ * 【使用方式】
+ * 消费方先拉取快照初始化本地订单簿，再应用 trade-plate-out 中 seq > sequence 的增量
+ *
+ * @author cex
+ */
+@Data
+public class DepthSnapshotDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 快照对应的增量序号 */
+    private Long sequence;
+
+    /** 分组步长（原始档位为空），对应增量消息 groups 中 step 相同的分组 */
+    private BigDecimal step;
+
+    /** 买盘（价格从高到低） */
+    private List<DepthLevelDTO> bids;
+
+    /** 卖盘（价格从低到高） */
+    private List<DepthLevelDTO> asks;
+}
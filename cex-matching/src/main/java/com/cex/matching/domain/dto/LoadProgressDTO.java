@@ -0,0 +1,30 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+/**
+ * 订单簿启动加载进度
+ *
+ * @author cex
+ */
+@Data
+public class LoadProgressDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 状态（LOADING 加载中 / READY 已就绪 / FAILED 失败，失败时交易器不接收订单） */
+    private String state;
+
+    /** 订单簿来源（JOURNAL 快照+命令日志 / DATABASE 订单表 / EMPTY 空订单簿） */
+    private String source;
+
+    /** 已加载订单数 */
+    private Long loadedOrders;
+
+    /** 已耗时（毫秒） */
+    private Long elapsedMs;
+
+    /** 失败原因 */
+    private String error;
+}
@@ -0,0 +1,39 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+/**
+ * 交易对主备复制状态
+ *
+ * @author cex
+ */
+@Data
+public class ReplicationLagDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 本节点角色：primary / standby */
+    private String role;
+
+    /** 主节点最新命令序号（备节点为心跳或复制批次中的最大序号） */
+    private Long primarySequence;
+
+    /** 本节点已应用的命令序号 */
+    private Long appliedSequence;
+
+    /** 落后的命令数 */
+    private Long lag;
+
+    /** 距最近一次收到主节点消息的时间（毫秒），主节点为空 */
+    private Long lastReceiveAgeMs;
+
+    /** 复制序号缺口次数（累计，每次缺口后都会从主节点快照重新同步） */
+    private Long gaps;
+
+    /** 是否在等待主节点快照（期间不重放命令） */
+    private Boolean stale;
+
+    /** 是否同步（不在等待快照、没有落后、主节点消息未超时） */
+    private Boolean inSync;
+}
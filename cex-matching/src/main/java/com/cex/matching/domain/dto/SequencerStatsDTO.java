@@ -0,0 +1,48 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+/**
+ * 交易对定序器统计
+ *
+ * @author cex
+ */
+@Data
+public class SequencerStatsDTO {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 执行该交易对的工作线程（未开启 matching.scheduler 时为空） */
+    private String worker;
+
+    /** 环形队列容量 */
+    private Integer ringSize;
+
+    /** 已入队命令数 */
+    private Long publishedCount;
+
+    /** 已处理命令数 */
+    private Long processedCount;
+
+    /** 积压命令数 */
+    private Long backlog;
+
+    /** 吞吐量（命令/秒，最近一个统计窗口） */
+    private Long throughput;
+
+    /** 已推送的盘口增量数 */
+    private Long depthPublished;
+
+    /** 被合并（未单独推送）的盘口变化数 */
+    private Long depthSuppressed;
+
+    /** 盘口增量推送间隔（毫秒） */
+    private Long depthPublishIntervalMs;
+
+    /** 最后写入命令日志的序号（未开启日志时为空） */
+    private Long journalSequence;
+
+    /** 最近一次订单簿快照包含的命令序号（未开启日志时为空） */
+    private Long snapshotSequence;
+}
@@ -0,0 +1,26 @@
+package com.cex.matching.domain.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 撮合工作线程统计
+ *
+ * @author cex
+ */
+@Data
+public class WorkerStatsDTO {
+
+    /** 线程名 */
+    private String name;
+
+    /** 是否为交易对专用线程 */
+    private Boolean dedicated;
+
+    /** 分配到该线程的交易对 */
+    private List<String> symbols;
+
+    /** 最近一次采样的负载（执行命令耗时 / 墙钟时间，1.0 表示占满一个线程） */
+    private Double load;
+}
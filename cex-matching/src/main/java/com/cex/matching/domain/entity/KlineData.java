@@ -0,0 +1,48 @@
+package com.cex.matching.domain.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * K线数据实体（kline_data）
+ * 
+ * @author cex
+ */
+@Data
+public class KlineData {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 周期（1m, 5m, 15m, 1h, 4h, 1d） */
+    private String period;
+
+    /** 开盘价 */
+    private BigDecimal openPrice;
+
+    /** 最高价 */
+    private BigDecimal highPrice;
+
+    /** 最低价 */
+    private BigDecimal lowPrice;
+
+    /** 收盘价 */
+    private BigDecimal closePrice;
+
+    /** 成交量 */
+    private BigDecimal volume;
+
+    /** 成交额 */
+    private BigDecimal amount;
+
+    /** 成交笔数 */
+    private Integer tradeCount;
+
+    /** 开始时间 */
+    private Date startTime;
+
+    /** 结束时间 */
+    private Date endTime;
+}
@@ -0,0 +1,38 @@
+package com.cex.matching.domain.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 行情数据实体（market_data，每个交易对一行）
+ * 
+ * @author cex
+ */
+@Data
+public class MarketData {
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 最新价格 */
+    private BigDecimal price;
+
+    /** 24小时涨跌 */
+    private BigDecimal change24h;
+
+    /** 24小时涨跌幅 */
+    private BigDecimal changeRate24h;
+
+    /** 24小时最高价 */
+    private BigDecimal high24h;
+
+    /** 24小时最低价 */
+    private BigDecimal low24h;
+
+    /** 24小时成交量 */
+    private BigDecimal volume24h;
+
+    /** 24小时成交额 */
+    private BigDecimal amount24h;
+}
@@ -0,0 +1,60 @@
+package com.cex.matching.domain.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 未完成订单（cex_trade.trade_order 中状态为 0/1 的订单，启动时加载订单簿用）
+ * 
+ * @author cex
+ */
+@Data
+public class OpenOrder {
+
+    /** 主键ID（自增，即订单创建顺序，用作分页游标） */
+    private Long id;
+
+    /** 订单号 */
+    private String orderNo;
+
+    /** 用户ID */
+    private Long userId;
+
+    /** 交易对 */
+    private String symbol;
+
+    /** 订单类型（1限价单 2市价单 3止损限价单 4止损市价单） */
+    private Integer orderType;
+
+    /** 买卖方向（1买入 2卖出） */
+    private Integer side;
+
+    /** 委托价格（市价单为0） */
+    private BigDecimal price;
+
+    /** 触发价格（止损单） */
+    private BigDecimal triggerPrice;
+
+    /** 委托数量（市价买单为金额） */
+    private BigDecimal amount;
+
+    /** 已成交数量 */
+    private BigDecimal filledAmount;
+
+    /** 已成交金额 */
+    private BigDecimal filledMoney;
+
+    /** 订单状态（0待成交 1部分成交） */
+    private Integer status;
+
+    /** 手续费币种 */
+    private String feeCoin;
+
+    /** 创建时间 */
+    private LocalDateTime createTime;
+
+    /** 到期时间（GTT 订单，为空表示一直有效） */
+    private LocalDateTime expireTime;
+}
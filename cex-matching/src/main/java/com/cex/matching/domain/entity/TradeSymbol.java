@@ -0,0 +1,21 @@
+package com.cex.matching.domain.entity;
+
+import lombok.Data;
+
+/**
+ * 交易对配置（cex_trade.trade_symbol，撮合引擎只读取精度）
+ * 
+ * @author cex
+ */
+@Data
+public class TradeSymbol {
+
+    /** 交易对名称 */
+    private String symbol;
+
+    /** 价格精度（计价币精度，对应 CoinTrader.baseCoinScale） */
+    private Integer pricePrecision;
+
+    /** 数量精度（交易币精度，对应 CoinTrader.coinScale） */
+    private Integer amountPrecision;
+}
@@ -0,0 +1,330 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.sequencer.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个交易对的命令日志 + 快照
+ *
+ * 【作用】
+ * 订单簿只在内存中，进程重启会丢失所有挂单。BookJournal 在命令执行前把它写入日志（write-ahead），
+ * 并定期把整个订单簿写成快照；重启时加载最新快照，再重放快照之后的日志，恢复到崩溃前的状态。
+ *
+ * 【目录】
+ * ```
+ * {matching.journal.dir}/{URL 编码的交易对，如 BTC%2FUSDT}/
+ *   journal/00000000000000000001.journal
+ *   snapshot/00000000000000100000.snapshot
+ * ```
+ *
+ * 【恢复流程】（见 {@link #recover}，交易器就绪之前、在定序器线程中执行）
+ * 1. 加载最新的有效快照，按原顺序放回订单（不撮合）
+ * 2. 重放序号大于快照序号的日志：下单调用 trade()、撤单调用 cancelOrder()，
+ *    此时交易器还没有 StreamBridge，成交、订单完成消息不会重复发送
+ * 3. 之后的命令从下一个序号开始写入新的日志段
+ *
+ * 【快照时机】
+ * 每 snapshotIntervalCommands 条命令或每 snapshotIntervalSeconds 秒（有新命令时），
+ * 在定序器线程中序列化（保证一致），在后台线程写文件；快照写完后删除它之前的日志段和多余的旧快照。
+ * 正常关闭时同步生成一次快照，下次启动不需要重放日志。
+ *
+ * 【线程安全】
+ * recover/append/maybeSnapshot/close 只由交易对的定序器线程调用
+ *
+ * @author cex
+ */
+@Slf4j
+public class BookJournal {
+
+    private final String symbol;
+
+    private final Path journalDir;
+
+    private final Path snapshotDir;
+
+    private final MatchingProperties.Journal config;
+
+    /** 快照文件写入线程（所有交易对共用） */
+    private final Executor snapshotExecutor;
+
+    private JournalWriter writer;
+
+    /** 最近一次快照包含的命令序号 */
+    private volatile long snapshotSequence;
+
+    /** 最近一次快照时间（System.nanoTime） */
+    private long lastSnapshotNanos;
+
+    /** 是否有快照正在后台写入 */
+    private volatile boolean snapshotInFlight;
+
+    BookJournal(String symbol, Path baseDir, MatchingProperties.Journal config, Executor snapshotExecutor) {
+        this.symbol = symbol;
+        this.journalDir = baseDir.resolve("journal");
+        this.snapshotDir = baseDir.resolve("snapshot");
+        this.config = config;
+        this.snapshotExecutor = snapshotExecutor;
+    }
+
+    /**
+     * 从快照和日志恢复订单簿（交易器就绪之前调用）
+     *
+     * @param trader 新创建的交易器（未设置 StreamBridge、未就绪）
+     * @return 是否有可恢复的快照或日志（false 表示该交易对没有持久化过任何命令）
+     */
+    public boolean recover(CoinTrader trader) throws IOException {
+        long start = System.nanoTime();
+        // 上一次恢复失败后重试
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        Files.createDirectories(journalDir);
+        Files.createDirectories(snapshotDir);
+
+        long bookSequence = 0;
+        SnapshotStore.BookSnapshot snapshot = SnapshotStore.loadLatest(snapshotDir, symbol);
+        if (snapshot != null) {
+            for (OrderDTO order : snapshot.orders) {
+                trader.restoreOrder(order);
+            }
+            if (snapshot.tradingHalt) {
+                trader.haltTrading();
+            }
+            snapshotSequence = snapshot.journalSequence;
+            bookSequence = snapshot.bookSequence;
+        }
+
+        long lastSequence = JournalReader.replay(journalDir, symbol, snapshotSequence, (sequence, type, order) -> {
+            switch (type) {
+                case PLACE_ORDER:
+                    trader.trade(order);
+                    break;
+                case CANCEL_ORDER:
+                    trader.cancelOrder(order);
+                    break;
+                case CANCEL_USER:
+                    trader.cancelUserOrders(order);
+                    break;
+                case EXPIRE:
+                    trader.expireOrders(order.getExpireTime());
+                    break;
+                case HALT:
+                    trader.haltTrading();
+                    break;
+                case RESUME:
+                    trader.resumeTrading();
+                    break;
+                default:
+                    break;
+            }
+        });
+        long replayed = lastSequence - snapshotSequence;
+
+        // 丢弃恢复过程中产生的盘口变动；盘口序号至少跳过重放的命令数
+        // （崩溃前每条命令最多推送一次增量），保证重启后的序号不会与已推送的重复，消费方据此发现缺口并重拉快照
+        trader.publishDepthUpdate();
+        trader.restoreBookSequence(bookSequence + replayed);
+
+        writer = new JournalWriter(journalDir, config.getSegmentSizeMb() << 20, lastSequence);
+        lastSnapshotNanos = System.nanoTime();
+        log.info("交易对订单簿恢复完成: symbol={}, snapshotSeq={}, replayed={}, orders={}, cost={}ms",
+                symbol, snapshotSequence, replayed, trader.getRestingOrderCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return snapshot != null || lastSequence > 0;
+    }
+
+    /**
+     * 写入一条命令（执行之前调用）
+     *
+     * @return 是否写入成功；失败时调用方不应执行该命令，否则重启后无法恢复
+     */
+    public boolean append(CommandType type, OrderDTO order) {
+        byte typeCode = CommandCodec.typeCode(type);
+        if (typeCode == 0) {
+            return true;
+        }
+        try {
+            writer.append(typeCode, order);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("写入命令日志失败: symbol={}, type={}, orderNo={}",
+                    symbol, type, order == null ? null : order.getOrderNo(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 按配置判断是否需要生成快照（定序器线程，命令之间调用）
+     *
+     * @param trader 交易器
+     * @param now 当前时间（System.nanoTime）
+     */
+    public void maybeSnapshot(CoinTrader trader, long now) {
+        if (writer == null) {
+            // 恢复失败，交易器未就绪
+            return;
+        }
+        long lastSequence = writer.getLastSequence();
+        long pending = lastSequence - snapshotSequence;
+        if (pending <= 0 || snapshotInFlight) {
+            return;
+        }
+        long intervalCommands = config.getSnapshotIntervalCommands();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(config.getSnapshotIntervalSeconds());
+        if ((intervalCommands > 0 && pending >= intervalCommands)
+                || (intervalNanos > 0 && now - lastSnapshotNanos >= intervalNanos)) {
+            snapshot(trader, true);
+        }
+    }
+
+    /**
+     * 立即同步生成快照（如从订单表加载订单簿之后，作为日志的起点）
+     */
+    public void snapshotNow(CoinTrader trader) {
+        snapshot(trader, false);
+    }
+
+    /**
+     * 生成快照
+     *
+     * @param async 是否在后台线程写文件
+     */
+    private void snapshot(CoinTrader trader, boolean async) {
+        // 先推送合并中的盘口增量，使快照中的盘口序号包含快照之前的所有变动
+        trader.flushPendingDepth();
+        long sequence = writer.getLastSequence();
+        byte[] bytes = SnapshotStore.capture(trader, sequence);
+        snapshotSequence = sequence;
+        lastSnapshotNanos = System.nanoTime();
+        if (!async) {
+            writeSnapshot(sequence, bytes);
+            return;
+        }
+        snapshotInFlight = true;
+        snapshotExecutor.execute(() -> {
+            try {
+                writeSnapshot(sequence, bytes);
+            } finally {
+                snapshotInFlight = false;
+            }
+        });
+    }
+
+    private void writeSnapshot(long sequence, byte[] bytes) {
+        try {
+            long start = System.nanoTime();
+            SnapshotStore.write(snapshotDir, sequence, bytes);
+            log.info("订单簿快照完成: symbol={}, seq={}, size={}KB, cost={}ms",
+                    symbol, sequence, bytes.length >> 10, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            purge();
+        } catch (IOException e) {
+            log.error("订单簿快照写入失败: symbol={}, seq={}", symbol, sequence, e);
+        }
+    }
+
+    /**
+     * 保留最近 retainedSnapshots 个快照，删除最早保留的快照之前的日志段
+     */
+    private void purge() throws IOException {
+        List<Path> snapshots = SnapshotStore.list(snapshotDir);
+        int retained = Math.max(config.getRetainedSnapshots(), 1);
+        for (int i = 0; i < snapshots.size() - retained; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        if (snapshots.size() < retained) {
+            return;
+        }
+        long oldestRetained = SnapshotStore.journalSequence(snapshots.get(snapshots.size() - retained));
+        List<Path> segments = JournalReader.listSegments(journalDir);
+        // 下一段的首个序号不超过 oldestRetained + 1 时，本段的记录都已包含在快照中（当前段没有下一段，不会删除）
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (JournalReader.firstSequence(segments.get(i + 1)) > oldestRetained + 1) {
+                break;
+            }
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * 关闭（定序器停止后调用）：同步生成快照并刷盘
+     */
+    public void close(CoinTrader trader) {
+        if (writer == null) {
+            return;
+        }
+        if (writer.getLastSequence() > snapshotSequence) {
+            snapshot(trader, false);
+        }
+        writer.close();
+    }
+
+    /**
+     * 以主节点的快照为新的起点（备节点重新同步后，定序器线程）
+     * 
+     * 删除本地所有日志段和快照（其中的命令序号与主节点不一致），同步写入当前订单簿的快照，
+     * 之后的命令从 sequence + 1 开始写入新的日志段
+     * 
+     * @param trader 已按主节点快照替换的交易器
+     * @param sequence 主节点快照包含的最后一个命令序号
+     */
+    public void resetTo(CoinTrader trader, long sequence) throws IOException {
+        // 等待后台快照写完，避免旧序号的快照在清理之后落盘
+        while (snapshotInFlight) {
+            Thread.onSpinWait();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+        for (Path segment : JournalReader.listSegments(journalDir)) {
+            Files.deleteIfExists(segment);
+        }
+        for (Path snapshot : SnapshotStore.list(snapshotDir)) {
+            Files.deleteIfExists(snapshot);
+        }
+        Files.createDirectories(journalDir);
+        writer = new JournalWriter(journalDir, config.getSegmentSizeMb() << 20, sequence);
+        snapshot(trader, false);
+        log.warn("命令日志以主节点快照为起点: symbol={}, seq={}", symbol, sequence);
+    }
+
+    /**
+     * 序列化订单簿（主节点响应备节点的重新同步请求，定序器线程）
+     * 
+     * @param journalSequence 已接受的最后一个命令序号
+     * @return 与快照文件相同格式的内容
+     */
+    public static byte[] captureSnapshot(CoinTrader trader, long journalSequence) {
+        return SnapshotStore.capture(trader, journalSequence);
+    }
+
+    /**
+     * 用快照内容替换订单簿（备节点重新同步，定序器线程）
+     * 
+     * @return 快照包含的最后一个命令序号
+     * @throws IllegalStateException 快照校验失败或版本不支持
+     */
+    public static long applySnapshot(CoinTrader trader, byte[] bytes) {
+        SnapshotStore.BookSnapshot snapshot = SnapshotStore.decode(bytes, trader.getSymbol());
+        trader.replaceBook(snapshot.orders, snapshot.tradingHalt, snapshot.bookSequence);
+        return snapshot.journalSequence;
+    }
+
+    public long getLastSequence() {
+        return writer == null ? 0 : writer.getLastSequence();
+    }
+
+    public long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+}
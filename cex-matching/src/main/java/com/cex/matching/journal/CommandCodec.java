@@ -0,0 +1,218 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.sequencer.CommandType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * 撮合命令二进制编码（日志记录、快照共用）
+ *
+ * 【格式】
+ * 定长字段按 big-endian 顺序写入，不写字段名：
+ * ```
+ * orderNo      string   (short 字符数 + char[]，-1 表示 null)
+ * userId       long     (Long.MIN_VALUE 表示 null)
+ * orderType    byte     (-1 表示 null)
+ * side         byte
+ * price        decimal  (byte scale + long unscaled；超出 long 时写字符串)
+ * amount       decimal
+ * filledAmount decimal
+ * filledMoney  decimal
+ * feeRate      decimal
+ * feeCoin      string
+ * status       byte
+ * createTime   long
+ * triggerPrice decimal
+ * expireTime   long     (Long.MIN_VALUE 表示 null)
+ * ```
+ * 交易对不写入，每个交易对的日志、快照在各自目录中，解码时由调用方补上。
+ *
+ * 【为什么不用 JSON？】
+ * 写日志在定序器线程的关键路径上，fastjson 序列化一个订单需要数微秒并产生大量临时对象；
+ * 这里直接写入可复用的 ByteBuffer，除 BigDecimal 之外不创建对象。
+ *
+ * 【版本】
+ * 格式变化时提升 {@link #VERSION}；快照头记录版本号，版本不一致的快照拒绝读取
+ *
+ * @author cex
+ */
+public final class CommandCodec {
+
+    /** 编码版本 */
+    public static final int VERSION = 1;
+
+    /** 命令类型编码（不使用 ordinal，避免枚举调整顺序后无法读取旧日志） */
+    public static final byte TYPE_PLACE_ORDER = 1;
+    public static final byte TYPE_CANCEL_ORDER = 2;
+    public static final byte TYPE_HALT = 3;
+    public static final byte TYPE_RESUME = 4;
+    public static final byte TYPE_CANCEL_USER = 5;
+    public static final byte TYPE_EXPIRE = 6;
+
+    /** decimal 为 null */
+    private static final byte DECIMAL_NULL = Byte.MIN_VALUE;
+
+    /** decimal 超出 long 范围，按字符串写入 */
+    private static final byte DECIMAL_STRING = Byte.MIN_VALUE + 1;
+
+    private CommandCodec() {
+    }
+
+    /**
+     * 命令类型 → 编码
+     *
+     * @return 编码；不需要写日志的命令（QUERY）返回 0
+     */
+    public static byte typeCode(CommandType type) {
+        switch (type) {
+            case PLACE_ORDER:
+                return TYPE_PLACE_ORDER;
+            case CANCEL_ORDER:
+                return TYPE_CANCEL_ORDER;
+            case HALT:
+                return TYPE_HALT;
+            case RESUME:
+                return TYPE_RESUME;
+            case CANCEL_USER:
+                return TYPE_CANCEL_USER;
+            case EXPIRE:
+                return TYPE_EXPIRE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 编码 → 命令类型
+     *
+     * @return 命令类型；未知编码返回 null
+     */
+    public static CommandType commandType(byte code) {
+        switch (code) {
+            case TYPE_PLACE_ORDER:
+                return CommandType.PLACE_ORDER;
+            case TYPE_CANCEL_ORDER:
+                return CommandType.CANCEL_ORDER;
+            case TYPE_HALT:
+                return CommandType.HALT;
+            case TYPE_RESUME:
+                return CommandType.RESUME;
+            case TYPE_CANCEL_USER:
+                return CommandType.CANCEL_USER;
+            case TYPE_EXPIRE:
+                return CommandType.EXPIRE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 写入订单
+     *
+     * @throws java.nio.BufferOverflowException 缓冲区不足（调用方扩容后重试）
+     */
+    public static void writeOrder(ByteBuffer buf, OrderDTO order) {
+        writeString(buf, order.getOrderNo());
+        buf.putLong(order.getUserId() == null ? Long.MIN_VALUE : order.getUserId());
+        buf.put(order.getOrderType() == null ? -1 : order.getOrderType().byteValue());
+        buf.put(order.getSide() == null ? -1 : order.getSide().byteValue());
+        writeDecimal(buf, order.getPrice());
+        writeDecimal(buf, order.getAmount());
+        writeDecimal(buf, order.getFilledAmount());
+        writeDecimal(buf, order.getFilledMoney());
+        writeDecimal(buf, order.getFeeRate());
+        writeString(buf, order.getFeeCoin());
+        buf.put(order.getStatus() == null ? -1 : order.getStatus().byteValue());
+        buf.putLong(order.getCreateTime() == null ? Long.MIN_VALUE : order.getCreateTime());
+        writeDecimal(buf, order.getTriggerPrice());
+        buf.putLong(order.getExpireTime() == null ? Long.MIN_VALUE : order.getExpireTime());
+    }
+
+    /**
+     * 读取订单
+     *
+     * @param symbol 交易对（不在编码中）
+     */
+    public static OrderDTO readOrder(ByteBuffer buf, String symbol) {
+        OrderDTO order = new OrderDTO();
+        order.setSymbol(symbol);
+        order.setOrderNo(readString(buf));
+        long userId = buf.getLong();
+        order.setUserId(userId == Long.MIN_VALUE ? null : userId);
+        byte orderType = buf.get();
+        order.setOrderType(orderType < 0 ? null : (int) orderType);
+        byte side = buf.get();
+        order.setSide(side < 0 ? null : (int) side);
+        order.setPrice(readDecimal(buf));
+        order.setAmount(readDecimal(buf));
+        order.setFilledAmount(readDecimal(buf));
+        order.setFilledMoney(readDecimal(buf));
+        order.setFeeRate(readDecimal(buf));
+        order.setFeeCoin(readString(buf));
+        byte status = buf.get();
+        order.setStatus(status < 0 ? null : (int) status);
+        long createTime = buf.getLong();
+        order.setCreateTime(createTime == Long.MIN_VALUE ? null : createTime);
+        order.setTriggerPrice(readDecimal(buf));
+        long expireTime = buf.getLong();
+        order.setExpireTime(expireTime == Long.MIN_VALUE ? null : expireTime);
+        return order;
+    }
+
+    public static void writeString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        int length = value.length();
+        if (length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("字符串过长: " + length);
+        }
+        buf.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            buf.putChar(value.charAt(i));
+        }
+    }
+
+    public static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buf.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static void writeDecimal(ByteBuffer buf, BigDecimal value) {
+        if (value == null) {
+            buf.put(DECIMAL_NULL);
+            return;
+        }
+        int scale = value.scale();
+        BigInteger unscaled = value.unscaledValue();
+        if (scale > DECIMAL_STRING && scale <= Byte.MAX_VALUE && unscaled.bitLength() < 64) {
+            buf.put((byte) scale);
+            buf.putLong(unscaled.longValue());
+        } else {
+            buf.put(DECIMAL_STRING);
+            writeString(buf, value.toString());
+        }
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buf) {
+        byte scale = buf.get();
+        if (scale == DECIMAL_NULL) {
+            return null;
+        }
+        if (scale == DECIMAL_STRING) {
+            return new BigDecimal(readString(buf));
+        }
+        return BigDecimal.valueOf(buf.getLong(), scale);
+    }
+}
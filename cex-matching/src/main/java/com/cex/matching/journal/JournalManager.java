@@ -0,0 +1,112 @@
+package com.cex.matching.journal;
+
+import com.cex.matching.config.MatchingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 命令日志管理（所有交易对）
+ *
+ * 【作用】
+ * - 为每个交易对创建 BookJournal（目录名为 URL 编码的交易对）
+ * - 启动时列出磁盘上已有日志的交易对，由 CoinTraderFactory 提前恢复
+ * - 持有快照写文件的后台线程
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class JournalManager {
+
+    private final MatchingProperties.Journal config;
+
+    /** 快照写文件线程（快照序列化在各自的定序器线程中完成，这里只做 IO） */
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "matching-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JournalManager(MatchingProperties matchingProperties) {
+        this.config = matchingProperties.getJournal();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 创建交易对的日志（之后需要调用 BookJournal.recover）
+     */
+    public BookJournal open(String symbol) {
+        return new BookJournal(symbol, baseDir().resolve(encode(symbol)), config, snapshotExecutor);
+    }
+
+    /**
+     * 磁盘上已有日志或快照的交易对
+     */
+    public List<String> listSymbols() {
+        List<String> symbols = new ArrayList<>();
+        Path baseDir = baseDir();
+        if (!config.isEnabled() || !Files.isDirectory(baseDir)) {
+            return symbols;
+        }
+        try (Stream<Path> dirs = Files.list(baseDir)) {
+            dirs.filter(Files::isDirectory)
+                    .forEach(dir -> symbols.add(decode(dir.getFileName().toString())));
+        } catch (IOException e) {
+            log.error("读取命令日志目录失败: {}", baseDir, e);
+        }
+        return symbols;
+    }
+
+    private Path baseDir() {
+        return Paths.get(config.getDir());
+    }
+
+    private static String encode(String symbol) {
+        try {
+            return URLEncoder.encode(symbol, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String dirName) {
+        try {
+            return URLDecoder.decode(dirName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 等待正在写入的快照完成（CoinTraderFactory 先于本类销毁，关闭时的快照已同步写入）
+     */
+    @PreDestroy
+    public void shutdown() {
+        snapshotExecutor.shutdown();
+        try {
+            if (!snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("等待快照写入超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
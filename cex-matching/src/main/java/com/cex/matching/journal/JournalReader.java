@@ -0,0 +1,124 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.sequencer.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 命令日志读取器（重启恢复时重放）
+ *
+ * 【结束条件】
+ * 每个段读到 length = 0、长度越界或 CRC 不匹配（写入途中断电）为止，
+ * 之后的段从上一段最后一条有效记录的下一个序号开始（见 JournalWriter），因此可以继续读取。
+ *
+ * @author cex
+ */
+@Slf4j
+final class JournalReader {
+
+    /**
+     * 日志记录处理
+     */
+    interface RecordHandler {
+        void onRecord(long sequence, CommandType type, OrderDTO order);
+    }
+
+    private JournalReader() {
+    }
+
+    /**
+     * 重放序号大于 afterSequence 的记录
+     *
+     * @param dir 日志目录
+     * @param symbol 交易对（补到解码出的订单上）
+     * @param afterSequence 快照已包含的最后一个序号
+     * @param handler 记录处理
+     * @return 最后一条有效记录的序号（没有记录时返回 afterSequence）
+     */
+    static long replay(Path dir, String symbol, long afterSequence, RecordHandler handler) throws IOException {
+        List<Path> segments = listSegments(dir);
+        long lastSequence = afterSequence;
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < segments.size(); i++) {
+            // 下一段的首个序号不超过 afterSequence + 1，说明本段的记录都已包含在快照中
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            lastSequence = replaySegment(segments.get(i), symbol, lastSequence, crc, handler);
+        }
+        return lastSequence;
+    }
+
+    private static long replaySegment(Path file, String symbol, long lastSequence, CRC32C crc,
+                                      RecordHandler handler) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (buf.remaining() >= JournalWriter.HEADER_SIZE) {
+            int position = buf.position();
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length < JournalWriter.BODY_PREFIX_SIZE || length > buf.remaining()) {
+                break;
+            }
+            ByteBuffer body = buf.slice();
+            body.limit(length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("日志记录校验失败，视为日志结尾: file={}, position={}", file, position);
+                break;
+            }
+            buf.position(buf.position() + length);
+
+            long sequence = body.getLong();
+            if (sequence <= lastSequence) {
+                continue;
+            }
+            if (sequence != lastSequence + 1) {
+                log.warn("日志序号不连续: file={}, expected={}, actual={}", file, lastSequence + 1, sequence);
+            }
+            CommandType type = CommandCodec.commandType(body.get());
+            OrderDTO order = body.hasRemaining() ? CommandCodec.readOrder(body, symbol) : null;
+            if (type != null) {
+                handler.onRecord(sequence, type, order);
+            }
+            lastSequence = sequence;
+        }
+        return lastSequence;
+    }
+
+    /**
+     * 按首个序号排序的日志段
+     */
+    static List<Path> listSegments(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(JournalWriter.SEGMENT_SUFFIX))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - JournalWriter.SEGMENT_SUFFIX.length()));
+    }
+}
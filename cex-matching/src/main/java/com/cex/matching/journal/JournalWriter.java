@@ -0,0 +1,169 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 命令日志写入器（内存映射、只追加）
+ *
+ * 【文件】
+ * 日志按段存放：{journalDir}/{首条记录序号，20 位补零}.journal，每段大小固定（预分配并映射到内存）。
+ * 当前段写满后关闭（force 刷盘）并创建下一段。
+ *
+ * 【记录格式】
+ * ```
+ * int  length   后面 crc 之后的字节数（0 表示没有更多记录）
+ * int  crc      CRC32C(seq, type, payload)
+ * long seq      命令序号（每个交易对从 1 开始连续递增）
+ * byte type     命令类型（见 CommandCodec）
+ * ...  payload  订单编码（HALT/RESUME 没有 payload）
+ * ```
+ * 先写 crc 和内容，最后写 length：进程在写入途中崩溃时 length 仍为 0，读取时视为日志结尾。
+ *
+ * 【耗时】
+ * 编码到可复用的堆内缓冲区 + CRC32C + 一次内存拷贝到映射区域，不做系统调用，
+ * 每条命令通常在 1 微秒以内。数据写入页缓存后由操作系统回写，进程崩溃不会丢失；
+ * 只有机器掉电会丢失最后一部分未回写的记录（段切换和关闭时会 force 刷盘）。
+ *
+ * 【线程安全】
+ * 只由所属交易对的定序器线程调用
+ *
+ * @author cex
+ */
+@Slf4j
+final class JournalWriter {
+
+    /** 记录头：length + crc */
+    static final int HEADER_SIZE = 8;
+
+    /** 记录体固定部分：seq + type */
+    static final int BODY_PREFIX_SIZE = 9;
+
+    /** 日志段文件后缀 */
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path dir;
+
+    private final int segmentSize;
+
+    private final CRC32C crc = new CRC32C();
+
+    /** 编码缓冲区（记录体），不够时扩容 */
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    /** 当前日志段 */
+    private MappedByteBuffer segment;
+
+    /** 最后写入的命令序号 */
+    private long lastSequence;
+
+    JournalWriter(Path dir, int segmentSize, long lastSequence) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * 追加一条命令
+     *
+     * @param typeCode 命令类型编码
+     * @param order 订单（HALT/RESUME 为 null）
+     * @return 命令序号
+     */
+    long append(byte typeCode, OrderDTO order) throws IOException {
+        long sequence = lastSequence + 1;
+        int bodyLength = encode(sequence, typeCode, order);
+        int recordLength = HEADER_SIZE + bodyLength;
+        if (recordLength + 4 > segmentSize) {
+            throw new IOException("日志记录超过段大小: " + recordLength);
+        }
+        // 预留 4 字节，保证段尾总能读到 length = 0 的结束标记
+        if (segment == null || segment.remaining() < recordLength + 4) {
+            roll(sequence);
+        }
+
+        crc.reset();
+        crc.update(scratch.array(), 0, bodyLength);
+        int position = segment.position();
+        segment.putInt(position + 4, (int) crc.getValue());
+        segment.position(position + HEADER_SIZE);
+        scratch.flip();
+        segment.put(scratch);
+        // 最后写 length，记录在此之后才对读取方可见
+        segment.putInt(position, bodyLength);
+
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * 把记录体编码到 scratch，缓冲区不够时扩容重试
+     *
+     * @return 记录体长度
+     */
+    private int encode(long sequence, byte typeCode, OrderDTO order) {
+        while (true) {
+            scratch.clear();
+            try {
+                scratch.putLong(sequence);
+                scratch.put(typeCode);
+                if (order != null) {
+                    CommandCodec.writeOrder(scratch, order);
+                }
+                return scratch.position();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * 关闭当前段并创建以 firstSequence 命名的新段
+     */
+    private void roll(long firstSequence) throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        Path file = dir.resolve(segmentName(firstSequence));
+        // 上次运行可能留下同名但没有有效记录的段（创建后未写入即崩溃），直接覆盖
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        log.info("创建日志段: {}", file);
+    }
+
+    /**
+     * 刷盘当前段
+     */
+    void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * 关闭（刷盘，之后不能再写入）
+     */
+    void close() {
+        force();
+        segment = null;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,185 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 订单簿二进制快照
+ *
+ * 【文件】
+ * {snapshotDir}/{快照包含的最后一个命令序号，20 位补零}.snapshot，先写临时文件再原子改名。
+ *
+ * 【格式】
+ * ```
+ * int  magic          "CEXS"
+ * int  version        CommandCodec.VERSION
+ * long journalSeq     快照包含的最后一个命令序号
+ * long bookSequence   盘口增量序号
+ * byte tradingHalt
+ * int  orderCount
+ * ...  orders         按撮合优先级排列（见 CoinTrader.forEachRestingOrder），含成交进度
+ * int  crc            CRC32C（前面所有字节）
+ * ```
+ * 订单按 BigDecimal 编码，与交易对精度无关，精度调整后快照仍可恢复。
+ *
+ * @author cex
+ */
+@Slf4j
+final class SnapshotStore {
+
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final int MAGIC = 0x43455853;
+
+    private SnapshotStore() {
+    }
+
+    /**
+     * 快照内容
+     */
+    static final class BookSnapshot {
+        final long journalSequence;
+        final long bookSequence;
+        final boolean tradingHalt;
+        final List<OrderDTO> orders;
+
+        BookSnapshot(long journalSequence, long bookSequence, boolean tradingHalt, List<OrderDTO> orders) {
+            this.journalSequence = journalSequence;
+            this.bookSequence = bookSequence;
+            this.tradingHalt = tradingHalt;
+            this.orders = orders;
+        }
+    }
+
+    /**
+     * 序列化订单簿（必须在定序器线程中调用，两条命令之间订单簿一致）
+     *
+     * @param trader 交易器
+     * @param journalSequence 已执行的最后一个命令序号
+     * @return 快照文件内容
+     */
+    static byte[] capture(CoinTrader trader, long journalSequence) {
+        int capacity = 64 + trader.getRestingOrderCount() * 192;
+        while (true) {
+            ByteBuffer buf = ByteBuffer.allocate(capacity);
+            try {
+                buf.putInt(MAGIC);
+                buf.putInt(CommandCodec.VERSION);
+                buf.putLong(journalSequence);
+                buf.putLong(trader.getBookSequence());
+                buf.put((byte) (trader.isTradingHalt() ? 1 : 0));
+                buf.putInt(trader.getRestingOrderCount());
+                trader.forEachRestingOrder(order -> CommandCodec.writeOrder(buf, order));
+                CRC32C crc = new CRC32C();
+                crc.update(buf.array(), 0, buf.position());
+                buf.putInt((int) crc.getValue());
+                byte[] bytes = new byte[buf.position()];
+                System.arraycopy(buf.array(), 0, bytes, 0, bytes.length);
+                return bytes;
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * 写入快照文件（后台线程）
+     */
+    static void write(Path dir, long journalSequence, byte[] bytes) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(snapshotName(journalSequence));
+        Path tmp = dir.resolve(snapshotName(journalSequence) + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取最新的有效快照（最新的损坏时依次尝试更早的）
+     *
+     * @return 快照；没有可用快照时返回 null
+     */
+    static BookSnapshot loadLatest(Path dir, String symbol) throws IOException {
+        List<Path> snapshots = list(dir);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            try {
+                return read(ByteBuffer.wrap(Files.readAllBytes(file)), symbol);
+            } catch (RuntimeException e) {
+                log.warn("快照不可用，尝试更早的快照: file={}, error={}", file, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析快照内容（主节点发送给备节点的快照与快照文件格式相同）
+     */
+    static BookSnapshot decode(byte[] bytes, String symbol) {
+        return read(ByteBuffer.wrap(bytes), symbol);
+    }
+
+    private static BookSnapshot read(ByteBuffer buf, String symbol) {
+        int crcPosition = buf.limit() - 4;
+        if (crcPosition < 0) {
+            throw new IllegalStateException("快照文件不完整");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, crcPosition);
+        if ((int) crc.getValue() != buf.getInt(crcPosition)) {
+            throw new IllegalStateException("快照校验失败");
+        }
+        if (buf.getInt() != MAGIC) {
+            throw new IllegalStateException("不是快照文件");
+        }
+        int version = buf.getInt();
+        if (version != CommandCodec.VERSION) {
+            throw new IllegalStateException("不支持的快照版本: " + version);
+        }
+        long journalSequence = buf.getLong();
+        long bookSequence = buf.getLong();
+        boolean tradingHalt = buf.get() != 0;
+        int count = buf.getInt();
+        List<OrderDTO> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(CommandCodec.readOrder(buf, symbol));
+        }
+        return new BookSnapshot(journalSequence, bookSequence, tradingHalt, orders);
+    }
+
+    /**
+     * 按序号排序的快照文件
+     */
+    static List<Path> list(Path dir) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return snapshots;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .sorted()
+                    .forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    static long journalSequence(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    static String snapshotName(long journalSequence) {
+        return String.format("%020d%s", journalSequence, SNAPSHOT_SUFFIX);
+    }
+}
@@ -0,0 +1,308 @@
+package com.cex.matching.loader;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.domain.dto.LoadProgressDTO;
+import com.cex.matching.domain.entity.OpenOrder;
+import com.cex.matching.domain.entity.TradeSymbol;
+import com.cex.matching.mapper.OpenOrderMapper;
+import com.cex.matching.mapper.TradeSymbolMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单簿启动加载器（从交易服务的 trade_order 表重建订单簿）
+ *
+ * 【作用】
+ * 没有命令日志可恢复时（首次部署、关闭了 matching.journal、数据目录丢失），
+ * 从订单表加载状态为 0/1 的订单重建订单簿，避免重启后用空订单簿撮合。
+ *
+ * 【加载方式】
+ * - keyset 分页：WHERE id > lastId ORDER BY id LIMIT pageSize，不用 OFFSET，百万级订单每页耗时不变
+ * - 状态 0 和 1 分别分页（各自走索引范围），按 id 归并，id 自增即创建顺序，同价位保持时间优先
+ * - 订单直接放回订单簿（CoinTrader.restoreOrder），不撮合、不发送消息
+ * - 在各交易对自己的定序器线程中执行，交易对之间并行；数据库并发由 parallelism 限制
+ *
+ * 【时间预算】
+ * 单个交易对加载超过 timeoutSeconds 视为失败，交易器保持未就绪（订单被取消，而不是和不完整的订单簿撮合）；
+ * 每查询一页检查一次，单页查询另有语句超时（OpenOrderMapper.PAGE_TIMEOUT_SECONDS），卡住的查询不会无限等待
+ *
+ * 【部署要求】
+ * 订单表、交易对表在交易服务的库（matching.loader.trade-schema）中，通过撮合服务的数据源跨库查询：
+ * 两个库必须在同一个 MySQL 实例上，撮合服务的账号需要这两张表的 SELECT 权限，否则关闭 matching.loader
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class OrderBookLoader {
+
+    /** 每加载多少条订单输出一次进度日志 */
+    private static final long PROGRESS_LOG_INTERVAL = 100_000L;
+
+    private final TradeSymbolMapper tradeSymbolMapper;
+
+    private final OpenOrderMapper openOrderMapper;
+
+    private final MatchingProperties.Loader config;
+
+    /** 同时从数据库加载的交易对数 */
+    private final Semaphore permits;
+
+    /** 各交易对的加载进度 */
+    private final ConcurrentMap<String, Progress> progress = new ConcurrentHashMap<>();
+
+    public OrderBookLoader(TradeSymbolMapper tradeSymbolMapper, OpenOrderMapper openOrderMapper,
+                           MatchingProperties matchingProperties) {
+        this.tradeSymbolMapper = tradeSymbolMapper;
+        this.openOrderMapper = openOrderMapper;
+        this.config = matchingProperties.getLoader();
+        this.permits = new Semaphore(Math.max(config.getParallelism(), 1));
+    }
+
+    /**
+     * 是否允许从订单表加载
+     */
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 所有正常状态的交易对（启动时预加载）
+     */
+    public List<String> listEnabledSymbols() {
+        if (!config.isEnabled()) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> symbols = new ArrayList<>();
+            for (TradeSymbol tradeSymbol : tradeSymbolMapper.selectEnabledSymbols()) {
+                symbols.add(tradeSymbol.getSymbol());
+            }
+            return symbols;
+        } catch (Exception e) {
+            log.error("查询交易对失败，跳过启动预加载", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 按 trade_symbol 设置交易器精度（必须在恢复/加载订单之前）
+     */
+    public void applySymbolConfig(CoinTrader trader) {
+        TradeSymbol tradeSymbol = tradeSymbolMapper.selectBySymbol(trader.getSymbol());
+        if (tradeSymbol == null) {
+            log.warn("交易对配置不存在，使用默认精度: {}", trader.getSymbol());
+            return;
+        }
+        if (tradeSymbol.getAmountPrecision() != null) {
+            trader.setCoinScale(tradeSymbol.getAmountPrecision());
+        }
+        if (tradeSymbol.getPricePrecision() != null) {
+            trader.setBaseCoinScale(tradeSymbol.getPricePrecision());
+        }
+    }
+
+    /**
+     * 开始加载（记录进度）
+     */
+    public void begin(String symbol) {
+        progress.put(symbol, new Progress(symbol));
+    }
+
+    /**
+     * 加载完成，交易器就绪
+     *
+     * @param source 订单簿来源（JOURNAL / DATABASE / EMPTY）
+     * @param orders 订单簿中的订单数
+     */
+    public void finish(String symbol, String source, long orders) {
+        Progress p = progress.computeIfAbsent(symbol, Progress::new);
+        p.source = source;
+        p.loadedOrders = orders;
+        p.endNanos = System.nanoTime();
+        p.state = "READY";
+        log.info("订单簿就绪: symbol={}, source={}, orders={}, cost={}ms",
+                symbol, source, orders, TimeUnit.NANOSECONDS.toMillis(p.endNanos - p.startNanos));
+    }
+
+    /**
+     * 加载失败，交易器保持未就绪
+     */
+    public void fail(String symbol, Exception e) {
+        Progress p = progress.computeIfAbsent(symbol, Progress::new);
+        p.endNanos = System.nanoTime();
+        p.error = e.getMessage();
+        p.state = "FAILED";
+        log.error("订单簿加载失败，交易器不接收订单: symbol={}", symbol, e);
+    }
+
+    /**
+     * 从订单表加载未完成订单（在交易对的定序器线程中调用）
+     *
+     * @param trader 未就绪的交易器（精度已设置）
+     * @return 加载的订单数
+     */
+    public long loadFromDatabase(CoinTrader trader) throws InterruptedException {
+        String symbol = trader.getSymbol();
+        Progress p = progress.computeIfAbsent(symbol, Progress::new);
+        p.source = "DATABASE";
+        long deadline = p.startNanos + TimeUnit.SECONDS.toNanos(config.getTimeoutSeconds());
+
+        permits.acquire();
+        try {
+            int pageSize = Math.max(config.getPageSize(), 1);
+            PageCursor pending = new PageCursor(p, 0, pageSize, deadline);
+            PageCursor partial = new PageCursor(p, 1, pageSize, deadline);
+            long loaded = 0;
+            while (true) {
+                OpenOrder a = pending.peek();
+                OpenOrder b = partial.peek();
+                if (a == null && b == null) {
+                    break;
+                }
+                // 两个状态按 id（创建顺序）归并
+                OpenOrder next;
+                if (b == null || (a != null && a.getId() < b.getId())) {
+                    next = pending.poll();
+                } else {
+                    next = partial.poll();
+                }
+                trader.restoreOrder(toOrderDTO(next));
+                loaded++;
+                p.loadedOrders = loaded;
+                if (loaded % PROGRESS_LOG_INTERVAL == 0) {
+                    log.info("加载订单簿: symbol={}, loaded={}, cost={}ms", symbol, loaded,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - p.startNanos));
+                }
+            }
+            return loaded;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 订单表记录 → 撮合订单
+     */
+    private OrderDTO toOrderDTO(OpenOrder order) {
+        OrderDTO dto = new OrderDTO();
+        dto.setOrderNo(order.getOrderNo());
+        dto.setUserId(order.getUserId());
+        dto.setSymbol(order.getSymbol());
+        dto.setOrderType(order.getOrderType());
+        dto.setSide(order.getSide());
+        dto.setPrice(order.getPrice());
+        dto.setTriggerPrice(order.getTriggerPrice());
+        dto.setAmount(order.getAmount());
+        dto.setFilledAmount(order.getFilledAmount() != null ? order.getFilledAmount() : BigDecimal.ZERO);
+        dto.setFilledMoney(order.getFilledMoney() != null ? order.getFilledMoney() : BigDecimal.ZERO);
+        dto.setFeeRate(BigDecimal.ZERO);
+        dto.setFeeCoin(order.getFeeCoin());
+        dto.setStatus(order.getStatus());
+        dto.setCreateTime(order.getCreateTime() != null
+                ? order.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null);
+        dto.setExpireTime(order.getExpireTime() != null
+                ? order.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null);
+        return dto;
+    }
+
+    /**
+     * 获取所有交易对的加载进度
+     */
+    public List<LoadProgressDTO> getProgress() {
+        List<LoadProgressDTO> list = new ArrayList<>(progress.size());
+        for (Progress p : progress.values()) {
+            list.add(p.toDTO());
+        }
+        return list;
+    }
+
+    /**
+     * 单个状态的 keyset 分页游标
+     */
+    private class PageCursor {
+        private final Progress progress;
+        private final int status;
+        private final int pageSize;
+        private final long deadline;
+        private List<OpenOrder> page = Collections.emptyList();
+        private int index;
+        private long lastId;
+        private boolean exhausted;
+
+        PageCursor(Progress progress, int status, int pageSize, long deadline) {
+            this.progress = progress;
+            this.status = status;
+            this.pageSize = pageSize;
+            this.deadline = deadline;
+        }
+
+        OpenOrder peek() {
+            if (index == page.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                page = openOrderMapper.selectPage(progress.symbol, status, lastId, pageSize);
+                // 每页检查一次时间预算（慢查询时不必等到整十万条）
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("加载超时（" + config.getTimeoutSeconds() + "s），已加载 "
+                            + progress.loadedOrders + " 条");
+                }
+                index = 0;
+                exhausted = page.size() < pageSize;
+                if (page.isEmpty()) {
+                    return null;
+                }
+                lastId = page.get(page.size() - 1).getId();
+            }
+            return page.get(index);
+        }
+
+        OpenOrder poll() {
+            OpenOrder order = peek();
+            index++;
+            return order;
+        }
+    }
+
+    /**
+     * 加载进度（定序器线程写，管理接口读）
+     */
+    private static class Progress {
+        private final String symbol;
+        private final long startNanos = System.nanoTime();
+        private volatile String state = "LOADING";
+        private volatile String source;
+        private volatile long loadedOrders;
+        private volatile long endNanos;
+        private volatile String error;
+
+        Progress(String symbol) {
+            this.symbol = symbol;
+        }
+
+        LoadProgressDTO toDTO() {
+            LoadProgressDTO dto = new LoadProgressDTO();
+            dto.setSymbol(symbol);
+            dto.setState(state);
+            dto.setSource(source);
+            dto.setLoadedOrders(loadedOrders);
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            dto.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(end - startNanos));
+            dto.setError(error);
+            return dto;
+        }
+    }
+}
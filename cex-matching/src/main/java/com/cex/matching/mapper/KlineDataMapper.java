@@ -0,0 +1,46 @@
+package com.cex.matching.mapper;
+
+import com.cex.matching.domain.entity.KlineData;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * K线数据Mapper接口
+ * 
+ * @author cex
+ */
+@Mapper
+public interface KlineDataMapper {
+
+    /**
+     * 批量写入已收盘的K线（一条多值 INSERT）
+     * 
+     * 重复写入同一根K线（失败重试）时以新值覆盖，保证幂等
+     */
+    @Insert({"<script>",
+            "INSERT INTO kline_data (symbol, period, open_price, high_price, low_price, close_price, volume, amount, trade_count, start_time, end_time) VALUES ",
+            "<foreach collection='list' item='k' separator=','>",
+            "(#{k.symbol}, #{k.period}, #{k.openPrice}, #{k.highPrice}, #{k.lowPrice}, #{k.closePrice}, #{k.volume}, #{k.amount}, #{k.tradeCount}, #{k.startTime}, #{k.endTime})",
+            "</foreach>",
+            " ON DUPLICATE KEY UPDATE open_price = VALUES(open_price), high_price = VALUES(high_price), low_price = VALUES(low_price), ",
+            "close_price = VALUES(close_price), volume = VALUES(volume), amount = VALUES(amount), trade_count = VALUES(trade_count)",
+            "</script>"})
+    int insertBatch(@Param("list") List<KlineData> list);
+
+    /**
+     * 查询指定时间之前的K线（时间倒序）
+     * 
+     * @param before 开始时间上限（不含）
+     */
+    @Select("SELECT symbol, period, open_price, high_price, low_price, close_price, volume, amount, trade_count, start_time, end_time "
+            + "FROM kline_data "
+            + "WHERE symbol = #{symbol} AND period = #{period} AND start_time < #{before} AND deleted = 0 "
+            + "ORDER BY start_time DESC LIMIT #{limit}")
+    List<KlineData> selectBefore(@Param("symbol") String symbol, @Param("period") String period,
+                                 @Param("before") Date before, @Param("limit") Integer limit);
+}
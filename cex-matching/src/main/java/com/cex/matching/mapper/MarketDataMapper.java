@@ -0,0 +1,30 @@
+package com.cex.matching.mapper;
+
+import com.cex.matching.domain.entity.MarketData;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 行情数据Mapper接口
+ * 
+ * @author cex
+ */
+@Mapper
+public interface MarketDataMapper {
+
+    /**
+     * 批量写入各交易对的24小时行情（一条多值 INSERT，symbol 唯一，已存在时更新）
+     */
+    @Insert({"<script>",
+            "INSERT INTO market_data (symbol, price, change_24h, change_rate_24h, high_24h, low_24h, volume_24h, amount_24h) VALUES ",
+            "<foreach collection='list' item='m' separator=','>",
+            "(#{m.symbol}, #{m.price}, #{m.change24h}, #{m.changeRate24h}, #{m.high24h}, #{m.low24h}, #{m.volume24h}, #{m.amount24h})",
+            "</foreach>",
+            " ON DUPLICATE KEY UPDATE price = VALUES(price), change_24h = VALUES(change_24h), change_rate_24h = VALUES(change_rate_24h), ",
+            "high_24h = VALUES(high_24h), low_24h = VALUES(low_24h), volume_24h = VALUES(volume_24h), amount_24h = VALUES(amount_24h)",
+            "</script>"})
+    int upsertBatch(@Param("list") List<MarketData> list);
+}
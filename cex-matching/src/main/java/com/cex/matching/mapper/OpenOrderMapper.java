@@ -0,0 +1,47 @@
+package com.cex.matching.mapper;
+
+import com.cex.matching.domain.entity.OpenOrder;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 未完成订单Mapper接口（只读，表在交易服务的库中）
+ * 
+ * 【跨库访问】
+ * 通过撮合服务自己的数据源跨库查询，库名为 ${tradeSchema}（matching.loader.trade-schema，默认 cex_trade）：
+ * 交易服务的库必须与撮合服务的库在同一个 MySQL 实例上，且撮合服务的数据库账号需要该库 trade_order、
+ * trade_symbol 的 SELECT 权限。库在其他实例上时关闭 matching.loader，只用命令日志恢复订单簿。
+ * 
+ * @author cex
+ */
+@Mapper
+public interface OpenOrderMapper {
+
+    /** 单页查询超时（秒）：走索引的一页只需要毫秒级，超时说明锁等待或执行计划异常，不能占满整个加载时间预算 */
+    int PAGE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * 按主键游标分页查询指定状态的订单（keyset 分页）
+     * 
+     * 【为什么按状态分别查询？】
+     * 走 idx_symbol_status_id (symbol, status, id) 索引：等值 + 主键范围，每页只扫描 limit 行，
+     * 不会像 status IN (0, 1) ORDER BY id 那样需要合并两个范围再排序；两个状态的结果由调用方按 id 归并。
+     * 已有的 trade_order 需要先执行 sql/14_trade_order_upgrade.sql（索引和 trigger_price、expire_time 列）
+     * 
+     * @param symbol 交易对
+     * @param status 订单状态（0待成交 1部分成交）
+     * @param lastId 上一页最后一条的 id（第一页传 0）
+     * @param limit 每页条数
+     */
+    @Options(timeout = PAGE_TIMEOUT_SECONDS)
+    @Select("SELECT id, order_no, user_id, symbol, order_type, side, price, trigger_price, amount, filled_amount, filled_money, status, fee_coin, create_time, expire_time "
+            + "FROM ${tradeSchema}.trade_order "
+            + "WHERE symbol = #{symbol} AND status = #{status} AND id > #{lastId} AND deleted = 0 "
+            + "ORDER BY id LIMIT #{limit}")
+    List<OpenOrder> selectPage(@Param("symbol") String symbol, @Param("status") Integer status,
+                               @Param("lastId") Long lastId, @Param("limit") Integer limit);
+}
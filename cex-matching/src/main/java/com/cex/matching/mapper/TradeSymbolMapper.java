@@ -0,0 +1,31 @@
+package com.cex.matching.mapper;
+
+import com.cex.matching.domain.entity.TradeSymbol;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 交易对配置Mapper接口（只读，表在交易服务的库中）
+ * 
+ * 库名为 ${tradeSchema}（matching.loader.trade-schema），跨库访问的前提见 OpenOrderMapper
+ * 
+ * @author cex
+ */
+@Mapper
+public interface TradeSymbolMapper {
+
+    /**
+     * 查询所有正常状态的交易对
+     */
+    @Select("SELECT symbol, price_precision, amount_precision FROM ${tradeSchema}.trade_symbol WHERE status = 0 AND deleted = 0")
+    List<TradeSymbol> selectEnabledSymbols();
+
+    /**
+     * 根据交易对名称查询
+     */
+    @Select("SELECT symbol, price_precision, amount_precision FROM ${tradeSchema}.trade_symbol WHERE symbol = #{symbol} AND deleted = 0")
+    TradeSymbol selectBySymbol(@Param("symbol") String symbol);
+}
@@ -0,0 +1,107 @@
+package com.cex.matching.market;
+
+import com.cex.common.dto.KlineDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * 一根K线（OHLCV，可变，只在 SymbolKlines 的锁内修改）
+ *
+ * @author cex
+ */
+final class Candle {
+
+    /** 开始时间（毫秒，含） */
+    final long openTime;
+
+    /** 结束时间（毫秒，不含） */
+    final long closeTime;
+
+    BigDecimal open;
+
+    BigDecimal high;
+
+    BigDecimal low;
+
+    BigDecimal close;
+
+    BigDecimal volume = BigDecimal.ZERO;
+
+    BigDecimal amount = BigDecimal.ZERO;
+
+    int count;
+
+    Candle(long openTime, long closeTime) {
+        this.openTime = openTime;
+        this.closeTime = closeTime;
+    }
+
+    /**
+     * 计入一笔成交
+     */
+    void addTrade(BigDecimal price, BigDecimal tradeAmount, BigDecimal money) {
+        if (open == null) {
+            open = price;
+            high = price;
+            low = price;
+        } else {
+            high = high.max(price);
+            low = low.min(price);
+        }
+        close = price;
+        volume = volume.add(tradeAmount);
+        amount = amount.add(money);
+        count++;
+    }
+
+    /**
+     * 合并一根时间更晚的低周期K线
+     */
+    void merge(Candle later) {
+        if (later.open == null) {
+            return;
+        }
+        if (open == null) {
+            open = later.open;
+            high = later.high;
+            low = later.low;
+        } else {
+            high = high.max(later.high);
+            low = low.min(later.low);
+        }
+        close = later.close;
+        volume = volume.add(later.volume);
+        amount = amount.add(later.amount);
+        count += later.count;
+    }
+
+    /**
+     * 以 later 为内容、按指定区间新建一根K线（汇总到高周期的第一根）
+     */
+    static Candle from(Candle later, long openTime, long closeTime) {
+        Candle candle = new Candle(openTime, closeTime);
+        candle.merge(later);
+        return candle;
+    }
+
+    Candle copy() {
+        return from(this, openTime, closeTime);
+    }
+
+    KlineDTO toDTO(String symbol, KlinePeriod period, boolean closed) {
+        KlineDTO dto = new KlineDTO();
+        dto.setSymbol(symbol);
+        dto.setPeriod(period.getCode());
+        dto.setOpenTime(openTime);
+        dto.setCloseTime(closeTime);
+        dto.setOpen(open);
+        dto.setHigh(high);
+        dto.setLow(low);
+        dto.setClose(close);
+        dto.setVolume(volume);
+        dto.setAmount(amount);
+        dto.setCount(count);
+        dto.setClosed(closed);
+        return dto;
+    }
+}
@@ -0,0 +1,256 @@
+package com.cex.matching.market;
+
+import com.cex.common.core.exception.BusinessException;
+import com.cex.common.dto.KlineDTO;
+import com.cex.common.dto.TradeRecordDTO;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.core.TradeFeed;
+import com.cex.matching.domain.entity.KlineData;
+import com.cex.matching.mapper.KlineDataMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * K线聚合（1m / 5m / 15m / 1h / 4h / 1d）
+ *
+ * 【数据来源】
+ * 聚合线程每 pollIntervalMs 取出各交易对 K线专用成交队列（TradeFeed.KLINE）中的新成交，撮合线程不参与K线计算。
+ * 不读取 RecentTradeBuffer（给 /matching/trades 的固定容量环，读取不及时会被覆盖）；
+ * 队列中的成交读取之前不会被覆盖，只有积压超过 feedCapacity 时才丢弃新成交，记录告警。
+ *
+ * 【计算】
+ * 见 SymbolKlines：成交只更新 1m，高周期由低周期收盘的K线汇总，不重新计算
+ *
+ * 【持久化】
+ * 收盘的K线先放入待写入列表，每 flushIntervalMs 按 batchSize 分批写入 kline_data（多值 INSERT）；
+ * 写入失败时保留，下次重试。
+ *
+ * 【查询】
+ * 内存中保留每个周期最近 maxCandles 根，不够时再从 kline_data 补充更早的K线。
+ * 分片部署时，非本节点负责的交易对只能从表中查到已收盘的K线。
+ *
+ * 【重启】
+ * 第一次读取某个交易对时，5m ~ 1d 的当前K线用 kline_data 中同一周期内已收盘的低周期K线恢复
+ * （与 TickerAggregator 相同的做法），早于最后一根 1m K线结束时间的成交不再重复计入。
+ * 重启前未收盘那一分钟的成交只在内存中，恢复不了：这一根 1m K线只包含重启之后的成交。
+ *
+ * 【备节点】
+ * 备节点不聚合也不写入 kline_data，接管后第一次读取时才恢复当前K线（此时表中是主节点写入的最新K线）。
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class KlineAggregator {
+
+    /** 单次查询最多返回的K线数 */
+    private static final int MAX_LIMIT = 1500;
+
+    /** 待写入的K线上限（数据库长时间不可用时丢弃最旧的） */
+    private static final int MAX_PENDING = 100_000;
+
+    private final CoinTraderFactory traderFactory;
+
+    private final KlineDataMapper klineDataMapper;
+
+    private final MatchingProperties.Kline config;
+
+    private final long offsetMillis;
+
+    /** 交易对 → 各周期K线 */
+    private final ConcurrentMap<String, SymbolKlines> klines = new ConcurrentHashMap<>();
+
+    /** 待写入的已收盘K线（只由聚合线程访问） */
+    private final List<KlineData> pending = new ArrayList<>();
+
+    private long lastFlushMillis;
+
+    private final ScheduledExecutorService aggregateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "matching-kline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public KlineAggregator(CoinTraderFactory traderFactory, KlineDataMapper klineDataMapper,
+                           MatchingProperties matchingProperties) {
+        this.traderFactory = traderFactory;
+        this.klineDataMapper = klineDataMapper;
+        this.config = matchingProperties.getKline();
+        this.offsetMillis = ZoneOffset.of(config.getZoneOffset()).getTotalSeconds() * 1000L;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long interval = Math.max(config.getPollIntervalMs(), 1);
+        aggregateExecutor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("K线聚合: poll={}ms, flush={}ms, zoneOffset={}", interval, config.getFlushIntervalMs(), config.getZoneOffset());
+    }
+
+    /**
+     * 读取新成交、收盘到期的K线、定期写入数据库（聚合线程）
+     */
+    void poll() {
+        if (traderFactory.isStandby()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<TradeRecordDTO> trades = new ArrayList<>();
+            for (Map.Entry<String, CoinTrader> entry : traderFactory.getAllTraders().entrySet()) {
+                String symbol = entry.getKey();
+                SymbolKlines symbolKlines = klines.get(symbol);
+                if (symbolKlines == null) {
+                    symbolKlines = load(symbol, now);
+                    klines.put(symbol, symbolKlines);
+                }
+                TradeFeed feed = entry.getValue().getTradeFeed(TradeFeed.KLINE);
+                trades.clear();
+                long lost = feed != null ? feed.drain(trades) : 0;
+                if (lost > 0) {
+                    log.error("K线聚合积压超过 feed-capacity，丢失成交: symbol={}, lost={}", symbol, lost);
+                }
+                for (TradeRecordDTO trade : trades) {
+                    symbolKlines.onTrade(trade.getTradeTime().getTime(), trade.getPrice(), trade.getAmount(),
+                            trade.getMoney(), pending);
+                }
+                symbolKlines.tick(now, pending);
+            }
+            if (!pending.isEmpty() && now - lastFlushMillis >= config.getFlushIntervalMs()) {
+                flush();
+                lastFlushMillis = now;
+            }
+        } catch (Exception e) {
+            log.error("K线聚合失败", e);
+        }
+    }
+
+    /**
+     * 用 kline_data 中已收盘的低周期K线恢复各周期的当前K线
+     */
+    private SymbolKlines load(String symbol, long now) {
+        SymbolKlines symbolKlines = new SymbolKlines(symbol, offsetMillis, config.getMaxCandles());
+        try {
+            KlinePeriod[] periods = KlinePeriod.values();
+            for (int level = 1; level < periods.length; level++) {
+                KlinePeriod child = periods[level - 1];
+                long openTime = periods[level].bucket(now, offsetMillis);
+                long childOpenTime = child.bucket(now, offsetMillis);
+                int limit = (int) ((childOpenTime - openTime) / child.getMillis());
+                if (limit == 0) {
+                    continue;
+                }
+                List<KlineData> candles = klineDataMapper.selectBefore(symbol, child.getCode(), new Date(childOpenTime), limit);
+                // 时间倒序 → 从最早的开始汇总
+                for (int i = candles.size() - 1; i >= 0; i--) {
+                    if (candles.get(i).getStartTime().getTime() >= openTime) {
+                        symbolKlines.seed(child, candles.get(i));
+                    }
+                }
+            }
+            List<KlineData> last = klineDataMapper.selectBefore(symbol, KlinePeriod.ONE_MINUTE.getCode(), new Date(now), 1);
+            if (!last.isEmpty()) {
+                symbolKlines.seedUntil(last.get(0).getEndTime().getTime());
+            }
+        } catch (Exception e) {
+            log.warn("恢复当前K线失败，从空K线开始: symbol={}, {}", symbol, e.getMessage());
+        }
+        return symbolKlines;
+    }
+
+    private void flush() {
+        int batchSize = Math.max(config.getBatchSize(), 1);
+        int written = 0;
+        try {
+            while (written < pending.size()) {
+                int end = Math.min(written + batchSize, pending.size());
+                klineDataMapper.insertBatch(pending.subList(written, end));
+                written = end;
+            }
+        } catch (Exception e) {
+            log.warn("K线写入失败，下次重试: pending={}, {}", pending.size() - written, e.getMessage());
+        }
+        pending.subList(0, written).clear();
+        if (pending.size() > MAX_PENDING) {
+            int dropped = pending.size() - MAX_PENDING;
+            pending.subList(0, dropped).clear();
+            log.error("K线待写入过多，丢弃最旧的 {} 根", dropped);
+        }
+    }
+
+    /**
+     * 查询K线（时间升序，最后一根可能未收盘）
+     *
+     * @param period 周期代码（1m, 5m, 15m, 1h, 4h, 1d）
+     * @param limit 最多返回的K线数
+     */
+    public List<KlineDTO> query(String symbol, String period, int limit) {
+        KlinePeriod klinePeriod = KlinePeriod.of(period);
+        if (klinePeriod == null) {
+            throw new BusinessException("不支持的K线周期: " + period);
+        }
+        int size = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        SymbolKlines symbolKlines = klines.get(symbol);
+        List<KlineDTO> recent = symbolKlines != null ? symbolKlines.latest(klinePeriod, size) : Collections.emptyList();
+        if (recent.size() >= size) {
+            return recent;
+        }
+        // 内存中不够，从表中补充更早的已收盘K线
+        Date before = new Date(recent.isEmpty() ? System.currentTimeMillis() : recent.get(0).getOpenTime());
+        List<KlineData> older = klineDataMapper.selectBefore(symbol, period, before, size - recent.size());
+        List<KlineDTO> result = new ArrayList<>(older.size() + recent.size());
+        for (int i = older.size() - 1; i >= 0; i--) {
+            result.add(toDTO(older.get(i)));
+        }
+        result.addAll(recent);
+        return result;
+    }
+
+    private static KlineDTO toDTO(KlineData klineData) {
+        KlineDTO dto = new KlineDTO();
+        dto.setSymbol(klineData.getSymbol());
+        dto.setPeriod(klineData.getPeriod());
+        dto.setOpenTime(klineData.getStartTime().getTime());
+        dto.setCloseTime(klineData.getEndTime().getTime());
+        dto.setOpen(klineData.getOpenPrice());
+        dto.setHigh(klineData.getHighPrice());
+        dto.setLow(klineData.getLowPrice());
+        dto.setClose(klineData.getClosePrice());
+        dto.setVolume(klineData.getVolume());
+        dto.setAmount(klineData.getAmount());
+        dto.setCount(klineData.getTradeCount());
+        dto.setClosed(true);
+        return dto;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aggregateExecutor.shutdown();
+        try {
+            if (config.isEnabled() && aggregateExecutor.awaitTermination(1, TimeUnit.SECONDS) && !pending.isEmpty()) {
+                // 停止前写入已收盘的K线
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
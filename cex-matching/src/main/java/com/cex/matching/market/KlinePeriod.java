@@ -0,0 +1,61 @@
+package com.cex.matching.market;
+
+/**
+ * K线周期
+ *
+ * 【汇总关系】
+ * 只有 1m 直接由成交更新，其余周期由下一级周期的已收盘K线汇总：
+ * 1m → 5m → 15m → 1h → 4h → 1d（每一级都是下一级的整数倍，且按同一时区对齐）
+ *
+ * @author cex
+ */
+public enum KlinePeriod {
+
+    ONE_MINUTE("1m", 60_000L),
+    FIVE_MINUTES("5m", 5 * 60_000L),
+    FIFTEEN_MINUTES("15m", 15 * 60_000L),
+    ONE_HOUR("1h", 60 * 60_000L),
+    FOUR_HOURS("4h", 4 * 60 * 60_000L),
+    ONE_DAY("1d", 24 * 60 * 60_000L);
+
+    private final String code;
+
+    private final long millis;
+
+    KlinePeriod(String code, long millis) {
+        this.code = code;
+        this.millis = millis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * 时间所在K线的开始时间
+     *
+     * @param time 时间（毫秒）
+     * @param offsetMillis 时区偏移（毫秒），日线按该时区的 0 点切分
+     */
+    public long bucket(long time, long offsetMillis) {
+        return Math.floorDiv(time + offsetMillis, millis) * millis - offsetMillis;
+    }
+
+    /**
+     * 按周期代码查找
+     *
+     * @return 不支持的周期返回 null
+     */
+    public static KlinePeriod of(String code) {
+        for (KlinePeriod period : values()) {
+            if (period.code.equals(code)) {
+                return period;
+            }
+        }
+        return null;
+    }
+}
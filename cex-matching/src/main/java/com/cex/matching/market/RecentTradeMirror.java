@@ -0,0 +1,141 @@
+package com.cex.matching.market;
+
+import com.cex.common.dto.TradeRecordDTO;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.core.RecentTradeBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 最近成交同步到 Redis
+ *
+ * 【作用】
+ * 定期读取各交易对 RecentTradeBuffer 中的新成交，写入 Redis 列表 trade:records:{symbol}
+ * （最新在前，只保留 capacity 条），供其他服务读取。
+ *
+ * 【批量】
+ * 撮合线程不访问 Redis。同步线程每 mirrorIntervalMs 把所有交易对的新成交合并成一次 pipeline：
+ * 每个交易对一条 LPUSH（多条成交）+ 一条 LTRIM，一次网络往返，与成交笔数无关。
+ *
+ * 【失败】
+ * 写入失败时不推进读取位置，下次重试；落后超过缓冲区容量的成交不再同步（Redis 只保留最近 capacity 条）
+ *
+ * 【备节点】
+ * 备节点不同步，Redis 中的最近成交只由主节点写入；接管后从缓冲区的起点开始同步
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class RecentTradeMirror {
+
+    private final CoinTraderFactory traderFactory;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final MatchingProperties.RecentTrades config;
+
+    /** 交易对 → 已同步到的成交序号（只由同步线程访问） */
+    private final Map<String, Long> cursors = new HashMap<>();
+
+    private final ScheduledExecutorService mirrorExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "matching-trade-mirror");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RecentTradeMirror(CoinTraderFactory traderFactory, RedisTemplate<String, Object> redisTemplate,
+                             MatchingProperties matchingProperties) {
+        this.traderFactory = traderFactory;
+        this.redisTemplate = redisTemplate;
+        this.config = matchingProperties.getRecentTrades();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isMirrorEnabled()) {
+            return;
+        }
+        long interval = Math.max(config.getMirrorIntervalMs(), 1);
+        mirrorExecutor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("最近成交同步到 Redis: interval={}ms, capacity={}", interval, config.getCapacity());
+    }
+
+    /**
+     * 同步一次（同步线程）
+     */
+    void flush() {
+        if (traderFactory.isStandby()) {
+            return;
+        }
+        try {
+            Map<String, List<TradeRecordDTO>> batch = new LinkedHashMap<>();
+            Map<String, Long> nextCursors = new HashMap<>();
+            for (Map.Entry<String, CoinTrader> entry : traderFactory.getAllTraders().entrySet()) {
+                RecentTradeBuffer buffer = entry.getValue().getRecentTrades();
+                long cursor = cursors.getOrDefault(entry.getKey(), 0L);
+                if (buffer.getPublished() == cursor) {
+                    continue;
+                }
+                List<TradeRecordDTO> records = new ArrayList<>();
+                nextCursors.put(entry.getKey(), buffer.readSince(cursor, records));
+                if (!records.isEmpty()) {
+                    batch.put(entry.getKey(), records);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            cursors.putAll(nextCursors);
+        } catch (Exception e) {
+            log.warn("最近成交同步 Redis 失败，下次重试: {}", e.getMessage());
+        }
+    }
+
+    private void write(Map<String, List<TradeRecordDTO>> batch) {
+        long keep = config.getCapacity();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (Map.Entry<String, List<TradeRecordDTO>> entry : batch.entrySet()) {
+                    String key = config.getKeyPrefix() + entry.getKey();
+                    // 按时间顺序 LPUSH，最新的成交在列表头部
+                    operations.opsForList().leftPushAll(key, entry.getValue().toArray());
+                    operations.opsForList().trim(key, 0, keep - 1);
+                }
+                return null;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        mirrorExecutor.shutdown();
+        try {
+            if (config.isMirrorEnabled() && mirrorExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // 停止前同步最后一批
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.cex.matching.market;
+
+import com.cex.common.dto.KlineDTO;
+import com.cex.matching.domain.entity.KlineData;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 一个交易对的各周期K线（内存）
+ *
+ * 【增量更新】
+ * - 成交只更新当前 1m K线（O(1)）
+ * - K线收盘时汇总到上一级周期的当前K线，上一级周期不会重新扫描成交或低周期K线
+ * - 当前的高周期K线 = 已汇总部分 + 下一级周期的当前K线（查询时合并，见 live）
+ *
+ * 【收盘】
+ * 新周期的第一笔成交，或定时检查（tick）发现结束时间已过，都会让当前K线收盘，
+ * 收盘按周期从低到高进行，保证低周期先汇总到高周期，高周期再收盘。
+ *
+ * 【内存】
+ * 每个周期只保留最近 maxHistory 根已收盘的K线，更早的从 kline_data 表查询
+ *
+ * 【恢复】
+ * 重启、接管后第一次读取时，高周期的当前K线用表中已收盘的低周期K线恢复（seed），
+ * 否则收盘时会用只包含重启之后部分的K线覆盖表中的同一根K线；
+ * 早于表中最后一根 1m K线结束时间的成交不再计入，已写入的 1m K线不会被改写。
+ *
+ * 【线程安全】
+ * K线聚合线程写入，查询线程读取，方法都在对象锁内执行
+ *
+ * @author cex
+ */
+final class SymbolKlines {
+
+    private static final KlinePeriod[] PERIODS = KlinePeriod.values();
+
+    private final String symbol;
+
+    /** 时区偏移（毫秒） */
+    private final long offsetMillis;
+
+    private final int maxHistory;
+
+    /** 各周期当前（未收盘）的K线，下标为 KlinePeriod.ordinal() */
+    private final Candle[] current = new Candle[PERIODS.length];
+
+    /** 各周期已收盘的K线（时间升序） */
+    private final List<ArrayDeque<Candle>> history = new ArrayList<>(PERIODS.length);
+
+    /** 早于该时间的成交已计入表中的 1m K线（毫秒） */
+    private long seededUntil;
+
+    SymbolKlines(String symbol, long offsetMillis, int maxHistory) {
+        this.symbol = symbol;
+        this.offsetMillis = offsetMillis;
+        this.maxHistory = Math.max(maxHistory, 1);
+        for (int i = 0; i < PERIODS.length; i++) {
+            history.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * 计入一笔成交
+     *
+     * @param closed 输出：因此收盘的K线
+     */
+    synchronized void onTrade(long time, BigDecimal price, BigDecimal amount, BigDecimal money, List<KlineData> closed) {
+        if (time < seededUntil) {
+            return;
+        }
+        KlinePeriod period = PERIODS[0];
+        long openTime = period.bucket(time, offsetMillis);
+        Candle candle = current[0];
+        // 时钟回拨时计入当前K线，不回头修改已收盘的K线
+        if (candle != null && openTime > candle.openTime) {
+            close(0, closed);
+            candle = null;
+        }
+        if (candle == null) {
+            candle = new Candle(openTime, openTime + period.getMillis());
+            current[0] = candle;
+        }
+        candle.addTrade(price, amount, money);
+    }
+
+    /**
+     * 把表中一根已收盘的K线汇总到上一级周期的当前K线（按时间升序调用，只在第一次读取成交之前）
+     *
+     * @param period 已收盘K线的周期（不能是最高周期）
+     */
+    synchronized void seed(KlinePeriod period, KlineData row) {
+        int level = period.ordinal() + 1;
+        long openTime = PERIODS[level].bucket(row.getStartTime().getTime(), offsetMillis);
+        Candle child = fromEntity(row);
+        Candle candle = current[level];
+        if (candle == null || candle.openTime != openTime) {
+            current[level] = Candle.from(child, openTime, openTime + PERIODS[level].getMillis());
+        } else {
+            candle.merge(child);
+        }
+        if (level == 1) {
+            seededUntil = Math.max(seededUntil, child.closeTime);
+        }
+    }
+
+    /**
+     * 设置已写入表中的 1m K线的结束时间（之前的成交不再计入）
+     */
+    synchronized void seedUntil(long time) {
+        seededUntil = Math.max(seededUntil, time);
+    }
+
+    /**
+     * 收盘结束时间已过的K线（定时调用）
+     *
+     * @param closed 输出：收盘的K线
+     */
+    synchronized void tick(long now, List<KlineData> closed) {
+        for (int level = 0; level < PERIODS.length; level++) {
+            if (current[level] != null && current[level].closeTime <= now) {
+                close(level, closed);
+            }
+        }
+    }
+
+    private void close(int level, List<KlineData> closed) {
+        Candle candle = current[level];
+        current[level] = null;
+        ArrayDeque<Candle> candles = history.get(level);
+        candles.addLast(candle);
+        if (candles.size() > maxHistory) {
+            candles.removeFirst();
+        }
+        closed.add(toEntity(PERIODS[level], candle));
+        if (level + 1 < PERIODS.length) {
+            rollUp(level + 1, candle, closed);
+        }
+    }
+
+    /**
+     * 把收盘的低周期K线汇总到 level 周期的当前K线
+     */
+    private void rollUp(int level, Candle child, List<KlineData> closed) {
+        KlinePeriod period = PERIODS[level];
+        long openTime = period.bucket(child.openTime, offsetMillis);
+        Candle candle = current[level];
+        if (candle != null && openTime > candle.openTime) {
+            close(level, closed);
+            candle = null;
+        }
+        if (candle == null) {
+            current[level] = Candle.from(child, openTime, openTime + period.getMillis());
+        } else {
+            candle.merge(child);
+        }
+    }
+
+    /**
+     * level 周期当前K线的实时内容（已汇总部分 + 下一级周期的实时内容）
+     *
+     * @return 没有成交时返回 null
+     */
+    private Candle live(int level) {
+        Candle child = level > 0 ? live(level - 1) : null;
+        Candle candle = current[level];
+        if (child == null) {
+            return candle == null ? null : candle.copy();
+        }
+        KlinePeriod period = PERIODS[level];
+        long openTime = period.bucket(child.openTime, offsetMillis);
+        if (candle == null || openTime > candle.openTime) {
+            // 本周期还没有已收盘的低周期K线（或当前K线已过期、等待 tick 收盘）
+            return Candle.from(child, openTime, openTime + period.getMillis());
+        }
+        Candle merged = candle.copy();
+        merged.merge(child);
+        return merged;
+    }
+
+    /**
+     * 最近 limit 根K线（时间升序，最后一根可能未收盘）
+     */
+    synchronized List<KlineDTO> latest(KlinePeriod period, int limit) {
+        int level = period.ordinal();
+        Candle live = live(level);
+        ArrayDeque<Candle> candles = history.get(level);
+        int fromHistory = Math.min(candles.size(), live != null ? limit - 1 : limit);
+        List<KlineDTO> result = new ArrayList<>(fromHistory + 1);
+        int skip = candles.size() - fromHistory;
+        Iterator<Candle> iterator = candles.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            Candle candle = iterator.next();
+            if (i >= skip) {
+                result.add(candle.toDTO(symbol, period, true));
+            }
+        }
+        if (live != null) {
+            result.add(live.toDTO(symbol, period, false));
+        }
+        return result;
+    }
+
+    private static Candle fromEntity(KlineData klineData) {
+        Candle candle = new Candle(klineData.getStartTime().getTime(), klineData.getEndTime().getTime());
+        candle.open = klineData.getOpenPrice();
+        candle.high = klineData.getHighPrice();
+        candle.low = klineData.getLowPrice();
+        candle.close = klineData.getClosePrice();
+        candle.volume = klineData.getVolume() != null ? klineData.getVolume() : BigDecimal.ZERO;
+        candle.amount = klineData.getAmount() != null ? klineData.getAmount() : BigDecimal.ZERO;
+        candle.count = klineData.getTradeCount() != null ? klineData.getTradeCount() : 0;
+        return candle;
+    }
+
+    private KlineData toEntity(KlinePeriod period, Candle candle) {
+        KlineData klineData = new KlineData();
+        klineData.setSymbol(symbol);
+        klineData.setPeriod(period.getCode());
+        klineData.setOpenPrice(candle.open);
+        klineData.setHighPrice(candle.high);
+        klineData.setLowPrice(candle.low);
+        klineData.setClosePrice(candle.close);
+        klineData.setVolume(candle.volume);
+        klineData.setAmount(candle.amount);
+        klineData.setTradeCount(candle.count);
+        klineData.setStartTime(new Date(candle.openTime));
+        klineData.setEndTime(new Date(candle.closeTime));
+        return klineData;
+    }
+}
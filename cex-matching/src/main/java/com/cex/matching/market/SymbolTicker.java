@@ -0,0 +1,273 @@
+package com.cex.matching.market;
+
+import com.cex.common.dto.TickerDTO;
+import com.cex.matching.domain.entity.MarketData;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+
+/**
+ * 一个交易对的24小时滚动行情
+ *
+ * 【分钟桶】
+ * 窗口按分钟切成 1440 个桶，放在固定大小的环形数组中（下标 = 分钟 % 1440），桶对象复用。
+ * 成交只更新当前分钟的桶和窗口合计（成交量、成交额、笔数），O(1)；
+ * 桶滑出窗口时从合计中减去，不重新扫描窗口。
+ *
+ * 【最高价 / 最低价】
+ * 不能靠减法维护，用两个单调队列（桶按分钟升序，最高价队列递减、最低价队列递增），
+ * 队首即窗口内的最高 / 最低价；每个桶最多入队出队一次，均摊 O(1)。
+ *
+ * 【开盘价】
+ * firstMinute 始终指向窗口内最早有成交的桶，其开盘价即24小时前的价格
+ *
+ * 【线程安全】
+ * 只由行情聚合线程访问，查询读取聚合线程生成的 TickerDTO
+ *
+ * @author cex
+ */
+final class SymbolTicker {
+
+    /** 窗口分钟数 */
+    static final int WINDOW_MINUTES = 24 * 60;
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /** 空桶的分钟值 */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final String symbol;
+
+    private final Bucket[] buckets = new Bucket[WINDOW_MINUTES];
+
+    /** 最高价单调队列（队首最高） */
+    private final ArrayDeque<Bucket> highs = new ArrayDeque<>();
+
+    /** 最低价单调队列（队首最低） */
+    private final ArrayDeque<Bucket> lows = new ArrayDeque<>();
+
+    /** 窗口内最早有成交的分钟 */
+    private long firstMinute;
+
+    /** 最近有成交的分钟 */
+    private long lastMinute = EMPTY;
+
+    private BigDecimal volume = BigDecimal.ZERO;
+
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    private int count;
+
+    /** 最新价格（窗口内没有成交时保留） */
+    private BigDecimal lastPrice;
+
+    private long lastTradeTime;
+
+    /** 早于该时间的成交已由启动时加载的 1m K线计入（毫秒） */
+    private long seededUntil = Long.MIN_VALUE;
+
+    /** 自上次写入 market_data 后是否有变化 */
+    private boolean dirty;
+
+    SymbolTicker(String symbol) {
+        this.symbol = symbol;
+        for (int i = 0; i < WINDOW_MINUTES; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 计入一笔成交
+     */
+    void onTrade(long time, BigDecimal price, BigDecimal tradeAmount, BigDecimal money) {
+        if (time < seededUntil) {
+            return;
+        }
+        add(Math.floorDiv(time, MINUTE_MILLIS), price, price, price, price, tradeAmount, money, 1);
+        lastTradeTime = Math.max(lastTradeTime, time);
+    }
+
+    /**
+     * 计入一根已收盘的 1m K线（启动时从 kline_data 恢复窗口）
+     */
+    void seed(long openTime, long closeTime, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+              BigDecimal candleVolume, BigDecimal candleAmount, int tradeCount) {
+        add(Math.floorDiv(openTime, MINUTE_MILLIS), open, high, low, close, candleVolume, candleAmount, tradeCount);
+        seededUntil = Math.max(seededUntil, closeTime);
+        lastTradeTime = Math.max(lastTradeTime, closeTime - 1);
+    }
+
+    private void add(long minute, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+                     BigDecimal addVolume, BigDecimal addAmount, int addCount) {
+        // 时钟回拨时计入最近的桶
+        if (minute < lastMinute) {
+            minute = lastMinute;
+        }
+        expire(minute);
+        Bucket bucket = bucketAt(minute);
+        if (bucket.minute != minute) {
+            bucket.minute = minute;
+            bucket.open = open;
+            bucket.high = high;
+            bucket.low = low;
+            bucket.volume = BigDecimal.ZERO;
+            bucket.amount = BigDecimal.ZERO;
+            bucket.count = 0;
+            if (count == 0) {
+                firstMinute = minute;
+            }
+        } else {
+            bucket.high = bucket.high.max(high);
+            bucket.low = bucket.low.min(low);
+        }
+        bucket.volume = bucket.volume.add(addVolume);
+        bucket.amount = bucket.amount.add(addAmount);
+        bucket.count += addCount;
+        volume = volume.add(addVolume);
+        amount = amount.add(addAmount);
+        count += addCount;
+        lastPrice = close;
+        lastMinute = minute;
+        dirty = true;
+
+        // 当前桶总在队尾：先取出，弹出不再可能成为最值的旧桶，再放回
+        if (highs.peekLast() == bucket) {
+            highs.pollLast();
+        }
+        while (!highs.isEmpty() && highs.peekLast().high.compareTo(bucket.high) <= 0) {
+            highs.pollLast();
+        }
+        highs.addLast(bucket);
+        if (lows.peekLast() == bucket) {
+            lows.pollLast();
+        }
+        while (!lows.isEmpty() && lows.peekLast().low.compareTo(bucket.low) >= 0) {
+            lows.pollLast();
+        }
+        lows.addLast(bucket);
+    }
+
+    /**
+     * 移出 minute 所在窗口之外的桶（定时调用，没有成交时窗口也要滑动）
+     *
+     * @return 是否有桶被移出
+     */
+    boolean expire(long minute) {
+        long cutoff = minute - WINDOW_MINUTES;
+        boolean expired = false;
+        while (count > 0 && firstMinute <= cutoff) {
+            Bucket bucket = bucketAt(firstMinute);
+            // 窗口内的桶都已登记在 firstMinute 之后，这里不会是空桶
+            volume = volume.subtract(bucket.volume);
+            amount = amount.subtract(bucket.amount);
+            count -= bucket.count;
+            bucket.minute = EMPTY;
+            expired = true;
+            if (count > 0) {
+                long next = firstMinute + 1;
+                while (bucketAt(next).minute != next) {
+                    next++;
+                }
+                firstMinute = next;
+            }
+        }
+        if (count == 0) {
+            volume = BigDecimal.ZERO;
+            amount = BigDecimal.ZERO;
+        }
+        while (!highs.isEmpty() && highs.peekFirst().minute == EMPTY) {
+            highs.pollFirst();
+        }
+        while (!lows.isEmpty() && lows.peekFirst().minute == EMPTY) {
+            lows.pollFirst();
+        }
+        if (expired) {
+            dirty = true;
+        }
+        return expired;
+    }
+
+    /**
+     * 按时间（毫秒）移出窗口之外的桶
+     */
+    boolean expireAt(long now) {
+        return expire(Math.floorDiv(now, MINUTE_MILLIS));
+    }
+
+    private Bucket bucketAt(long minute) {
+        return buckets[(int) Math.floorMod(minute, (long) WINDOW_MINUTES)];
+    }
+
+    boolean hasPrice() {
+        return lastPrice != null;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void clearDirty() {
+        dirty = false;
+    }
+
+    TickerDTO toDTO() {
+        TickerDTO dto = new TickerDTO();
+        dto.setSymbol(symbol);
+        dto.setPrice(lastPrice);
+        dto.setCount(count);
+        dto.setVolume(volume);
+        dto.setAmount(amount);
+        dto.setLastTradeTime(lastTradeTime);
+        if (count > 0) {
+            BigDecimal open = bucketAt(firstMinute).open;
+            BigDecimal change = lastPrice.subtract(open);
+            dto.setOpenPrice(open);
+            dto.setChange(change);
+            dto.setChangeRate(open.signum() == 0 ? BigDecimal.ZERO : change.divide(open, 6, RoundingMode.HALF_UP));
+            dto.setHigh(highs.peekFirst().high);
+            dto.setLow(lows.peekFirst().low);
+        } else {
+            // 24小时内没有成交
+            dto.setOpenPrice(lastPrice);
+            dto.setChange(BigDecimal.ZERO);
+            dto.setChangeRate(BigDecimal.ZERO);
+            dto.setHigh(lastPrice);
+            dto.setLow(lastPrice);
+        }
+        return dto;
+    }
+
+    static MarketData toEntity(TickerDTO ticker) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(ticker.getSymbol());
+        marketData.setPrice(ticker.getPrice());
+        marketData.setChange24h(ticker.getChange());
+        marketData.setChangeRate24h(ticker.getChangeRate());
+        marketData.setHigh24h(ticker.getHigh());
+        marketData.setLow24h(ticker.getLow());
+        marketData.setVolume24h(ticker.getVolume());
+        marketData.setAmount24h(ticker.getAmount());
+        return marketData;
+    }
+
+    /**
+     * 一分钟的成交汇总（复用，minute 为 EMPTY 表示不在窗口内）
+     */
+    private static final class Bucket {
+
+        long minute = EMPTY;
+
+        BigDecimal open;
+
+        BigDecimal high;
+
+        BigDecimal low;
+
+        BigDecimal volume = BigDecimal.ZERO;
+
+        BigDecimal amount = BigDecimal.ZERO;
+
+        int count;
+    }
+}
@@ -0,0 +1,218 @@
+package com.cex.matching.market;
+
+import com.cex.common.dto.TickerDTO;
+import com.cex.common.dto.TradeRecordDTO;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.core.TradeFeed;
+import com.cex.matching.domain.entity.KlineData;
+import com.cex.matching.domain.entity.MarketData;
+import com.cex.matching.mapper.KlineDataMapper;
+import com.cex.matching.mapper.MarketDataMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 24小时滚动行情（每个交易对）
+ *
+ * 【数据来源】
+ * 与 KlineAggregator 相同：聚合线程每 pollIntervalMs 取出各交易对自己的成交队列（TradeFeed.TICKER）中的新成交，
+ * 读取之前不会被覆盖；撮合线程不参与计算，也不按请求扫描 trade_record。
+ *
+ * 【计算】
+ * 见 SymbolTicker：1440 个分钟桶组成的环，成交 O(1) 更新，过期的桶从合计中减去
+ *
+ * 【查询】
+ * 有变化的交易对在每次读取后重新生成 TickerDTO，放入 tickers；
+ * /matching/tickers 直接返回全部交易对的 TickerDTO，不加锁、不访问数据库。
+ *
+ * 【持久化】
+ * 每 flushIntervalMs 把有变化的交易对用一条多值 INSERT ... ON DUPLICATE KEY UPDATE 写入 market_data；
+ * 写入失败时保留变化标记，下次重试。
+ *
+ * 【重启】
+ * 第一次读取某个交易对时，用 kline_data 中最近24小时已收盘的 1m K线恢复窗口，
+ * 早于最后一根K线结束时间的成交不再重复计入（重启前未收盘那一分钟的成交不计入）。
+ *
+ * 【备节点】
+ * 备节点不输出成交，窗口不会更新；不计算也不写入 market_data（否则会用启动时的旧数据覆盖主节点写入的行情），
+ * 接管后第一次读取时才从 kline_data 恢复窗口。
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class TickerAggregator {
+
+    private final CoinTraderFactory traderFactory;
+
+    private final KlineDataMapper klineDataMapper;
+
+    private final MarketDataMapper marketDataMapper;
+
+    private final MatchingProperties.Ticker config;
+
+    /** 交易对 → 滚动窗口（只由聚合线程访问） */
+    private final Map<String, SymbolTicker> windows = new HashMap<>();
+
+    /** 交易对 → 最新的行情（聚合线程写入，查询线程读取） */
+    private final ConcurrentMap<String, TickerDTO> tickers = new ConcurrentHashMap<>();
+
+    private long lastFlushMillis;
+
+    private final ScheduledExecutorService aggregateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "matching-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TickerAggregator(CoinTraderFactory traderFactory, KlineDataMapper klineDataMapper,
+                            MarketDataMapper marketDataMapper, MatchingProperties matchingProperties) {
+        this.traderFactory = traderFactory;
+        this.klineDataMapper = klineDataMapper;
+        this.marketDataMapper = marketDataMapper;
+        this.config = matchingProperties.getTicker();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long interval = Math.max(config.getPollIntervalMs(), 1);
+        aggregateExecutor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("24小时行情: poll={}ms, flush={}ms", interval, config.getFlushIntervalMs());
+    }
+
+    /**
+     * 读取新成交、滑动窗口、定期写入 market_data（聚合线程）
+     */
+    void poll() {
+        if (traderFactory.isStandby()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<TradeRecordDTO> trades = new ArrayList<>();
+            for (Map.Entry<String, CoinTrader> entry : traderFactory.getAllTraders().entrySet()) {
+                String symbol = entry.getKey();
+                SymbolTicker ticker = windows.get(symbol);
+                if (ticker == null) {
+                    ticker = load(symbol, now);
+                    windows.put(symbol, ticker);
+                }
+                TradeFeed feed = entry.getValue().getTradeFeed(TradeFeed.TICKER);
+                trades.clear();
+                long lost = feed != null ? feed.drain(trades) : 0;
+                if (lost > 0) {
+                    log.error("24小时行情积压超过 feed-capacity，丢失成交: symbol={}, lost={}", symbol, lost);
+                }
+                for (TradeRecordDTO trade : trades) {
+                    ticker.onTrade(trade.getTradeTime().getTime(), trade.getPrice(), trade.getAmount(), trade.getMoney());
+                }
+                boolean expired = ticker.expireAt(now);
+                if ((!trades.isEmpty() || expired || !tickers.containsKey(symbol)) && ticker.hasPrice()) {
+                    tickers.put(symbol, ticker.toDTO());
+                }
+            }
+            if (now - lastFlushMillis >= config.getFlushIntervalMs()) {
+                flush();
+                lastFlushMillis = now;
+            }
+        } catch (Exception e) {
+            log.error("24小时行情计算失败", e);
+        }
+    }
+
+    /**
+     * 用 kline_data 中最近24小时已收盘的 1m K线恢复窗口
+     */
+    private SymbolTicker load(String symbol, long now) {
+        SymbolTicker ticker = new SymbolTicker(symbol);
+        try {
+            long from = now - SymbolTicker.WINDOW_MINUTES * 60_000L;
+            List<KlineData> candles = klineDataMapper.selectBefore(symbol, KlinePeriod.ONE_MINUTE.getCode(),
+                    new Date(now), SymbolTicker.WINDOW_MINUTES);
+            // 时间倒序 → 从最早的开始计入
+            for (int i = candles.size() - 1; i >= 0; i--) {
+                KlineData candle = candles.get(i);
+                if (candle.getStartTime().getTime() < from) {
+                    continue;
+                }
+                ticker.seed(candle.getStartTime().getTime(), candle.getEndTime().getTime(), candle.getOpenPrice(),
+                        candle.getHighPrice(), candle.getLowPrice(), candle.getClosePrice(), candle.getVolume(),
+                        candle.getAmount(), candle.getTradeCount() != null ? candle.getTradeCount() : 0);
+            }
+        } catch (Exception e) {
+            log.warn("恢复24小时行情失败，从空窗口开始: symbol={}, {}", symbol, e.getMessage());
+        }
+        return ticker;
+    }
+
+    private void flush() {
+        if (traderFactory.isStandby()) {
+            return;
+        }
+        List<SymbolTicker> changed = new ArrayList<>();
+        List<MarketData> rows = new ArrayList<>();
+        for (SymbolTicker ticker : windows.values()) {
+            if (ticker.isDirty() && ticker.hasPrice()) {
+                changed.add(ticker);
+                rows.add(SymbolTicker.toEntity(ticker.toDTO()));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            marketDataMapper.upsertBatch(rows);
+            for (SymbolTicker ticker : changed) {
+                ticker.clearDirty();
+            }
+        } catch (Exception e) {
+            log.warn("market_data 写入失败，下次重试: symbols={}, {}", rows.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 全部交易对的24小时行情（没有成交过的交易对不返回）
+     */
+    public List<TickerDTO> getTickers() {
+        return new ArrayList<>(tickers.values());
+    }
+
+    /**
+     * 一个交易对的24小时行情
+     *
+     * @return 没有成交过时返回 null
+     */
+    public TickerDTO getTicker(String symbol) {
+        return tickers.get(symbol);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aggregateExecutor.shutdown();
+        try {
+            if (config.isEnabled() && aggregateExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.cex.matching.metrics;
+
+/**
+ * 撮合流水线阶段（延迟统计的 stage 标签）
+ *
+ * @author cex
+ */
+public enum LatencyStage {
+
+    /** 订单消息解析（MQ 消费线程） */
+    DECODE("decode"),
+
+    /** 入队到定序器开始执行的等待时间 */
+    QUEUE_WAIT("queue_wait"),
+
+    /** 撮合（CoinTrader.trade） */
+    MATCH("match"),
+
+    /** 盘口增量合并与推送（CoinTrader.onBookCommand） */
+    PLATE("plate"),
+
+    /** 批次结束时发送成交结果、完成订单、复制命令（CoinTrader.flushOutput） */
+    PUBLISH("publish");
+
+    private final String tag;
+
+    LatencyStage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,82 @@
+package com.cex.matching.metrics;
+
+import com.cex.matching.config.MatchingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 撮合流水线延迟统计
+ *
+ * 【指标】
+ * ```
+ * matching.latency{symbol="BTC/USDT", stage="decode|queue_wait|match|plate|publish"}
+ * ```
+ * 通过 actuator 查看：/actuator/metrics/matching.latency?tag=symbol:BTC/USDT&tag=stage:match，
+ * 或由 Prometheus 抓取 /actuator/prometheus（matching_latency_seconds{quantile="0.99"} 等）。
+ *
+ * 【窗口】
+ * 分位数和最大值只统计最近 window-seconds 内的数据（按 buffer-length 个子窗口滚动重置），
+ * 反映当前负载而不是进程启动以来的累计
+ *
+ * @author cex
+ */
+@Component
+public class MatchingMetrics {
+
+    public static final String LATENCY_METRIC = "matching.latency";
+
+    private final MeterRegistry registry;
+
+    private final MatchingProperties.Metrics config;
+
+    private final ConcurrentMap<String, SymbolLatencyRecorder> recorders = new ConcurrentHashMap<>();
+
+    public MatchingMetrics(MeterRegistry registry, MatchingProperties matchingProperties) {
+        this.registry = registry;
+        this.config = matchingProperties.getMetrics();
+    }
+
+    /**
+     * 获取交易对的延迟记录器（关闭统计时返回 NOOP）
+     */
+    public SymbolLatencyRecorder forSymbol(String symbol) {
+        if (!config.isEnabled()) {
+            return SymbolLatencyRecorder.NOOP;
+        }
+        return recorders.computeIfAbsent(symbol, this::create);
+    }
+
+    /**
+     * 移除交易对的指标（交易器移除时调用）
+     */
+    public void remove(String symbol) {
+        SymbolLatencyRecorder recorder = recorders.remove(symbol);
+        if (recorder != null) {
+            for (Timer timer : recorder.getTimers()) {
+                registry.remove(timer);
+            }
+        }
+    }
+
+    private SymbolLatencyRecorder create(String symbol) {
+        LatencyStage[] stages = LatencyStage.values();
+        Timer[] timers = new Timer[stages.length];
+        for (LatencyStage stage : stages) {
+            timers[stage.ordinal()] = Timer.builder(LATENCY_METRIC)
+                    .description("撮合流水线各阶段耗时")
+                    .tag("symbol", symbol)
+                    .tag("stage", stage.getTag())
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .percentilePrecision(config.getPercentilePrecision())
+                    .distributionStatisticExpiry(Duration.ofSeconds(config.getWindowSeconds()))
+                    .distributionStatisticBufferLength(config.getBufferLength())
+                    .register(registry);
+        }
+        return new SymbolLatencyRecorder(timers);
+    }
+}
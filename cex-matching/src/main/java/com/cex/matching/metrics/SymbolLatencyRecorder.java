@@ -0,0 +1,46 @@
+package com.cex.matching.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个交易对各阶段的延迟记录器
+ *
+ * 【作用】
+ * 每个阶段一个 Micrometer Timer（内部为 HdrHistogram），记录纳秒级耗时，
+ * 发布 p50 / p99 / p99.9 和最大值；统计窗口按 matching.metrics.window-seconds 滚动，旧数据自动过期。
+ *
+ * 【开销】
+ * record 只做一次数组下标访问和直方图计数，不分配对象，可以在定序器线程每条命令调用
+ *
+ * @author cex
+ */
+public class SymbolLatencyRecorder {
+
+    /** 关闭统计时使用：不记录 */
+    public static final SymbolLatencyRecorder NOOP = new SymbolLatencyRecorder(null);
+
+    /** 按 LatencyStage.ordinal() 下标 */
+    private final Timer[] timers;
+
+    SymbolLatencyRecorder(Timer[] timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(LatencyStage stage, long nanos) {
+        if (timers != null) {
+            timers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    Timer[] getTimers() {
+        return timers;
+    }
+}
@@ -0,0 +1,198 @@
+package com.cex.matching.replication;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.shard.SymbolShardRouter;
+import com.cex.matching.journal.CommandCodec;
+import com.cex.matching.sequencer.CommandType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * 单个交易对的命令复制（主节点）
+ *
+ * 【作用】
+ * 定序器接受（写入命令日志）的每条下单、撤单、暂停/恢复命令按序号追加到缓冲区，
+ * 每个定序器批次结束时合并成一条消息发送到 matching-replication-out，备节点按序号重放。
+ * 消息以交易对为分区键，同一交易对的批次顺序到达。
+ *
+ * 【发送失败】
+ * 命令已经在主节点执行，不能丢弃：发送失败的批次保留在缓冲区，下一批次结束或空闲时（每 RETRY_INTERVAL_NANOS）
+ * 连同新命令一起重发，备节点按序号跳过已应用的命令。缓冲超过 MAX_PENDING_BYTES 时才放弃，
+ * 备节点随后发现序号缺口，通过重新同步（主节点快照）恢复。
+ *
+ * 【重新同步】
+ * 备节点请求时，在定序器线程中生成快照（带已接受的最后一个命令序号），先发送缓冲区中的命令，
+ * 再按分片发送快照，与命令批次走同一个分区，备节点按发送顺序收到。
+ *
+ * 【线程安全】
+ * 只由交易对的定序器线程调用
+ *
+ * @author cex
+ */
+@Slf4j
+public class CommandReplicator {
+
+    /** 复制消息输出绑定 */
+    public static final String BINDING = "matching-replication-out";
+
+    /** 消息头：kind + symbol + bookSequence + count 的最大长度 */
+    private static final int HEADER_RESERVE = 16;
+
+    /** 发送失败后重试的最小间隔（纳秒） */
+    private static final long RETRY_INTERVAL_NANOS = 100_000_000L;
+
+    /** 发送失败时最多保留的命令字节数 */
+    private static final int MAX_PENDING_BYTES = 64 << 20;
+
+    private final String symbol;
+
+    private final StreamBridge streamBridge;
+
+    private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+
+    private int count;
+
+    private long lastSequence;
+
+    /** 上一次发送失败的时间（System.nanoTime），0 表示没有待重发的命令 */
+    private long failedAtNanos;
+
+    public CommandReplicator(String symbol, StreamBridge streamBridge) {
+        this.symbol = symbol;
+        this.streamBridge = streamBridge;
+        reset();
+    }
+
+    /**
+     * 追加一条已接受的命令
+     *
+     * @param sequence 命令序号（连续递增）
+     */
+    public void append(long sequence, CommandType type, OrderDTO order) {
+        byte typeCode = CommandCodec.typeCode(type);
+        if (typeCode == 0) {
+            return;
+        }
+        while (true) {
+            int position = buf.position();
+            try {
+                buf.putLong(sequence);
+                buf.put(typeCode);
+                buf.put((byte) (order != null ? 1 : 0));
+                if (order != null) {
+                    CommandCodec.writeOrder(buf, order);
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                buf.position(position);
+                ByteBuffer larger = ByteBuffer.allocate(buf.capacity() * 2);
+                buf.flip();
+                larger.put(buf);
+                buf = larger;
+            }
+        }
+        count++;
+        lastSequence = sequence;
+    }
+
+    /**
+     * 发送本批命令（定序器批次结束时调用）；发送失败时保留，下次一起重发
+     *
+     * @param bookSequence 主节点当前的盘口增量序号，备节点接管后从这里继续
+     * @return 是否已全部发送
+     */
+    public boolean flush(long bookSequence) {
+        if (count == 0) {
+            return true;
+        }
+        int end = buf.position();
+        buf.position(0);
+        buf.put(ReplicationCodec.KIND_COMMANDS);
+        CommandCodec.writeString(buf, symbol);
+        buf.putLong(bookSequence);
+        buf.putInt(count);
+        int headerEnd = buf.position();
+        byte[] bytes = new byte[headerEnd + end - headerReserve()];
+        System.arraycopy(buf.array(), 0, bytes, 0, headerEnd);
+        System.arraycopy(buf.array(), headerReserve(), bytes, headerEnd, end - headerReserve());
+        if (!send(bytes)) {
+            failedAtNanos = System.nanoTime();
+            if (end > MAX_PENDING_BYTES) {
+                // 备节点会发现序号缺口，停止重放并请求主节点快照
+                log.error("复制命令积压过多，放弃重发: symbol={}, count={}, lastSeq={}", symbol, count, lastSequence);
+                reset();
+            } else {
+                // 消息头写在预留区，记录区不变，之后的命令继续追加在末尾
+                buf.position(end);
+            }
+            return false;
+        }
+        reset();
+        return true;
+    }
+
+    /**
+     * 空闲时重发失败的命令（距上次失败超过 RETRY_INTERVAL_NANOS）
+     */
+    public void retryIfDue(long bookSequence, long now) {
+        if (failedAtNanos != 0 && now - failedAtNanos >= RETRY_INTERVAL_NANOS) {
+            flush(bookSequence);
+        }
+    }
+
+    /**
+     * 发送订单簿快照（备节点重新同步，定序器线程）
+     *
+     * @param sequence 快照包含的最后一个命令序号
+     * @param snapshot 快照内容
+     * @param chunkBytes 每条消息最多携带的快照字节数
+     * @return 是否全部发送成功（失败时备节点超时后重新请求）
+     */
+    public boolean sendSnapshot(long bookSequence, long sequence, byte[] snapshot, int chunkBytes) {
+        // 快照之前的命令先发出，备节点应用快照后按序号跳过它们
+        if (!flush(bookSequence)) {
+            return false;
+        }
+        int chunk = Math.max(chunkBytes, 1024);
+        int chunks = Math.max((snapshot.length + chunk - 1) / chunk, 1);
+        for (int i = 0; i < chunks; i++) {
+            int offset = i * chunk;
+            int length = Math.min(chunk, snapshot.length - offset);
+            if (!send(ReplicationCodec.encodeSnapshotChunk(symbol, sequence, i, chunks, snapshot, offset, length))) {
+                return false;
+            }
+        }
+        log.warn("发送订单簿快照: symbol={}, seq={}, size={}KB, chunks={}", symbol, sequence, snapshot.length >> 10, chunks);
+        return true;
+    }
+
+    private boolean send(byte[] payload) {
+        try {
+            if (streamBridge.send(BINDING, MessageBuilder.withPayload(payload)
+                    .setHeader(SymbolShardRouter.SYMBOL_HEADER, symbol)
+                    .build())) {
+                return true;
+            }
+            log.error("发送复制消息失败: symbol={}, lastSeq={}", symbol, lastSequence);
+        } catch (Exception e) {
+            log.error("发送复制消息失败: symbol={}, lastSeq={}", symbol, lastSequence, e);
+        }
+        return false;
+    }
+
+    private void reset() {
+        buf.clear();
+        buf.position(headerReserve());
+        count = 0;
+        failedAtNanos = 0;
+    }
+
+    /** 记录区起始位置（前面预留消息头） */
+    private int headerReserve() {
+        return HEADER_RESERVE + 2 + symbol.length() * 2;
+    }
+}
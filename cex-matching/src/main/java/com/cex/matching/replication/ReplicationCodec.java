@@ -0,0 +1,191 @@
+package com.cex.matching.replication;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.journal.CommandCodec;
+import com.cex.matching.sequencer.CommandType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 主备复制消息编解码（matching-replication-out）
+ *
+ * 【格式】
+ * ```
+ * 命令批次（一个交易对、一个定序器批次）：
+ *   byte   kind = KIND_COMMANDS
+ *   string symbol
+ *   long   bookSequence     主节点发送本批结果之后的盘口增量序号
+ *   int    count
+ *   ...    records          long seq + byte type + byte hasOrder + order（与命令日志相同的编码）
+ *
+ * 心跳（所有交易对）：
+ *   byte   kind = KIND_HEARTBEAT
+ *   int    count
+ *   ...    string symbol + long seq（主节点已接受的最后一个命令序号）
+ *
+ * 快照分片（主节点响应重新同步请求，与命令批次走同一个绑定、同一个分区）：
+ *   byte   kind = KIND_SNAPSHOT
+ *   string symbol
+ *   long   seq              快照包含的最后一个命令序号
+ *   int    index, count     分片序号、分片数
+ *   int    length
+ *   ...    bytes            快照内容的一段（格式同快照文件，见 SnapshotStore）
+ *
+ * 重新同步请求（备节点 → 主节点，matching-replication-resync-out）：
+ *   byte   kind = KIND_RESYNC
+ *   string symbol
+ *   long   seq              备节点已应用的最后一个命令序号（只用于日志）
+ * ```
+ *
+ * @author cex
+ */
+public final class ReplicationCodec {
+
+    public static final byte KIND_COMMANDS = 1;
+
+    public static final byte KIND_HEARTBEAT = 2;
+
+    public static final byte KIND_SNAPSHOT = 3;
+
+    public static final byte KIND_RESYNC = 4;
+
+    private ReplicationCodec() {
+    }
+
+    /**
+     * 一条复制命令
+     */
+    public static final class Record {
+        public final long sequence;
+        public final CommandType type;
+        public final OrderDTO order;
+
+        Record(long sequence, CommandType type, OrderDTO order) {
+            this.sequence = sequence;
+            this.type = type;
+            this.order = order;
+        }
+    }
+
+    /**
+     * 解码后的复制消息
+     */
+    public static final class Batch {
+        public final byte kind;
+        public final String symbol;
+        public final long bookSequence;
+        public final List<Record> records;
+        /** 心跳：交易对 → 主节点最后一个命令序号 */
+        public final Map<String, Long> sequences;
+        /** 快照分片、重新同步请求：命令序号 */
+        public final long sequence;
+        /** 快照分片：分片序号、分片数、内容 */
+        public final int chunkIndex;
+        public final int chunkCount;
+        public final byte[] data;
+
+        Batch(byte kind, String symbol, long bookSequence, List<Record> records, Map<String, Long> sequences) {
+            this(kind, symbol, bookSequence, records, sequences, 0, 0, 0, null);
+        }
+
+        Batch(byte kind, String symbol, long bookSequence, List<Record> records, Map<String, Long> sequences,
+              long sequence, int chunkIndex, int chunkCount, byte[] data) {
+            this.kind = kind;
+            this.symbol = symbol;
+            this.bookSequence = bookSequence;
+            this.records = records;
+            this.sequences = sequences;
+            this.sequence = sequence;
+            this.chunkIndex = chunkIndex;
+            this.chunkCount = chunkCount;
+            this.data = data;
+        }
+    }
+
+    static byte[] encodeHeartbeat(Map<String, Long> sequences) {
+        int capacity = 16;
+        for (String symbol : sequences.keySet()) {
+            capacity += 12 + symbol.length() * 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(capacity);
+        buf.put(KIND_HEARTBEAT);
+        buf.putInt(sequences.size());
+        for (Map.Entry<String, Long> entry : sequences.entrySet()) {
+            CommandCodec.writeString(buf, entry.getKey());
+            buf.putLong(entry.getValue());
+        }
+        return toBytes(buf);
+    }
+
+    static byte[] encodeSnapshotChunk(String symbol, long sequence, int index, int count,
+                                      byte[] snapshot, int offset, int length) {
+        ByteBuffer buf = ByteBuffer.allocate(32 + symbol.length() * 2 + length);
+        buf.put(KIND_SNAPSHOT);
+        CommandCodec.writeString(buf, symbol);
+        buf.putLong(sequence);
+        buf.putInt(index);
+        buf.putInt(count);
+        buf.putInt(length);
+        buf.put(snapshot, offset, length);
+        return toBytes(buf);
+    }
+
+    static byte[] encodeResyncRequest(String symbol, long appliedSequence) {
+        ByteBuffer buf = ByteBuffer.allocate(16 + symbol.length() * 2);
+        buf.put(KIND_RESYNC);
+        CommandCodec.writeString(buf, symbol);
+        buf.putLong(appliedSequence);
+        return toBytes(buf);
+    }
+
+    public static Batch decode(byte[] payload) {
+        ByteBuffer buf = ByteBuffer.wrap(payload);
+        byte kind = buf.get();
+        if (kind == KIND_HEARTBEAT) {
+            int count = buf.getInt();
+            Map<String, Long> sequences = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String symbol = CommandCodec.readString(buf);
+                sequences.put(symbol, buf.getLong());
+            }
+            return new Batch(kind, null, 0, null, sequences);
+        }
+        if (kind == KIND_SNAPSHOT) {
+            String symbol = CommandCodec.readString(buf);
+            long sequence = buf.getLong();
+            int index = buf.getInt();
+            int count = buf.getInt();
+            byte[] data = new byte[buf.getInt()];
+            buf.get(data);
+            return new Batch(kind, symbol, 0, null, null, sequence, index, count, data);
+        }
+        if (kind == KIND_RESYNC) {
+            String symbol = CommandCodec.readString(buf);
+            return new Batch(kind, symbol, 0, null, null, buf.getLong(), 0, 0, null);
+        }
+        if (kind != KIND_COMMANDS) {
+            throw new IllegalArgumentException("未知的复制消息类型: " + kind);
+        }
+        String symbol = CommandCodec.readString(buf);
+        long bookSequence = buf.getLong();
+        int count = buf.getInt();
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long sequence = buf.getLong();
+            CommandType type = CommandCodec.commandType(buf.get());
+            OrderDTO order = buf.get() != 0 ? CommandCodec.readOrder(buf, symbol) : null;
+            records.add(new Record(sequence, type, order));
+        }
+        return new Batch(kind, symbol, bookSequence, records, null);
+    }
+
+    static byte[] toBytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,383 @@
+package com.cex.matching.replication;
+
+import com.cex.common.core.exception.BusinessException;
+import com.cex.common.shard.SymbolShardRouter;
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.domain.dto.ReplicationLagDTO;
+import com.cex.matching.sequencer.SymbolSequencer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主备复制管理
+ *
+ * 【作用】
+ * - 主节点：定期发送心跳（各交易对已接受的最后一个命令序号），备节点据此计算落后量
+ * - 备节点：把收到的复制命令按主节点序号提交到对应交易对的定序器重放（见 SymbolSequencer.publishReplicated）
+ * - 重新同步：备节点启动时、发现序号缺口或主节点序号落后于本节点时停止重放，
+ *   向主节点请求快照（matching-replication-resync-out），主节点在定序器线程中生成带命令序号的快照，
+ *   经复制绑定分片发回，备节点用它替换订单簿和本地命令日志，之后继续重放
+ * - 接管：停止复制输入、交易器开始输出、启动订单输入绑定，备节点成为新的主节点；
+ *   有交易对不同步（等待快照、落后、主节点消息超时）时拒绝接管，除非强制
+ *
+ * 【部署】（Nacos 配置）
+ * ```
+ * # 主节点
+ * spring.cloud.stream.bindings.matching-replication-out.destination: matching-replication-topic
+ * spring.cloud.stream.rocketmq.bindings.matching-replication-out.producer.partition-key-expression: headers['symbol']
+ * spring.cloud.stream.function.definition: orderInput;orderCancelInput;replicationResyncInput
+ * spring.cloud.stream.bindings.replicationResyncInput-in-0.destination: matching-replication-resync-topic
+ * # 备节点
+ * spring.cloud.stream.function.definition: orderInput;orderCancelInput;replicationInput
+ * spring.cloud.stream.bindings.replicationInput-in-0.destination: matching-replication-topic
+ * spring.cloud.stream.bindings.matching-replication-resync-out.destination: matching-replication-resync-topic
+ * spring.cloud.stream.rocketmq.bindings.replicationInput-in-0.consumer.push.orderly: true
+ * spring.cloud.stream.bindings.orderInput-in-0.consumer.auto-startup: false
+ * spring.cloud.stream.bindings.orderCancelInput-in-0.consumer.auto-startup: false
+ * ```
+ * 备节点不要求与主节点从同一份状态启动：每个交易对第一次收到主节点快照之前都视为不同步，
+ * 快照之后按相同顺序执行相同命令，订单簿保持一致。
+ *
+ * 【接管时间】
+ * 备节点的订单簿一直是热的，接管只需切换输出和启动消费，不需要重放日志；
+ * 未消费完的复制命令在停止复制输入之前已入队，会先于新订单执行。
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class ReplicationManager {
+
+    private final CoinTraderFactory traderFactory;
+
+    private final MatchingProperties.Replication config;
+
+    private final StreamBridge streamBridge;
+
+    private final ObjectProvider<BindingsLifecycleController> bindingsController;
+
+    /** 备节点：交易对 → 主节点状态 */
+    private final ConcurrentMap<String, PrimaryState> primaryStates = new ConcurrentHashMap<>();
+
+    /** 备节点：交易对 → 正在接收的主节点快照分片 */
+    private final ConcurrentMap<String, SnapshotChunks> snapshotChunks = new ConcurrentHashMap<>();
+
+    /** 备节点：交易对 → 上一次请求重新同步的时间（毫秒） */
+    private final ConcurrentMap<String, Long> resyncRequests = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "matching-replication-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean heartbeatStarted;
+
+    /**
+     * 主节点的复制进度（备节点视角）
+     */
+    private static class PrimaryState {
+        volatile long sequence;
+        volatile long lastReceiveMillis;
+    }
+
+    /**
+     * 一份主节点快照的分片（按分片序号到达，同一交易对顺序消费）
+     */
+    private static class SnapshotChunks {
+        final long sequence;
+        final byte[][] parts;
+        int received;
+
+        SnapshotChunks(long sequence, int count) {
+            this.sequence = sequence;
+            this.parts = new byte[count][];
+        }
+    }
+
+    public ReplicationManager(CoinTraderFactory traderFactory, MatchingProperties matchingProperties,
+                              StreamBridge streamBridge,
+                              ObjectProvider<BindingsLifecycleController> bindingsController) {
+        this.traderFactory = traderFactory;
+        this.config = matchingProperties.getReplication();
+        this.streamBridge = streamBridge;
+        this.bindingsController = bindingsController;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        log.info("主备复制: role={}", traderFactory.isStandby() ? "standby" : "primary");
+        if (!traderFactory.isStandby()) {
+            startHeartbeat();
+        }
+    }
+
+    /**
+     * 处理复制消息（replicationInput 消费者调用）
+     */
+    public void onMessage(byte[] payload) {
+        if (!traderFactory.isStandby()) {
+            log.warn("非备节点收到复制消息，忽略: size={}", payload.length);
+            return;
+        }
+        ReplicationCodec.Batch batch = ReplicationCodec.decode(payload);
+        long now = System.currentTimeMillis();
+        if (batch.kind == ReplicationCodec.KIND_HEARTBEAT) {
+            for (Map.Entry<String, Long> entry : batch.sequences.entrySet()) {
+                PrimaryState state = primaryStates.computeIfAbsent(entry.getKey(), k -> new PrimaryState());
+                state.sequence = Math.max(state.sequence, entry.getValue());
+                state.lastReceiveMillis = now;
+                checkAhead(entry.getKey(), entry.getValue());
+            }
+            requestResyncs(now);
+            return;
+        }
+        if (batch.kind == ReplicationCodec.KIND_SNAPSHOT) {
+            onSnapshotChunk(batch);
+            return;
+        }
+        SymbolSequencer sequencer = traderFactory.getSequencer(batch.symbol);
+        long lastSequence = 0;
+        int last = batch.records.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            ReplicationCodec.Record record = batch.records.get(i);
+            // 主节点批次输出之后的盘口增量序号随最后一条命令重放，定序器在批次输出之后对齐
+            sequencer.publishReplicated(record.sequence, record.type, record.order, i == last ? batch.bookSequence : 0);
+            lastSequence = record.sequence;
+        }
+        PrimaryState state = primaryStates.computeIfAbsent(batch.symbol, k -> new PrimaryState());
+        state.sequence = Math.max(state.sequence, lastSequence);
+        state.lastReceiveMillis = now;
+        requestResyncs(now);
+    }
+
+    /**
+     * 备节点：主节点的序号小于本节点已应用的序号，说明本节点的日志不是从主节点来的（如旧的本地日志），
+     * 按序号去重会一直跳过主节点的命令，需要重新同步
+     */
+    private void checkAhead(String symbol, long primarySequence) {
+        SymbolSequencer sequencer = traderFactory.getAllSequencers().get(symbol);
+        if (sequencer != null && !sequencer.isReplicationStale() && primarySequence < sequencer.getCommandSequence()) {
+            log.error("主节点命令序号落后于备节点，订单簿不一致: symbol={}, primary={}, applied={}",
+                    symbol, primarySequence, sequencer.getCommandSequence());
+            sequencer.setReplicationStale(true);
+        }
+    }
+
+    /**
+     * 备节点：为不同步的交易对请求主节点快照（每个交易对每 resyncRetryMs 最多一次，直到同步）
+     */
+    private void requestResyncs(long now) {
+        for (Map.Entry<String, SymbolSequencer> entry : traderFactory.getAllSequencers().entrySet()) {
+            String symbol = entry.getKey();
+            SymbolSequencer sequencer = entry.getValue();
+            if (!sequencer.isReplicationStale() || !sequencer.getTrader().isReady()) {
+                resyncRequests.remove(symbol);
+                continue;
+            }
+            Long last = resyncRequests.get(symbol);
+            if (last != null && now - last < config.getResyncRetryMs()) {
+                continue;
+            }
+            resyncRequests.put(symbol, now);
+            try {
+                streamBridge.send(config.getResyncBinding(), MessageBuilder
+                        .withPayload(ReplicationCodec.encodeResyncRequest(symbol, sequencer.getCommandSequence()))
+                        .setHeader(SymbolShardRouter.SYMBOL_HEADER, symbol)
+                        .build());
+                log.warn("请求主节点快照: symbol={}, applied={}", symbol, sequencer.getCommandSequence());
+            } catch (Exception e) {
+                log.error("发送重新同步请求失败: symbol={}", symbol, e);
+            }
+        }
+    }
+
+    /**
+     * 备节点：收齐一份快照的全部分片后交给定序器替换订单簿
+     */
+    private void onSnapshotChunk(ReplicationCodec.Batch batch) {
+        SnapshotChunks chunks = snapshotChunks.get(batch.symbol);
+        if (chunks == null || chunks.sequence != batch.sequence || chunks.parts.length != batch.chunkCount
+                || batch.chunkIndex == 0) {
+            chunks = new SnapshotChunks(batch.sequence, batch.chunkCount);
+            snapshotChunks.put(batch.symbol, chunks);
+        }
+        if (chunks.parts[batch.chunkIndex] == null) {
+            chunks.parts[batch.chunkIndex] = batch.data;
+            chunks.received++;
+        }
+        if (chunks.received < chunks.parts.length) {
+            return;
+        }
+        snapshotChunks.remove(batch.symbol);
+        int size = 0;
+        for (byte[] part : chunks.parts) {
+            size += part.length;
+        }
+        byte[] snapshot = new byte[size];
+        int offset = 0;
+        for (byte[] part : chunks.parts) {
+            System.arraycopy(part, 0, snapshot, offset, part.length);
+            offset += part.length;
+        }
+        SymbolSequencer sequencer = traderFactory.getSequencer(batch.symbol);
+        if (!sequencer.isReplicationStale()) {
+            // 其他备节点请求的快照（多个备节点共用复制主题），本节点已同步
+            return;
+        }
+        sequencer.query(trader -> sequencer.applyResync(snapshot));
+    }
+
+    /**
+     * 主节点：响应备节点的重新同步请求（replicationResyncInput 消费者调用）
+     */
+    public void onResyncRequest(byte[] payload) {
+        if (traderFactory.isStandby()) {
+            return;
+        }
+        ReplicationCodec.Batch request = ReplicationCodec.decode(payload);
+        if (request.kind != ReplicationCodec.KIND_RESYNC || !traderFactory.getAllSequencers().containsKey(request.symbol)) {
+            log.warn("忽略重新同步请求: kind={}, symbol={}", request.kind, request.symbol);
+            return;
+        }
+        log.warn("备节点请求重新同步: symbol={}, standbyApplied={}", request.symbol, request.sequence);
+        SymbolSequencer sequencer = traderFactory.getSequencer(request.symbol);
+        int chunkBytes = config.getSnapshotChunkBytes();
+        sequencer.query(trader -> sequencer.sendResync(chunkBytes));
+    }
+
+    /**
+     * 备节点接管
+     *
+     * @param force 有交易对不同步时是否仍然接管（这些交易对的订单簿可能与原主节点不一致）
+     * @return 接管耗时（毫秒）
+     * @throws BusinessException 有交易对不同步且未强制
+     */
+    public synchronized long promote(boolean force) {
+        if (!traderFactory.isStandby()) {
+            log.warn("本节点不是备节点，忽略接管");
+            return 0;
+        }
+        List<String> unsynced = new ArrayList<>();
+        for (ReplicationLagDTO lag : getLag()) {
+            if (!Boolean.TRUE.equals(lag.getInSync())) {
+                unsynced.add(lag.getSymbol());
+            }
+        }
+        if (!unsynced.isEmpty()) {
+            if (!force) {
+                throw new BusinessException("以下交易对与主节点不同步，拒绝接管（确认后可强制接管）: " + unsynced);
+            }
+            log.error("强制接管，以下交易对的订单簿可能与原主节点不一致: {}", unsynced);
+        }
+        long start = System.nanoTime();
+        BindingsLifecycleController controller = bindingsController.getIfAvailable();
+        // 1. 停止复制输入（之后不再有复制命令入队）
+        if (controller != null) {
+            controller.changeState(config.getReplicationBinding(), BindingsLifecycleController.State.STOPPED);
+        }
+        // 2. 交易器开始输出，并作为新的主节点发送复制命令
+        List<String> pending = traderFactory.promote();
+        if (!pending.isEmpty()) {
+            log.error("部分交易对未在超时内完成切换（仍会在积压命令处理完后切换）: {}", pending);
+        }
+        // 3. 开始接收订单
+        if (controller != null) {
+            for (String binding : config.getOrderBindings()) {
+                controller.changeState(binding, BindingsLifecycleController.State.STARTED);
+            }
+        } else {
+            log.warn("没有 BindingsLifecycleController，订单输入绑定需要手动启动: {}", config.getOrderBindings());
+        }
+        startHeartbeat();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.warn("备节点已接管: elapsedMs={}", elapsedMs);
+        return elapsedMs;
+    }
+
+    /**
+     * 各交易对的复制状态
+     */
+    public List<ReplicationLagDTO> getLag() {
+        boolean standby = traderFactory.isStandby();
+        long now = System.currentTimeMillis();
+        List<ReplicationLagDTO> result = new ArrayList<>();
+        for (Map.Entry<String, SymbolSequencer> entry : traderFactory.getAllSequencers().entrySet()) {
+            SymbolSequencer sequencer = entry.getValue();
+            long applied = sequencer.getCommandSequence();
+            ReplicationLagDTO dto = new ReplicationLagDTO();
+            dto.setSymbol(entry.getKey());
+            dto.setRole(standby ? "standby" : "primary");
+            dto.setAppliedSequence(applied);
+            dto.setGaps(sequencer.getReplicationGaps());
+            dto.setStale(standby && sequencer.isReplicationStale());
+            if (standby) {
+                PrimaryState state = primaryStates.get(entry.getKey());
+                long primary = state != null ? state.sequence : applied;
+                Long age = state != null ? now - state.lastReceiveMillis : null;
+                dto.setPrimarySequence(primary);
+                dto.setLag(Math.max(primary - applied, 0));
+                dto.setLastReceiveAgeMs(age);
+                dto.setInSync(!sequencer.isReplicationStale() && primary <= applied
+                        && age != null && age <= config.getStaleAfterMs());
+            } else {
+                dto.setPrimarySequence(applied);
+                dto.setLag(0L);
+                dto.setInSync(true);
+            }
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private void startHeartbeat() {
+        if (heartbeatStarted || streamBridge == null) {
+            return;
+        }
+        heartbeatStarted = true;
+        long interval = Math.max(config.getHeartbeatIntervalMs(), 10);
+        heartbeatExecutor.scheduleWithFixedDelay(this::sendHeartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendHeartbeat() {
+        try {
+            Map<String, Long> sequences = new LinkedHashMap<>();
+            for (Map.Entry<String, SymbolSequencer> entry : traderFactory.getAllSequencers().entrySet()) {
+                sequences.put(entry.getKey(), entry.getValue().getCommandSequence());
+            }
+            if (sequences.isEmpty()) {
+                return;
+            }
+            streamBridge.send(CommandReplicator.BINDING, MessageBuilder.withPayload(ReplicationCodec.encodeHeartbeat(sequences))
+                    .setHeader(SymbolShardRouter.SYMBOL_HEADER, "heartbeat")
+                    .build());
+        } catch (Exception e) {
+            log.error("发送复制心跳失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,150 @@
+package com.cex.matching.sequencer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁环形命令队列（多生产者、单消费者，Disruptor 风格）
+ *
+ * 【结构】
+ * - entries：预分配的命令槽位，容量为 2 的幂
+ * - cursor：生产者已申请到的最大序号（CAS 递增）
+ * - availableBuffer：每个槽位的发布标记（序号 / 容量 = 第几圈），消费者据此判断槽位是否已写完
+ * - consumerSequence：消费者已处理到的序号，生产者据此判断队列是否已满
+ *
+ * 【流程】
+ * ```
+ * 生产者：seq = next() → get(seq) 写入字段 → publish(seq)（批量：hi = next(n)，逐个写入、发布）
+ * 消费者：highestPublished(next, cursor) → 逐个处理 → release(hi)
+ * ```
+ *
+ * 【背压】
+ * 队列满时生产者（RocketMQ 消费线程）自旋等待，不丢命令
+ *
+ * @author cex
+ */
+public class CommandRingBuffer {
+
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final MatchCommand[] entries;
+
+    private final int[] availableBuffer;
+
+    private final int mask;
+
+    private final int indexShift;
+
+    private final int capacity;
+
+    /** 生产者已申请到的最大序号 */
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /** 消费者已处理到的序号 */
+    private volatile long consumerSequence = -1;
+
+    public CommandRingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("环形队列容量必须是 2 的幂: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.entries = new MatchCommand[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new MatchCommand();
+        }
+        this.availableBuffer = new int[capacity];
+        Arrays.fill(availableBuffer, -1);
+    }
+
+    /**
+     * 申请下一个序号（队列满时等待消费者释放）
+     */
+    public long next() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            if (next - capacity > consumerSequence) {
+                LockSupport.parkNanos(1L);
+                continue;
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        } while (true);
+    }
+
+    /**
+     * 一次申请 n 个连续序号（批量入队，只做一次 CAS）
+     *
+     * @param n 序号个数（1 ~ capacity）
+     * @return 申请到的最大序号，区间为 [返回值 - n + 1, 返回值]
+     */
+    public long next(int n) {
+        if (n < 1 || n > capacity) {
+            throw new IllegalArgumentException("申请序号个数必须在 1 ~ " + capacity + " 之间: " + n);
+        }
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + n;
+            if (next - capacity > consumerSequence) {
+                LockSupport.parkNanos(1L);
+                continue;
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        } while (true);
+    }
+
+    public MatchCommand get(long sequence) {
+        return entries[(int) (sequence & mask)];
+    }
+
+    /**
+     * 发布序号，消费者可见
+     */
+    public void publish(long sequence) {
+        AVAILABLE.setRelease(availableBuffer, (int) (sequence & mask), (int) (sequence >>> indexShift));
+    }
+
+    /**
+     * 获取 [lowerBound, availableSequence] 区间内连续已发布的最大序号
+     */
+    public long highestPublished(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            int flag = (int) AVAILABLE.getAcquire(availableBuffer, (int) (sequence & mask));
+            if (flag != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return availableSequence;
+    }
+
+    /**
+     * 消费者释放已处理的槽位
+     */
+    public void release(long sequence) {
+        consumerSequence = sequence;
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public long getConsumerSequence() {
+        return consumerSequence;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
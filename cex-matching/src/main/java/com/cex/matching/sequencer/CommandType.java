@@ -0,0 +1,23 @@
+package com.cex.matching.sequencer;
+
+/**
+ * 撮合命令类型
+ *
+ * @author cex
+ */
+public enum CommandType {
+    /** 下单 */
+    PLACE_ORDER,
+    /** 撤单 */
+    CANCEL_ORDER,
+    /** 按用户批量撤单（userId，side 为空时撤销两个方向） */
+    CANCEL_USER,
+    /** GTT 订单到期撤销（定序器按时间轮生成，order.expireTime 为截止时间） */
+    EXPIRE,
+    /** 暂停交易（管理命令） */
+    HALT,
+    /** 恢复交易（管理命令） */
+    RESUME,
+    /** 只读查询（在定序器线程中读取订单簿，如深度快照） */
+    QUERY;
+}
@@ -0,0 +1,96 @@
+package com.cex.matching.sequencer;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 撮合命令（环形队列中的槽位）
+ *
+ * 【复用】
+ * 槽位对象在 CommandRingBuffer 创建时一次性分配，生产者只覆盖字段，
+ * 消费完成后清空引用，入队不产生新的命令对象。
+ *
+ * @author cex
+ */
+public class MatchCommand {
+
+    /** 命令类型 */
+    private CommandType type;
+
+    /** 订单（下单、撤单命令） */
+    private OrderDTO order;
+
+    /** 入队时间（System.nanoTime），用于统计排队耗时 */
+    private long enqueueNanos;
+
+    /** 主节点命令序号（备节点应用复制命令时 > 0，见 SymbolSequencer.publishReplicated） */
+    private long replicationSequence;
+
+    /** 主节点批次结束时的盘口增量序号（备节点：只在每个复制批次的最后一条命令上设置，0 表示没有） */
+    private long replicationBookSequence;
+
+    /** 查询函数（QUERY 命令） */
+    private Function<CoinTrader, ?> query;
+
+    /** 查询结果（QUERY 命令） */
+    private CompletableFuture<Object> future;
+
+    void set(CommandType type, OrderDTO order, long enqueueNanos) {
+        this.type = type;
+        this.order = order;
+        this.enqueueNanos = enqueueNanos;
+        this.replicationSequence = 0;
+        this.replicationBookSequence = 0;
+    }
+
+    void setReplicationSequence(long replicationSequence) {
+        this.replicationSequence = replicationSequence;
+    }
+
+    void setReplicationBookSequence(long replicationBookSequence) {
+        this.replicationBookSequence = replicationBookSequence;
+    }
+
+    void setQuery(Function<CoinTrader, ?> query, CompletableFuture<Object> future) {
+        this.query = query;
+        this.future = future;
+    }
+
+    void clear() {
+        this.type = null;
+        this.order = null;
+        this.query = null;
+        this.future = null;
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public OrderDTO getOrder() {
+        return order;
+    }
+
+    public long getReplicationSequence() {
+        return replicationSequence;
+    }
+
+    public long getReplicationBookSequence() {
+        return replicationBookSequence;
+    }
+
+    public long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
+    public Function<CoinTrader, ?> getQuery() {
+        return query;
+    }
+
+    public CompletableFuture<Object> getFuture() {
+        return future;
+    }
+}
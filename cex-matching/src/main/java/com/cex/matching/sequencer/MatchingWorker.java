@@ -0,0 +1,181 @@
+package com.cex.matching.sequencer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 撮合工作线程（多个交易对的定序器共用一个线程）
+ *
+ * 【执行方式】
+ * 线程轮流执行分配给自己的定序器：每个定序器每轮最多执行一批命令（maxBatchSize），
+ * 热门交易对的突发命令不会让同一线程上的其他交易对一直等待；没有命令的定序器执行空闲工作（onIdle）。
+ *
+ * 【邮箱】
+ * 分配、迁移定序器不直接修改 sequencers，而是投递到邮箱，由工作线程在两轮之间执行，
+ * 定序器只会在批次之间被移入或移出，迁移期间到达的命令在定序器的环形队列中等待。
+ *
+ * 【空闲策略】
+ * 与独立线程模式相同：自旋 → 让出 CPU → 休眠（可被生产者或邮箱唤醒，最长 PARK_NANOS，
+ * 保证盘口合并推送、订单到期、快照等定时工作按时执行）
+ *
+ * @author cex
+ */
+@Slf4j
+final class MatchingWorker implements Runnable {
+
+    /** 空闲时自旋次数 */
+    private static final int SPIN_TRIES = 100;
+
+    /** 空闲时让出 CPU 次数 */
+    private static final int YIELD_TRIES = 100;
+
+    /** 空闲休眠时间（纳秒） */
+    private static final long PARK_NANOS = 100_000L;
+
+    private final String name;
+
+    /** 是否只执行一个指定的交易对（matching.scheduler.dedicated） */
+    private final boolean dedicated;
+
+    private final Thread thread;
+
+    /** 待执行的分配、迁移任务 */
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+    /** 当前执行的定序器（只由工作线程访问） */
+    private final List<SymbolSequencer> sequencers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    /** 是否处于休眠状态（生产者据此决定是否唤醒） */
+    private volatile boolean sleeping;
+
+    MatchingWorker(String name, boolean dedicated) {
+        this.name = name;
+        this.dedicated = dedicated;
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * 停止线程（定序器应已先停止）
+     */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 开始执行定序器（任意线程，在工作线程的下一轮生效）
+     */
+    void attach(SymbolSequencer sequencer) {
+        sequencer.setWorker(this);
+        post(() -> sequencers.add(sequencer));
+    }
+
+    /**
+     * 把定序器迁移到另一个工作线程（任意线程）
+     *
+     * 在本线程的两轮之间移出，再投递到目标线程的邮箱；定序器已停止时不再迁移
+     */
+    void moveTo(SymbolSequencer sequencer, MatchingWorker target) {
+        post(() -> {
+            if (sequencers.remove(sequencer)) {
+                target.attach(sequencer);
+            }
+        });
+    }
+
+    private void post(Runnable task) {
+        mailbox.offer(task);
+        wakeUp();
+    }
+
+    /**
+     * 休眠时唤醒（生产者发布命令后调用）
+     */
+    void wakeUp() {
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        int idleCount = 0;
+        while (running) {
+            Runnable task;
+            while ((task = mailbox.poll()) != null) {
+                task.run();
+            }
+            boolean busy = false;
+            for (int i = 0; i < sequencers.size(); i++) {
+                SymbolSequencer sequencer = sequencers.get(i);
+                try {
+                    if (sequencer.processBatch()) {
+                        busy = true;
+                    } else if (!sequencer.isRunning()) {
+                        // 已入队的命令都已执行
+                        sequencers.remove(i--);
+                        sequencer.setWorker(null);
+                        sequencer.markStopped();
+                    } else {
+                        sequencer.onIdle();
+                    }
+                } catch (Exception e) {
+                    log.error("工作线程执行定序器失败: worker={}, symbol={}", name, sequencer.getSymbol(), e);
+                }
+            }
+            idleCount = busy ? 0 : idle(idleCount);
+        }
+    }
+
+    /**
+     * 空闲等待策略：自旋 → 让出 CPU → 休眠
+     */
+    private int idle(int idleCount) {
+        if (idleCount < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            sleeping = true;
+            // 设置休眠标记后再检查一次，避免错过生产者的唤醒
+            if (mailbox.isEmpty() && !hasBacklog() && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            sleeping = false;
+        }
+        return idleCount + 1;
+    }
+
+    private boolean hasBacklog() {
+        for (int i = 0; i < sequencers.size(); i++) {
+            if (sequencers.get(i).hasBacklog() || !sequencers.get(i).isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isDedicated() {
+        return dedicated;
+    }
+}
@@ -0,0 +1,322 @@
+package com.cex.matching.sequencer;
+
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.domain.dto.WorkerStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 定序器调度（交易对 → 固定数量的工作线程）
+ *
+ * 【为什么不用每个交易对一个线程？】
+ * 上架几百个长尾交易对时，每个交易对一个事件循环线程会占满 CPU（空闲时也在自旋、让出）；
+ * 所有交易对共用一个线程又会让 BTC/USDT 的突发命令拖慢所有小交易对。
+ *
+ * 【分配】
+ * - 专用线程：matching.scheduler.dedicated 中的交易对各自独占一个 MatchingWorker
+ * - 共享线程：其余交易对分配到 workers 个共享线程中负载（没有统计时按交易对数）最低的一个
+ * 定序器的启动任务（恢复/加载订单簿）在加载线程中执行，完成后才分配，不阻塞工作线程上的其他交易对。
+ *
+ * 【负载与再平衡】
+ * 负载 = 定序器执行命令批次的耗时占墙钟时间的比例（1.0 表示占满一个线程），
+ * 每 rebalanceIntervalMs 采样一次（与上一次采样平均，平滑突发）。
+ * 共享线程之间负载差距超过 rebalanceThreshold 时，把最忙线程上负载最接近差距一半的交易对迁移到最闲的线程，
+ * 每次最多迁移 MAX_MOVES 个；迁移在批次之间完成，期间的命令在环形队列中等待，不会丢失或乱序。
+ *
+ * 【线程安全】
+ * 分配关系由本类的对象锁保护；定序器的执行只发生在其当前的工作线程上，迁移经由工作线程的邮箱交接
+ *
+ * @author cex
+ */
+@Slf4j
+@Component
+public class SequencerScheduler {
+
+    /** 每次再平衡最多迁移的交易对数 */
+    private static final int MAX_MOVES = 4;
+
+    private final MatchingProperties.Scheduler config;
+
+    /** 共享工作线程 */
+    private final List<MatchingWorker> sharedWorkers = new ArrayList<>();
+
+    /** 交易对 → 专用工作线程 */
+    private final Map<String, MatchingWorker> dedicatedWorkers = new HashMap<>();
+
+    /** 交易对 → 分配情况（对象锁保护） */
+    private final Map<String, Assignment> assignments = new LinkedHashMap<>();
+
+    private long lastSampleNanos;
+
+    private ExecutorService bootstrapExecutor;
+
+    private ScheduledExecutorService rebalanceExecutor;
+
+    public SequencerScheduler(MatchingProperties matchingProperties) {
+        this.config = matchingProperties.getScheduler();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        int workers = Math.max(config.getWorkers(), 1);
+        for (int i = 0; i < workers; i++) {
+            MatchingWorker worker = new MatchingWorker("matching-worker-" + i, false);
+            sharedWorkers.add(worker);
+            worker.start();
+        }
+        for (String symbol : config.getDedicated()) {
+            MatchingWorker worker = new MatchingWorker("matching-" + symbol, true);
+            dedicatedWorkers.put(symbol, worker);
+            worker.start();
+        }
+        AtomicInteger loaderIndex = new AtomicInteger();
+        bootstrapExecutor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "matching-loader-" + loaderIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastSampleNanos = System.nanoTime();
+        if (config.getRebalanceIntervalMs() > 0) {
+            rebalanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "matching-rebalance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getRebalanceIntervalMs();
+            rebalanceExecutor.scheduleWithFixedDelay(this::scheduledRebalance, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        log.info("定序器调度: sharedWorkers={}, dedicated={}, rebalance={}ms",
+                workers, config.getDedicated(), config.getRebalanceIntervalMs());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 在加载线程中执行定序器的启动任务，完成后分配到工作线程
+     */
+    void submit(SymbolSequencer sequencer) {
+        bootstrapExecutor.execute(() -> {
+            sequencer.begin();
+            assign(sequencer);
+        });
+    }
+
+    private synchronized void assign(SymbolSequencer sequencer) {
+        String symbol = sequencer.getSymbol();
+        MatchingWorker worker = dedicatedWorkers.get(symbol);
+        if (worker == null) {
+            worker = leastLoaded(sampleLoads());
+        }
+        assignments.put(symbol, new Assignment(sequencer, worker));
+        worker.attach(sequencer);
+        log.info("分配工作线程: symbol={}, worker={}", symbol, worker.getName());
+    }
+
+    /**
+     * 定序器停止后移除分配
+     */
+    synchronized void release(SymbolSequencer sequencer) {
+        Assignment assignment = assignments.get(sequencer.getSymbol());
+        if (assignment != null && assignment.sequencer == sequencer) {
+            assignments.remove(sequencer.getSymbol());
+        }
+    }
+
+    private void scheduledRebalance() {
+        try {
+            rebalance();
+        } catch (Exception e) {
+            log.error("工作线程再平衡失败", e);
+        }
+    }
+
+    /**
+     * 按最近的负载在共享工作线程之间迁移交易对
+     *
+     * @return 被迁移的交易对
+     */
+    public synchronized List<String> rebalance() {
+        List<String> moved = new ArrayList<>();
+        if (!config.isEnabled() || sharedWorkers.size() < 2) {
+            return moved;
+        }
+        Map<MatchingWorker, Double> loads = sampleLoads();
+        while (moved.size() < MAX_MOVES) {
+            MatchingWorker hot = null;
+            MatchingWorker cold = null;
+            for (MatchingWorker worker : sharedWorkers) {
+                if (hot == null || loads.get(worker) > loads.get(hot)) {
+                    hot = worker;
+                }
+                if (cold == null || loads.get(worker) < loads.get(cold)) {
+                    cold = worker;
+                }
+            }
+            double gap = loads.get(hot) - loads.get(cold);
+            if (gap <= config.getRebalanceThreshold()) {
+                break;
+            }
+            // 迁移后两边的差距必须缩小：只考虑负载小于差距的交易对，优先最接近差距一半的
+            Assignment candidate = null;
+            for (Assignment assignment : assignments.values()) {
+                if (assignment.worker != hot || assignment.load <= 0 || assignment.load >= gap) {
+                    continue;
+                }
+                if (candidate == null || Math.abs(gap / 2 - assignment.load) < Math.abs(gap / 2 - candidate.load)) {
+                    candidate = assignment;
+                }
+            }
+            if (candidate == null) {
+                break;
+            }
+            hot.moveTo(candidate.sequencer, cold);
+            candidate.worker = cold;
+            loads.put(hot, loads.get(hot) - candidate.load);
+            loads.put(cold, loads.get(cold) + candidate.load);
+            moved.add(candidate.sequencer.getSymbol());
+            log.info("迁移交易对: symbol={}, {} → {}, load={}", candidate.sequencer.getSymbol(), hot.getName(),
+                    cold.getName(), String.format("%.3f", candidate.load));
+        }
+        return moved;
+    }
+
+    /**
+     * 采样各交易对的负载，返回各共享工作线程的负载合计
+     */
+    private Map<MatchingWorker, Double> sampleLoads() {
+        long now = System.nanoTime();
+        long elapsed = now - lastSampleNanos;
+        // 两次采样间隔太短时沿用上一次的负载
+        boolean sample = elapsed >= TimeUnit.MILLISECONDS.toNanos(100);
+        if (sample) {
+            lastSampleNanos = now;
+        }
+        Map<MatchingWorker, Double> loads = new HashMap<>();
+        for (MatchingWorker worker : sharedWorkers) {
+            loads.put(worker, 0.0);
+        }
+        for (Assignment assignment : assignments.values()) {
+            if (sample) {
+                long busy = assignment.sequencer.getBusyNanos();
+                double load = (double) (busy - assignment.lastBusyNanos) / elapsed;
+                assignment.load = assignment.sampled ? (assignment.load + load) / 2 : load;
+                assignment.lastBusyNanos = busy;
+                assignment.sampled = true;
+            }
+            loads.computeIfPresent(assignment.worker, (worker, total) -> total + assignment.load);
+        }
+        return loads;
+    }
+
+    /**
+     * 负载最低的共享工作线程（负载相同时选交易对最少的）
+     */
+    private MatchingWorker leastLoaded(Map<MatchingWorker, Double> loads) {
+        Map<MatchingWorker, Integer> counts = new HashMap<>();
+        for (Assignment assignment : assignments.values()) {
+            counts.merge(assignment.worker, 1, Integer::sum);
+        }
+        MatchingWorker best = null;
+        for (MatchingWorker worker : sharedWorkers) {
+            if (best == null) {
+                best = worker;
+                continue;
+            }
+            int order = Double.compare(loads.get(worker), loads.get(best));
+            if (order < 0 || (order == 0 && counts.getOrDefault(worker, 0) < counts.getOrDefault(best, 0))) {
+                best = worker;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 各工作线程的分配情况和最近一次采样的负载
+     */
+    public synchronized List<WorkerStatsDTO> getStats() {
+        Map<MatchingWorker, WorkerStatsDTO> stats = new LinkedHashMap<>();
+        for (MatchingWorker worker : sharedWorkers) {
+            stats.put(worker, newStats(worker));
+        }
+        for (MatchingWorker worker : dedicatedWorkers.values()) {
+            stats.put(worker, newStats(worker));
+        }
+        for (Map.Entry<String, Assignment> entry : assignments.entrySet()) {
+            WorkerStatsDTO dto = stats.get(entry.getValue().worker);
+            dto.getSymbols().add(entry.getKey());
+            dto.setLoad(dto.getLoad() + entry.getValue().load);
+        }
+        return new ArrayList<>(stats.values());
+    }
+
+    private static WorkerStatsDTO newStats(MatchingWorker worker) {
+        WorkerStatsDTO dto = new WorkerStatsDTO();
+        dto.setName(worker.getName());
+        dto.setDedicated(worker.isDedicated());
+        dto.setSymbols(new ArrayList<>());
+        dto.setLoad(0.0);
+        return dto;
+    }
+
+    /**
+     * 停止工作线程（CoinTraderFactory 先停止所有定序器）
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (rebalanceExecutor != null) {
+            rebalanceExecutor.shutdownNow();
+        }
+        bootstrapExecutor.shutdownNow();
+        for (MatchingWorker worker : sharedWorkers) {
+            worker.shutdown();
+        }
+        for (MatchingWorker worker : dedicatedWorkers.values()) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * 一个交易对的分配情况
+     */
+    private static final class Assignment {
+
+        final SymbolSequencer sequencer;
+
+        MatchingWorker worker;
+
+        /** 上次采样时的累计执行耗时（纳秒） */
+        long lastBusyNanos;
+
+        /** 最近的负载（执行耗时 / 墙钟时间） */
+        double load;
+
+        boolean sampled;
+
+        Assignment(SymbolSequencer sequencer, MatchingWorker worker) {
+            this.sequencer = sequencer;
+            this.worker = worker;
+            this.lastBusyNanos = sequencer.getBusyNanos();
+        }
+    }
+}
@@ -0,0 +1,824 @@
+package com.cex.matching.sequencer;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.domain.dto.SequencerStatsDTO;
+import com.cex.matching.journal.BookJournal;
+import com.cex.matching.metrics.LatencyStage;
+import com.cex.matching.metrics.SymbolLatencyRecorder;
+import com.cex.matching.replication.CommandReplicator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 交易对单线程定序器（Single Writer）
+ *
+ * 【作用】
+ * 每个交易对一个事件循环线程，所有会修改订单簿的命令（下单、撤单、暂停/恢复）
+ * 先写入无锁环形队列，再由该线程按序执行。需要一致视图的只读查询（深度快照）也走同一队列。
+ *
+ * 【为什么不用 synchronized？】
+ * - 之前 CoinTrader 用 synchronized (lpList)/(mpList)/(plate) 多把锁分别保护，
+ *   RocketMQ 消费并发 > 1 时会交错执行，撤单甚至可以和同一订单簿上的撮合交错
+ * - 单线程独占订单簿后，撮合过程完全无锁，命令顺序就是入队顺序
+ *
+ * 【线程模型】
+ * ```
+ * RocketMQ 消费线程1 ─┐
+ * RocketMQ 消费线程2 ─┼─→ CommandRingBuffer ─→ matching-BTC/USDT 线程 ─→ CoinTrader
+ * 管理接口线程       ─┘
+ * ```
+ * 开启 matching.scheduler 时定序器没有自己的线程，由 SequencerScheduler 分配到固定数量的
+ * MatchingWorker 线程上执行（见 begin / processBatch / onIdle），同一时刻只有一个工作线程执行它，
+ * 单线程写入的约束不变。
+ *
+ * 【命令日志】
+ * 开启 matching.journal 时，下单、撤单、暂停/恢复在执行之前先写入 BookJournal（write-ahead），
+ * 并在命令之间按配置生成订单簿快照；日志写入失败的命令不执行（下单直接取消）。
+ *
+ * 【主备复制】
+ * 被接受的命令按 commandSequence 连续编号；主节点把它们交给 CommandReplicator 按批次发送，
+ * 备节点通过 publishReplicated 按主节点的序号重放（重复的跳过），两边订单簿保持一致。
+ * 备节点启动时、或发现序号缺口时标记为不同步（replicationStale），之后不再重放任何命令，
+ * 直到收到主节点带命令序号的快照（applyResync）；主节点在定序器线程中生成快照（sendResync）。
+ *
+ * 【批量输出】
+ * 事件循环每次取出已发布的命令（最多 maxBatchSize 条）连续执行，撮合产生的成交、完成订单先缓存在
+ * CoinTrader 中，整批执行完后调用 CoinTrader.flushOutput 合并发送，MQ 消息数与批次数而不是成交数成正比。
+ *
+ * 【订单到期】
+ * 主节点的事件循环每批命令之后、空闲时检查 GTT 订单时间轮，每个刻度最多推进一次；
+ * 有订单到期时生成一条 EXPIRE 命令（截止时间）写入日志并复制，再以状态 4 撤销，
+ * 重放和备节点按同一截止时间撤销相同的订单，不读取自己的时钟。
+ *
+ * @author cex
+ */
+@Slf4j
+public class SymbolSequencer implements Runnable {
+
+    /** 空闲时自旋次数 */
+    private static final int SPIN_TRIES = 100;
+
+    /** 空闲时让出 CPU 次数 */
+    private static final int YIELD_TRIES = 100;
+
+    /** 空闲休眠时间（纳秒） */
+    private static final long PARK_NANOS = 100_000L;
+
+    /** 默认每批最多执行的命令数 */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    /** 吞吐量统计窗口（纳秒） */
+    private static final long STATS_WINDOW_NANOS = 1_000_000_000L;
+
+    private final CoinTrader trader;
+
+    private final CommandRingBuffer ringBuffer;
+
+    /** 命令日志（未开启时为 null） */
+    private final BookJournal journal;
+
+    /** 每批最多执行的命令数（限制合并输出的延迟和消息大小） */
+    private final int maxBatchSize;
+
+    /** 各阶段延迟统计（入队等待、撮合、盘口推送、结果发送） */
+    private volatile SymbolLatencyRecorder latency = SymbolLatencyRecorder.NOOP;
+
+    /** 命令复制（主节点开启复制时设置，只由事件循环线程访问） */
+    private CommandReplicator replicator;
+
+    /** 已接受的最后一个命令序号（启动时从命令日志恢复，主备节点一致） */
+    private volatile long commandSequence;
+
+    /** 备节点发现的复制序号缺口次数 */
+    private volatile long replicationGaps;
+
+    /** 备节点订单簿是否与主节点不一致（等待主节点快照，期间不重放命令） */
+    private volatile boolean replicationStale;
+
+    /** 备节点：本批复制命令中主节点的盘口增量序号，批次输出之后对齐（0 表示没有，只由执行线程访问） */
+    private long replicatedBookSequence;
+
+    /** 是否按时间轮撤销到期订单（主节点；备节点只执行复制过来的 EXPIRE 命令） */
+    private volatile boolean orderExpiry;
+
+    /** 独立线程模式的事件循环线程（由工作线程执行时不启动） */
+    private final Thread thread;
+
+    /** 当前执行该定序器的工作线程（独立线程模式为 null，迁移时切换） */
+    private volatile MatchingWorker worker;
+
+    /** 所属调度器（独立线程模式为 null） */
+    private SequencerScheduler scheduler;
+
+    private volatile boolean running;
+
+    /** 事件循环已退出（已入队的命令都已执行） */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /** 下一个要执行的命令序号（只由执行线程访问，迁移时经工作线程邮箱交接） */
+    private long nextSequence;
+
+    /** 累计执行命令批次的耗时（纳秒，用于按负载分配工作线程） */
+    private volatile long busyNanos;
+
+    /** 启动任务（恢复/加载订单簿），在事件循环开始前执行，期间到达的命令在环形队列中等待 */
+    private Runnable bootstrap;
+
+    /** 事件循环是否处于休眠状态（生产者据此决定是否唤醒） */
+    private volatile boolean sleeping;
+
+    /** 已处理命令数（只由事件循环线程写入） */
+    private volatile long processedCount;
+
+    /** 上一个统计窗口的吞吐量（命令/秒） */
+    private volatile long throughput;
+
+    private long windowStartNanos;
+
+    private long windowStartCount;
+
+    public SymbolSequencer(CoinTrader trader, int ringSize) {
+        this(trader, ringSize, DEFAULT_MAX_BATCH_SIZE, null);
+    }
+
+    /**
+     * @param maxBatchSize 每批最多执行的命令数，批次结束时合并发送输出
+     * @param journal 已完成恢复的命令日志，为 null 时不写日志
+     */
+    public SymbolSequencer(CoinTrader trader, int ringSize, int maxBatchSize, BookJournal journal) {
+        this.trader = trader;
+        this.ringBuffer = new CommandRingBuffer(ringSize);
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.journal = journal;
+        this.thread = new Thread(this, "matching-" + trader.getSymbol());
+    }
+
+    /**
+     * 启动事件循环
+     */
+    public void start() {
+        start(null);
+    }
+
+    /**
+     * 启动事件循环，先在定序器线程中执行启动任务
+     *
+     * @param bootstrap 启动任务（如恢复订单簿），为 null 时直接进入事件循环
+     */
+    public void start(Runnable bootstrap) {
+        this.bootstrap = bootstrap;
+        running = true;
+        thread.start();
+        log.info("交易对定序器启动: symbol={}, ringSize={}", trader.getSymbol(), ringBuffer.getCapacity());
+    }
+
+    /**
+     * 交给调度器执行：启动任务在加载线程中执行，完成后分配到工作线程
+     *
+     * @param bootstrap 启动任务（如恢复订单簿），为 null 时直接分配
+     */
+    public void start(Runnable bootstrap, SequencerScheduler scheduler) {
+        this.bootstrap = bootstrap;
+        this.scheduler = scheduler;
+        running = true;
+        scheduler.submit(this);
+        log.info("交易对定序器启动: symbol={}, ringSize={}, scheduled=true", trader.getSymbol(), ringBuffer.getCapacity());
+    }
+
+    /**
+     * 停止事件循环（处理完已入队的命令后退出），并生成最终快照
+     */
+    public void shutdown() {
+        running = false;
+        wakeUp();
+        boolean exited = false;
+        try {
+            exited = stopped.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (scheduler != null) {
+            scheduler.release(this);
+        }
+        if (journal != null) {
+            if (!exited) {
+                log.warn("定序器未能按时停止，跳过关闭快照: symbol={}", trader.getSymbol());
+            } else {
+                journal.close(trader);
+            }
+        }
+        log.info("交易对定序器停止: symbol={}, processed={}", trader.getSymbol(), processedCount);
+    }
+
+    /**
+     * 提交下单命令
+     */
+    public void publishOrder(OrderDTO order) {
+        publish(CommandType.PLACE_ORDER, order);
+    }
+
+    /**
+     * 批量提交下单命令（同一交易对，一次申请连续序号，按列表顺序执行）
+     */
+    public void publishOrders(List<OrderDTO> orders) {
+        int index = 0;
+        while (index < orders.size()) {
+            int n = Math.min(orders.size() - index, ringBuffer.getCapacity());
+            long hi = ringBuffer.next(n);
+            long now = System.nanoTime();
+            for (long sequence = hi - n + 1; sequence <= hi; sequence++) {
+                ringBuffer.get(sequence).set(CommandType.PLACE_ORDER, orders.get(index++), now);
+            }
+            for (long sequence = hi - n + 1; sequence <= hi; sequence++) {
+                ringBuffer.publish(sequence);
+            }
+            wakeUp();
+        }
+    }
+
+    /**
+     * 提交主节点复制过来的命令（备节点）
+     *
+     * @param sequence 主节点的命令序号
+     */
+    public void publishReplicated(long sequence, CommandType type, OrderDTO order) {
+        publishReplicated(sequence, type, order, 0);
+    }
+
+    /**
+     * 提交主节点复制过来的命令（备节点）
+     *
+     * @param sequence 主节点的命令序号
+     * @param bookSequence 主节点该批次输出之后的盘口增量序号（批次的最后一条命令），0 表示没有
+     */
+    public void publishReplicated(long sequence, CommandType type, OrderDTO order, long bookSequence) {
+        long slot = ringBuffer.next();
+        MatchCommand command = ringBuffer.get(slot);
+        command.set(type, order, System.nanoTime());
+        command.setReplicationSequence(sequence);
+        command.setReplicationBookSequence(bookSequence);
+        publish(slot);
+    }
+
+    /**
+     * 提交撤单命令
+     */
+    public void publishCancel(OrderDTO order) {
+        publish(CommandType.CANCEL_ORDER, order);
+    }
+
+    /**
+     * 提交按用户批量撤单命令
+     *
+     * @param request 撤单请求：symbol、userId 必填，side 为空时撤销两个方向
+     */
+    public void publishCancelUser(OrderDTO request) {
+        publish(CommandType.CANCEL_USER, request);
+    }
+
+    /**
+     * 提交管理命令（暂停/恢复交易）
+     */
+    public void publishAdmin(CommandType type) {
+        publish(type, null);
+    }
+
+    /**
+     * 提交只读查询，在定序器线程中执行（命令之间订单簿处于一致状态）
+     *
+     * @param query 查询函数
+     * @return 查询结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> query(Function<CoinTrader, T> query) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        long sequence = ringBuffer.next();
+        MatchCommand command = ringBuffer.get(sequence);
+        command.set(CommandType.QUERY, null, System.nanoTime());
+        command.setQuery(query, future);
+        publish(sequence);
+        return (CompletableFuture<T>) future;
+    }
+
+    private void publish(CommandType type, OrderDTO order) {
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).set(type, order, System.nanoTime());
+        publish(sequence);
+    }
+
+    private void publish(long sequence) {
+        ringBuffer.publish(sequence);
+        wakeUp();
+    }
+
+    /**
+     * 唤醒执行该定序器的线程（休眠时）
+     */
+    private void wakeUp() {
+        MatchingWorker current = worker;
+        if (current != null) {
+            current.wakeUp();
+        } else if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 独立线程模式的事件循环
+     */
+    @Override
+    public void run() {
+        begin();
+        int idleCount = 0;
+        while (true) {
+            if (processBatch()) {
+                idleCount = 0;
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+            onIdle();
+            idleCount = idle(idleCount);
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * 执行启动任务，初始化事件循环状态（在第一次 processBatch 之前、由执行线程或加载线程调用一次）
+     */
+    void begin() {
+        if (bootstrap != null) {
+            try {
+                bootstrap.run();
+            } catch (Exception e) {
+                log.error("定序器启动任务失败: symbol={}", trader.getSymbol(), e);
+            }
+            bootstrap = null;
+        }
+        // 命令序号从日志继续（主备节点从同一份日志/快照启动时序号一致）
+        commandSequence = journal != null ? journal.getLastSequence() : 0;
+        nextSequence = ringBuffer.getConsumerSequence() + 1;
+        windowStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 执行一批已发布的命令（最多 maxBatchSize 条），整批结束后合并发送输出
+     *
+     * @return 是否执行了命令（没有已发布的命令时返回 false）
+     */
+    boolean processBatch() {
+        long cursor = Math.min(ringBuffer.getCursor(), nextSequence + maxBatchSize - 1);
+        long available = ringBuffer.highestPublished(nextSequence, cursor);
+        if (available < nextSequence) {
+            return false;
+        }
+        long start = System.nanoTime();
+        for (long sequence = nextSequence; sequence <= available; sequence++) {
+            MatchCommand command = ringBuffer.get(sequence);
+            handle(command);
+            command.clear();
+        }
+        expireOrders();
+        // 整批命令的成交、完成订单合并发送
+        flushOutput();
+        alignReplicatedBookSequence();
+        processedCount += available - nextSequence + 1;
+        ringBuffer.release(available);
+        nextSequence = available + 1;
+        updateThroughput();
+        long end = System.nanoTime();
+        if (journal != null) {
+            journal.maybeSnapshot(trader, end);
+        }
+        busyNanos += end - start;
+        return true;
+    }
+
+    /**
+     * 空闲时的定时工作：撤销到期订单、推送合并中已到期的盘口增量、按配置生成快照
+     */
+    void onIdle() {
+        if (expireOrders()) {
+            flushOutput();
+        }
+        long now = System.nanoTime();
+        if (replicator != null) {
+            replicator.retryIfDue(trader.getBookSequence(), now);
+        }
+        trader.flushDepthIfDue(now);
+        if (journal != null) {
+            journal.maybeSnapshot(trader, now);
+        }
+        updateThroughput();
+    }
+
+    /**
+     * 是否有尚未执行的命令（执行线程休眠前检查）
+     */
+    boolean hasBacklog() {
+        return ringBuffer.getCursor() >= nextSequence;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 工作线程执行完已入队的命令、不再执行该定序器
+     */
+    void markStopped() {
+        stopped.countDown();
+    }
+
+    void setWorker(MatchingWorker worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * 执行单条命令（只在事件循环线程中调用，订单簿无需加锁）
+     */
+    private void handle(MatchCommand command) {
+        if (command.getReplicationBookSequence() > 0) {
+            replicatedBookSequence = command.getReplicationBookSequence();
+        }
+        if (command.getReplicationSequence() > 0 && !acceptReplicated(command.getReplicationSequence())) {
+            return;
+        }
+        SymbolLatencyRecorder latency = this.latency;
+        long start = System.nanoTime();
+        if (command.getType() != CommandType.QUERY) {
+            latency.record(LatencyStage.QUEUE_WAIT, start - command.getEnqueueNanos());
+        }
+        try {
+            switch (command.getType()) {
+                case PLACE_ORDER:
+                    OrderDTO order = command.getOrder();
+                    // 交易器未就绪或暂停交易，直接取消订单
+                    if (trader.isTradingHalt() || !trader.isReady()) {
+                        log.info("交易器未就绪或暂停，取消订单: {}", order.getOrderNo());
+                        order.setStatus(3);  // 3 = CANCELED（已取消）
+                        trader.sendOrderCompleted(order);
+                        return;
+                    }
+                    // 到达时已经到期的 GTT 订单（复制过来的命令主节点已经检查过）
+                    if (command.getReplicationSequence() == 0 && trader.isExpired(order, System.currentTimeMillis())) {
+                        log.info("GTT 订单到达时已到期: {}", order.getOrderNo());
+                        order.setStatus(4);  // 4 = 超时
+                        trader.sendOrderCompleted(order);
+                        return;
+                    }
+                    if (!journal(command)) {
+                        order.setStatus(3);  // 3 = CANCELED（无法写入日志，不执行）
+                        trader.sendOrderCompleted(order);
+                        return;
+                    }
+                    long matchStart = System.nanoTime();
+                    trader.trade(order);
+                    long matchEnd = System.nanoTime();
+                    trader.onBookCommand(matchEnd);
+                    latency.record(LatencyStage.MATCH, matchEnd - matchStart);
+                    latency.record(LatencyStage.PLATE, System.nanoTime() - matchEnd);
+                    break;
+                case CANCEL_ORDER:
+                    // 只有交易器就绪时才处理取消请求
+                    if (trader.isReady() && journal(command)) {
+                        OrderDTO canceledOrder = trader.cancelOrder(command.getOrder());
+                        if (canceledOrder != null) {
+                            trader.sendOrderCompleted(canceledOrder);
+                            long plateStart = System.nanoTime();
+                            trader.onBookCommand(plateStart);
+                            latency.record(LatencyStage.PLATE, System.nanoTime() - plateStart);
+                        }
+                    }
+                    break;
+                case CANCEL_USER:
+                    // 一条命令撤销该用户的全部挂单，撤销的订单合并为一条订单完成通知
+                    if (trader.isReady() && journal(command)) {
+                        List<OrderDTO> canceledOrders = trader.cancelUserOrders(command.getOrder());
+                        if (!canceledOrders.isEmpty()) {
+                            trader.sendOrderCompleted(canceledOrders);
+                            long plateStart = System.nanoTime();
+                            trader.onBookCommand(plateStart);
+                            latency.record(LatencyStage.PLATE, System.nanoTime() - plateStart);
+                        }
+                    }
+                    break;
+                case EXPIRE:
+                    // 备节点：按主节点的截止时间撤销到期订单
+                    if (trader.isReady() && journal(command)) {
+                        List<OrderDTO> expiredOrders = trader.expireOrders(command.getOrder().getExpireTime());
+                        if (!expiredOrders.isEmpty()) {
+                            trader.sendOrderCompleted(expiredOrders);
+                            trader.onBookCommand(System.nanoTime());
+                        }
+                    }
+                    break;
+                case HALT:
+                    // 与下单相同：日志写入失败时不执行，否则重启后状态与执行过的命令不一致
+                    if (!journal(command)) {
+                        log.error("暂停交易未执行（无法写入日志）: {}", trader.getSymbol());
+                        break;
+                    }
+                    trader.haltTrading();
+                    log.info("暂停交易: {}", trader.getSymbol());
+                    break;
+                case RESUME:
+                    if (!journal(command)) {
+                        log.error("恢复交易未执行（无法写入日志）: {}", trader.getSymbol());
+                        break;
+                    }
+                    trader.resumeTrading();
+                    log.info("恢复交易: {}", trader.getSymbol());
+                    break;
+                case QUERY:
+                    try {
+                        command.getFuture().complete(command.getQuery().apply(trader));
+                    } catch (Exception e) {
+                        command.getFuture().completeExceptionally(e);
+                    }
+                    break;
+                default:
+                    log.warn("未知撮合命令: {}", command.getType());
+            }
+        } catch (Exception e) {
+            log.error("撮合命令处理失败: symbol={}, type={}", trader.getSymbol(), command.getType(), e);
+        }
+    }
+
+    private void flushOutput() {
+        try {
+            long start = System.nanoTime();
+            // 先复制命令再发送结果：主节点在两者之间宕机时，备节点不会缺少已经对外发布过结果的命令；
+            // 因此带上结果发出之后的盘口增量序号
+            if (replicator != null) {
+                replicator.flush(trader.getBookSequenceAfterFlush());
+            }
+            trader.flushOutput();
+            latency.record(LatencyStage.PUBLISH, System.nanoTime() - start);
+        } catch (Exception e) {
+            log.error("发送撮合结果失败: symbol={}", trader.getSymbol(), e);
+        }
+    }
+
+    /**
+     * 备节点：批次输出之后对齐到主节点的盘口增量序号
+     *
+     * 重放是确定性的，但两边的合并推送时机不同，序号可能相差；以主节点为准，接管后消费方的序号能接上。
+     * 不同步时等快照再对齐
+     */
+    private void alignReplicatedBookSequence() {
+        long bookSequence = replicatedBookSequence;
+        if (bookSequence == 0) {
+            return;
+        }
+        replicatedBookSequence = 0;
+        if (!replicationStale && trader.getBookSequence() != bookSequence) {
+            trader.restoreBookSequence(bookSequence);
+        }
+    }
+
+    /**
+     * 执行前写入命令日志
+     *
+     * @return 是否可以执行（未开启日志时总是 true）
+     */
+    private boolean journal(MatchCommand command) {
+        return journal(command.getType(), command.getOrder());
+    }
+
+    private boolean journal(CommandType type, OrderDTO order) {
+        if (journal != null && !journal.append(type, order)) {
+            return false;
+        }
+        commandSequence++;
+        if (replicator != null) {
+            replicator.append(commandSequence, type, order);
+        }
+        return true;
+    }
+
+    /**
+     * 撤销到期的 GTT 订单（主节点事件循环）
+     *
+     * 先从时间轮取出到期订单，有订单到期时才写入 EXPIRE 命令；写入失败时放回时间轮，下个刻度重试
+     *
+     * @return 是否有订单被撤销（需要发送输出）
+     */
+    private boolean expireOrders() {
+        if (!orderExpiry || !trader.isReady()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (!trader.hasExpiryDue(now) || trader.pollExpiredOrders(now) == 0) {
+            return false;
+        }
+        try {
+            OrderDTO cutoff = new OrderDTO();
+            cutoff.setSymbol(trader.getSymbol());
+            cutoff.setExpireTime(now);
+            if (!journal(CommandType.EXPIRE, cutoff)) {
+                trader.deferDueOrders();
+                return false;
+            }
+            long plateStart = System.nanoTime();
+            trader.sendOrderCompleted(trader.expireDueOrders());
+            trader.onBookCommand(plateStart);
+            latency.record(LatencyStage.PLATE, System.nanoTime() - plateStart);
+            return true;
+        } catch (Exception e) {
+            log.error("撤销到期订单失败: symbol={}", trader.getSymbol(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 备节点：检查复制命令的序号
+     *
+     * @return 是否执行（已执行过的重复命令返回 false）
+     */
+    private boolean acceptReplicated(long sequence) {
+        if (sequence <= commandSequence || replicationStale) {
+            return false;
+        }
+        if (sequence != commandSequence + 1) {
+            replicationGaps++;
+            replicationStale = true;
+            log.error("复制命令序号不连续，停止重放，等待主节点快照: symbol={}, expected={}, actual={}",
+                    trader.getSymbol(), commandSequence + 1, sequence);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 备节点：用主节点的快照替换订单簿（在 query 中调用，定序器线程）
+     *
+     * 快照包含主节点已接受的前 sequence 条命令；之后序号大于 sequence 的复制命令继续重放
+     *
+     * @param snapshot 快照内容（格式同快照文件）
+     * @return 是否应用成功
+     */
+    public boolean applyResync(byte[] snapshot) {
+        if (!trader.isReady()) {
+            log.error("交易器未就绪，不能应用主节点快照: symbol={}", trader.getSymbol());
+            return false;
+        }
+        try {
+            long sequence = BookJournal.applySnapshot(trader, snapshot);
+            if (journal != null) {
+                journal.resetTo(trader, sequence);
+            }
+            commandSequence = sequence;
+            replicationStale = false;
+            log.warn("已按主节点快照重新同步: symbol={}, seq={}, orders={}",
+                    trader.getSymbol(), sequence, trader.getRestingOrderCount());
+            return true;
+        } catch (Exception e) {
+            replicationStale = true;
+            log.error("应用主节点快照失败: symbol={}", trader.getSymbol(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 主节点：发送订单簿快照，供备节点重新同步（在 query 中调用，定序器线程）
+     *
+     * @param chunkBytes 每条复制消息最多携带的快照字节数
+     * @return 是否发送成功
+     */
+    public boolean sendResync(int chunkBytes) {
+        if (replicator == null || !trader.isReady()) {
+            return false;
+        }
+        byte[] snapshot = BookJournal.captureSnapshot(trader, commandSequence);
+        return replicator.sendSnapshot(trader.getBookSequence(), commandSequence, snapshot, chunkBytes);
+    }
+
+    /**
+     * 设置命令复制（启动前，或在事件循环线程中调用，如 query 内）
+     */
+    public void setReplicator(CommandReplicator replicator) {
+        this.replicator = replicator;
+    }
+
+    /**
+     * 设置延迟统计（任意线程）
+     */
+    public void setLatency(SymbolLatencyRecorder latency) {
+        this.latency = latency;
+    }
+
+    public SymbolLatencyRecorder getLatency() {
+        return latency;
+    }
+
+    /**
+     * 设置是否按时间轮撤销到期订单（主节点开启；备节点接管时开启）
+     */
+    public void setOrderExpiry(boolean orderExpiry) {
+        this.orderExpiry = orderExpiry;
+    }
+
+    public long getCommandSequence() {
+        return commandSequence;
+    }
+
+    public long getReplicationGaps() {
+        return replicationGaps;
+    }
+
+    public boolean isReplicationStale() {
+        return replicationStale;
+    }
+
+    /**
+     * 标记备节点订单簿需要从主节点重新同步（备节点启动时，或发现主节点序号落后于本节点时）
+     */
+    public void setReplicationStale(boolean replicationStale) {
+        this.replicationStale = replicationStale;
+    }
+
+    /**
+     * 空闲等待策略：自旋 → 让出 CPU → 休眠（可被生产者唤醒）
+     */
+    private int idle(int idleCount) {
+        if (idleCount < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            sleeping = true;
+            // 设置休眠标记后再检查一次，避免错过生产者的唤醒
+            if (!hasBacklog() && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            sleeping = false;
+        }
+        return idleCount + 1;
+    }
+
+    private void updateThroughput() {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= STATS_WINDOW_NANOS) {
+            long count = processedCount;
+            throughput = (count - windowStartCount) * STATS_WINDOW_NANOS / (now - windowStartNanos);
+            windowStartNanos = now;
+            windowStartCount = count;
+        }
+    }
+
+    /**
+     * 获取定序器统计信息
+     */
+    public SequencerStatsDTO getStats() {
+        SequencerStatsDTO stats = new SequencerStatsDTO();
+        stats.setSymbol(trader.getSymbol());
+        stats.setRingSize(ringBuffer.getCapacity());
+        stats.setPublishedCount(ringBuffer.getCursor() + 1);
+        stats.setProcessedCount(processedCount);
+        stats.setBacklog(ringBuffer.getCursor() - ringBuffer.getConsumerSequence());
+        stats.setThroughput(throughput);
+        stats.setDepthPublished(trader.getDepthPublishedCount());
+        stats.setDepthSuppressed(trader.getDepthSuppressedCount());
+        stats.setDepthPublishIntervalMs(trader.getDepthPublishIntervalMillis());
+        MatchingWorker current = worker;
+        if (current != null) {
+            stats.setWorker(current.getName());
+        }
+        if (journal != null) {
+            stats.setJournalSequence(journal.getLastSequence());
+            stats.setSnapshotSequence(journal.getSnapshotSequence());
+        }
+        return stats;
+    }
+
+    public CoinTrader getTrader() {
+        return trader;
+    }
+
+    /**
+     * 命令日志（未开启时为 null）
+     */
+    public BookJournal getJournal() {
+        return journal;
+    }
+
+    public String getSymbol() {
+        return trader.getSymbol();
+    }
+
+    /**
+     * 累计执行命令批次的耗时（纳秒）
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+}
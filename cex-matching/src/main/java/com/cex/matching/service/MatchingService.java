@@ -1,9 +1,17 @@
 package com.cex.matching.service;
 
+import com.cex.common.dto.KlineDTO;
 import com.cex.common.dto.OrderDTO;
+import com.cex.common.dto.TickerDTO;
+import com.cex.matching.domain.dto.DepthSnapshotDTO;
+import com.cex.matching.domain.dto.LoadProgressDTO;
+import com.cex.matching.domain.dto.ReplicationLagDTO;
+import com.cex.matching.domain.dto.SequencerStatsDTO;
+import com.cex.matching.domain.dto.WorkerStatsDTO;
 import com.cex.matching.domain.entity.OrderBook;
 import com.cex.matching.domain.entity.TradeRecord;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -15,19 +23,35 @@ import java.util.Map;
 public interface MatchingService {
 
     /**
-     * 添加订单到撮合引擎
+     * 添加订单到撮合引擎（提交到交易对的定序器，与 MQ 下单走同一个队列）
      */
     void addOrder(OrderDTO order);
 
     /**
-     * 撤销订单
+     * 撤销订单（提交到交易对的定序器，与 MQ 撤单走同一个队列）
      */
-    void cancelOrder(String orderNo);
+    void cancelOrder(String symbol, String orderNo);
 
     /**
-     * 获取订单簿
+     * 按用户批量撤单（经由定序器执行，一条命令撤销该用户在交易对上的全部挂单）
+     *
+     * @param side 方向（1买入 2卖出），为空时撤销两个方向
      */
-    Map<String, List<OrderBook>> getOrderBook(String symbol);
+    void cancelUserOrders(String symbol, Long userId, Integer side);
+
+    /**
+     * 获取订单簿（读取撮合交易器发布的只读快照，每一侧最多 limit 档）
+     *
+     * @param step 分组步长，为空时返回原始档位
+     */
+    Map<String, List<OrderBook>> getOrderBook(String symbol, Integer limit, BigDecimal step);
+
+    /**
+     * 获取深度快照（带增量序号，配合 trade-plate-out 增量使用）
+     *
+     * @param step 分组步长，为空时返回原始档位
+     */
+    DepthSnapshotDTO getDepthSnapshot(String symbol, Integer limit, BigDecimal step);
 
     /**
      * 获取最新成交记录
@@ -35,9 +59,19 @@ public interface MatchingService {
     List<TradeRecord> getLatestTrades(String symbol, Integer limit);
 
     /**
-     * 获取K线数据
+     * 获取K线数据（时间升序，最近的从内存读取，更早的从 kline_data 补充）
      */
-    List<Object> getKlineData(String symbol, String period, Integer limit);
+    List<KlineDTO> getKlineData(String symbol, String period, Integer limit);
+
+    /**
+     * 获取全部交易对的24小时行情（内存中的滚动窗口，不访问数据库）
+     */
+    List<TickerDTO> getTickers();
+
+    /**
+     * 获取一个交易对的24小时行情
+     */
+    TickerDTO getTicker(String symbol);
 
     /**
      * 启动撮合引擎
@@ -53,4 +87,61 @@ public interface MatchingService {
      * 获取撮合引擎状态
      */
     boolean isMatchingEngineRunning();
+
+    /**
+     * 暂停交易对撮合（经由定序器执行，与撮合命令保持顺序）
+     */
+    void haltTrading(String symbol);
+
+    /**
+     * 恢复交易对撮合
+     */
+    void resumeTrading(String symbol);
+
+    /**
+     * 调整交易对的盘口增量合并推送策略
+     */
+    void setDepthPublishPolicy(String symbol, Long intervalMs, Integer maxChanges);
+
+    /**
+     * 获取各交易对定序器统计（吞吐量、积压、盘口推送/合并次数）
+     */
+    List<SequencerStatsDTO> getSequencerStats();
+
+    /**
+     * 获取各撮合工作线程的交易对分配和负载
+     */
+    List<WorkerStatsDTO> getWorkerStats();
+
+    /**
+     * 按最近的负载在共享工作线程之间迁移交易对
+     *
+     * @return 被迁移的交易对
+     */
+    List<String> rebalanceWorkers();
+
+    /**
+     * 获取各交易对订单簿启动加载进度（来源、已加载订单数、耗时）
+     */
+    List<LoadProgressDTO> getLoadProgress();
+
+    /**
+     * 重新加载未就绪的交易对订单簿（启动加载的重试用完之后）
+     *
+     * @return 加载后是否就绪（失败原因见加载进度）
+     */
+    boolean reloadOrderBook(String symbol);
+
+    /**
+     * 获取各交易对主备复制状态（命令序号、落后量、是否同步）
+     */
+    List<ReplicationLagDTO> getReplicationLag();
+
+    /**
+     * 备节点接管为主节点
+     *
+     * @param force 有交易对与主节点不同步时是否仍然接管
+     * @return 接管耗时（毫秒）
+     */
+    long promote(boolean force);
 }
@@ -1,19 +1,36 @@
 package com.cex.matching.service.impl;
 
-import cn.hutool.core.util.IdUtil;
+import com.cex.common.core.exception.BusinessException;
+import com.cex.common.dto.KlineDTO;
 import com.cex.common.dto.OrderDTO;
+import com.cex.common.dto.TickerDTO;
+import com.cex.common.dto.TradeRecordDTO;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.core.CoinTraderFactory;
+import com.cex.matching.core.OrderBookSnapshot;
+import com.cex.matching.domain.dto.DepthSnapshotDTO;
+import com.cex.matching.domain.dto.LoadProgressDTO;
+import com.cex.matching.domain.dto.ReplicationLagDTO;
+import com.cex.matching.domain.dto.SequencerStatsDTO;
+import com.cex.matching.domain.dto.WorkerStatsDTO;
 import com.cex.matching.domain.entity.OrderBook;
 import com.cex.matching.domain.entity.TradeRecord;
+import com.cex.matching.market.KlineAggregator;
+import com.cex.matching.market.TickerAggregator;
+import com.cex.matching.replication.ReplicationManager;
+import com.cex.matching.sequencer.CommandType;
+import com.cex.matching.sequencer.SequencerScheduler;
+import com.cex.matching.sequencer.SymbolSequencer;
 import com.cex.matching.service.MatchingService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.time.ZoneId;
 
@@ -26,132 +43,172 @@ import java.time.ZoneId;
 @Service
 public class MatchingServiceImpl implements MatchingService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final CoinTraderFactory traderFactory;
+
+    private final ReplicationManager replicationManager;
+
+    private final KlineAggregator klineAggregator;
+
+    private final TickerAggregator tickerAggregator;
+
+    private final SequencerScheduler sequencerScheduler;
     
     // 撮合引擎运行状态
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     
-    // 订单簿：symbol -> side -> price -> orders
-    private final Map<String, Map<Integer, ConcurrentSkipListMap<BigDecimal, List<OrderDTO>>>> orderBooks = new ConcurrentHashMap<>();
-    
-    // 成交记录缓存
-    private final Map<String, List<TradeRecord>> tradeRecords = new ConcurrentHashMap<>();
-
-    public MatchingServiceImpl(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    // 深度快照最大档位数
+    private static final int MAX_SNAPSHOT_DEPTH = 1000;
+
+    // 深度快照等待定序器的超时时间（秒）
+    private static final long SNAPSHOT_TIMEOUT_SECONDS = 3;
+
+    // 重新加载订单簿的等待时间（秒），超时后加载仍在定序器中继续
+    private static final long RELOAD_TIMEOUT_SECONDS = 30;
+
+    public MatchingServiceImpl(CoinTraderFactory traderFactory, ReplicationManager replicationManager,
+                               KlineAggregator klineAggregator, TickerAggregator tickerAggregator,
+                               SequencerScheduler sequencerScheduler) {
+        this.traderFactory = traderFactory;
+        this.replicationManager = replicationManager;
+        this.klineAggregator = klineAggregator;
+        this.tickerAggregator = tickerAggregator;
+        this.sequencerScheduler = sequencerScheduler;
     }
 
     @Override
     public void addOrder(OrderDTO order) {
-        String symbol = order.getSymbol();
-        
-        // 初始化订单簿
-        orderBooks.computeIfAbsent(symbol, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(order.getSide(), k -> new ConcurrentSkipListMap<>())
-                .computeIfAbsent(order.getPrice(), k -> new ArrayList<>())
-                .add(order);
-
-        log.info("订单添加到撮合引擎: orderNo={}, symbol={}, side={}, price={}, amount={}", 
-                order.getOrderNo(), symbol, order.getSide(), order.getPrice(), order.getAmount());
-
-        // 执行撮合
-        matchOrders(symbol);
+        checkNotStandby();
+        checkOwnsSymbol(order.getSymbol());
+        // 与 MQ 下单相同：进入交易对的定序器排队，由撮合交易器执行，结果经 MQ 输出
+        traderFactory.getSequencer(order.getSymbol()).publishOrder(order);
+        log.info("提交下单命令: orderNo={}, symbol={}, side={}, price={}, amount={}",
+                order.getOrderNo(), order.getSymbol(), order.getSide(), order.getPrice(), order.getAmount());
     }
 
     @Override
-    public void cancelOrder(String orderNo) {
-        // 从所有订单簿中查找并移除订单
-        for (Map.Entry<String, Map<Integer, ConcurrentSkipListMap<BigDecimal, List<OrderDTO>>>> symbolEntry : orderBooks.entrySet()) {
-            for (Map.Entry<Integer, ConcurrentSkipListMap<BigDecimal, List<OrderDTO>>> sideEntry : symbolEntry.getValue().entrySet()) {
-                for (Map.Entry<BigDecimal, List<OrderDTO>> priceEntry : sideEntry.getValue().entrySet()) {
-                    List<OrderDTO> orders = priceEntry.getValue();
-                    orders.removeIf(order -> order.getOrderNo().equals(orderNo));
-                    
-                    if (orders.isEmpty()) {
-                        sideEntry.getValue().remove(priceEntry.getKey());
-                    }
-                    
-                    if (!orders.isEmpty()) {
-                        log.info("订单撤销成功: orderNo={}", orderNo);
-                        return;
-                    }
-                }
-            }
-        }
-        
-        log.warn("未找到要撤销的订单: orderNo={}", orderNo);
+    public void cancelOrder(String symbol, String orderNo) {
+        checkNotStandby();
+        checkOwnsSymbol(symbol);
+        OrderDTO request = new OrderDTO();
+        request.setSymbol(symbol);
+        request.setOrderNo(orderNo);
+        traderFactory.getSequencer(symbol).publishCancel(request);
+        log.info("提交撤单命令: symbol={}, orderNo={}", symbol, orderNo);
     }
 
     @Override
-    public Map<String, List<OrderBook>> getOrderBook(String symbol) {
+    public Map<String, List<OrderBook>> getOrderBook(String symbol, Integer limit, BigDecimal step) {
         Map<String, List<OrderBook>> result = new HashMap<>();
         
-        Map<Integer, ConcurrentSkipListMap<BigDecimal, List<OrderDTO>>> symbolOrderBook = orderBooks.get(symbol);
-        if (symbolOrderBook == null) {
+        // 读取交易器最近发布的只读快照，不经过定序器（不创建不存在的交易器）
+        CoinTrader trader = traderFactory.getAllTraders().get(symbol);
+        if (trader == null) {
             return result;
         }
+        OrderBookSnapshot snapshot = trader.getBookSnapshot();
+        Date updateTime = new Date(snapshot.getTimestamp());
+        int depth = Math.max(limit, 1);
+        int group = snapshot.groupIndexOf(step);
+
+        // 买单（按价格降序）、卖单（按价格升序）；分组深度的订单数为 0
+        result.put("bids", toOrderBooks(symbol, 1, snapshot.getBids(group), depth, updateTime));
+        result.put("asks", toOrderBooks(symbol, 2, snapshot.getAsks(group), depth, updateTime));
+        
+        return result;
+    }
 
-        // 买单（按价格降序）
-        List<OrderBook> buyOrders = new ArrayList<>();
-        ConcurrentSkipListMap<BigDecimal, List<OrderDTO>> buySide = symbolOrderBook.get(1);
-        if (buySide != null) {
-            buySide.descendingMap().forEach((price, orders) -> {
-                BigDecimal totalAmount = orders.stream()
-                        .map(OrderDTO::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-                OrderBook orderBook = new OrderBook();
-                orderBook.setSymbol(symbol);
-                orderBook.setSide(1);
-                orderBook.setPrice(price);
-                orderBook.setAmount(totalAmount);
-                orderBook.setOrderCount(orders.size());
-                orderBook.setUpdateTime(new java.util.Date());
-                
-                buyOrders.add(orderBook);
-            });
+    private List<OrderBook> toOrderBooks(String symbol, int side, OrderBookSnapshot.Side levels, int limit, Date updateTime) {
+        int size = Math.min(limit, levels.getDepth());
+        List<OrderBook> orderBooks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            OrderBook orderBook = new OrderBook();
+            orderBook.setSymbol(symbol);
+            orderBook.setSide(side);
+            orderBook.setPrice(levels.getPrice(i));
+            orderBook.setAmount(levels.getAmount(i));
+            orderBook.setOrderCount(levels.getOrderCount(i));
+            orderBook.setUpdateTime(updateTime);
+            orderBooks.add(orderBook);
         }
+        return orderBooks;
+    }
 
-        // 卖单（按价格升序）
-        List<OrderBook> sellOrders = new ArrayList<>();
-        ConcurrentSkipListMap<BigDecimal, List<OrderDTO>> sellSide = symbolOrderBook.get(2);
-        if (sellSide != null) {
-            sellSide.forEach((price, orders) -> {
-                BigDecimal totalAmount = orders.stream()
-                        .map(OrderDTO::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-                OrderBook orderBook = new OrderBook();
-                orderBook.setSymbol(symbol);
-                orderBook.setSide(2);
-                orderBook.setPrice(price);
-                orderBook.setAmount(totalAmount);
-                orderBook.setOrderCount(orders.size());
-                orderBook.setUpdateTime(new java.util.Date());
-                
-                sellOrders.add(orderBook);
-            });
+    @Override
+    public DepthSnapshotDTO getDepthSnapshot(String symbol, Integer limit, BigDecimal step) {
+        int depth = Math.min(Math.max(limit, 1), MAX_SNAPSHOT_DEPTH);
+        // 不创建不存在的交易器（与 getOrderBook 相同）
+        SymbolSequencer sequencer = traderFactory.getAllSequencers().get(symbol);
+        if (sequencer == null) {
+            throw new BusinessException("交易对不存在");
+        }
+        try {
+            // 在定序器线程中生成快照，与增量序号严格对应（分组步长在订单簿恢复时生效，也在定序器中解析）
+            return sequencer
+                    .query(trader -> trader.getDepthSnapshot(depth, trader.getBookSnapshot().groupIndexOf(step)))
+                    .get(SNAPSHOT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("获取深度快照被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                // 不支持的分组步长
+                throw (BusinessException) e.getCause();
+            }
+            throw new BusinessException("获取深度快照失败: " + symbol, e);
+        } catch (TimeoutException e) {
+            throw new BusinessException("获取深度快照失败: " + symbol, e);
         }
-
-        result.put("bids", buyOrders);
-        result.put("asks", sellOrders);
-        
-        return result;
     }
 
     @Override
     public List<TradeRecord> getLatestTrades(String symbol, Integer limit) {
-        List<TradeRecord> records = tradeRecords.getOrDefault(symbol, new ArrayList<>());
-        return records.stream()
-                .sorted((a, b) -> b.getTradeTime().compareTo(a.getTradeTime()))
-                .limit(limit)
-                .toList();
+        // 交易器的最近成交缓冲区本身就是时间倒序，不需要排序（不创建不存在的交易器）
+        CoinTrader trader = traderFactory.getAllTraders().get(symbol);
+        if (trader == null) {
+            return new ArrayList<>();
+        }
+        List<TradeRecordDTO> latest = trader.getRecentTrades().latest(Math.max(limit, 1));
+        List<TradeRecord> records = new ArrayList<>(latest.size());
+        for (TradeRecordDTO dto : latest) {
+            records.add(toTradeRecord(dto));
+        }
+        return records;
+    }
+
+    private TradeRecord toTradeRecord(TradeRecordDTO dto) {
+        TradeRecord tradeRecord = new TradeRecord();
+        tradeRecord.setTradeId(dto.getTradeId());
+        tradeRecord.setSymbol(dto.getSymbol());
+        tradeRecord.setBuyOrderNo(dto.getBuyOrderNo());
+        tradeRecord.setSellOrderNo(dto.getSellOrderNo());
+        tradeRecord.setBuyUserId(dto.getBuyUserId());
+        tradeRecord.setSellUserId(dto.getSellUserId());
+        tradeRecord.setPrice(dto.getPrice());
+        tradeRecord.setAmount(dto.getAmount());
+        tradeRecord.setMoney(dto.getMoney());
+        tradeRecord.setBuyFee(dto.getBuyFee());
+        tradeRecord.setSellFee(dto.getSellFee());
+        tradeRecord.setTradeTime(dto.getTradeTime());
+        return tradeRecord;
+    }
+
+    @Override
+    public List<KlineDTO> getKlineData(String symbol, String period, Integer limit) {
+        return klineAggregator.query(symbol, period, limit);
     }
 
     @Override
-    public List<Object> getKlineData(String symbol, String period, Integer limit) {
-        // TODO: 实现K线数据计算
-        return new ArrayList<>();
+    public List<TickerDTO> getTickers() {
+        return tickerAggregator.getTickers();
+    }
+
+    @Override
+    public TickerDTO getTicker(String symbol) {
+        TickerDTO ticker = tickerAggregator.getTicker(symbol);
+        if (ticker == null) {
+            throw new BusinessException("交易对暂无行情: " + symbol);
+        }
+        return ticker;
     }
 
     @Override
@@ -177,102 +234,106 @@ public class MatchingServiceImpl implements MatchingService {
         return isRunning.get();
     }
 
-    /**
-     * 执行撮合
-     */
-    private void matchOrders(String symbol) {
-        Map<Integer, ConcurrentSkipListMap<BigDecimal, List<OrderDTO>>> symbolOrderBook = orderBooks.get(symbol);
-        if (symbolOrderBook == null) {
-            return;
+    @Override
+    public void cancelUserOrders(String symbol, Long userId, Integer side) {
+        checkNotStandby();
+        if (side != null && side != 1 && side != 2) {
+            throw new BusinessException("不支持的方向: " + side);
         }
+        OrderDTO request = new OrderDTO();
+        request.setSymbol(symbol);
+        request.setUserId(userId);
+        request.setSide(side);
+        traderFactory.getSequencer(symbol).publishCancelUser(request);
+        log.info("提交按用户撤单命令: symbol={}, userId={}, side={}", symbol, userId, side);
+    }
 
-        ConcurrentSkipListMap<BigDecimal, List<OrderDTO>> buySide = symbolOrderBook.get(1);
-        ConcurrentSkipListMap<BigDecimal, List<OrderDTO>> sellSide = symbolOrderBook.get(2);
+    @Override
+    public void haltTrading(String symbol) {
+        checkNotStandby();
+        traderFactory.getSequencer(symbol).publishAdmin(CommandType.HALT);
+        log.info("提交暂停交易命令: symbol={}", symbol);
+    }
 
-        if (buySide == null || sellSide == null || buySide.isEmpty() || sellSide.isEmpty()) {
-            return;
-        }
+    @Override
+    public void resumeTrading(String symbol) {
+        checkNotStandby();
+        traderFactory.getSequencer(symbol).publishAdmin(CommandType.RESUME);
+        log.info("提交恢复交易命令: symbol={}", symbol);
+    }
 
-        // 获取最高买价和最低卖价
-        BigDecimal highestBuyPrice = buySide.lastKey();
-        BigDecimal lowestSellPrice = sellSide.firstKey();
+    @Override
+    public void setDepthPublishPolicy(String symbol, Long intervalMs, Integer maxChanges) {
+        traderFactory.setDepthPublishPolicy(symbol, intervalMs, maxChanges);
+    }
 
-        // 检查是否可以撮合
-        if (highestBuyPrice.compareTo(lowestSellPrice) >= 0) {
-            // 执行撮合
-            List<OrderDTO> buyOrders = buySide.get(highestBuyPrice);
-            List<OrderDTO> sellOrders = sellSide.get(lowestSellPrice);
+    @Override
+    public List<SequencerStatsDTO> getSequencerStats() {
+        return traderFactory.getSequencerStats();
+    }
 
-            if (buyOrders != null && !buyOrders.isEmpty() && sellOrders != null && !sellOrders.isEmpty()) {
-                executeMatch(buyOrders, sellOrders, symbol);
-            }
+    @Override
+    public List<WorkerStatsDTO> getWorkerStats() {
+        return sequencerScheduler.getStats();
+    }
+
+    @Override
+    public List<String> rebalanceWorkers() {
+        if (!sequencerScheduler.isEnabled()) {
+            throw new BusinessException("未开启 matching.scheduler，每个交易对使用独立线程");
         }
+        return sequencerScheduler.rebalance();
     }
 
-    /**
-     * 执行撮合交易
-     */
-    private void executeMatch(List<OrderDTO> buyOrders, List<OrderDTO> sellOrders, String symbol) {
-        OrderDTO buyOrder = buyOrders.get(0);
-        OrderDTO sellOrder = sellOrders.get(0);
+    @Override
+    public List<LoadProgressDTO> getLoadProgress() {
+        return traderFactory.getLoadProgress();
+    }
 
-        // 计算成交数量
-        BigDecimal buyRemaining = buyOrder.getAmount().subtract(buyOrder.getFilledAmount());
-        BigDecimal sellRemaining = sellOrder.getAmount().subtract(sellOrder.getFilledAmount());
-        BigDecimal tradeAmount = buyRemaining.min(sellRemaining);
+    @Override
+    public boolean reloadOrderBook(String symbol) {
+        try {
+            boolean ready = traderFactory.reload(symbol).get(RELOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            log.info("重新加载订单簿: symbol={}, ready={}", symbol, ready);
+            return ready;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("重新加载订单簿被中断");
+        } catch (ExecutionException e) {
+            throw new BusinessException("重新加载订单簿失败: " + symbol, e);
+        } catch (TimeoutException e) {
+            throw new BusinessException("重新加载订单簿仍在进行，见 /matching/engine/load-progress: " + symbol, e);
+        }
+    }
 
-        // 计算成交价格（使用卖单价格）
-        BigDecimal tradePrice = sellOrder.getPrice();
-        BigDecimal tradeMoney = tradeAmount.multiply(tradePrice);
+    @Override
+    public List<ReplicationLagDTO> getReplicationLag() {
+        return replicationManager.getLag();
+    }
 
-        // 创建成交记录
-        TradeRecord tradeRecord = new TradeRecord();
-        tradeRecord.setTradeId(IdUtil.getSnowflakeNextIdStr());
-        tradeRecord.setSymbol(symbol);
-        tradeRecord.setBuyOrderNo(buyOrder.getOrderNo());
-        tradeRecord.setSellOrderNo(sellOrder.getOrderNo());
-        tradeRecord.setBuyUserId(buyOrder.getUserId());
-        tradeRecord.setSellUserId(sellOrder.getUserId());
-        tradeRecord.setPrice(tradePrice);
-        tradeRecord.setAmount(tradeAmount);
-        tradeRecord.setMoney(tradeMoney);
-        tradeRecord.setBuyFee(tradeMoney.multiply(buyOrder.getFeeRate() != null ? buyOrder.getFeeRate() : BigDecimal.ZERO));
-        tradeRecord.setSellFee(tradeAmount.multiply(sellOrder.getFeeRate() != null ? sellOrder.getFeeRate() : BigDecimal.ZERO));
-        tradeRecord.setTradeTime(new java.util.Date());
-
-        // 更新订单状态
-        buyOrder.setFilledAmount(buyOrder.getFilledAmount().add(tradeAmount));
-        buyOrder.setFilledMoney(buyOrder.getFilledMoney().add(tradeMoney));
-        if (buyOrder.getFilledAmount().compareTo(buyOrder.getAmount()) >= 0) {
-            buyOrder.setStatus(3); // 完全成交
-            buyOrders.remove(buyOrder);
-        } else {
-            buyOrder.setStatus(2); // 部分成交
+    @Override
+    public long promote(boolean force) {
+        if (!traderFactory.isStandby()) {
+            throw new BusinessException("本节点不是备节点");
         }
+        return replicationManager.promote(force);
+    }
 
-        sellOrder.setFilledAmount(sellOrder.getFilledAmount().add(tradeAmount));
-        sellOrder.setFilledMoney(sellOrder.getFilledMoney().add(tradeMoney));
-        if (sellOrder.getFilledAmount().compareTo(sellOrder.getAmount()) >= 0) {
-            sellOrder.setStatus(3); // 完全成交
-            sellOrders.remove(sellOrder);
-        } else {
-            sellOrder.setStatus(2); // 部分成交
+    /**
+     * 备节点的订单簿只跟随主节点的命令变化，管理命令需要发给主节点
+     */
+    private void checkNotStandby() {
+        if (traderFactory.isStandby()) {
+            throw new BusinessException("备撮合节点不接受管理命令，请在主节点执行");
         }
+    }
 
-        // 添加到成交记录
-        tradeRecords.computeIfAbsent(symbol, k -> new ArrayList<>()).add(tradeRecord);
-
-        // 缓存到Redis
-        String key = "trade:records:" + symbol;
-        redisTemplate.opsForList().leftPush(key, tradeRecord);
-        redisTemplate.opsForList().trim(key, 0, 999); // 保留最近1000条
-
-        log.info("撮合交易成功: tradeId={}, symbol={}, price={}, amount={}, buyOrder={}, sellOrder={}", 
-                tradeRecord.getTradeId(), symbol, tradePrice, tradeAmount, buyOrder.getOrderNo(), sellOrder.getOrderNo());
-
-        // 如果还有剩余订单，继续撮合
-        if (!buyOrders.isEmpty() && !sellOrders.isEmpty()) {
-            matchOrders(symbol);
+    /**
+     * 分片部署时只接受本节点负责的交易对（否则会在本节点创建一个与负责节点冲突的订单簿）
+     */
+    private void checkOwnsSymbol(String symbol) {
+        if (!traderFactory.ownsSymbol(symbol)) {
+            throw new BusinessException("交易对不属于本撮合节点: " + symbol);
         }
     }
 }
@@ -0,0 +1,110 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.enums.PublishType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 档位、整边剩余量合计测试（MergeOrder、BookSideTotal）
+ *
+ * 【覆盖】
+ * - 20000 条随机限价单、市价单、撤单之后，每个档位、每一边的剩余量合计与逐笔重新汇总一致
+ * - 300 笔分摊（FENTAN）卖单按同一基数分摊之后仍然一致
+ *
+ * @author cex
+ */
+class BookSideTotalTest {
+
+    private static final String SYMBOL = "BTC/USDT";
+
+    /** 中间价（tick，价格精度 2） */
+    private static final long MID_PRICE = 5_000_000L;
+
+    @Test
+    void totalsMatchRecount() {
+        Random random = new Random(16L);
+        CoinTrader trader = new CoinTrader(SYMBOL);
+        trader.setCoinScale(8);
+        trader.setBaseCoinScale(2);
+        trader.setPublishType(PublishType.FENTAN);
+        trader.setClearTime("2099-01-01 00:00:00");
+        trader.setReady(true);
+        List<OrderDTO> placed = new ArrayList<>();
+        long sequence = 0;
+
+        for (int i = 0; i < 20_000; i++) {
+            int action = random.nextInt(10);
+            if (action < 6) {
+                int side = random.nextBoolean() ? 1 : 2;
+                // 价格区间两边重叠，一部分限价单会立即成交
+                long offset = random.nextInt(200) - 40;
+                long price = side == 1 ? MID_PRICE - offset : MID_PRICE + offset;
+                OrderDTO order = order("L" + (++sequence), side, 1, price, 1 + random.nextInt(100_000));
+                placed.add(order);
+                trader.trade(order);
+            } else if (action < 7) {
+                // 市价卖单按数量成交（市价买单按金额，这里只用卖单）
+                trader.trade(order("M" + (++sequence), 2, 2, 0, 1 + random.nextInt(50_000)));
+            } else if (!placed.isEmpty()) {
+                trader.cancelOrder(placed.remove(random.nextInt(placed.size())));
+            }
+            assertTotals(trader);
+        }
+
+        assertTrue(trader.getLimitPriceQueue(1).size() > 10);
+        assertTrue(trader.getLimitPriceQueue(2).size() > 10);
+        long fentanFilled = 0;
+        for (int i = 0; i < 300; i++) {
+            long before = trader.getSideRemainingAmount(1);
+            OrderDTO sell = order("F" + (++sequence), 2, 1, MID_PRICE - 150, 1 + random.nextInt(2_000_000));
+            // 清盘时间之前创建的卖单按分摊撮合
+            sell.setCreateTime(1L);
+            trader.trade(sell);
+            assertTotals(trader);
+            fentanFilled += before - trader.getSideRemainingAmount(1);
+            trader.trade(order("R" + (++sequence), 1, 1, MID_PRICE - random.nextInt(100), 1 + random.nextInt(100_000)));
+            assertTotals(trader);
+        }
+        assertTrue(fentanFilled > 0);
+    }
+
+    /**
+     * 逐笔重新汇总，与档位合计、整边合计比较
+     */
+    private static void assertTotals(CoinTrader trader) {
+        for (int side = 1; side <= 2; side++) {
+            long sideTotal = 0;
+            for (MergeOrder level : trader.getLimitPriceQueue(side).values()) {
+                long levelTotal = 0;
+                for (BookOrder order : level) {
+                    levelTotal += order.getRemainingAmount();
+                }
+                assertEquals(levelTotal, level.getRemainingAmount());
+                assertTrue(level.size() > 0);
+                sideTotal += levelTotal;
+            }
+            assertEquals(sideTotal, trader.getSideRemainingAmount(side));
+        }
+    }
+
+    private static OrderDTO order(String orderNo, int side, int orderType, long price, long amount) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setSymbol(SYMBOL);
+        order.setUserId(1L);
+        order.setSide(side);
+        order.setOrderType(orderType);
+        order.setPrice(orderType == 1 ? FixedPoint.toDecimal(price, 2) : BigDecimal.ZERO);
+        order.setAmount(FixedPoint.toDecimal(amount, 8));
+        order.setStatus(0);
+        return order;
+    }
+}
@@ -0,0 +1,69 @@
+package com.cex.matching.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * FixedPoint 测试
+ *
+ * 【覆盖】
+ * - mulDiv 三条路径（乘积不溢出、分块除法、BigInteger）与 BigInteger 结果一致，向下取整
+ * - mulDiv 结果超出 long 时抛出 ArithmeticException
+ * - toLong 拒绝超出精度的小数位，appendDecimal 补齐小数位
+ *
+ * @author cex
+ */
+class FixedPointTest {
+
+    @Test
+    void mulDivMatchesBigInteger() {
+        Random random = new Random(20240601L);
+        long[] divisors = {1L, 3L, 7L, FixedPoint.pow10(8), (1L << 31) - 1, 1L << 31, FixedPoint.pow10(12), Long.MAX_VALUE};
+        for (int i = 0; i < 20_000; i++) {
+            long a = random.nextLong() >>> (1 + random.nextInt(63));
+            long b = random.nextLong() >>> (1 + random.nextInt(63));
+            long divisor = divisors[i % divisors.length];
+            BigInteger expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(divisor));
+            if (expected.bitLength() < 64) {
+                assertEquals(expected.longValue(), FixedPoint.mulDiv(a, b, divisor), a + " * " + b + " / " + divisor);
+            } else {
+                assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(a, b, divisor));
+            }
+        }
+    }
+
+    @Test
+    void mulDivRoundsDown() {
+        // 价格 50000.00000001 × 数量 1.5（8 位精度），乘积超出 long，走分块除法
+        long price = 5_000_000_000_001L;
+        long amount = 150_000_000L;
+        assertEquals(7_500_000_000_001L, FixedPoint.mulDiv(price, amount, FixedPoint.pow10(8)));
+        assertEquals(2L, FixedPoint.mulDiv(5L, 1L, 2L));
+        assertEquals(Long.MAX_VALUE / 3, FixedPoint.mulDiv(Long.MAX_VALUE, 1L << 40, 3L << 40));
+    }
+
+    @Test
+    void mulDivOverflowRejected() {
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(Long.MAX_VALUE, 4L, 3L));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(Long.MAX_VALUE, Long.MAX_VALUE, 1L << 32));
+    }
+
+    @Test
+    void decimalConversion() {
+        assertEquals(5_000_012L, FixedPoint.toLong(new BigDecimal("50000.12"), 2));
+        assertEquals(0L, FixedPoint.toLong(null, 8));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.toLong(new BigDecimal("0.001"), 2));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.pow10(19));
+
+        assertEquals("50000.12", FixedPoint.appendDecimal(new StringBuilder(), 5_000_012L, 2).toString());
+        assertEquals("0.50000000", FixedPoint.appendDecimal(new StringBuilder(), 50_000_000L, 8).toString());
+        assertEquals("-0.05", FixedPoint.appendDecimal(new StringBuilder(), -5L, 2).toString());
+        assertEquals("12", FixedPoint.appendDecimal(new StringBuilder(), 12L, 0).toString());
+    }
+}
@@ -0,0 +1,40 @@
+package com.cex.matching.core;
+
+import com.cex.common.core.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * OrderBookSnapshot 测试
+ *
+ * 【覆盖】
+ * - 第一次发布之前的空快照按交易器的价格精度、分组步长查询
+ *
+ * @author cex
+ */
+class OrderBookSnapshotTest {
+
+    @Test
+    void emptySnapshotFollowsSymbolConfig() {
+        CoinTrader trader = new CoinTrader("BTC/USDT");
+        trader.setBaseCoinScale(2);
+        trader.setCoinScale(4);
+        trader.setDepthGroupSteps(Arrays.asList(new BigDecimal("0.01"), new BigDecimal("10")));
+        trader.applyDepthGroups();
+
+        OrderBookSnapshot snapshot = trader.getBookSnapshot();
+
+        assertEquals(0, snapshot.getVersion());
+        assertEquals(-1, snapshot.groupIndexOf(new BigDecimal("0.01")));
+        int group = snapshot.groupIndexOf(new BigDecimal("10"));
+        assertEquals(0, group);
+        assertEquals(0, snapshot.getBids(group).getDepth());
+        assertEquals(0, snapshot.getAsks(group).getDepth());
+        assertThrows(BusinessException.class, () -> snapshot.groupIndexOf(new BigDecimal("100")));
+    }
+}
@@ -0,0 +1,126 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OrderTimerWheel 测试
+ *
+ * 【覆盖】
+ * - 到期时间向上取整到刻度，不提前取出；已过期的订单在下一次推进时取出
+ * - 高层槽位级联到低层，长时间不推进后一次推进取出所有到期订单
+ * - 随机挂入、摘除、推进，与逐个比较到期刻度的结果一致
+ *
+ * @author cex
+ */
+class OrderTimerWheelTest {
+
+    private static final long TICK = 100;
+
+    @Test
+    void expiresOnTickBoundary() {
+        OrderTimerWheel wheel = new OrderTimerWheel(TICK);
+        List<BookOrder> expired = new ArrayList<>();
+        wheel.advance(1_000, expired);
+        BookOrder exact = order("A", 1_200);
+        BookOrder rounded = order("B", 1_201);
+        BookOrder past = order("C", 500);
+        wheel.add(exact);
+        wheel.add(rounded);
+        wheel.add(past);
+        wheel.add(order("D", 0));
+
+        assertEquals(3, wheel.size());
+        assertEquals(1, wheel.advance(1_100, expired));
+        assertEquals("C", expired.get(0).getOrderNo());
+        expired.clear();
+        assertEquals(0, wheel.advance(1_199, expired));
+        assertEquals(1, wheel.advance(1_200, expired));
+        assertEquals("A", expired.get(0).getOrderNo());
+        assertFalse(wheel.isDue(1_299));
+        assertTrue(wheel.isDue(1_300));
+        assertEquals(1, wheel.advance(1_300, expired));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesAcrossLevels() {
+        OrderTimerWheel wheel = new OrderTimerWheel(TICK);
+        List<BookOrder> expired = new ArrayList<>();
+        // 分别落在第 1、2、3 层
+        long[] ticks = {64 + 5, 64 * 64 * 3 + 64 * 7 + 1, 64L * 64 * 64 * 2 + 64 * 64 + 64 + 63};
+        for (int i = 0; i < ticks.length; i++) {
+            wheel.add(order("O" + i, ticks[i] * TICK));
+        }
+
+        for (int i = 0; i < ticks.length; i++) {
+            expired.clear();
+            assertEquals(0, wheel.advance((ticks[i] - 1) * TICK, expired));
+            assertEquals(1, wheel.advance(ticks[i] * TICK, expired));
+            assertEquals("O" + i, expired.get(0).getOrderNo());
+        }
+
+        // 长时间不推进：一次取出全部
+        for (int i = 0; i < ticks.length; i++) {
+            wheel.add(order("L" + i, (ticks[i] * 7) * TICK));
+        }
+        expired.clear();
+        assertEquals(3, wheel.advance(Long.MAX_VALUE / 2, expired));
+    }
+
+    @Test
+    void randomOperationsMatchScan() {
+        Random random = new Random(11L);
+        OrderTimerWheel wheel = new OrderTimerWheel(TICK);
+        Set<BookOrder> pending = new HashSet<>();
+        List<BookOrder> expired = new ArrayList<>();
+        long now = 0;
+        for (int round = 0; round < 3_000; round++) {
+            for (int i = random.nextInt(5); i > 0; i--) {
+                // 跨度从几个刻度到 64^4 个刻度
+                long span = 1L << random.nextInt(25);
+                BookOrder order = order("O" + round + "-" + i, now + 1 + (long) (random.nextDouble() * span * TICK));
+                wheel.add(order);
+                pending.add(order);
+            }
+            if (!pending.isEmpty() && random.nextInt(4) == 0) {
+                BookOrder victim = pending.iterator().next();
+                wheel.remove(victim);
+                pending.remove(victim);
+            }
+            now += (long) (random.nextDouble() * (1L << random.nextInt(20)) * TICK / 64);
+
+            expired.clear();
+            wheel.advance(now, expired);
+            Set<BookOrder> due = new HashSet<>();
+            for (BookOrder order : pending) {
+                if (order.expireTick <= now / TICK) {
+                    due.add(order);
+                }
+            }
+            assertEquals(due.size(), expired.size());
+            assertEquals(due, new HashSet<>(expired));
+            pending.removeAll(due);
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    private static BookOrder order(String orderNo, long expireTime) {
+        OrderDTO source = new OrderDTO();
+        source.setOrderNo(orderNo);
+        source.setOrderType(1);
+        source.setSide(1);
+        source.setExpireTime(expireTime);
+        return new BookOrder(source, 100, 1, 0, 0);
+    }
+}
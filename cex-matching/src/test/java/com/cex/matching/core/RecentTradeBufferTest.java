@@ -0,0 +1,103 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.TradeRecordDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RecentTradeBuffer 测试
+ *
+ * 【覆盖】
+ * - 写满后覆盖最旧的成交，latest 最新在前、不超过容量
+ * - readSince 落后超过容量时从仍在缓冲区中的最旧成交开始
+ * - 写入线程持续覆盖时，读取结果始终是连续的成交，不包含被覆盖的槽位
+ *
+ * @author cex
+ */
+class RecentTradeBufferTest {
+
+    @Test
+    void overwritesOldest() {
+        RecentTradeBuffer buffer = new RecentTradeBuffer(3);
+        assertTrue(buffer.latest(10).isEmpty());
+        for (int i = 0; i < 5; i++) {
+            buffer.add(trade(i));
+        }
+
+        assertEquals(List.of(4L, 3L, 2L), ids(buffer.latest(10)));
+        assertEquals(List.of(4L, 3L), ids(buffer.latest(2)));
+        assertEquals(5, buffer.getPublished());
+
+        List<TradeRecordDTO> out = new ArrayList<>();
+        long next = buffer.readSince(0, out);
+        assertEquals(List.of(2L, 3L, 4L), ids(out));
+        assertEquals(5, next);
+
+        buffer.add(trade(5));
+        out.clear();
+        assertEquals(6, buffer.readSince(next, out));
+        assertEquals(List.of(5L), ids(out));
+    }
+
+    @Test
+    void concurrentReadsSkipOverwrittenSlots() throws InterruptedException {
+        int capacity = 8;
+        int total = 200_000;
+        RecentTradeBuffer buffer = new RecentTradeBuffer(capacity);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long from = 0;
+            List<TradeRecordDTO> out = new ArrayList<>();
+            while (from < total && failure.get() == null) {
+                List<TradeRecordDTO> latest = buffer.latest(capacity);
+                for (int i = 1; i < latest.size(); i++) {
+                    if (id(latest.get(i)) != id(latest.get(i - 1)) - 1) {
+                        failure.set("latest 不连续: " + ids(latest));
+                    }
+                }
+                out.clear();
+                long end = buffer.readSince(from, out);
+                for (int i = 0; i < out.size(); i++) {
+                    // 没有丢失时从 from 开始，落后时允许跳过，但结尾必须是 end - 1 且连续
+                    if (id(out.get(i)) != end - out.size() + i) {
+                        failure.set("readSince 不连续: from=" + from + ", end=" + end + ", " + ids(out));
+                    }
+                }
+                from = end;
+            }
+        });
+        reader.start();
+        for (int i = 0; i < total; i++) {
+            buffer.add(trade(i));
+        }
+        reader.join(30_000);
+
+        assertNull(failure.get());
+        assertEquals(total - 1, id(buffer.latest(1).get(0)));
+    }
+
+    private static TradeRecordDTO trade(long id) {
+        TradeRecordDTO trade = new TradeRecordDTO();
+        trade.setTradeId(String.valueOf(id));
+        return trade;
+    }
+
+    private static long id(TradeRecordDTO trade) {
+        return Long.parseLong(trade.getTradeId());
+    }
+
+    private static List<Long> ids(List<TradeRecordDTO> trades) {
+        List<Long> ids = new ArrayList<>();
+        for (TradeRecordDTO trade : trades) {
+            ids.add(id(trade));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,98 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StopOrderBook 测试
+ *
+ * 【覆盖】
+ * - 触发顺序：先买入止损（触发价从低到高），再卖出止损（触发价从高到低），同一触发价按到达顺序
+ * - 只取出本批最高价、最低价触及的档位
+ * - 撤单、按用户和方向撤单后不再触发，快照遍历顺序与触发顺序一致
+ *
+ * @author cex
+ */
+class StopOrderBookTest {
+
+    @Test
+    void triggersInPriceThenArrivalOrder() {
+        StopOrderBook book = new StopOrderBook();
+        book.add(order("B3", 1, 1L), 103);
+        book.add(order("B1", 1, 2L), 101);
+        book.add(order("B1b", 1, 3L), 101);
+        book.add(order("B9", 1, 1L), 109);
+        book.add(order("S97", 2, 1L), 97);
+        book.add(order("S99", 2, 2L), 99);
+        book.add(order("S99b", 2, 3L), 99);
+        book.add(order("S90", 2, 1L), 90);
+
+        List<String> walked = new ArrayList<>();
+        book.forEach(order -> walked.add(order.getOrderNo()));
+        assertEquals(List.of("B1", "B1b", "B3", "B9", "S99", "S99b", "S97", "S90"), walked);
+
+        List<OrderDTO> triggered = new ArrayList<>();
+        book.pollTriggered(103, 97, triggered);
+        assertEquals(List.of("B1", "B1b", "B3", "S99", "S99b", "S97"), orderNos(triggered));
+        assertEquals(2, book.size());
+        assertFalse(book.contains("B1"));
+
+        triggered.clear();
+        book.pollTriggered(108, 91, triggered);
+        assertTrue(triggered.isEmpty());
+        book.pollTriggered(109, 90, triggered);
+        assertEquals(List.of("B9", "S90"), orderNos(triggered));
+        assertTrue(book.isEmpty());
+    }
+
+    @Test
+    void canceledOrdersNotTriggered() {
+        StopOrderBook book = new StopOrderBook();
+        book.add(order("B1", 1, 1L), 101);
+        book.add(order("B2", 1, 2L), 101);
+        book.add(order("S1", 2, 1L), 99);
+        book.add(order("S2", 2, 1L), 98);
+        book.add(order("B3", 1, 1L), 102);
+
+        assertEquals("B2", book.remove("B2").getOrderNo());
+        assertNull(book.remove("B2"));
+
+        List<OrderDTO> canceled = new ArrayList<>();
+        book.removeByUser(1L, 2, canceled);
+        assertEquals(List.of("S1", "S2"), orderNos(canceled));
+        canceled.clear();
+        book.removeByUser(2L, null, canceled);
+        assertTrue(canceled.isEmpty());
+
+        List<OrderDTO> triggered = new ArrayList<>();
+        book.pollTriggered(200, 0, triggered);
+        assertEquals(List.of("B1", "B3"), orderNos(triggered));
+        book.removeByUser(1L, null, canceled);
+        assertTrue(canceled.isEmpty());
+    }
+
+    private static List<String> orderNos(List<OrderDTO> orders) {
+        List<String> orderNos = new ArrayList<>();
+        for (OrderDTO order : orders) {
+            orderNos.add(order.getOrderNo());
+        }
+        return orderNos;
+    }
+
+    private static OrderDTO order(String orderNo, int side, Long userId) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setSide(side);
+        order.setUserId(userId);
+        order.setOrderType(3);
+        return order;
+    }
+}
@@ -0,0 +1,71 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.TradeRecordDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TradeFeed 测试
+ *
+ * 【覆盖】
+ * - 跨块读取，顺序与写入一致，读取之前不会被覆盖
+ * - 积压达到上限时丢弃新成交，读取方拿到丢弃数量
+ *
+ * @author cex
+ */
+class TradeFeedTest {
+
+    @Test
+    void drainsAcrossChunksInOrder() {
+        TradeFeed feed = new TradeFeed(10 * TradeFeed.CHUNK_SIZE);
+        int total = 3 * TradeFeed.CHUNK_SIZE + 7;
+        List<TradeRecordDTO> out = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            feed.add(trade(i));
+            // 读取节奏与写入无关，包括正好停在块边界
+            if (i == TradeFeed.CHUNK_SIZE - 1 || i == 2 * TradeFeed.CHUNK_SIZE + 3) {
+                assertEquals(0, feed.drain(out));
+            }
+        }
+
+        assertEquals(0, feed.drain(out));
+        assertEquals(total, out.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals("T" + i, out.get(i).getTradeId());
+        }
+        assertEquals(0, feed.getBacklog());
+    }
+
+    @Test
+    void fullFeedDropsNewTrades() {
+        TradeFeed feed = new TradeFeed(3);
+        for (int i = 0; i < 5; i++) {
+            feed.add(trade(i));
+        }
+        List<TradeRecordDTO> out = new ArrayList<>();
+
+        assertEquals(2, feed.drain(out));
+        assertEquals(3, out.size());
+        assertEquals("T2", out.get(2).getTradeId());
+
+        // 读取后腾出空间，丢弃计数只报告一次
+        feed.add(trade(5));
+        out.clear();
+        assertEquals(0, feed.drain(out));
+        assertEquals("T5", out.get(0).getTradeId());
+        out.clear();
+        assertEquals(0, feed.drain(out));
+        assertTrue(out.isEmpty());
+    }
+
+    private static TradeRecordDTO trade(int i) {
+        TradeRecordDTO trade = new TradeRecordDTO();
+        trade.setTradeId("T" + i);
+        return trade;
+    }
+}
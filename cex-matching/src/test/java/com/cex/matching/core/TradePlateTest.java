@@ -0,0 +1,140 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.common.enums.OrderDirection;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TradePlate 测试
+ *
+ * 【覆盖】
+ * - 更优档位挤出最差一档、超出可见深度的档位不进入盘口
+ * - 可见档位删除后从订单簿回填，回填跳过已可见的档位
+ * - 随机挂单、部分成交、撤单之后盘口始终等于订单簿的前 maxDepth 档（买卖两个方向）
+ *
+ * @author cex
+ */
+class TradePlateTest {
+
+    private static final int MAX_DEPTH = 3;
+
+    @Test
+    void truncatesAndRefills() {
+        TreeMap<Long, MergeOrder> book = new TreeMap<>();
+        TradePlate plate = new TradePlate("BTC/USDT", OrderDirection.SELL, book, MAX_DEPTH);
+
+        place(book, plate, 103, 3);
+        place(book, plate, 101, 1);
+        place(book, plate, 102, 2);
+        // 更优价格挤出 103，之后更差的 104 不进入盘口
+        assertTrue(place(book, plate, 100, 10));
+        assertFalse(place(book, plate, 104, 4));
+        assertLevels(plate, 100, 101, 102);
+
+        // 删除可见档位：依次回填 103、104
+        take(book, plate, 101, 1);
+        assertLevels(plate, 100, 102, 103);
+        take(book, plate, 100, 10);
+        assertLevels(plate, 102, 103, 104);
+        assertEquals(4, plate.amountAt(2));
+
+        // 订单簿没有更多档位，盘口缩小
+        take(book, plate, 103, 3);
+        assertLevels(plate, 102, 104);
+    }
+
+    @Test
+    void partialFillKeepsLevel() {
+        TreeMap<Long, MergeOrder> book = new TreeMap<>(Comparator.reverseOrder());
+        TradePlate plate = new TradePlate("BTC/USDT", OrderDirection.BUY, book, MAX_DEPTH);
+        for (long price = 100; price < 105; price++) {
+            place(book, plate, price, 5);
+        }
+        assertLevels(plate, 104, 103, 102);
+
+        take(book, plate, 104, 2);
+        assertLevels(plate, 104, 103, 102);
+        assertEquals(3, plate.amountAt(0));
+        take(book, plate, 104, 3);
+        assertLevels(plate, 103, 102, 101);
+    }
+
+    @Test
+    void randomOperationsMatchBook() {
+        Random random = new Random(7L);
+        for (OrderDirection direction : OrderDirection.values()) {
+            TreeMap<Long, MergeOrder> book = direction == OrderDirection.BUY
+                    ? new TreeMap<>(Comparator.reverseOrder()) : new TreeMap<>();
+            TradePlate plate = new TradePlate("BTC/USDT", direction, book, MAX_DEPTH);
+            for (int i = 0; i < 5_000; i++) {
+                long price = 100 + random.nextInt(12);
+                MergeOrder level = book.get(price);
+                if (level == null || random.nextBoolean()) {
+                    place(book, plate, price, 1 + random.nextInt(5));
+                } else {
+                    take(book, plate, price, 1 + random.nextInt((int) level.getRemainingAmount()));
+                }
+                assertMatchesBook(book, plate);
+            }
+        }
+    }
+
+    private static boolean place(TreeMap<Long, MergeOrder> book, TradePlate plate, long price, long amount) {
+        OrderDTO source = new OrderDTO();
+        source.setOrderNo("O" + price + "-" + amount);
+        source.setOrderType(1);
+        source.setSide(plate.getDirection() == OrderDirection.BUY ? 1 : 2);
+        book.computeIfAbsent(price, MergeOrder::new).add(new BookOrder(source, price, amount, 0, 0));
+        return plate.add(price, amount);
+    }
+
+    /**
+     * 从档位头部开始成交 amount（与撮合相同：先改订单簿，再更新盘口）
+     */
+    private static void take(TreeMap<Long, MergeOrder> book, TradePlate plate, long price, long amount) {
+        MergeOrder level = book.get(price);
+        long left = amount;
+        while (left > 0) {
+            BookOrder head = level.get();
+            long traded = Math.min(left, head.getRemainingAmount());
+            head.fill(traded, traded * price);
+            if (head.getRemainingAmount() == 0) {
+                level.remove(head);
+            }
+            left -= traded;
+        }
+        if (level.size() == 0) {
+            book.remove(price);
+        }
+        plate.remove(price, amount);
+    }
+
+    private static void assertLevels(TradePlate plate, long... prices) {
+        assertEquals(prices.length, plate.getDepth());
+        for (int i = 0; i < prices.length; i++) {
+            assertEquals(prices[i], plate.priceAt(i));
+        }
+    }
+
+    private static void assertMatchesBook(TreeMap<Long, MergeOrder> book, TradePlate plate) {
+        assertEquals(Math.min(book.size(), MAX_DEPTH), plate.getDepth());
+        int index = 0;
+        for (Map.Entry<Long, MergeOrder> entry : book.entrySet()) {
+            if (index == MAX_DEPTH) {
+                break;
+            }
+            assertEquals(entry.getKey().longValue(), plate.priceAt(index));
+            assertEquals(entry.getValue().getRemainingAmount(), plate.amountAt(index));
+            index++;
+        }
+    }
+}
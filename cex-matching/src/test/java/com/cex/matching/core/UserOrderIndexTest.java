@@ -0,0 +1,123 @@
+package com.cex.matching.core;
+
+import com.cex.common.dto.OrderDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserOrderIndex 与 CoinTrader.cancelUserOrders 测试
+ *
+ * 【覆盖】
+ * - 索引按挂单顺序返回、按方向过滤，移除首尾和中间的订单后链表保持完整
+ * - 按用户撤单只撤该用户、该方向的订单（订单簿中的订单在前，止损单在后），其他订单不受影响
+ *
+ * @author cex
+ */
+class UserOrderIndexTest {
+
+    @Test
+    void collectsInArrivalOrderBySide() {
+        UserOrderIndex index = new UserOrderIndex();
+        BookOrder b1 = bookOrder("B1", 7L, 1);
+        BookOrder s1 = bookOrder("S1", 7L, 2);
+        BookOrder b2 = bookOrder("B2", 7L, 1);
+        BookOrder b3 = bookOrder("B3", 7L, 1);
+        BookOrder other = bookOrder("X1", 8L, 1);
+        for (BookOrder order : new BookOrder[]{b1, s1, b2, b3, other}) {
+            index.add(order);
+        }
+
+        assertEquals(List.of("B1", "S1", "B2", "B3"), collect(index, 7L, null));
+        assertEquals(List.of("B1", "B2", "B3"), collect(index, 7L, 1));
+        assertEquals(List.of("S1"), collect(index, 7L, 2));
+
+        index.remove(b2);
+        index.remove(b1);
+        assertEquals(List.of("S1", "B3"), collect(index, 7L, null));
+        index.remove(b3);
+        index.add(b1);
+        assertEquals(List.of("S1", "B1"), collect(index, 7L, null));
+        assertEquals(2, index.count(7L));
+
+        index.remove(s1);
+        index.remove(b1);
+        assertEquals(0, index.count(7L));
+        assertTrue(collect(index, 7L, null).isEmpty());
+        assertEquals(1, index.count(8L));
+    }
+
+    @Test
+    void cancelUserOrdersBySide() {
+        CoinTrader trader = new CoinTrader("BTC/USDT");
+        trader.setCoinScale(8);
+        trader.setBaseCoinScale(2);
+        trader.setReady(true);
+        trader.trade(order("B1", 7L, 1, 1, "100"));
+        trader.trade(order("S1", 7L, 2, 1, "110"));
+        trader.trade(order("X1", 8L, 1, 1, "100"));
+        trader.trade(order("B2", 7L, 1, 1, "99"));
+        OrderDTO stop = order("SB1", 7L, 1, 3, "120");
+        stop.setTriggerPrice(new BigDecimal("115"));
+        trader.trade(stop);
+        assertEquals(5, trader.getRestingOrderCount());
+
+        OrderDTO request = new OrderDTO();
+        request.setSymbol("BTC/USDT");
+        request.setUserId(7L);
+        request.setSide(1);
+        List<OrderDTO> canceled = trader.cancelUserOrders(request);
+
+        assertEquals(List.of("B1", "B2", "SB1"), orderNos(canceled));
+        for (OrderDTO order : canceled) {
+            assertEquals(3, order.getStatus().intValue());
+        }
+        assertEquals(2, trader.getRestingOrderCount());
+        assertNull(trader.cancelOrder(order("B1", 7L, 1, 1, "100")));
+
+        request.setSide(null);
+        assertEquals(List.of("S1"), orderNos(trader.cancelUserOrders(request)));
+        assertEquals(1, trader.getRestingOrderCount());
+    }
+
+    private static List<String> collect(UserOrderIndex index, long userId, Integer side) {
+        List<BookOrder> out = new ArrayList<>();
+        index.collect(userId, side, out);
+        List<String> orderNos = new ArrayList<>();
+        for (BookOrder order : out) {
+            orderNos.add(order.getOrderNo());
+        }
+        return orderNos;
+    }
+
+    private static List<String> orderNos(List<OrderDTO> orders) {
+        List<String> orderNos = new ArrayList<>();
+        for (OrderDTO order : orders) {
+            orderNos.add(order.getOrderNo());
+        }
+        return orderNos;
+    }
+
+    private static BookOrder bookOrder(String orderNo, long userId, int side) {
+        return new BookOrder(order(orderNo, userId, side, 1, "100"), 10_000, 1, 0, 0);
+    }
+
+    private static OrderDTO order(String orderNo, long userId, int side, int orderType, String price) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setSymbol("BTC/USDT");
+        order.setUserId(userId);
+        order.setSide(side);
+        order.setOrderType(orderType);
+        order.setPrice(new BigDecimal(price));
+        order.setAmount(new BigDecimal("0.5"));
+        order.setStatus(0);
+        return order;
+    }
+}
@@ -0,0 +1,109 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.sequencer.CommandType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CommandCodec 编解码测试
+ *
+ * 【覆盖】
+ * - 订单往返（全部字段、空字段、超出 long 的小数）
+ * - 读取恰好消耗一条记录的字节
+ * - 命令类型编码
+ *
+ * @author cex
+ */
+class CommandCodecTest {
+
+    static final String SYMBOL = "BTC/USDT";
+
+    @Test
+    void orderRoundTrip() {
+        OrderDTO order = order("O1");
+
+        assertEquals(order, decode(encode(order)));
+    }
+
+    @Test
+    void nullFieldsRoundTrip() {
+        OrderDTO order = new OrderDTO();
+        order.setSymbol(SYMBOL);
+        order.setFilledAmount(null);
+        order.setFilledMoney(null);
+        order.setStatus(null);
+
+        assertEquals(order, decode(encode(order)));
+    }
+
+    @Test
+    void decimalOutsideLongRoundTrip() {
+        OrderDTO order = order("O1");
+        order.setAmount(new BigDecimal("123456789012345678901234567890.123456789"));
+        order.setFilledMoney(new BigDecimal("1E+200"));
+
+        assertEquals(order, decode(encode(order)));
+    }
+
+    @Test
+    void readConsumesWholeRecord() {
+        OrderDTO order = order("O1");
+        ByteBuffer body = encode(order);
+
+        assertEquals(order, CommandCodec.readOrder(body, SYMBOL));
+        assertFalse(body.hasRemaining());
+    }
+
+    @Test
+    void typeCodes() {
+        for (CommandType type : Arrays.asList(CommandType.PLACE_ORDER, CommandType.CANCEL_ORDER, CommandType.HALT,
+                CommandType.RESUME, CommandType.CANCEL_USER, CommandType.EXPIRE)) {
+            byte code = CommandCodec.typeCode(type);
+            assertTrue(code > 0);
+            assertEquals(type, CommandCodec.commandType(code));
+        }
+        // 查询不写入日志
+        assertEquals(0, CommandCodec.typeCode(CommandType.QUERY));
+        assertNull(CommandCodec.commandType((byte) 0));
+    }
+
+    static OrderDTO order(String orderNo) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setSymbol(SYMBOL);
+        order.setFeeCoin("USDT");
+        order.setUserId(10_001L);
+        order.setOrderType(1);
+        order.setSide(1);
+        order.setPrice(new BigDecimal("65000.12"));
+        order.setAmount(new BigDecimal("0.50000000"));
+        order.setFilledAmount(new BigDecimal("0.10000000"));
+        order.setFilledMoney(new BigDecimal("6500.0120000000"));
+        order.setFeeRate(new BigDecimal("0.001"));
+        order.setStatus(1);
+        order.setCreateTime(1_700_000_000_000L);
+        order.setTriggerPrice(new BigDecimal("64000.00"));
+        order.setExpireTime(1_700_000_060_000L);
+        return order;
+    }
+
+    static ByteBuffer encode(OrderDTO order) {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        CommandCodec.writeOrder(buf, order);
+        buf.flip();
+        return buf;
+    }
+
+    private static OrderDTO decode(ByteBuffer buf) {
+        return CommandCodec.readOrder(buf, SYMBOL);
+    }
+}
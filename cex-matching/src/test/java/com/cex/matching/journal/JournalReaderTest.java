@@ -0,0 +1,187 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.sequencer.CommandType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * JournalWriter / JournalReader 测试
+ *
+ * 【覆盖】
+ * - 写入后重放（含跨段、跳过快照已包含的记录）
+ * - 日志尾部不完整（写入途中崩溃）或 CRC 不匹配时在最后一条有效记录处结束，重启后的新段继续读取
+ *
+ * @author cex
+ */
+class JournalReaderTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayAll() throws IOException {
+        OrderDTO cancel = CommandCodecTest.order("O1");
+        cancel.setTriggerPrice(null);
+        cancel.setExpireTime(null);
+        JournalWriter writer = new JournalWriter(dir, SEGMENT_SIZE, 0);
+        writer.append(CommandCodec.TYPE_PLACE_ORDER, CommandCodecTest.order("O1"));
+        writer.append(CommandCodec.TYPE_HALT, null);
+        writer.append(CommandCodec.TYPE_RESUME, null);
+        writer.append(CommandCodec.TYPE_CANCEL_ORDER, cancel);
+        writer.close();
+
+        List<Record> records = new ArrayList<>();
+        long last = replay(0, records);
+
+        assertEquals(4, last);
+        assertEquals(4, records.size());
+        assertEquals(new Record(1, CommandType.PLACE_ORDER, CommandCodecTest.order("O1")), records.get(0));
+        assertEquals(new Record(2, CommandType.HALT, null), records.get(1));
+        assertEquals(new Record(3, CommandType.RESUME, null), records.get(2));
+        assertEquals(new Record(4, CommandType.CANCEL_ORDER, cancel), records.get(3));
+    }
+
+    @Test
+    void replayAcrossSegmentsAfterSnapshot() throws IOException {
+        // 每段只能放下几条记录，强制切换日志段
+        JournalWriter writer = new JournalWriter(dir, 512, 0);
+        for (int i = 1; i <= 20; i++) {
+            writer.append(CommandCodec.TYPE_PLACE_ORDER, CommandCodecTest.order("O" + i));
+        }
+        writer.close();
+
+        List<Record> records = new ArrayList<>();
+        long last = replay(12, records);
+
+        assertEquals(20, last);
+        assertEquals(8, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(13 + i, records.get(i).sequence);
+            assertEquals("O" + (13 + i), records.get(i).order.getOrderNo());
+        }
+    }
+
+    @Test
+    void truncatedTailEndsAtLastValidRecord() throws IOException {
+        Path segment = writeThree();
+        int third = recordOffset(segment, 2);
+        // 写入途中崩溃：最后一条记录只写了一部分，length 超出文件剩余字节
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(third + JournalWriter.HEADER_SIZE + 4);
+        }
+
+        List<Record> records = new ArrayList<>();
+
+        assertEquals(2, replay(0, records));
+        assertEquals(2, records.size());
+    }
+
+    @Test
+    void crcMismatchEndsAtLastValidRecord() throws IOException {
+        Path segment = writeThree();
+        int third = recordOffset(segment, 2);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[third + JournalWriter.HEADER_SIZE + JournalWriter.BODY_PREFIX_SIZE + 3] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        List<Record> records = new ArrayList<>();
+
+        assertEquals(2, replay(0, records));
+        assertEquals(2, records.size());
+        assertEquals("O2", records.get(1).order.getOrderNo());
+    }
+
+    @Test
+    void newSegmentContinuesAfterCorruptTail() throws IOException {
+        Path segment = writeThree();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[recordOffset(segment, 2) + 4] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        // 重启：从最后一条有效记录的下一个序号开始新段
+        long recovered = replay(0, new ArrayList<>());
+        JournalWriter writer = new JournalWriter(dir, SEGMENT_SIZE, recovered);
+        writer.append(CommandCodec.TYPE_PLACE_ORDER, CommandCodecTest.order("O3b"));
+        writer.close();
+
+        List<Record> records = new ArrayList<>();
+
+        assertEquals(3, replay(0, records));
+        assertEquals(Arrays.asList("O1", "O2", "O3b"),
+                Arrays.asList(records.get(0).order.getOrderNo(), records.get(1).order.getOrderNo(),
+                        records.get(2).order.getOrderNo()));
+    }
+
+    private long replay(long afterSequence, List<Record> records) throws IOException {
+        return JournalReader.replay(dir, CommandCodecTest.SYMBOL, afterSequence,
+                (sequence, type, order) -> records.add(new Record(sequence, type, order)));
+    }
+
+    private Path writeThree() throws IOException {
+        JournalWriter writer = new JournalWriter(dir, SEGMENT_SIZE, 0);
+        for (int i = 1; i <= 3; i++) {
+            writer.append(CommandCodec.TYPE_PLACE_ORDER, CommandCodecTest.order("O" + i));
+        }
+        writer.close();
+        return dir.resolve(JournalWriter.segmentName(1));
+    }
+
+    /**
+     * 第 index 条记录在段文件中的位置
+     */
+    private static int recordOffset(Path segment, int index) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        for (int i = 0; i < index; i++) {
+            position += JournalWriter.HEADER_SIZE + buf.getInt(position);
+        }
+        return position;
+    }
+
+    private static final class Record {
+        final long sequence;
+        final CommandType type;
+        final OrderDTO order;
+
+        Record(long sequence, CommandType type, OrderDTO order) {
+            this.sequence = sequence;
+            this.type = type;
+            this.order = order;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Record)) {
+                return false;
+            }
+            Record other = (Record) o;
+            return sequence == other.sequence && type == other.type
+                    && (order == null ? other.order == null : order.equals(other.order));
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+
+        @Override
+        public String toString() {
+            return sequence + ":" + type + ":" + order;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.cex.matching.journal;
+
+import com.cex.common.dto.OrderDTO;
+import com.cex.matching.core.CoinTrader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SnapshotStore 测试
+ *
+ * 【覆盖】
+ * - 订单簿快照往返，恢复后的挂单（顺序、成交进度）与原订单簿一致
+ * - 校验失败的快照被拒绝，loadLatest 回退到更早的快照
+ * - 版本号不一致的快照被拒绝
+ *
+ * @author cex
+ */
+class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void captureAndRestore() {
+        CoinTrader trader = trader();
+        trader.trade(limit("B1", 1, "64990.00", "0.30000000"));
+        trader.trade(limit("B2", 1, "64990.00", "0.20000000"));
+        trader.trade(limit("B3", 1, "64980.50", "1.00000000"));
+        trader.trade(limit("S1", 2, "65010.00", "0.50000000"));
+        // 部分成交，快照中保留成交进度
+        trader.trade(limit("T1", 2, "64990.00", "0.10000000"));
+        trader.haltTrading();
+
+        SnapshotStore.BookSnapshot snapshot = SnapshotStore.decode(SnapshotStore.capture(trader, 42), trader.getSymbol());
+
+        assertEquals(42, snapshot.journalSequence);
+        assertEquals(trader.getBookSequence(), snapshot.bookSequence);
+        assertTrue(snapshot.tradingHalt);
+        assertEquals(restingOrders(trader), snapshot.orders);
+        assertEquals(Arrays.asList("B1", "B2", "B3", "S1"), orderNos(snapshot.orders));
+        assertEquals(0, new BigDecimal("0.1").compareTo(snapshot.orders.get(0).getFilledAmount()));
+
+        CoinTrader restored = trader();
+        snapshot.orders.forEach(restored::restoreOrder);
+
+        assertEquals(restingOrders(trader), restingOrders(restored));
+    }
+
+    @Test
+    void emptyBookRoundTrip() {
+        CoinTrader trader = trader();
+
+        SnapshotStore.BookSnapshot snapshot = SnapshotStore.decode(SnapshotStore.capture(trader, 0), trader.getSymbol());
+
+        assertEquals(0, snapshot.journalSequence);
+        assertFalse(snapshot.tradingHalt);
+        assertTrue(snapshot.orders.isEmpty());
+    }
+
+    @Test
+    void corruptSnapshotRejected() {
+        CoinTrader trader = trader();
+        trader.trade(limit("B1", 1, "64990.00", "0.30000000"));
+        byte[] bytes = SnapshotStore.capture(trader, 7);
+        bytes[bytes.length / 2] ^= 0x5A;
+
+        assertThrows(IllegalStateException.class, () -> SnapshotStore.decode(bytes, trader.getSymbol()));
+        assertThrows(IllegalStateException.class,
+                () -> SnapshotStore.decode(Arrays.copyOf(bytes, 3), trader.getSymbol()));
+    }
+
+    @Test
+    void otherVersionRejected() {
+        CoinTrader trader = trader();
+        byte[] bytes = SnapshotStore.capture(trader, 7);
+        // 版本号在 magic 之后，修改后重新计算 CRC
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.putInt(4, CommandCodec.VERSION + 1);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 4);
+        buf.putInt(bytes.length - 4, (int) crc.getValue());
+
+        assertThrows(IllegalStateException.class, () -> SnapshotStore.decode(bytes, trader.getSymbol()));
+    }
+
+    @Test
+    void loadLatestFallsBackToEarlierSnapshot() throws IOException {
+        CoinTrader trader = trader();
+        trader.trade(limit("B1", 1, "64990.00", "0.30000000"));
+        SnapshotStore.write(dir, 5, SnapshotStore.capture(trader, 5));
+        trader.trade(limit("B2", 1, "64990.00", "0.20000000"));
+        SnapshotStore.write(dir, 6, SnapshotStore.capture(trader, 6));
+
+        assertEquals(6, SnapshotStore.loadLatest(dir, trader.getSymbol()).journalSequence);
+
+        // 最新的快照只写了一半
+        Path latest = dir.resolve(SnapshotStore.snapshotName(6));
+        byte[] bytes = Files.readAllBytes(latest);
+        Files.write(latest, Arrays.copyOf(bytes, bytes.length / 2));
+
+        SnapshotStore.BookSnapshot snapshot = SnapshotStore.loadLatest(dir, trader.getSymbol());
+
+        assertEquals(5, snapshot.journalSequence);
+        assertEquals(Arrays.asList("B1"), orderNos(snapshot.orders));
+        assertNull(SnapshotStore.loadLatest(dir.resolve("missing"), trader.getSymbol()));
+    }
+
+    private static CoinTrader trader() {
+        CoinTrader trader = new CoinTrader(CommandCodecTest.SYMBOL);
+        trader.setCoinScale(8);
+        trader.setBaseCoinScale(2);
+        trader.setReady(true);
+        return trader;
+    }
+
+    private static OrderDTO limit(String orderNo, int side, String price, String amount) {
+        OrderDTO order = new OrderDTO();
+        order.setOrderNo(orderNo);
+        order.setUserId(side == 1 ? 1L : 2L);
+        order.setSymbol(CommandCodecTest.SYMBOL);
+        order.setOrderType(1);
+        order.setSide(side);
+        order.setPrice(new BigDecimal(price));
+        order.setAmount(new BigDecimal(amount));
+        order.setFeeRate(new BigDecimal("0.001"));
+        order.setCreateTime(1_700_000_000_000L);
+        return order;
+    }
+
+    private static List<OrderDTO> restingOrders(CoinTrader trader) {
+        List<OrderDTO> orders = new ArrayList<>();
+        trader.forEachRestingOrder(orders::add);
+        return orders;
+    }
+
+    private static List<String> orderNos(List<OrderDTO> orders) {
+        List<String> orderNos = new ArrayList<>();
+        for (OrderDTO order : orders) {
+            orderNos.add(order.getOrderNo());
+        }
+        return orderNos;
+    }
+}
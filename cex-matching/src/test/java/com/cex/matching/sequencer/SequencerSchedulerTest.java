@@ -0,0 +1,128 @@
+package com.cex.matching.sequencer;
+
+import com.cex.matching.config.MatchingProperties;
+import com.cex.matching.core.CoinTrader;
+import com.cex.matching.domain.dto.WorkerStatsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SequencerScheduler 测试
+ *
+ * 【覆盖】
+ * - 交易对平均分配到共享工作线程
+ * - 负载差距超过阈值时把最忙线程上的交易对迁移到最闲的线程，迁移后负载接近时不再迁移
+ * - 迁移前后提交的命令按顺序执行、不丢失，迁移后在新的工作线程上执行
+ *
+ * @author cex
+ */
+class SequencerSchedulerTest {
+
+    @Test
+    void migratesHotSymbolWithoutLosingCommands() throws Exception {
+        MatchingProperties properties = new MatchingProperties();
+        properties.getScheduler().setWorkers(2);
+        properties.getScheduler().setRebalanceIntervalMs(0);
+        properties.getScheduler().setRebalanceThreshold(0.2);
+        SequencerScheduler scheduler = new SequencerScheduler(properties);
+        scheduler.start();
+        List<SymbolSequencer> sequencers = new ArrayList<>();
+        try {
+            for (String symbol : new String[]{"A/USDT", "B/USDT", "C/USDT", "D/USDT"}) {
+                SymbolSequencer sequencer = new SymbolSequencer(new CoinTrader(symbol), 1024);
+                sequencer.start(null, scheduler);
+                sequencers.add(sequencer);
+                // 等分配完成再启动下一个，分配按交易对数均衡
+                threadOf(sequencer);
+            }
+            List<WorkerStatsDTO> stats = scheduler.getStats();
+            assertEquals(2, stats.get(0).getSymbols().size());
+            assertEquals(2, stats.get(1).getSymbols().size());
+
+            // 同一个工作线程上的两个交易对各占用 200ms，另一个线程空闲
+            String hotWorker = stats.get(0).getName();
+            List<SymbolSequencer> hot = new ArrayList<>();
+            for (SymbolSequencer sequencer : sequencers) {
+                if (stats.get(0).getSymbols().contains(sequencer.getSymbol())) {
+                    hot.add(sequencer);
+                }
+            }
+            List<CompletableFuture<Object>> busy = new ArrayList<>();
+            for (SymbolSequencer sequencer : hot) {
+                busy.add(sequencer.query(trader -> sleep(200)));
+            }
+            for (CompletableFuture<Object> future : busy) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            // 迁移前后持续提交命令
+            List<List<Integer>> executed = new ArrayList<>();
+            List<CompletableFuture<Boolean>> commands = new ArrayList<>();
+            for (int i = 0; i < hot.size(); i++) {
+                executed.add(new ArrayList<>());
+            }
+            List<String> rebalanced = null;
+            for (int i = 0; i < 200; i++) {
+                if (i == 100) {
+                    rebalanced = scheduler.rebalance();
+                }
+                for (int j = 0; j < hot.size(); j++) {
+                    List<Integer> log = executed.get(j);
+                    int index = i;
+                    commands.add(hot.get(j).query(trader -> log.add(index)));
+                }
+            }
+            for (CompletableFuture<Boolean> future : commands) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            assertEquals(1, rebalanced.size());
+            for (int j = 0; j < hot.size(); j++) {
+                SymbolSequencer sequencer = hot.get(j);
+                if (sequencer.getSymbol().equals(rebalanced.get(0))) {
+                    assertNotEquals(hotWorker, threadOf(sequencer));
+                } else {
+                    assertEquals(hotWorker, threadOf(sequencer));
+                }
+                List<Integer> log = executed.get(j);
+                assertEquals(200, log.size());
+                for (int i = 0; i < log.size(); i++) {
+                    assertEquals(i, log.get(i).intValue());
+                }
+            }
+            stats = scheduler.getStats();
+            assertEquals(1, stats.get(0).getSymbols().size());
+            assertEquals(3, stats.get(1).getSymbols().size());
+            assertTrue(scheduler.rebalance().isEmpty());
+        } finally {
+            for (SymbolSequencer sequencer : sequencers) {
+                sequencer.shutdown();
+            }
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 定序器当前执行所在的线程名（等待分配完成）
+     */
+    private static String threadOf(SymbolSequencer sequencer) throws Exception {
+        return sequencer.query(trader -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+    }
+
+    private static Object sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
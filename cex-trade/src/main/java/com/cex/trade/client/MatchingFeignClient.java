@@ -0,0 +1,31 @@
+package com.cex.trade.client;
+
+import com.cex.common.core.domain.Result;
+import com.cex.common.dto.KlineDTO;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+/**
+ * 撮合服务 Feign 客户端
+ * 用于查询撮合引擎在内存中维护的行情数据
+ * 
+ * @author cex
+ */
+@FeignClient(name = "cex-matching", path = "/matching")
+public interface MatchingFeignClient {
+
+    /**
+     * 获取K线数据（时间升序，最后一根可能未收盘）
+     * 
+     * @param symbol 交易对
+     * @param period 周期（1m, 5m, 15m, 1h, 4h, 1d）
+     * @param limit 最多返回的K线数
+     */
+    @GetMapping("/kline")
+    Result<List<KlineDTO>> getKlineData(@RequestParam("symbol") String symbol,
+                                        @RequestParam("period") String period,
+                                        @RequestParam("limit") Integer limit);
+}
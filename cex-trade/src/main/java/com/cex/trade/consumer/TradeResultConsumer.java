@@ -1,8 +1,6 @@
 package com.cex.trade.consumer;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
+import com.cex.common.codec.WireCodec;
 import com.cex.common.dto.OrderDTO;
 import com.cex.common.dto.TradeRecordDTO;
 import com.cex.trade.service.TradeOrderService;
@@ -11,6 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -18,6 +17,9 @@ import java.util.function.Consumer;
  * 
  * 接收撮合引擎的成交结果，更新订单状态、处理资产变更、保存成交记录
  * 
+ * 【消息格式】
+ * 以 byte[] 接收，WireCodec 按首字节识别二进制或 JSON 数组，直接解码为 DTO 列表
+ * 
  * @author cex
  */
 @Slf4j
@@ -34,7 +36,7 @@ public class TradeResultConsumer {
      * 接收撮合结果
      * 
      * 【处理流程】
-     * 1. 解析成交记录列表
+     * 1. 解析成交记录列表（二进制或 JSON）
      * 2. 对每条成交记录：
      *    - 更新买方订单成交信息
      *    - 更新卖方订单成交信息
@@ -43,19 +45,14 @@ public class TradeResultConsumer {
      *    - 保存成交记录到数据库
      */
     @Bean
-    public Consumer<Message<String>> tradeResultInput() {
+    public Consumer<Message<byte[]>> tradeResultInput() {
         return message -> {
             try {
-                String payload = message.getPayload();
-                log.info("接收到撮合结果：{}", payload);
-                
                 // 解析成交记录列表
-                JSONArray tradeArray = JSONArray.parseArray(payload);
+                List<TradeRecordDTO> tradeRecords = WireCodec.decodeTrades(message.getPayload());
+                log.info("接收到撮合结果：{} 条", tradeRecords.size());
                 
-                for (int i = 0; i < tradeArray.size(); i++) {
-                    JSONObject tradeJson = tradeArray.getJSONObject(i);
-                    TradeRecordDTO tradeRecord = JSON.parseObject(tradeJson.toJSONString(), TradeRecordDTO.class);
-                    
+                for (TradeRecordDTO tradeRecord : tradeRecords) {
                     // 使用 Service 方法处理成交记录（包含分布式事务）
                     // 这个方法内部会：
                     // 1. 更新买方和卖方订单成交信息
@@ -97,19 +94,14 @@ public class TradeResultConsumer {
      * - 避免数据不一致：如果先更新订单状态，解冻失败会导致数据不一致
      */
     @Bean
-    public Consumer<Message<String>> orderCompletedInput() {
+    public Consumer<Message<byte[]>> orderCompletedInput() {
         return message -> {
             try {
-                String payload = message.getPayload();
-                log.info("接收到订单完成通知：{}", payload);
-                
                 // 解析订单列表
-                JSONArray orderArray = JSONArray.parseArray(payload);
+                List<OrderDTO> orders = WireCodec.decodeOrders(message.getPayload());
+                log.info("接收到订单完成通知：{} 条", orders.size());
                 
-                for (int i = 0; i < orderArray.size(); i++) {
-                    JSONObject orderJson = orderArray.getJSONObject(i);
-                    OrderDTO orderDTO = JSON.parseObject(orderJson.toJSONString(), OrderDTO.class);
-                    
+                for (OrderDTO orderDTO : orders) {
                     // 使用 Service 方法处理订单完成（包含分布式事务）
                     // 这个方法内部会：
                     // 1. 解冻余额（远程调用 Wallet 服务）
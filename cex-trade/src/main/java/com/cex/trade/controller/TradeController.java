@@ -1,6 +1,8 @@
 package com.cex.trade.controller;
 
 import com.cex.common.core.domain.Result;
+import com.cex.common.dto.KlineDTO;
+import com.cex.common.dto.TickerDTO;
 import com.cex.trade.domain.dto.PlaceOrderDTO;
 import com.cex.trade.domain.entity.TradeOrder;
 import com.cex.trade.domain.entity.TradeSymbol;
@@ -89,13 +91,21 @@ public class TradeController {
      * 获取K线数据
      */
     @GetMapping("/kline")
-    public Result<List<Object>> getKlineData(@RequestParam String symbol,
-                                            @RequestParam(defaultValue = "1m") String period,
-                                            @RequestParam(defaultValue = "100") Integer limit) {
-        List<Object> klineData = tradeService.getKlineData(symbol, period, limit);
+    public Result<List<KlineDTO>> getKlineData(@RequestParam String symbol,
+                                               @RequestParam(defaultValue = "1m") String period,
+                                               @RequestParam(defaultValue = "100") Integer limit) {
+        List<KlineDTO> klineData = tradeService.getKlineData(symbol, period, limit);
         return Result.success(klineData);
     }
 
+    /**
+     * 获取全部交易对的24小时行情
+     */
+    @GetMapping("/tickers")
+    public Result<List<TickerDTO>> getTickers() {
+        return Result.success(tradeService.getTickers());
+    }
+
     /**
      * 获取深度数据
      */
@@ -41,7 +41,8 @@ public class TradeOrderController {
             dto.getSide(), 
             dto.getPrice(), 
             dto.getAmount(), 
-            dto.getClientOrderId()
+            dto.getClientOrderId(),
+            dto.getExpireTime()
         );
         
         return Result.success(orderNo, "下单成功");
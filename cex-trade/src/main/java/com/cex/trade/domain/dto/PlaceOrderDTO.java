@@ -42,4 +42,7 @@ public class PlaceOrderDTO {
 
     /** 客户端订单ID */
     private String clientOrderId;
+
+    /** 到期时间（毫秒时间戳，GTT 订单到期后未成交部分自动撤销；为空表示一直有效） */
+    private Long expireTime;
 }
@@ -82,6 +82,9 @@ public class TradeOrder extends BaseEntity {
     /** 完成时间 */
     private java.util.Date completeTime;
 
+    /** 到期时间（GTT 订单，为空表示一直有效） */
+    private java.util.Date expireTime;
+
     /** 备注 */
     private String remark;
 
@@ -0,0 +1,32 @@
+package com.cex.trade.mapper;
+
+import com.cex.common.dto.TickerDTO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 24小时行情Mapper接口（只读，表在撮合服务的库中）
+ * 
+ * 【数据来源】
+ * 各撮合节点的 TickerAggregator 把自己负责的交易对每秒写入 market_data（每个交易对一行），
+ * 分片部署时这里能查到全部节点的交易对，不依赖负载均衡到哪个撮合节点。
+ * 
+ * 【部署要求】
+ * 库名为 ${matchingSchema}（trade.market.matching-schema），必须与交易服务的库在同一个 MySQL 实例，
+ * 交易服务的账号需要 market_data 的 SELECT 权限
+ * 
+ * @author cex
+ */
+@Mapper
+public interface MarketDataMapper {
+
+    /**
+     * 全部交易对的24小时行情（market_data 没有成交笔数、最后成交时间，这两项为空）
+     */
+    @Select("SELECT symbol, price, price - change_24h AS openPrice, change_24h AS `change`, change_rate_24h AS changeRate, "
+            + "high_24h AS high, low_24h AS low, volume_24h AS volume, amount_24h AS amount "
+            + "FROM ${matchingSchema}.market_data WHERE deleted = 0")
+    List<TickerDTO> selectTickers();
+}
@@ -22,10 +22,11 @@ public interface TradeOrderService {
      * @param price 价格（限价单必填）
      * @param amount 数量
      * @param clientOrderId 客户端订单ID
+     * @param expireTime 到期时间（毫秒时间戳，为空表示一直有效）
      * @return 订单号
      */
     String placeOrder(Long userId, String symbol, Integer orderType, Integer side, 
-                     BigDecimal price, BigDecimal amount, String clientOrderId);
+                     BigDecimal price, BigDecimal amount, String clientOrderId, Long expireTime);
 
     /**
      * 撤单
@@ -1,6 +1,8 @@
 package com.cex.trade.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.cex.common.dto.KlineDTO;
+import com.cex.common.dto.TickerDTO;
 import com.cex.trade.domain.dto.PlaceOrderDTO;
 import com.cex.trade.domain.entity.TradeOrder;
 import com.cex.trade.domain.entity.TradeSymbol;
@@ -45,9 +47,14 @@ public interface TradeService extends IService<TradeOrder> {
     TradeSymbol getSymbolDetail(String symbol);
 
     /**
-     * 获取K线数据
+     * 获取K线数据（时间升序，最后一根可能未收盘）
      */
-    List<Object> getKlineData(String symbol, String period, Integer limit);
+    List<KlineDTO> getKlineData(String symbol, String period, Integer limit);
+
+    /**
+     * 获取全部交易对的24小时行情
+     */
+    List<TickerDTO> getTickers();
 
     /**
      * 获取深度数据
@@ -1,7 +1,9 @@
 package com.cex.trade.service.impl;
 
 import com.alibaba.fastjson.JSON;
+import com.cex.common.codec.WireCodec;
 import com.cex.common.dto.OrderDTO;
+import com.cex.common.shard.SymbolShardRouter;
 import com.cex.common.dto.TradeRecordDTO;
 import com.cex.trade.domain.entity.TradeOrder;
 import com.cex.trade.domain.entity.TradeRecord;
@@ -12,7 +14,10 @@ import com.cex.trade.mapper.TradeSymbolMapper;
 import com.cex.trade.service.TradeOrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,6 +47,14 @@ public class TradeOrderServiceImpl implements TradeOrderService {
     
     @Autowired
     private StreamBridge streamBridge;
+    
+    /** 交易对 → 撮合节点路由（分片部署时按交易对选择 Topic） */
+    @Autowired
+    private SymbolShardRouter shardRouter;
+    
+    /** 发往撮合引擎的消息格式：json / binary（见 WireCodec，撮合引擎两种格式都能识别） */
+    @Value("${trade.mq.codec:json}")
+    private String mqCodec;
 
     @Autowired
     private com.cex.trade.client.WalletFeignClient walletClient;
@@ -50,13 +63,16 @@ public class TradeOrderServiceImpl implements TradeOrderService {
     @GlobalTransactional(rollbackFor = Exception.class)
     @Transactional(rollbackFor = Exception.class)
     public String placeOrder(Long userId, String symbol, Integer orderType, Integer side, 
-                            BigDecimal price, BigDecimal amount, String clientOrderId) {
+                            BigDecimal price, BigDecimal amount, String clientOrderId, Long expireTime) {
         
         log.info("用户下单：userId={}, symbol={}, type={}, side={}, price={}, amount={}", 
                  userId, symbol, orderType, side, price, amount);
 
         // 1. 参数校验
         validateOrderParams(orderType, side, price, amount);
+        if (expireTime != null && expireTime <= System.currentTimeMillis()) {
+            throw new RuntimeException("到期时间必须晚于当前时间");
+        }
 
         // 2. 查询交易对配置
         TradeSymbol tradeSymbol = symbolMapper.selectBySymbol(symbol);
@@ -88,7 +104,7 @@ public class TradeOrderServiceImpl implements TradeOrderService {
         log.info("冻结余额：userId={}, coin={}, amount={}", userId, freezeCoin, freezeAmount);
 
         // 7. 创建订单
-        TradeOrder order = buildOrder(userId, tradeSymbol, orderType, side, price, amount, clientOrderId);
+        TradeOrder order = buildOrder(userId, tradeSymbol, orderType, side, price, amount, clientOrderId, expireTime);
         orderMapper.insert(order);
 
         log.info("订单创建成功：orderNo={}", order.getOrderNo());
@@ -222,7 +238,7 @@ public class TradeOrderServiceImpl implements TradeOrderService {
         }
         
         // 2. 根据订单状态处理余额（先解冻余额）
-        if (orderDTO.getStatus() == 3 || orderDTO.getStatus() == 2) {
+        if (orderDTO.getStatus() == 2 || orderDTO.getStatus() == 3 || orderDTO.getStatus() == 4) {
             // 计算需要解冻的金额
             BigDecimal unfilledAmount = order.getAmount().subtract(order.getFilledAmount());
             
@@ -255,7 +271,7 @@ public class TradeOrderServiceImpl implements TradeOrderService {
                         unfreezeCoin,
                         unfreezeAmount,
                         order.getOrderNo(),
-                        orderDTO.getStatus() == 3 ? "订单取消" : "订单完成"
+                        orderDTO.getStatus() == 3 ? "订单取消" : orderDTO.getStatus() == 4 ? "订单超时" : "订单完成"
                     );
                     log.info("解冻余额成功：orderNo={}, coin={}, amount={}", 
                             orderDTO.getOrderNo(), unfreezeCoin, unfreezeAmount);
@@ -582,7 +598,7 @@ public class TradeOrderServiceImpl implements TradeOrderService {
      * 构建订单对象
      */
     private TradeOrder buildOrder(Long userId, TradeSymbol symbol, Integer orderType, Integer side, 
-                                 BigDecimal price, BigDecimal amount, String clientOrderId) {
+                                 BigDecimal price, BigDecimal amount, String clientOrderId, Long expireTime) {
         TradeOrder order = new TradeOrder();
         
         // 生成订单号：E + 时间戳 + 随机6位
@@ -605,6 +621,7 @@ public class TradeOrderServiceImpl implements TradeOrderService {
         order.setSource(1); // Web
         order.setClientOrderId(clientOrderId);
         order.setUseDiscount(0);
+        order.setExpireTime(expireTime != null ? new Date(expireTime) : null);
         
         return order;
     }
@@ -643,9 +660,10 @@ public class TradeOrderServiceImpl implements TradeOrderService {
             orderDTO.setFeeCoin(order.getFeeCoin());
             orderDTO.setStatus(order.getStatus());
             orderDTO.setCreateTime(System.currentTimeMillis());
+            orderDTO.setExpireTime(order.getExpireTime() != null ? order.getExpireTime().getTime() : null);
             
-            String json = JSON.toJSONString(orderDTO);
-            streamBridge.send("order-input", MessageBuilder.withPayload(json).build());
+            String destination = shardRouter.isSharded() ? shardRouter.orderDestination(order.getSymbol()) : "order-input";
+            streamBridge.send(destination, toMatchingMessage(orderDTO));
             log.info("订单已发送到撮合引擎：orderNo={}", order.getOrderNo());
         } catch (Exception e) {
             log.error("发送订单到撮合引擎失败：orderNo={}", order.getOrderNo(), e);
@@ -672,12 +690,29 @@ public class TradeOrderServiceImpl implements TradeOrderService {
             orderDTO.setCreateTime(order.getCreateTime() != null ? 
                     order.getCreateTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli() : System.currentTimeMillis());
             
-            String json = JSON.toJSONString(orderDTO);
-            streamBridge.send("order-cancel-input", MessageBuilder.withPayload(json).build());
+            String destination = shardRouter.isSharded() ? shardRouter.cancelDestination(order.getSymbol()) : "order-cancel-input";
+            streamBridge.send(destination, toMatchingMessage(orderDTO));
             log.info("撤单请求已发送到撮合引擎：orderNo={}", order.getOrderNo());
         } catch (Exception e) {
             log.error("发送撤单请求到撮合引擎失败：orderNo={}", order.getOrderNo(), e);
         }
     }
+    
+    /**
+     * 按配置的格式构建发往撮合引擎的消息
+     * 
+     * 消息带 symbol 头作为分区键（partition-key-expression: headers['symbol']），
+     * 同一交易对的下单、撤单进入同一个队列，撮合引擎顺序消费
+     */
+    private Message<?> toMatchingMessage(OrderDTO orderDTO) {
+        if ("binary".equalsIgnoreCase(mqCodec)) {
+            return MessageBuilder.withPayload(WireCodec.encodeOrder(orderDTO))
+                    .setHeader(MessageHeaders.CONTENT_TYPE, WireCodec.CONTENT_TYPE)
+                    .setHeader(SymbolShardRouter.SYMBOL_HEADER, orderDTO.getSymbol())
+                    .build();
+        }
+        return MessageBuilder.withPayload(JSON.toJSONString(orderDTO))
+                .setHeader(SymbolShardRouter.SYMBOL_HEADER, orderDTO.getSymbol())
+                .build();
+    }
 }
-
@@ -5,10 +5,15 @@ import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.cex.common.core.domain.Result;
 import com.cex.common.core.exception.BusinessException;
+import com.cex.common.dto.KlineDTO;
+import com.cex.common.dto.TickerDTO;
+import com.cex.trade.client.MatchingFeignClient;
 import com.cex.trade.domain.dto.PlaceOrderDTO;
 import com.cex.trade.domain.entity.TradeOrder;
 import com.cex.trade.domain.entity.TradeSymbol;
+import com.cex.trade.mapper.MarketDataMapper;
 import com.cex.trade.mapper.TradeOrderMapper;
 import com.cex.trade.mapper.TradeSymbolMapper;
 import com.cex.trade.service.TradeService;
@@ -33,6 +38,10 @@ public class TradeServiceImpl extends ServiceImpl<TradeOrderMapper, TradeOrder>
 
     private final TradeSymbolMapper tradeSymbolMapper;
 
+    private final MatchingFeignClient matchingFeignClient;
+
+    private final MarketDataMapper marketDataMapper;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public String placeOrder(Long userId, PlaceOrderDTO placeOrderDTO) {
@@ -176,9 +185,19 @@ public class TradeServiceImpl extends ServiceImpl<TradeOrderMapper, TradeOrder>
     }
 
     @Override
-    public List<Object> getKlineData(String symbol, String period, Integer limit) {
-        // TODO: 实现K线数据获取
-        return null;
+    public List<KlineDTO> getKlineData(String symbol, String period, Integer limit) {
+        // K线由撮合引擎根据成交流实时聚合，最近的K线在撮合引擎内存中
+        Result<List<KlineDTO>> result = matchingFeignClient.getKlineData(symbol, period, limit);
+        if (result == null || result.getCode() == null || result.getCode() != 200) {
+            throw new BusinessException("获取K线数据失败: " + (result != null ? result.getMessage() : symbol));
+        }
+        return result.getData();
+    }
+
+    @Override
+    public List<TickerDTO> getTickers() {
+        // 24小时行情由各撮合节点滚动计算后写入 market_data，分片部署时一次查到全部节点的交易对
+        return marketDataMapper.selectTickers();
     }
 
     @Override
@@ -48,14 +48,16 @@ CREATE TABLE IF NOT EXISTS trade_order (
     symbol VARCHAR(20) NOT NULL COMMENT '交易对',
     base_coin VARCHAR(10) NOT NULL COMMENT '基础币种',
     quote_coin VARCHAR(10) NOT NULL COMMENT '计价币种',
-    order_type TINYINT NOT NULL COMMENT '订单类型（1限价单 2市价单）',
+    order_type TINYINT NOT NULL COMMENT '订单类型（1限价单 2市价单 3止损限价单 4止损市价单）',
     side TINYINT NOT NULL COMMENT '买卖方向（1买入 2卖出）',
     price DECIMAL(20,8) COMMENT '订单价格',
+    trigger_price DECIMAL(20,8) COMMENT '触发价格（止损单）',
     amount DECIMAL(20,8) NOT NULL COMMENT '订单数量',
     filled_amount DECIMAL(20,8) DEFAULT 0 COMMENT '已成交数量',
     filled_money DECIMAL(20,8) DEFAULT 0 COMMENT '已成交金额',
     avg_price DECIMAL(20,8) DEFAULT 0 COMMENT '平均成交价',
     status TINYINT DEFAULT 0 COMMENT '订单状态（0待成交 1部分成交 2完全成交 3已撤销 4超时）',
+    expire_time DATETIME COMMENT '到期时间（GTT 订单，为空表示一直有效）',
     fee DECIMAL(20,8) DEFAULT 0 COMMENT '手续费',
     fee_coin VARCHAR(10) COMMENT '手续费币种',
     source TINYINT DEFAULT 1 COMMENT '订单来源（1Web 2APP 3API）',
@@ -75,7 +77,8 @@ CREATE TABLE IF NOT EXISTS trade_order (
     INDEX idx_symbol (symbol),
     INDEX idx_status (status),
     INDEX idx_create_time (create_time),
-    INDEX idx_user_symbol_status (user_id, symbol, status)
+    INDEX idx_user_symbol_status (user_id, symbol, status),
+    INDEX idx_symbol_status_id (symbol, status, id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='订单表';
 
 -- 成交记录表
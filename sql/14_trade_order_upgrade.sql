@@ -0,0 +1,31 @@
+-- 订单表升级脚本（已有 trade_order 的环境执行，可重复执行）
+-- 02_trade.sql 只在建表时生效，已存在的 trade_order 需要补上撮合引擎读取的列和索引：
+--   trigger_price         止损单触发价
+--   expire_time           GTT 订单到期时间
+--   idx_symbol_status_id  启动加载挂单（按交易对、状态分页扫描）
+-- 撮合引擎启动加载挂单时会查询这两列，必须在部署撮合引擎之前执行
+USE cex_trade;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'trade_order' AND COLUMN_NAME = 'trigger_price') = 0,
+    'ALTER TABLE trade_order ADD COLUMN trigger_price DECIMAL(20,8) COMMENT ''触发价格（止损单）'' AFTER price',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'trade_order' AND COLUMN_NAME = 'expire_time') = 0,
+    'ALTER TABLE trade_order ADD COLUMN expire_time DATETIME COMMENT ''到期时间（GTT 订单，为空表示一直有效）'' AFTER status',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'trade_order' AND INDEX_NAME = 'idx_symbol_status_id') = 0,
+    'ALTER TABLE trade_order ADD INDEX idx_symbol_status_id (symbol, status, id)',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;